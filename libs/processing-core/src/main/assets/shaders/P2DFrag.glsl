@@ -6,9 +6,30 @@ precision mediump int;
 varying vec4 vertColor;
 varying vec2 vertTexCoord;
 varying float vertTexFactor;
+varying float vertTexSlot;
 
+//one sampler per texture unit used in the batch, GLSL ES 1.0 only allows
+//constant indices into sampler arrays, hence the separate uniforms
 uniform sampler2D texture;
+uniform sampler2D texture1;
+uniform sampler2D texture2;
+uniform sampler2D texture3;
+uniform sampler2D texture4;
+uniform sampler2D texture5;
+uniform sampler2D texture6;
+uniform sampler2D texture7;
+
+vec4 texel(vec2 uv) {
+  if (vertTexSlot < 0.5) return texture2D(texture, uv);
+  if (vertTexSlot < 1.5) return texture2D(texture1, uv);
+  if (vertTexSlot < 2.5) return texture2D(texture2, uv);
+  if (vertTexSlot < 3.5) return texture2D(texture3, uv);
+  if (vertTexSlot < 4.5) return texture2D(texture4, uv);
+  if (vertTexSlot < 5.5) return texture2D(texture5, uv);
+  if (vertTexSlot < 6.5) return texture2D(texture6, uv);
+  return texture2D(texture7, uv);
+}
 
 void main() {
-  gl_FragColor = mix(vertColor, vertColor * texture2D(texture, vertTexCoord), vertTexFactor);
+  gl_FragColor = mix(vertColor, vertColor * texel(vertTexCoord), vertTexFactor);
 }
@@ -2,10 +2,12 @@ attribute vec3 position;
 attribute vec4 color;
 attribute vec2 texCoord;
 attribute float texFactor;
+attribute float texSlot;
 
 varying vec4 vertColor;
 varying vec2 vertTexCoord;
 varying float vertTexFactor;
+varying float vertTexSlot;
 
 uniform mat4 transform;
 uniform vec2 texScale;
@@ -20,4 +22,5 @@ void main() {
   vertColor = color.zyxw;
   vertTexCoord = texCoord * texScale;
   vertTexFactor = texFactor;
+  vertTexSlot = texSlot;
 }
@@ -42,6 +42,8 @@ import java.io.FileOutputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
 import java.io.InputStream;
 import java.util.zip.GZIPInputStream;
 
@@ -97,6 +99,13 @@ public class PGraphicsAndroid2D extends PGraphics {
    */
   Path path;
 
+  /** Direct copy of the bitmap memory, see loadPixelBuffer() */
+  protected IntBuffer pixelBuffer;
+
+  /** PATH shape whose vertices are being stored in path, see drawCachedPath() */
+  PShape recordingShape;
+  Path recordingSavedPath;
+
   /** Temporary rectangle object. */
   RectF rect;
 
@@ -513,6 +522,12 @@ public class PGraphicsAndroid2D extends PGraphics {
         }
         drawPath();
       }
+      if (recordingShape != null) {
+        recordingShape.setNativePath(path);
+        recordingShape = null;
+        path = recordingSavedPath;
+        recordingSavedPath = null;
+      }
     } else if (shape == LINE_LOOP && vertexCount >= 2) {
     line(vertices[vertexCount-1][X],
          vertices[vertexCount-1][Y],
@@ -910,6 +925,11 @@ public class PGraphicsAndroid2D extends PGraphics {
 
 
   protected void drawPath() {
+    drawPath(path);
+  }
+
+
+  protected void drawPath(Path path) {
     if (fill) {
       canvas.drawPath(path, fillPaint);
     }
@@ -919,6 +939,42 @@ public class PGraphicsAndroid2D extends PGraphics {
   }
 
 
+  /**
+   * The first time a PATH shape is drawn, its vertices go into a new Path
+   * that is stored in the shape at endShape(), and later it's drawn with that
+   * Path alone. The shape drops the Path when its vertices change. Shapes
+   * with curve vertices are not cached, since their outline also depends on
+   * the curve detail and tightness of the renderer.
+   */
+  @Override
+  protected boolean drawCachedPath(PShape shape) {
+    if (shape.is3D()) {
+      return false;
+    }
+
+    Object cached = shape.getNativePath();
+    if (cached instanceof Path) {
+      Path cachedPath = (Path) cached;
+      if (!cachedPath.isEmpty()) {
+        drawPath(cachedPath);
+      }
+      return true;
+    }
+
+    for (int i = 0; i < shape.getVertexCodeCount(); i++) {
+      if (shape.getVertexCode(i) == CURVE_VERTEX) {
+        return false;
+      }
+    }
+
+    // The shape is drawn as usual, but into its own path
+    recordingShape = shape;
+    recordingSavedPath = path;
+    path = new Path();
+    return false;
+  }
+
+
 
   //////////////////////////////////////////////////////////////
 
@@ -1125,7 +1181,9 @@ public class PGraphicsAndroid2D extends PGraphics {
       src.setNative(bitmap);
     }
 
-    if (src.isModified()) {
+    // An offscreen surface of this renderer is marked as modified in
+    // endDraw(), but its pixels were just read from this same bitmap.
+    if (src.isModified() && !(src instanceof PGraphicsAndroid2D)) {
       //System.out.println("mutable, recycled = " + who.bitmap.isMutable() + ", " + who.bitmap.isRecycled());
       if (!bitmap.isMutable()) {
         bitmap.recycle();
@@ -2020,6 +2078,35 @@ public class PGraphicsAndroid2D extends PGraphics {
   }
 
 
+  /**
+   * Copies only the rows and columns inside the rectangle from the bitmap,
+   * the rest of the pixels[] array keeps whatever it had before.
+   */
+  @Override
+  public void loadPixels(int x, int y, int w, int h) {
+    if (bitmap == null) {
+      throw new RuntimeException("The pixels array is not available in this " +
+                                 "renderer withouth a backing bitmap");
+    }
+
+    if ((pixels == null) || (pixels.length != width * height)) {
+      // Nothing to keep, so it's all loaded
+      pixels = new int[width * height];
+      bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+      return;
+    }
+
+    int x1 = Math.max(0, x);
+    int y1 = Math.max(0, y);
+    int x2 = Math.min(width, x + w);
+    int y2 = Math.min(height, y + h);
+    if (x1 < x2 && y1 < y2) {
+      bitmap.getPixels(pixels, y1 * width + x1, width,
+                       x1, y1, x2 - x1, y2 - y1);
+    }
+  }
+
+
   /**
    * Update the pixels[] buffer to the PGraphics image.
    * <P>
@@ -2044,15 +2131,60 @@ public class PGraphicsAndroid2D extends PGraphics {
    * <P>
    * Unlike in PImage, where updatePixels() only requests that the
    * update happens, in PGraphicsJava2D, this will happen immediately.
+   * Only the pixels inside the rectangle are copied to the bitmap.
    */
   @Override
   public void updatePixels(int x, int y, int c, int d) {
-    //if ((x == 0) && (y == 0) && (c == width) && (d == height)) {
-    if ((x != 0) || (y != 0) || (c != width) || (d != height)) {
-      // Show a warning message, but continue anyway.
-      showVariationWarning("updatePixels(x, y, w, h)");
+    if (bitmap == null) {
+      throw new RuntimeException("The pixels array is not available in this " +
+                                 "renderer withouth a backing bitmap");
     }
-    updatePixels();
+
+    int x1 = Math.max(0, x);
+    int y1 = Math.max(0, y);
+    int x2 = Math.min(width, x + c);
+    int y2 = Math.min(height, y + d);
+    if (x1 < x2 && y1 < y2) {
+      bitmap.setPixels(pixels, y1 * width + x1, width,
+                       x1, y1, x2 - x1, y2 - y1);
+    }
+  }
+
+
+  /**
+   * Returns a direct buffer with a copy of the backing bitmap. It holds the
+   * memory of the bitmap as it is, without the conversion that getPixels()
+   * does: colors are premultiplied by alpha, and each int has its bytes in
+   * R, G, B, A order. Useful for native code, or for effects that only move
+   * pixels around. Use updatePixelBuffer() to copy it back to the bitmap.
+   */
+  public IntBuffer loadPixelBuffer() {
+    if (bitmap == null) {
+      throw new RuntimeException("The pixel buffer is not available in this " +
+                                 "renderer withouth a backing bitmap");
+    }
+
+    if (pixelBuffer == null || pixelBuffer.capacity() != width * height) {
+      pixelBuffer = ByteBuffer.allocateDirect(4 * width * height).
+                    order(ByteOrder.nativeOrder()).asIntBuffer();
+    }
+    pixelBuffer.rewind();
+    bitmap.copyPixelsToBuffer(pixelBuffer);
+    pixelBuffer.rewind();
+    return pixelBuffer;
+  }
+
+
+  /**
+   * Copies the buffer returned by loadPixelBuffer() back to the bitmap.
+   */
+  public void updatePixelBuffer() {
+    if (bitmap == null || pixelBuffer == null) {
+      return;
+    }
+    pixelBuffer.rewind();
+    bitmap.copyPixelsFromBuffer(pixelBuffer);
+    pixelBuffer.rewind();
   }
 
 
@@ -0,0 +1,176 @@
+/* -*- mode: java; c-basic-offset: 2; indent-tabs-mode: nil -*- */
+
+/*
+  Part of the Processing project - http://processing.org
+
+  Copyright (c) 2012-21 The Processing Foundation
+
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License as published by the Free Software Foundation, version 2.1.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+*/
+
+package processing.core;
+
+
+/**
+ * Reads numbers from the characters of a string, which are copied once into
+ * an array, instead of splitting it into a string per token first.
+ * Whitespace and commas are skipped as separators. A token that is not a
+ * number reads as NaN, like PApplet.parseFloat() does. Shared by the SVG
+ * path data and the OBJ loaders.
+ */
+class FloatLexer {
+  // Largest mantissa that can be multiplied by 10 and still be exactly
+  // represented by a double.
+  static final long MAX_MANTISSA = 100000000000000L;
+
+  static final double[] POWERS_OF_TEN = {
+    1e0,  1e1,  1e2,  1e3,  1e4,  1e5,  1e6,  1e7,
+    1e8,  1e9,  1e10, 1e11, 1e12, 1e13, 1e14, 1e15,
+    1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+  };
+
+  final char[] chars;
+  final int length;
+  int pos;
+
+
+  FloatLexer(String data) {
+    chars = data.toCharArray();
+    length = chars.length;
+    pos = 0;
+  }
+
+
+  static boolean isSeparator(char c) {
+    return c == ' ' || c == ',' || c == '\n' || c == '\r' || c == '\t' ||
+           c == '\f';
+  }
+
+
+  /**
+   * True if c cannot continue the token before it, so it is where skipping
+   * a token that is not a number stops.
+   */
+  boolean isTokenEnd(char c) {
+    return isSeparator(c);
+  }
+
+
+  void skipSeparators() {
+    while (pos < length && isSeparator(chars[pos])) {
+      pos++;
+    }
+  }
+
+
+  /**
+   * Moves past the current token, at least one character, so that reading
+   * goes on after it.
+   */
+  void skipToken() {
+    if (pos < length) pos++;
+    while (pos < length && !isTokenEnd(chars[pos])) {
+      pos++;
+    }
+  }
+
+
+  boolean hasNext() {
+    skipSeparators();
+    return pos < length;
+  }
+
+
+  boolean nextIsNumber() {
+    skipSeparators();
+    if (pos == length) return false;
+    char c = chars[pos];
+    return ('0' <= c && c <= '9') || c == '-' || c == '+' || c == '.';
+  }
+
+
+  float nextFloat() {
+    skipSeparators();
+    int start = pos;
+
+    boolean negative = false;
+    if (pos < length && (chars[pos] == '-' || chars[pos] == '+')) {
+      negative = chars[pos] == '-';
+      pos++;
+    }
+
+    long mantissa = 0;
+    int exponent = 0;
+    int digits = 0;
+    while (pos < length && '0' <= chars[pos] && chars[pos] <= '9') {
+      if (mantissa < MAX_MANTISSA) {
+        mantissa = 10 * mantissa + (chars[pos] - '0');
+      } else {
+        exponent++;
+      }
+      pos++;
+      digits++;
+    }
+    if (pos < length && chars[pos] == '.') {
+      pos++;
+      while (pos < length && '0' <= chars[pos] && chars[pos] <= '9') {
+        if (mantissa < MAX_MANTISSA) {
+          mantissa = 10 * mantissa + (chars[pos] - '0');
+          exponent--;
+        }
+        pos++;
+        digits++;
+      }
+    }
+    if (digits == 0) {
+      pos = start;
+      skipToken();
+      return Float.NaN;
+    }
+
+    // allow for 'e' notation in numbers, e.g. 2.10e-9
+    if (pos < length && (chars[pos] == 'e' || chars[pos] == 'E')) {
+      int p = pos + 1;
+      boolean negativeExp = false;
+      if (p < length && (chars[p] == '-' || chars[p] == '+')) {
+        negativeExp = chars[p] == '-';
+        p++;
+      }
+      if (p < length && '0' <= chars[p] && chars[p] <= '9') {
+        int exp = 0;
+        while (p < length && '0' <= chars[p] && chars[p] <= '9') {
+          if (exp < 1000) exp = 10 * exp + (chars[p] - '0');
+          p++;
+        }
+        exponent += negativeExp ? -exp : exp;
+        pos = p;
+      }
+    }
+
+    double value = mantissa;
+    if (exponent < 0) {
+      value /= powerOfTen(-exponent);
+    } else if (0 < exponent) {
+      value *= powerOfTen(exponent);
+    }
+    return (float) (negative ? -value : value);
+  }
+
+
+  static double powerOfTen(int exp) {
+    if (exp < POWERS_OF_TEN.length) return POWERS_OF_TEN[exp];
+    return Math.pow(10, exp);
+  }
+}
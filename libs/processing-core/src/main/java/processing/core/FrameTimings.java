@@ -0,0 +1,179 @@
+/* -*- mode: java; c-basic-offset: 2; indent-tabs-mode: nil -*- */
+
+/*
+  Part of the Processing project - http://processing.org
+
+  Copyright (c) 2012-21 The Processing Foundation
+
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License as published by the Free Software Foundation, version 2.1.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+*/
+
+package processing.core;
+
+import java.util.Arrays;
+
+/**
+ * Timing statistics of the frames drawn by the sketch: how long draw() took,
+ * the interval between consecutive frames, how many frames were late (jank)
+ * and how many were skipped because nothing had changed. The intervals of
+ * the last INTERVAL_COUNT frames are kept to compute percentiles, which show
+ * the tail latency better than the average frame rate. All the values are
+ * updated from the animation thread.
+ */
+public class FrameTimings {
+  static public int INTERVAL_COUNT = 120;
+
+  /** A frame is late when its interval is this many times the target */
+  static public float JANK_FACTOR = 1.5f;
+
+  protected long targetPeriod = 1000000000L / 60L;
+
+  protected long frameCount;
+  protected long skippedCount;
+  protected long jankCount;
+
+  protected long lastStart;
+  protected long lastDuration;
+  protected long maxDuration;
+  protected double averageDuration;
+  protected boolean skippedSinceLast;
+
+  protected long[] intervals = new long[INTERVAL_COUNT];
+  protected int intervalCount;
+  protected int intervalIndex;
+
+
+  protected void setTargetPeriod(long period) {
+    targetPeriod = period;
+  }
+
+
+  /**
+   * Records a frame that started drawing at start and finished at end, in
+   * nanoseconds.
+   */
+  protected void frameDrawn(long start, long end) {
+    long duration = end - start;
+    lastDuration = duration;
+    if (maxDuration < duration) maxDuration = duration;
+    if (frameCount == 0) {
+      averageDuration = duration;
+    } else {
+      averageDuration = 0.9 * averageDuration + 0.1 * duration;
+    }
+
+    if (0 < lastStart) {
+      long interval = start - lastStart;
+      intervals[intervalIndex] = interval;
+      intervalIndex = (intervalIndex + 1) % intervals.length;
+      if (intervalCount < intervals.length) intervalCount++;
+
+      // Skipped frames make the interval longer on purpose, that's not jank
+      if (!skippedSinceLast && JANK_FACTOR * targetPeriod < interval) {
+        jankCount++;
+      }
+    }
+
+    lastStart = start;
+    skippedSinceLast = false;
+    frameCount++;
+  }
+
+
+  protected void frameSkipped() {
+    skippedSinceLast = true;
+    skippedCount++;
+  }
+
+
+  public void reset() {
+    frameCount = 0;
+    skippedCount = 0;
+    jankCount = 0;
+    lastStart = 0;
+    lastDuration = 0;
+    maxDuration = 0;
+    averageDuration = 0;
+    intervalCount = 0;
+    intervalIndex = 0;
+  }
+
+
+  public long getFrameCount() {
+    return frameCount;
+  }
+
+
+  /**
+   * Number of frames that were not drawn because the sketch had not been
+   * invalidated and there were no input events.
+   */
+  public long getSkippedCount() {
+    return skippedCount;
+  }
+
+
+  /**
+   * Number of frames that came later than JANK_FACTOR times the period of
+   * the target frame rate.
+   */
+  public long getJankCount() {
+    return jankCount;
+  }
+
+
+  /** Time spent in the last frame, in milliseconds */
+  public float getLastDuration() {
+    return lastDuration / 1e6f;
+  }
+
+
+  /** Average time spent in each frame, in milliseconds */
+  public float getAverageDuration() {
+    return (float) (averageDuration / 1e6);
+  }
+
+
+  /** Longest time spent in a frame, in milliseconds */
+  public float getMaxDuration() {
+    return maxDuration / 1e6f;
+  }
+
+
+  /**
+   * Returns the interval between frames, in milliseconds, below which
+   * the given percentage of the recent frames fall. For instance,
+   * getIntervalPercentile(99) is the 99th percentile of the frame time.
+   */
+  public float getIntervalPercentile(float percent) {
+    if (intervalCount == 0) return 0;
+    long[] sorted = new long[intervalCount];
+    System.arraycopy(intervals, 0, sorted, 0, intervalCount);
+    Arrays.sort(sorted);
+    int i = PApplet.constrain(PApplet.ceil(percent / 100 * intervalCount) - 1,
+                              0, intervalCount - 1);
+    return sorted[i] / 1e6f;
+  }
+
+
+  @Override
+  public String toString() {
+    return "frames: " + frameCount + ", skipped: " + skippedCount +
+           ", jank: " + jankCount + ", average: " +
+           PApplet.nf(getAverageDuration(), 0, 2) + " ms, max: " +
+           PApplet.nf(getMaxDuration(), 0, 2) + " ms, p99 interval: " +
+           PApplet.nf(getIntervalPercentile(99), 0, 2) + " ms";
+  }
+}
@@ -39,6 +39,7 @@ import android.os.Build;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.Message;
 import android.view.ContextMenu;
 import android.view.ContextMenu.ContextMenuInfo;
 import android.view.LayoutInflater;
@@ -84,6 +85,9 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Random;
 import java.util.StringTokenizer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.zip.GZIPInputStream;
@@ -106,6 +110,7 @@ import processing.opengl.PGL;
 import processing.opengl.PGraphics2D;
 import processing.opengl.PGraphics3D;
 import processing.opengl.PShader;
+import processing.opengl.RenderMetrics;
 
 public class PApplet extends Object implements ActivityAPI, PConstants {
 
@@ -362,6 +367,15 @@ public class PApplet extends Object implements ActivityAPI, PConstants {
   /** flag set to true when a redraw is asked for by the user */
   protected boolean redraw;
 
+  /**
+   * Set when something changed and the next frame has to be drawn, used to
+   * skip the frames where nothing changed when skipIdleFrames() is enabled.
+   */
+  protected volatile boolean invalid = true;
+
+  /** Durations and intervals of the frames, including late and skipped ones */
+  protected FrameTimings frameTimings = new FrameTimings();
+
   /**
    * How many frames have been displayed since the applet started.
    * <P>
@@ -590,6 +604,7 @@ public class PApplet extends Object implements ActivityAPI, PConstants {
 
   public void onResume() {
     if (DEBUG) System.out.println("PApplet.onResume() called");
+    invalid = true;
     if (parentLayout == -1) {
       setFullScreenVisibility();
     }
@@ -663,7 +678,7 @@ public class PApplet extends Object implements ActivityAPI, PConstants {
 
 
   public void onNewIntent(Intent intent) {
-    handleMethods("onNewIntent", new Object[] { intent });
+    handleMethods("onNewIntent", (Object) intent);
   }
 
 
@@ -745,7 +760,7 @@ public class PApplet extends Object implements ActivityAPI, PConstants {
     if (hasPermission(permission)) {
       // If the app already has permission, still call the handle method as it
       // may be doing some initialization
-      handleMethods(callback, new Object[] { true });
+      handleMethods(callback, (Object) true);
     } else {
       permissionMethods.put(permission, callback);
       // Accumulating permissions so they requested all at once at the end
@@ -769,15 +784,9 @@ public class PApplet extends Object implements ActivityAPI, PConstants {
 
   private void handlePermissionsResult(String permission, final boolean granted) {
     String methodName = permissionMethods.get(permission);
-    final RegisteredMethods meth = registerMap.get(methodName);
+    RegisteredMethods meth = registerMap.get(methodName);
     if (meth != null) {
-      Handler handler = new Handler(Looper.getMainLooper());
-      handler.post(new Runnable() {
-        @Override
-        public void run() {
-          meth.handle(new Object[] { granted });
-        }
-      });
+      meth.post(granted);
     }
   }
 
@@ -894,6 +903,7 @@ public class PApplet extends Object implements ActivityAPI, PConstants {
 
   public void surfaceChanged() {
     surfaceChanged = true;
+    invalid = true;
     g.surfaceChanged();
   }
 
@@ -991,12 +1001,22 @@ public class PApplet extends Object implements ActivityAPI, PConstants {
 
 
   class RegisteredMethods {
+    static final int SINGLE_ARG = 0;
+    static final int MULTIPLE_ARGS = 1;
+
     int count;
     Object[] objects;
     // Because the Method comes from the class being called,
     // it will be unique for most, if not all, objects.
     Method[] methods;
     Object[] emptyArgs = new Object[] { };
+    // Reused to pass the argument of single-argument methods (i.e.: the
+    // events), so no array needs to be created for every call. The methods
+    // of each name are always invoked from the same thread.
+    Object[] singleArg = new Object[1];
+    // Delivers the calls posted to the main thread, using the pooled
+    // messages of the looper instead of a new Runnable for every call.
+    Handler handler;
 
 
     void handle() {
@@ -1004,6 +1024,16 @@ public class PApplet extends Object implements ActivityAPI, PConstants {
     }
 
 
+    void handle(Object arg) {
+      singleArg[0] = arg;
+      try {
+        handle(singleArg);
+      } finally {
+        singleArg[0] = null;
+      }
+    }
+
+
     void handle(Object[] args) {
       for (int i = 0; i < count; i++) {
         try {
@@ -1030,8 +1060,50 @@ public class PApplet extends Object implements ActivityAPI, PConstants {
     }
 
 
+    /**
+     * Calls the methods with the given argument on the main thread.
+     */
+    void post(Object arg) {
+      getHandler().obtainMessage(SINGLE_ARG, arg).sendToTarget();
+    }
+
+
+    void post(Object[] args) {
+      getHandler().obtainMessage(MULTIPLE_ARGS, args).sendToTarget();
+    }
+
+
+    synchronized Handler getHandler() {
+      if (handler == null) {
+        handler = new Handler(Looper.getMainLooper()) {
+          @Override
+          public void handleMessage(Message msg) {
+            if (msg.what == SINGLE_ARG) {
+              handle(msg.obj);
+            } else {
+              handle((Object[]) msg.obj);
+            }
+          }
+        };
+      }
+      return handler;
+    }
+
+
+    boolean isEmpty() {
+      return count == 0;
+    }
+
+
     void add(Object object, Method method) {
       if (findIndex(object) == -1) {
+        try {
+          // The method is public, but its class might not be accessible from
+          // here; this also skips the access checks on every invoke() call.
+          method.setAccessible(true);
+        } catch (SecurityException e) {
+          // Invoke with the access checks then
+        }
         if (objects == null) {
           objects = new Object[5];
           methods = new Method[5];
@@ -1207,20 +1279,28 @@ public class PApplet extends Object implements ActivityAPI, PConstants {
   }
 
 
-  protected void handleMethods(String methodName, final Object[] args) {
-    final RegisteredMethods meth = registerMap.get(methodName);
+  protected void handleMethods(String methodName, Object arg) {
+    RegisteredMethods meth = registerMap.get(methodName);
     if (meth != null) {
-      Handler handler = new Handler(Looper.getMainLooper());
-      handler.post(new Runnable() {
-        @Override
-        public void run() {
-          meth.handle(args);
-        }
-      });
+      meth.post(arg);
+    }
+  }
+
+
+  protected void handleMethods(String methodName, Object[] args) {
+    RegisteredMethods meth = registerMap.get(methodName);
+    if (meth != null) {
+      meth.post(args);
     }
   }
 
 
+  protected boolean hasMethods(String methodName) {
+    RegisteredMethods meth = registerMap.get(methodName);
+    return meth != null && !meth.isEmpty();
+  }
+
+
   @Deprecated
   public void registerSize(Object o) {
     System.err.println("The registerSize() command is no longer supported.");
@@ -1873,6 +1953,7 @@ public class PApplet extends Object implements ActivityAPI, PConstants {
     g.beginDraw();
 
     long now = System.nanoTime();
+    invalid = false;
 
     if (frameCount == 0) {
       setup();
@@ -1922,6 +2003,7 @@ public class PApplet extends Object implements ActivityAPI, PConstants {
       handleMethods("post");
     }
 
+    frameTimings.frameDrawn(now, System.nanoTime());
     frameRateLastNanos = now;
     frameCount++;
   }
@@ -1967,6 +2049,7 @@ public class PApplet extends Object implements ActivityAPI, PConstants {
 
 
   synchronized public void redraw() {
+    invalid = true;
     if (!looping) {
       redraw = true;
 //      if (thread != null) {
@@ -2007,6 +2090,53 @@ public class PApplet extends Object implements ActivityAPI, PConstants {
   }
 
 
+  /**
+   * When enabled, the frames are only drawn after the sketch is invalidated
+   * with invalidate() or redraw(), or when an input event arrives, saving
+   * the power spent drawing the same image over and over again. The sketch
+   * keeps looping, so draw() runs again as soon as something changes.
+   */
+  public void skipIdleFrames(boolean skip) {
+    surface.setSkipIdleFrames(skip);
+  }
+
+
+  /**
+   * Indicates that something changed and the next frame has to be drawn
+   * when skipIdleFrames() is enabled. This can be called from any thread.
+   */
+  public void invalidate() {
+    invalid = true;
+  }
+
+
+  /**
+   * Returns true if the next frame has to be drawn, because the sketch was
+   * invalidated, has input events pending, or needs to complete a pending
+   * redraw.
+   */
+  public boolean isInvalid() {
+    return invalid || frameCount == 0 || eventQueue.available() ||
+           (g != null && (g.requestedNoLoop || g.restoringState()));
+  }
+
+
+  /**
+   * Aligns the frames with the vertical sync signal of the display, instead
+   * of sleeping between frames. The target frame rate is rounded to a whole
+   * number of refresh intervals, i.e.: with a 60 Hz display frameRate(24)
+   * draws a frame every three refreshes.
+   */
+  public void vsyncPacing(boolean enable) {
+    surface.setVsyncPacing(enable);
+  }
+
+
+  public FrameTimings getFrameTimings() {
+    return frameTimings;
+  }
+
+
   //////////////////////////////////////////////////////////////
 
 
@@ -2033,45 +2163,148 @@ public class PApplet extends Object implements ActivityAPI, PConstants {
   //////////////////////////////////////////////////////////////
 
 
-  InternalEventQueue eventQueue = new InternalEventQueue();
+  InternalEventQueue eventQueue = new InternalEventQueue(EVENT_QUEUE_SIZE);
+
+  // Pools of events that have been handled already and can be reused
+  InternalEventQueue mouseEventPool = new InternalEventQueue(EVENT_POOL_SIZE);
+  InternalEventQueue touchEventPool = new InternalEventQueue(EVENT_POOL_SIZE);
+  InternalEventQueue keyEventPool = new InternalEventQueue(EVENT_POOL_SIZE);
+
+  /** Reuse the event objects once they have been handled */
+  protected boolean recycleEvents = false;
+
+  /** Only deliver the last of consecutive move and drag events */
+  protected boolean coalesceEvents = false;
+
+  static final int EVENT_QUEUE_SIZE = 1024;
+  static final int EVENT_POOL_SIZE = 64;
+
+
+  /**
+   * Bounded ring buffer of events, written by the thread that receives the
+   * input (the UI thread) and read by the animation thread. Each side only
+   * writes its own index, so the two threads never wait on each other. The
+   * lock of each side is only there for the unusual cases where several
+   * threads post events (i.e.: libraries calling postEvent()), or events are
+   * handled right away because the sketch is not looping, so in general it
+   * is always taken by the same thread. The same class is used for the pools
+   * of recycled events, where the threads swap roles.
+   */
+  static class InternalEventQueue {
+    final Event[] queue;
+    final int mask;
+    final Object producerLock = new Object();
+    final Object consumerLock = new Object();
 
+    // Running counts of events added and removed, only written by the
+    // producer and by the consumer, respectively.
+    volatile int tail;
+    volatile int head;
 
-  class InternalEventQueue {
-    protected Event queue[] = new Event[10];
-    protected int offset;
-    protected int count;
+    InternalEventQueue(int capacity) {
+      // Capacity is rounded to a power of two, to wrap around with a mask
+      int size = 1;
+      while (size < capacity) size <<= 1;
+      queue = new Event[size];
+      mask = size - 1;
+    }
 
-    synchronized void add(Event e) {
-      if (count == queue.length) {
-        queue = (Event[]) expand(queue);
+    /**
+     * Adds the event at the end of the queue, or returns false if the queue
+     * is full.
+     */
+    boolean add(Event e) {
+      synchronized (producerLock) {
+        int t = tail;
+        if (t - head == queue.length) {
+          return false;
+        }
+        queue[t & mask] = e;
+        tail = t + 1;
+        return true;
       }
-      queue[count++] = e;
     }
 
-    synchronized Event remove() {
-      if (offset == count) {
+    /**
+     * Number of free slots, the producer can add at least this many events.
+     */
+    int remaining() {
+      return queue.length - (tail - head);
+    }
+
+    boolean available() {
+      return head != tail;
+    }
+
+    // The methods below should only be called by the consumer, holding
+    // consumerLock.
+
+    int size() {
+      return tail - head;
+    }
+
+    Event peek(int i) {
+      return queue[(head + i) & mask];
+    }
+
+    Event remove() {
+      int h = head;
+      if (h == tail) {
         throw new RuntimeException("Nothing left on the event queue.");
       }
-      Event outgoing = queue[offset++];
-      if (offset == count) {
-        // All done, time to reset
-        offset = 0;
-        count = 0;
-      }
+      Event outgoing = queue[h & mask];
+      queue[h & mask] = null;
+      head = h + 1;
       return outgoing;
     }
 
-    synchronized boolean available() {
-      return count != 0;
+    Event poll() {
+      synchronized (consumerLock) {
+        return head != tail ? remove() : null;
+      }
     }
   }
 
+
+  /**
+   * Reuse the mouse, touch, and key events once the event handlers return,
+   * instead of allocating new ones for each input event. With this option,
+   * the sketch should not keep references to the events received in the
+   * event handlers, since they will be overwritten with other events.
+   */
+  public void recycleEvents(boolean recycle) {
+    recycleEvents = recycle;
+  }
+
+
+  /**
+   * When several move or drag events of the same kind are waiting to be
+   * handled, only deliver the last one. This reduces the work done by
+   * sketches that only need the latest position, but drops the intermediate
+   * positions used to draw continuous strokes.
+   */
+  public void coalesceEvents(boolean coalesce) {
+    coalesceEvents = coalesce;
+  }
+
+
   /**
    * Add an event to the internal event queue, or process it immediately if
    * the sketch is not currently looping.
    */
   public void postEvent(processing.event.Event pe) {
-    eventQueue.add(pe);
+    // Move events are dropped when the queue is almost full (i.e.: the
+    // animation thread is stalled), to keep some room for presses and
+    // releases. Anything else is dropped only when it's completely full.
+    boolean added = false;
+    if (!isMoveEvent(pe) || eventQueue.queue.length / 4 < eventQueue.remaining()) {
+      added = eventQueue.add(pe);
+    }
+    if (!added) {
+      if (DEBUG) System.err.println("The event queue is full, dropping event");
+      return;
+    }
+    invalid = true;
 
     if (!looping) {
       dequeueEvents();
@@ -2080,21 +2313,115 @@ public class PApplet extends Object implements ActivityAPI, PConstants {
 
 
   protected void dequeueEvents() {
-    while (eventQueue.available()) {
-      Event e = eventQueue.remove();
+    synchronized (eventQueue.consumerLock) {
+      while (eventQueue.available()) {
+        if (coalesceEvents && isSuperseded(0)) {
+          recycleEvent(eventQueue.remove());
+          continue;
+        }
 
-      switch (e.getFlavor()) {
-      case Event.TOUCH:
-        handleTouchEvent((TouchEvent) e);
-        break;
-      case Event.MOUSE:
-        handleMouseEvent((MouseEvent) e);
-        break;
-      case Event.KEY:
-        handleKeyEvent((KeyEvent) e);
-        break;
+        Event e = eventQueue.remove();
+
+        switch (e.getFlavor()) {
+        case Event.TOUCH:
+          handleTouchEvent((TouchEvent) e);
+          break;
+        case Event.MOUSE:
+          handleMouseEvent((MouseEvent) e);
+          break;
+        case Event.KEY:
+          handleKeyEvent((KeyEvent) e);
+          break;
+        }
+
+        recycleEvent(e);
+      }
+    }
+  }
+
+
+  protected boolean isMoveEvent(Event e) {
+    int action = e.getAction();
+    switch (e.getFlavor()) {
+    case Event.TOUCH:
+      return action == TouchEvent.MOVE;
+    case Event.MOUSE:
+      return action == MouseEvent.DRAG || action == MouseEvent.MOVE;
+    }
+    return false;
+  }
+
+
+  /**
+   * Returns true if the i-th event in the queue is a move event followed by
+   * another move of the same kind, with no other events of the same flavor
+   * in between. The touch moves also need the same number of pointers.
+   */
+  protected boolean isSuperseded(int i) {
+    Event e = eventQueue.peek(i);
+    if (!isMoveEvent(e)) return false;
+    int size = eventQueue.size();
+    for (int j = i + 1; j < size; j++) {
+      Event next = eventQueue.peek(j);
+      if (next.getFlavor() != e.getFlavor()) continue;
+      if (next.getAction() != e.getAction()) return false;
+      if (e.getFlavor() == Event.TOUCH) {
+        return ((TouchEvent) e).getNumPointers() ==
+               ((TouchEvent) next).getNumPointers();
       }
+      return true;
+    }
+    return false;
+  }
+
+
+  protected void recycleEvent(Event e) {
+    if (!recycleEvents) return;
+    // Events passed to the methods registered by libraries are delivered
+    // later on the main thread, so these cannot be reused.
+    Class<?> type = e.getClass();
+    if (type == MouseEvent.class) {
+      if (!hasMethods("mouseEvent")) mouseEventPool.add(e);
+    } else if (type == TouchEvent.class) {
+      if (!hasMethods("touchEvent")) touchEventPool.add(e);
+    } else if (type == KeyEvent.class) {
+      if (!hasMethods("keyEvent")) keyEventPool.add(e);
+    }
+  }
+
+
+  protected MouseEvent obtainMouseEvent(Object nativeObject,
+                                        long millis, int action, int modifiers,
+                                        int x, int y, int button, int count) {
+    MouseEvent e = recycleEvents ? (MouseEvent) mouseEventPool.poll() : null;
+    if (e == null) {
+      return new MouseEvent(nativeObject, millis, action, modifiers,
+                            x, y, button, count);
+    }
+    return e.set(nativeObject, millis, action, modifiers, x, y, button, count);
+  }
+
+
+  protected TouchEvent obtainTouchEvent(Object nativeObject, long millis,
+                                        int action, int modifiers, int button) {
+    TouchEvent e = recycleEvents ? (TouchEvent) touchEventPool.poll() : null;
+    if (e == null) {
+      return new TouchEvent(nativeObject, millis, action, modifiers, button);
     }
+    return e.set(nativeObject, millis, action, modifiers, button);
+  }
+
+
+  protected KeyEvent obtainKeyEvent(Object nativeObject,
+                                    long millis, int action, int modifiers,
+                                    char key, int keyCode, boolean isAutoRepeat) {
+    KeyEvent e = recycleEvents ? (KeyEvent) keyEventPool.poll() : null;
+    if (e == null) {
+      return new KeyEvent(nativeObject, millis, action, modifiers,
+                          key, keyCode, isAutoRepeat);
+    }
+    return e.set(nativeObject, millis, action, modifiers,
+                 key, keyCode, isAutoRepeat);
   }
 
 
@@ -2165,7 +2492,7 @@ public class PApplet extends Object implements ActivityAPI, PConstants {
       break;
     }
 
-    handleMethods("mouseEvent", new Object[] { event });
+    handleMethods("mouseEvent", event);
 
     switch (event.getAction()) {
     case MouseEvent.PRESS:
@@ -2219,7 +2546,7 @@ public class PApplet extends Object implements ActivityAPI, PConstants {
       break;
     }
 
-    handleMethods("touchEvent", new Object[] { event });
+    handleMethods("touchEvent", event);
 
     switch (event.getAction()) {
     case TouchEvent.START:
@@ -2325,8 +2652,8 @@ public class PApplet extends Object implements ActivityAPI, PConstants {
       // Post historical movement events, if any.
       int historySize = event.getHistorySize();
       for (int h = 0; h < historySize; h++) {
-        TouchEvent touchEvent = new TouchEvent(event, event.getHistoricalEventTime(h),
-                                               pAction, modifiers, button);
+        TouchEvent touchEvent = obtainTouchEvent(event, event.getHistoricalEventTime(h),
+                                                 pAction, modifiers, button);
         touchEvent.setNumPointers(activePointerCount);
         int p = 0;
         for (int idx = 0; idx < event.getPointerCount(); idx++) {
@@ -2339,8 +2666,8 @@ public class PApplet extends Object implements ActivityAPI, PConstants {
     }
 
     // Current event
-    TouchEvent touchEvent = new TouchEvent(event, event.getEventTime(),
-                                           pAction, modifiers, button);
+    TouchEvent touchEvent = obtainTouchEvent(event, event.getEventTime(),
+                                             pAction, modifiers, button);
     if (actionMasked == MotionEvent.ACTION_UP || actionMasked == MotionEvent.ACTION_CANCEL) {
       // Last pointer up
       touchEvent.setNumPointers(0);
@@ -2367,27 +2694,27 @@ public class PApplet extends Object implements ActivityAPI, PConstants {
     switch (actionMasked) {
     case MotionEvent.ACTION_DOWN:
       mousePointerId = event.getPointerId(0);
-      postEvent(new MouseEvent(event, event.getEventTime(),
-                               MouseEvent.PRESS, modifiers,
-                               (int) event.getX(), (int) event.getY(),
-                               button, clickCount));
+      postEvent(obtainMouseEvent(event, event.getEventTime(),
+                                   MouseEvent.PRESS, modifiers,
+                                   (int) event.getX(), (int) event.getY(),
+                                   button, clickCount));
       break;
     case MotionEvent.ACTION_MOVE:
       index = event.findPointerIndex(mousePointerId);
       if (index != -1) {
-        postEvent(new MouseEvent(event, event.getEventTime(),
-                                 MouseEvent.DRAG, modifiers,
-                                 (int) event.getX(index), (int) event.getY(index),
-                                 button, clickCount));
+        postEvent(obtainMouseEvent(event, event.getEventTime(),
+                                   MouseEvent.DRAG, modifiers,
+                                   (int) event.getX(index), (int) event.getY(index),
+                                   button, clickCount));
       }
       break;
     case MotionEvent.ACTION_UP:
       index = event.findPointerIndex(mousePointerId);
       if (index != -1) {
-        postEvent(new MouseEvent(event, event.getEventTime(),
-                                 MouseEvent.RELEASE, modifiers,
-                                 (int) event.getX(index), (int) event.getY(index),
-                                 button, clickCount));
+        postEvent(obtainMouseEvent(event, event.getEventTime(),
+                                   MouseEvent.RELEASE, modifiers,
+                                   (int) event.getX(index), (int) event.getY(index),
+                                   button, clickCount));
       }
       break;
     }
@@ -2530,7 +2857,7 @@ public class PApplet extends Object implements ActivityAPI, PConstants {
       break;
     }
 
-    handleMethods("keyEvent", new Object[] { event });
+    handleMethods("keyEvent", event);
   }
 
 
@@ -2556,8 +2883,8 @@ public class PApplet extends Object implements ActivityAPI, PConstants {
     // TODO set up proper key modifier handling
     int keModifiers = 0;
 
-    KeyEvent ke = new KeyEvent(event, event.getEventTime(),
-                               keAction, keModifiers, key, keyCode, 0 < event.getRepeatCount());
+    KeyEvent ke = obtainKeyEvent(event, event.getEventTime(),
+                                 keAction, keModifiers, key, keyCode, 0 < event.getRepeatCount());
 
     postEvent(ke);
   }
@@ -2740,6 +3067,7 @@ public class PApplet extends Object implements ActivityAPI, PConstants {
 //    frameRatePeriod = (long) (1000000000.0 / frameRateTarget);
 //    g.setFrameRate(newRateTarget);
     surface.setFrameRate(fps);
+    frameTimings.setTargetPeriod((long) (1000000000.0 / fps));
   }
 
 
@@ -4035,8 +4363,7 @@ public class PApplet extends Object implements ActivityAPI, PConstants {
 
   public PImage requestImage(String filename) {
     PImage vessel = createImage(0, 0, ARGB);
-    AsyncImageLoader ail = new AsyncImageLoader(filename, vessel);
-    ail.start();
+    getImageLoader().execute(new AsyncImageLoader(filename, vessel));
     return vessel;
   }
 
@@ -4048,14 +4375,34 @@ public class PApplet extends Object implements ActivityAPI, PConstants {
    * (however no accessor has been added since it's esoteric) if you really
    * want to have control over the value used. For instance, when loading local
    * files, it might be better to only have a single thread (or two) loading
-   * images so that you're disk isn't simply jumping around.
+   * images so that you're disk isn't simply jumping around. The value is read
+   * when the first image is requested.
    */
   public int requestImageMax = 4;
   volatile int requestImageCount;
+  ExecutorService requestImageExecutor;
+
+
+  synchronized ExecutorService getImageLoader() {
+    if (requestImageExecutor == null) {
+      requestImageExecutor =
+        Executors.newFixedThreadPool(max(1, requestImageMax), new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+          Thread thread = new Thread(r, "requestImage");
+          thread.setDaemon(true);
+          thread.setPriority(Thread.MIN_PRIORITY);
+          return thread;
+        }
+      });
+    }
+    return requestImageExecutor;
+  }
+
 
   // Removed 'extension' from the android version. If the extension is needed
   // later, re-copy this from the original PApplet code.
-  class AsyncImageLoader extends Thread {
+  class AsyncImageLoader implements Runnable {
     String filename;
     PImage vessel;
 
@@ -4066,11 +4413,6 @@ public class PApplet extends Object implements ActivityAPI, PConstants {
 
     @Override
     public void run() {
-      while (requestImageCount == requestImageMax) {
-        try {
-          Thread.sleep(10);
-        } catch (InterruptedException e) { }
-      }
       requestImageCount++;
 
       PImage actual = loadImage(filename);
@@ -4080,17 +4422,13 @@ public class PApplet extends Object implements ActivityAPI, PConstants {
         vessel.width = -1;
         vessel.height = -1;
 
+      } else if (g != null) {
+        // The renderer fills in the vessel once the image is ready to be
+        // drawn, which might involve some more work in the background.
+        g.requestImageLoaded(vessel, actual);
+
       } else {
-        vessel.width = actual.width;
-        vessel.height = actual.height;
-        vessel.format = actual.format;
-        vessel.pixels = actual.pixels;
-        // an android, pixels[] will probably be null, we want this one
-        vessel.bitmap = actual.bitmap;
-
-        vessel.pixelWidth = actual.width;
-        vessel.pixelHeight = actual.height;
-        vessel.pixelDensity = 1;
+        PGraphics.fillRequestedImage(vessel, actual);
       }
       requestImageCount--;
     }
@@ -8041,6 +8379,12 @@ public class PApplet extends Object implements ActivityAPI, PConstants {
   }
 
 
+  public void loadPixels(int x, int y, int w, int h) {
+    g.loadPixels(x, y, w, h);
+    pixels = g.pixels;
+  }
+
+
   public void updatePixels() {
     g.updatePixels();
   }
@@ -8241,6 +8585,21 @@ public class PApplet extends Object implements ActivityAPI, PConstants {
   }
 
 
+  public RenderMetrics enableMetrics(int frames) {
+    return g.enableMetrics(frames);
+  }
+
+
+  public void disableMetrics() {
+    g.disableMetrics();
+  }
+
+
+  public RenderMetrics getMetrics() {
+    return g.getMetrics();
+  }
+
+
   public void flush() {
     g.flush();
   }
@@ -9504,6 +9863,16 @@ public class PApplet extends Object implements ActivityAPI, PConstants {
   }
 
 
+  /**
+   * @param flatness largest distance in pixels between curves and the
+   * segments drawn for them, or 0 to use bezierDetail() and curveDetail()
+   * @see PGraphics#curveFlatness(float)
+   */
+  public void curveFlatness(float flatness) {
+    g.curveFlatness(flatness);
+  }
+
+
   /**
    * ( begin auto-generated from curve.xml )
    *
@@ -321,6 +321,13 @@ public interface PConstants {
    */
   static final int SHAPE = 5;
 
+  /**
+   * textMode(SDF) draws text using signed distance fields of the glyphs,
+   * so a single texture gives crisp edges at any text size. Currently,
+   * textMode(SDF) is only supported by the P2D and P3D renderers.
+   */
+  static final int SDF = 6;
+
 
   // text alignment modes
   // are inherited from LEFT, CENTER, RIGHT
@@ -442,6 +449,14 @@ public interface PConstants {
   static final int HINT_COUNT                 =  13;
 
 
+  // what the asynchronous saveFrame() does when the saving threads
+  // fall behind, see PGraphics.AsyncImageSaver
+
+  static final int SAVE_BLOCK     = 0;
+  static final int SAVE_DROP      = 1;
+  static final int SAVE_DOWNSCALE = 2;
+
+
   // error messages
 
   static final String ERROR_BACKGROUND_IMAGE_SIZE =
@@ -26,6 +26,11 @@ package processing.core;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
 
 import android.graphics.*;
 import android.graphics.Bitmap.Config;
@@ -97,11 +102,20 @@ public class PFont implements PConstants {
   protected int descent;
 
   /**
-   * A more efficient array lookup for straight ASCII characters. For Unicode
-   * characters, a QuickSort-style search is used.
+   * A more efficient array lookup for straight ASCII characters. Kept for
+   * subclasses, lookups for all characters go through indexPages.
    */
   protected int[] ascii;
 
+  /**
+   * Two-level table mapping a character to its index in the glyphs array.
+   * The high byte of the character selects a page of 256 entries, which is
+   * only allocated once a glyph in that range is added. This gives constant
+   * time lookups for large character sets (i.e.: CJK fonts), and lets new
+   * glyphs be appended to the glyphs array instead of inserted in order.
+   */
+  protected int[][] indexPages = new int[256][];
+
   /**
    * True if this font is set to load dynamically. This is the default when
    * createFont() method is called without a character set. Bitmap versions of
@@ -142,6 +156,25 @@ public class PFont implements PConstants {
 //  FontMetrics lazyMetrics;
   int[] lazySamples;
 
+  /**
+   * True if missing glyphs of a lazy font are rasterized on a background
+   * thread instead of on the thread that draws the text.
+   */
+  protected boolean asyncGlyphs;
+
+  // objects to handle the creation of characters in the background, only
+  // used by the glyph thread once created
+  Bitmap asyncBitmap;
+  Canvas asyncCanvas;
+  Paint asyncPaint;
+  int[] asyncSamples;
+
+  // characters requested from the glyph thread, and glyphs ready to be added
+  HashSet<Character> pendingGlyphs;
+  ConcurrentLinkedQueue<Glyph> readyGlyphs;
+
+  static protected ExecutorService glyphExecutor;
+
   /** for subclasses that need to store metadata about the font */
   protected HashMap<PGraphics, Object> cacheMap;
 
@@ -224,10 +257,8 @@ public class PFont implements PConstants {
       glyphCount = 0;
       for (char c : charset) {
         Glyph glyf = new Glyph(c);
-        if (glyf.value < 128) {
-          ascii[glyf.value] = glyphCount;
-        }
         glyf.index = glyphCount;
+        setIndex(glyf.value, glyphCount);
         glyphs[glyphCount++] = glyf;
       }
 
@@ -290,11 +321,8 @@ public class PFont implements PConstants {
     // read the information about the individual characters
     for (int i = 0; i < glyphCount; i++) {
       Glyph glyph = new Glyph(is);
-      // cache locations of the ascii charset
-      if (glyph.value < 128) {
-        ascii[glyph.value] = i;
-      }
       glyph.index = i;
+      setIndex(glyph.value, i);
       glyphs[i] = glyph;
     }
 
@@ -344,12 +372,23 @@ public class PFont implements PConstants {
     os.writeInt(ascent);  // formerly baseHt (was ignored)
     os.writeInt(descent); // formerly struct padding for c version
 
+    // Glyphs are stored in the order they were created, but the file format
+    // expects them sorted by character value.
+    Glyph[] sorted = new Glyph[glyphCount];
+    System.arraycopy(glyphs, 0, sorted, 0, glyphCount);
+    Arrays.sort(sorted, new Comparator<Glyph>() {
+      @Override
+      public int compare(Glyph a, Glyph b) {
+        return a.value - b.value;
+      }
+    });
+
     for (int i = 0; i < glyphCount; i++) {
-      glyphs[i].writeHeader(os);
+      sorted[i].writeHeader(os);
     }
 
     for (int i = 0; i < glyphCount; i++) {
-      glyphs[i].writeBitmap(os);
+      sorted[i].writeBitmap(os);
     }
 
     // version 11
@@ -366,42 +405,35 @@ public class PFont implements PConstants {
    * @param c character to create an image for.
    */
   protected void addGlyph(char c) {
-    Glyph glyph = new Glyph(c);
+    addGlyph(new Glyph(c));
+  }
+
 
+  /**
+   * Append an already created glyph to the font. The glyphs array is not
+   * kept sorted, the position of each character is tracked in indexPages
+   * instead, so the index of existing glyphs never changes.
+   */
+  protected void addGlyph(Glyph glyph) {
     if (glyphCount == glyphs.length) {
       glyphs = (Glyph[]) PApplet.expand(glyphs);
     }
-    if (glyphCount == 0) {
-      glyph.index = 0;
-      glyphs[glyphCount] = glyph;
-      if (glyph.value < 128) {
-        ascii[glyph.value] = 0;
-      }
+    glyph.index = glyphCount;
+    glyphs[glyphCount] = glyph;
+    setIndex(glyph.value, glyphCount);
+    glyphCount++;
+  }
 
-    } else if (glyphs[glyphCount-1].value < glyph.value) {
-      glyphs[glyphCount] = glyph;
-      if (glyph.value < 128) {
-        ascii[glyph.value] = glyphCount;
-      }
 
-    } else {
-      for (int i = 0; i < glyphCount; i++) {
-        if (glyphs[i].value > c) {
-          for (int j = glyphCount; j > i; --j) {
-            glyphs[j] = glyphs[j-1];
-            if (glyphs[j].value < 128) {
-              ascii[glyphs[j].value] = j;
-            }
-          }
-          glyph.index = i;
-          glyphs[i] = glyph;
-          // cache locations of the ascii charset
-          if (c < 128) ascii[c] = i;
-          break;
-        }
-      }
+  protected void setIndex(int c, int index) {
+    int[] page = indexPages[c >> 8];
+    if (page == null) {
+      page = new int[256];
+      Arrays.fill(page, -1);
+      indexPages[c >> 8] = page;
     }
-    glyphCount++;
+    page[c & 0xFF] = index;
+    if (c < 128 && ascii != null) ascii[c] = index;
   }
 
 
@@ -482,10 +514,16 @@ public class PFont implements PConstants {
    */
   protected int index(char c) {
     if (lazy) {
+      if (readyGlyphs != null) addReadyGlyphs();
       int index = indexActual(c);
       if (index != -1) {
         return index;
       }
+      if (asyncGlyphs) {
+        // the glyph will be available on a later call
+        requestGlyph(c);
+        return -1;
+      }
 //      if (font.canDisplay(c)) {
         // create the glyph
         addGlyph(c);
@@ -508,15 +546,15 @@ public class PFont implements PConstants {
     //if (value.length == 0) return -1;
     if (glyphCount == 0) return -1;
 
-    // quicker lookup for the ascii fellers
-    if (c < 128) return ascii[c];
-
-    // some other unicode char, hunt it out
-    //return index_hunt(c, 0, value.length-1);
-    return indexHunt(c, 0, glyphCount-1);
+    int[] page = indexPages[c >> 8];
+    return (page == null) ? -1 : page[c & 0xFF];
   }
 
 
+  /**
+   * Binary search over the glyphs array, only valid when the glyphs were
+   * added in sorted order (i.e.: fonts loaded from a .vlw file).
+   */
   protected int indexHunt(int c, int start, int stop) {
     int pivot = (start + stop) / 2;
 
@@ -535,6 +573,74 @@ public class PFont implements PConstants {
   }
 
 
+  /**
+   * Enable or disable the rasterization of missing glyphs on a background
+   * thread. Only has an effect on fonts created without a charset. While a
+   * glyph is being rasterized it is reported as missing, so the character
+   * is skipped when drawing the text, and appears a frame or so later.
+   */
+  public void setAsyncGlyphs(boolean async) {
+    asyncGlyphs = async && lazy && typeface != null;
+    if (asyncGlyphs && readyGlyphs == null) {
+      int mbox3 = size * 3;
+      asyncBitmap = Bitmap.createBitmap(mbox3, mbox3, Config.ARGB_8888);
+      asyncCanvas = new Canvas(asyncBitmap);
+      asyncPaint = new Paint(lazyPaint);
+      asyncSamples = new int[mbox3 * mbox3];
+      pendingGlyphs = new HashSet<Character>();
+      readyGlyphs = new ConcurrentLinkedQueue<Glyph>();
+    }
+  }
+
+
+  public boolean isAsyncGlyphs() {
+    return asyncGlyphs;
+  }
+
+
+  protected void requestGlyph(final char c) {
+    if (!pendingGlyphs.add(c)) return;
+    try {
+      getGlyphExecutor().submit(new Runnable() {
+        @Override
+        public void run() {
+          readyGlyphs.add(new Glyph(c, asyncBitmap, asyncCanvas,
+                                    asyncPaint, asyncSamples));
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      // no background thread, create it right away
+      pendingGlyphs.remove(c);
+      addGlyph(c);
+    }
+  }
+
+
+  protected void addReadyGlyphs() {
+    Glyph glyph;
+    while ((glyph = readyGlyphs.poll()) != null) {
+      pendingGlyphs.remove((char) glyph.value);
+      glyph.updateMetrics();
+      if (indexActual((char) glyph.value) == -1) addGlyph(glyph);
+    }
+  }
+
+
+  static synchronized protected ExecutorService getGlyphExecutor() {
+    if (glyphExecutor == null) {
+      glyphExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+          Thread thread = new Thread(r, "PFont glyphs");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+    return glyphExecutor;
+  }
+
+
   /**
    * Currently un-implemented for .vlw fonts,
    * but honored for layout in case subclasses use it.
@@ -778,9 +884,18 @@ public class PFont implements PConstants {
       // pointer from a struct in the c version, ignored
       is.readInt();
 
-      // the values for getAscent() and getDescent() from FontMetrics
-      // seem to be way too large.. perhaps they're the max?
-      // as such, use a more traditional marker for ascent/descent
+      updateMetrics();
+    }
+
+
+    /**
+     * The values for getAscent() and getDescent() from FontMetrics seem to
+     * be way too large.. perhaps they're the max? As such, use a more
+     * traditional marker for ascent/descent. Only called on the thread that
+     * owns the font, since the glyphs rasterized in the background are read
+     * by the drawing thread.
+     */
+    protected void updateMetrics() {
       if (value == 'd') {
         if (ascent == 0) ascent = topExtent;
       }
@@ -835,6 +950,13 @@ public class PFont implements PConstants {
 
 
     protected Glyph(char c) {
+      this(c, lazyBitmap, lazyCanvas, lazyPaint, lazySamples);
+      updateMetrics();
+    }
+
+
+    protected Glyph(char c, Bitmap lazyBitmap, Canvas lazyCanvas,
+                    Paint lazyPaint, int[] lazySamples) {
       int mbox3 = size * 3;
 //      lazyGraphics.setColor(Color.white);
 //      lazyGraphics.fillRect(0, 0, mbox3, mbox3);
@@ -894,14 +1016,6 @@ public class PFont implements PConstants {
           pixels[pindex] = val;
         }
       }
-
-      // replace the ascent/descent values with something.. err, decent.
-      if (value == 'd') {
-        if (ascent == 0) ascent = topExtent;
-      }
-      if (value == 'p') {
-        if (descent == 0) descent = -topExtent + height;
-      }
     }
   }
 }
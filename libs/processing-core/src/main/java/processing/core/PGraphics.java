@@ -24,10 +24,9 @@
 
 package processing.core;
 
+import java.util.ArrayDeque;
 import java.util.HashMap;
 import java.util.WeakHashMap;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.RejectedExecutionException;
@@ -36,6 +35,7 @@ import java.util.concurrent.TimeUnit;
 import processing.android.AppComponent;
 import processing.opengl.PGL;
 import processing.opengl.PShader;
+import processing.opengl.RenderMetrics;
 import android.graphics.Color;
 import android.view.SurfaceHolder;
 
@@ -534,6 +534,24 @@ public class PGraphics extends PImage implements PConstants {
 
   // ........................................................
 
+  /**
+   * Largest distance, in pixels, between a curve and the line segments that
+   * are drawn for it. When zero, bezierDetail and curveDetail are used.
+   */
+  public float curveFlatness = 0;
+
+  // upper bound for the segments of a single curve when curveFlatness is set
+  static final int MAX_FLATNESS_SEGMENTS = 256;
+
+  // forward differencing matrices for the last segment counts that were
+  // not the default detail
+  protected PMatrix3D bezierFlatMatrix;
+  protected int bezierFlatSegments;
+  protected PMatrix3D curveFlatMatrix;
+  protected int curveFlatSegments;
+
+  // ........................................................
+
   // spline vertices
 
   protected float curveVertices[][];
@@ -789,6 +807,47 @@ public class PGraphics extends PImage implements PConstants {
   }
 
 
+  /**
+   * Called from the threads of requestImage() once an image has been
+   * decoded. Renderers can override it to prepare the image for drawing
+   * (i.e.: upload it to the GPU) before it is handed to the sketch, by
+   * default the image returned by requestImage() is filled in right away.
+   * @param vessel The image returned by requestImage()
+   * @param actual The decoded image
+   */
+  protected void requestImageLoaded(PImage vessel, PImage actual) {  // ignore
+    fillRequestedImage(vessel, actual);
+  }
+
+
+  /**
+   * Called by PATH shapes before they send their vertices to the renderer.
+   * Renderers that can keep the outline of the shape in a native object
+   * draw it here instead, and return true.
+   * @param shape The shape being drawn
+   */
+  protected boolean drawCachedPath(PShape shape) {  // ignore
+    return false;
+  }
+
+
+  static protected void fillRequestedImage(PImage vessel, PImage actual) {
+    vessel.format = actual.format;
+    vessel.pixels = actual.pixels;
+    // an android, pixels[] will probably be null, we want this one
+    vessel.bitmap = actual.bitmap;
+
+    vessel.pixelWidth = actual.width;
+    vessel.pixelHeight = actual.height;
+    vessel.pixelDensity = 1;
+
+    // The size goes last, since the sketch takes a non-zero width as the
+    // sign that the image has finished loading.
+    vessel.height = actual.height;
+    vessel.width = actual.width;
+  }
+
+
   //////////////////////////////////////////////////////////////
 
   // FRAME
@@ -853,6 +912,23 @@ public class PGraphics extends PImage implements PConstants {
   }
 
 
+  public RenderMetrics enableMetrics(int frames) {
+    showMethodWarning("enableMetrics");
+    return null;
+  }
+
+
+  public void disableMetrics() {
+    showMethodWarning("disableMetrics");
+  }
+
+
+  public RenderMetrics getMetrics() {
+    showMethodWarning("getMetrics");
+    return null;
+  }
+
+
   protected void checkSettings() {
     if (!settingsInited) defaultSettings();
     if (reapplySettings) reapplySettings();
@@ -1785,12 +1861,15 @@ public class PGraphics extends PImage implements PConstants {
                            float x4, float y4) {
     bezierInitCheck();
     bezierVertexCheck();
-    PMatrix3D draw = bezierDrawMatrix;
 
     float[] prev = vertices[vertexCount-1];
     float x1 = prev[X];
     float y1 = prev[Y];
 
+    int segments = bezierSegments(x1, y1, 0, x2, y2, 0, x3, y3, 0, x4, y4, 0,
+                                  curveScale());
+    PMatrix3D draw = bezierForward(segments);
+
     float xplot1 = draw.m10*x1 + draw.m11*x2 + draw.m12*x3 + draw.m13*x4;
     float xplot2 = draw.m20*x1 + draw.m21*x2 + draw.m22*x3 + draw.m23*x4;
     float xplot3 = draw.m30*x1 + draw.m31*x2 + draw.m32*x3 + draw.m33*x4;
@@ -1799,7 +1878,7 @@ public class PGraphics extends PImage implements PConstants {
     float yplot2 = draw.m20*y1 + draw.m21*y2 + draw.m22*y3 + draw.m23*y4;
     float yplot3 = draw.m30*y1 + draw.m31*y2 + draw.m32*y3 + draw.m33*y4;
 
-    for (int j = 0; j < bezierDetail; j++) {
+    for (int j = 0; j < segments; j++) {
       x1 += xplot1; xplot1 += xplot2; xplot2 += xplot3;
       y1 += yplot1; yplot1 += yplot2; yplot2 += yplot3;
       vertex(x1, y1);
@@ -1812,13 +1891,16 @@ public class PGraphics extends PImage implements PConstants {
                            float x4, float y4, float z4) {
     bezierInitCheck();
     bezierVertexCheck();
-    PMatrix3D draw = bezierDrawMatrix;
 
     float[] prev = vertices[vertexCount-1];
     float x1 = prev[X];
     float y1 = prev[Y];
     float z1 = prev[Z];
 
+    int segments = bezierSegments(x1, y1, z1, x2, y2, z2, x3, y3, z3,
+                                  x4, y4, z4, curveScale());
+    PMatrix3D draw = bezierForward(segments);
+
     float xplot1 = draw.m10*x1 + draw.m11*x2 + draw.m12*x3 + draw.m13*x4;
     float xplot2 = draw.m20*x1 + draw.m21*x2 + draw.m22*x3 + draw.m23*x4;
     float xplot3 = draw.m30*x1 + draw.m31*x2 + draw.m32*x3 + draw.m33*x4;
@@ -1831,7 +1913,7 @@ public class PGraphics extends PImage implements PConstants {
     float zplot2 = draw.m20*z1 + draw.m21*z2 + draw.m22*z3 + draw.m23*z4;
     float zplot3 = draw.m30*z1 + draw.m31*z2 + draw.m32*z3 + draw.m33*z4;
 
-    for (int j = 0; j < bezierDetail; j++) {
+    for (int j = 0; j < segments; j++) {
       x1 += xplot1; xplot1 += xplot2; xplot2 += xplot3;
       y1 += yplot1; yplot1 += yplot2; yplot2 += yplot3;
       z1 += zplot1; zplot1 += zplot2; zplot2 += zplot3;
@@ -1954,7 +2036,9 @@ public class PGraphics extends PImage implements PConstants {
     float x0 = x2;
     float y0 = y2;
 
-    PMatrix3D draw = curveDrawMatrix;
+    int segments = curveSegments(x1, y1, 0, x2, y2, 0, x3, y3, 0, x4, y4, 0,
+                                 curveScale());
+    PMatrix3D draw = curveForward(segments);
 
     float xplot1 = draw.m10*x1 + draw.m11*x2 + draw.m12*x3 + draw.m13*x4;
     float xplot2 = draw.m20*x1 + draw.m21*x2 + draw.m22*x3 + draw.m23*x4;
@@ -1968,7 +2052,7 @@ public class PGraphics extends PImage implements PConstants {
     int savedCount = curveVertexCount;
 
     vertex(x0, y0);
-    for (int j = 0; j < curveDetail; j++) {
+    for (int j = 0; j < segments; j++) {
       x0 += xplot1; xplot1 += xplot2; xplot2 += xplot3;
       y0 += yplot1; yplot1 += yplot2; yplot2 += yplot3;
       vertex(x0, y0);
@@ -1989,7 +2073,9 @@ public class PGraphics extends PImage implements PConstants {
     float y0 = y2;
     float z0 = z2;
 
-    PMatrix3D draw = curveDrawMatrix;
+    int segments = curveSegments(x1, y1, z1, x2, y2, z2, x3, y3, z3,
+                                 x4, y4, z4, curveScale());
+    PMatrix3D draw = curveForward(segments);
 
     float xplot1 = draw.m10*x1 + draw.m11*x2 + draw.m12*x3 + draw.m13*x4;
     float xplot2 = draw.m20*x1 + draw.m21*x2 + draw.m22*x3 + draw.m23*x4;
@@ -2007,7 +2093,7 @@ public class PGraphics extends PImage implements PConstants {
     float zplot3 = draw.m30*z1 + draw.m31*z2 + draw.m32*z3 + draw.m33*z4;
 
     vertex(x0, y0, z0);
-    for (int j = 0; j < curveDetail; j++) {
+    for (int j = 0; j < segments; j++) {
       x0 += xplot1; xplot1 += xplot2; xplot2 += xplot3;
       y0 += yplot1; yplot1 += yplot2; yplot2 += yplot3;
       z0 += zplot1; zplot1 += zplot2; zplot2 += zplot3;
@@ -2735,6 +2821,18 @@ public class PGraphics extends PImage implements PConstants {
   }
 
 
+  /**
+   * Subdivide bezier, quadratic and Catmull-Rom curves adaptively, so that
+   * the line segments drawn for them stay within the given distance (in
+   * pixels, after the current transformation) from the actual curve. Small
+   * curves then use only a few vertices and large ones are not faceted.
+   * A value of 0 goes back to the fixed bezierDetail() and curveDetail().
+   */
+  public void curveFlatness(float flatness) {
+    curveFlatness = Math.max(0, flatness);
+  }
+
+
   protected void curveInitCheck() {
     if (!curveInited) {
       curveInit();
@@ -2785,6 +2883,9 @@ public class PGraphics extends PImage implements PConstants {
     // multiply the basis and forward diff matrices together
     // saves much time since this needn't be done for each curve
     curveDrawMatrix.apply(curveBasisMatrix);
+
+    // the basis may have changed, so recompute the adaptive matrix
+    curveFlatSegments = 0;
   }
 
 
@@ -2857,6 +2958,117 @@ public class PGraphics extends PImage implements PConstants {
   }
 
 
+  /**
+   * Scale from the current model space to pixels, used to turn curveFlatness
+   * into a distance for the curve control points. Renderers that keep the
+   * transformation themselves should return its scale factor.
+   */
+  protected float curveScale() {
+    return 1;
+  }
+
+
+  /**
+   * Number of line segments for a cubic bezier: bezierDetail, or when
+   * curveFlatness is set, the count given by Wang's formula, which bounds
+   * the distance between the curve and its polyline by the largest second
+   * difference of the control points.
+   */
+  protected int bezierSegments(float x1, float y1, float z1,
+                               float x2, float y2, float z2,
+                               float x3, float y3, float z3,
+                               float x4, float y4, float z4,
+                               float scale) {
+    if (curveFlatness <= 0) return bezierDetail;
+    return flatnessSegments(x1, y1, z1, x2, y2, z2, x3, y3, z3, x4, y4, z4,
+                            scale);
+  }
+
+
+  /**
+   * Number of line segments for a Catmull-Rom segment, measured on the
+   * equivalent bezier curve.
+   */
+  protected int curveSegments(float x1, float y1, float z1,
+                              float x2, float y2, float z2,
+                              float x3, float y3, float z3,
+                              float x4, float y4, float z4,
+                              float scale) {
+    if (curveFlatness <= 0) return curveDetail;
+    curveInitCheck();
+    PMatrix3D cb = curveToBezierMatrix;
+    return flatnessSegments(
+      cb.m00*x1 + cb.m01*x2 + cb.m02*x3 + cb.m03*x4,
+      cb.m00*y1 + cb.m01*y2 + cb.m02*y3 + cb.m03*y4,
+      cb.m00*z1 + cb.m01*z2 + cb.m02*z3 + cb.m03*z4,
+      cb.m10*x1 + cb.m11*x2 + cb.m12*x3 + cb.m13*x4,
+      cb.m10*y1 + cb.m11*y2 + cb.m12*y3 + cb.m13*y4,
+      cb.m10*z1 + cb.m11*z2 + cb.m12*z3 + cb.m13*z4,
+      cb.m20*x1 + cb.m21*x2 + cb.m22*x3 + cb.m23*x4,
+      cb.m20*y1 + cb.m21*y2 + cb.m22*y3 + cb.m23*y4,
+      cb.m20*z1 + cb.m21*z2 + cb.m22*z3 + cb.m23*z4,
+      cb.m30*x1 + cb.m31*x2 + cb.m32*x3 + cb.m33*x4,
+      cb.m30*y1 + cb.m31*y2 + cb.m32*y3 + cb.m33*y4,
+      cb.m30*z1 + cb.m31*z2 + cb.m32*z3 + cb.m33*z4,
+      scale);
+  }
+
+
+  protected int flatnessSegments(float x1, float y1, float z1,
+                                 float x2, float y2, float z2,
+                                 float x3, float y3, float z3,
+                                 float x4, float y4, float z4,
+                                 float scale) {
+    float ddx1 = x1 - 2 * x2 + x3;
+    float ddy1 = y1 - 2 * y2 + y3;
+    float ddz1 = z1 - 2 * z2 + z3;
+    float ddx2 = x2 - 2 * x3 + x4;
+    float ddy2 = y2 - 2 * y3 + y4;
+    float ddz2 = z2 - 2 * z3 + z4;
+    float dd = Math.max(ddx1 * ddx1 + ddy1 * ddy1 + ddz1 * ddz1,
+                        ddx2 * ddx2 + ddy2 * ddy2 + ddz2 * ddz2);
+    // n >= sqrt(3/4 * |dd| / tolerance), with |dd| in pixels
+    double n = Math.sqrt(0.75 * Math.sqrt(dd) * scale / curveFlatness);
+    return Math.max(1, Math.min(MAX_FLATNESS_SEGMENTS, (int) Math.ceil(n)));
+  }
+
+
+  /**
+   * Forward differencing matrix for a bezier curve drawn with the given
+   * number of segments.
+   */
+  protected PMatrix3D bezierForward(int segments) {
+    if (segments == bezierDetail) return bezierDrawMatrix;
+    if (bezierFlatMatrix == null) {
+      bezierFlatMatrix = new PMatrix3D();
+    }
+    if (segments != bezierFlatSegments) {
+      splineForward(segments, bezierFlatMatrix);
+      bezierFlatMatrix.apply(bezierBasisMatrix);
+      bezierFlatSegments = segments;
+    }
+    return bezierFlatMatrix;
+  }
+
+
+  /**
+   * Forward differencing matrix for a Catmull-Rom segment drawn with the
+   * given number of segments.
+   */
+  protected PMatrix3D curveForward(int segments) {
+    if (segments == curveDetail) return curveDrawMatrix;
+    if (curveFlatMatrix == null) {
+      curveFlatMatrix = new PMatrix3D();
+    }
+    if (segments != curveFlatSegments) {
+      splineForward(segments, curveFlatMatrix);
+      curveFlatMatrix.apply(curveBasisMatrix);
+      curveFlatSegments = segments;
+    }
+    return curveFlatMatrix;
+  }
+
+
 
   //////////////////////////////////////////////////////////////
 
@@ -3300,6 +3512,7 @@ public class PGraphics extends PImage implements PConstants {
       switch (mode) {
         case MODEL: modeStr = "MODEL"; break;
         case SHAPE: modeStr = "SHAPE"; break;
+        case SDF: modeStr = "SDF"; break;
       }
       showWarning("textMode(" + modeStr + ") is not supported by this renderer.");
     }
@@ -5834,7 +6047,7 @@ public class PGraphics extends PImage implements PConstants {
    * Show a renderer error, and keep track of it so that it's only shown once.
    * @param msg the error message (which will be stored for later comparison)
    */
-  static public void showWarning(String msg) {  // ignore
+  static synchronized public void showWarning(String msg) {  // ignore
     if (warnings == null) {
       warnings = new HashMap<String, Object>();
     }
@@ -5992,142 +6205,390 @@ public class PGraphics extends PImage implements PConstants {
       return super.save(filename);
     }
 
-    if (asyncImageSaver == null) {
-      asyncImageSaver = new AsyncImageSaver();
-    }
-
     if (!loaded) loadPixels();
-    PImage target = asyncImageSaver.getAvailableTarget(pixelWidth, pixelHeight,
-                                                       format);
-    if (target == null) return false;
-    int count = PApplet.min(pixels.length, target.pixels.length);
-    System.arraycopy(pixels, 0, target.pixels, 0, count);
-    asyncImageSaver.saveTargetAsync(this, target, filename);
-
-    return true;
+    return getImageSaver().saveAsync(this, pixels, pixelWidth, pixelHeight,
+                                     format, filename);
   }
 
   protected void processImageBeforeAsyncSave(PImage image) { }
 
 
+  /**
+   * Returns the object that saves the frames in the background, which is
+   * shared by all the renderers. Use it to set the number of threads, the
+   * image format and quality, and what to do when the frames come faster
+   * than they can be saved, and to read how the saving is doing.
+   */
+  public AsyncImageSaver getImageSaver() {
+    if (asyncImageSaver == null) {
+      asyncImageSaver = new AsyncImageSaver();
+    }
+    return asyncImageSaver;
+  }
+
+
   protected static AsyncImageSaver asyncImageSaver;
 
-  protected static class AsyncImageSaver {
+  /**
+   * Saves images on a pool of threads. The pixels are copied into a target
+   * image taken from a pool of targets of the same size, so recording at a
+   * steady size allocates nothing after the first frames. At most
+   * queueSize frames can be waiting or being saved; when another one
+   * arrives the policy decides what happens:
+   * <ul>
+   * <li>SAVE_BLOCK (default) waits until a frame is saved.</li>
+   * <li>SAVE_DROP skips the frame, and save() returns false.</li>
+   * <li>SAVE_DOWNSCALE saves the frame at half its size. Halved frames need a
+   * quarter of the memory and time, so up to queueSize more of them can be
+   * waiting before it blocks.</li>
+   * </ul>
+   */
+  static public class AsyncImageSaver {
+
+    static final int TIME_AVG_FACTOR = 32;
 
-    static final int TARGET_COUNT =
+    protected int threadCount =
         Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    protected int queueSize = threadCount;
+    protected int policy = SAVE_BLOCK;
+    protected int quality = 100;
+    protected String extension;
 
-    BlockingQueue<PImage> targetPool = new ArrayBlockingQueue<>(TARGET_COUNT);
-    ExecutorService saveExecutor = Executors.newFixedThreadPool(TARGET_COUNT);
+    protected ExecutorService saveExecutor;
 
-    int targetsCreated = 0;
+    // Unused targets, by number of pixels
+    protected HashMap<Integer, ArrayDeque<PImage>> targetPool =
+        new HashMap<Integer, ArrayDeque<PImage>>();
+    protected int pooledCount;
 
+    // Frames that are waiting or being saved
+    protected int queued;
 
-    static final int TIME_AVG_FACTOR = 32;
+    protected int savedCount;
+    protected int droppedCount;
+    protected int downscaledCount;
+    protected long avgNanos;
 
-    volatile long avgNanos = 0;
-    long lastTime = 0;
-    int lastFrameCount = 0;
+    // Frames saved since rateStart, to measure the throughput
+    protected long rateStart;
+    protected int rateCount;
+    protected float rate;
 
 
     public AsyncImageSaver() { } // ignore
 
 
     public void dispose() { // ignore
-      saveExecutor.shutdown();
+      ExecutorService executor;
+      synchronized (this) {
+        executor = saveExecutor;
+        saveExecutor = null;
+      }
+      if (executor == null) return;
+      executor.shutdown();
       try {
-        saveExecutor.awaitTermination(5000, TimeUnit.SECONDS);
+        executor.awaitTermination(5000, TimeUnit.SECONDS);
       } catch (InterruptedException e) { }
     }
 
 
-    public boolean hasAvailableTarget() { // ignore
-      return targetsCreated < TARGET_COUNT || targetPool.isEmpty();
+    /**
+     * Number of threads that encode and write the images. Frames that are
+     * being saved finish on the previous threads.
+     */
+    public synchronized void setThreadCount(int count) { // ignore
+      count = Math.max(1, count);
+      if (count == threadCount) return;
+      threadCount = count;
+      if (saveExecutor != null) {
+        saveExecutor.shutdown();
+        saveExecutor = null;
+      }
+    }
+
+
+    /**
+     * Most frames that can be waiting or being saved at the same time, each
+     * one holding a copy of its pixels.
+     */
+    public synchronized void setQueueSize(int size) { // ignore
+      queueSize = Math.max(1, size);
+      notifyAll();
+    }
+
+
+    /**
+     * What to do with a frame when the queue is full: SAVE_BLOCK, SAVE_DROP
+     * or SAVE_DOWNSCALE.
+     */
+    public synchronized void setPolicy(int policy) { // ignore
+      this.policy = policy;
+      notifyAll();
+    }
+
+
+    /**
+     * Compression quality, from 0 to 100, for the jpg and webp formats.
+     */
+    public synchronized void setQuality(int quality) { // ignore
+      this.quality = PApplet.constrain(quality, 0, 100);
+    }
+
+
+    /**
+     * Saves all the frames with this extension, for example "jpg" or
+     * "png", instead of the one in the file name. Null uses the file name.
+     */
+    public synchronized void setFormat(String extension) { // ignore
+      this.extension = extension;
+    }
+
+
+    /** Frames that are waiting or being saved. */
+    public synchronized int getQueued() { // ignore
+      return queued;
+    }
+
+
+    /** Frames that have been saved. */
+    public synchronized int getSavedCount() { // ignore
+      return savedCount;
+    }
+
+
+    /** Frames that were skipped because the queue was full. */
+    public synchronized int getDroppedCount() { // ignore
+      return droppedCount;
+    }
+
+
+    /** Frames that were saved at half size because the queue was full. */
+    public synchronized int getDownscaledCount() { // ignore
+      return downscaledCount;
+    }
+
+
+    /** Average time, in milliseconds, that a thread takes to save a frame. */
+    public synchronized float getSaveTime() { // ignore
+      return avgNanos / 1e6f;
+    }
+
+
+    /** Frames saved per second, over the last second or so. */
+    public synchronized float getSaveRate() { // ignore
+      return rate;
+    }
+
+
+    public synchronized boolean hasAvailableTarget() { // ignore
+      return queued < queueSize;
     }
 
 
     /**
      * After taking a target, you must call saveTargetAsync() or
-     * returnUnusedTarget(), otherwise one thread won't be able to run
+     * returnUnusedTarget(), otherwise one thread won't be able to run.
+     * Returns null when the frame should be dropped.
      */
     public PImage getAvailableTarget(int requestedWidth, int requestedHeight, // ignore
                                      int format) {
-      try {
-        PImage target;
-        if (targetsCreated < TARGET_COUNT && targetPool.isEmpty()) {
-          target = new PImage(requestedWidth, requestedHeight);
-          targetsCreated++;
-        } else {
-          target = targetPool.take();
-          if (target.width != requestedWidth ||
-              target.height != requestedHeight) {
-            target.width = requestedWidth;
-            target.height = requestedHeight;
-            // TODO: this kills performance when saving different sizes
-            target.pixels = new int[requestedWidth * requestedHeight];
-          }
-        }
-        target.format = format;
-        return target;
-      } catch (InterruptedException e) {
-        return null;
+      synchronized (this) {
+        if (!reserve(queueSize)) return null;
       }
+      return obtainTarget(requestedWidth, requestedHeight, format);
     }
 
 
     public void returnUnusedTarget(PImage target) { // ignore
-      targetPool.offer(target);
+      release(target);
+    }
+
+
+    /**
+     * Copies the pixels into a target, halving them when the queue is full
+     * and the policy is SAVE_DOWNSCALE, and saves it in the background.
+     * Returns false if the frame was dropped.
+     */
+    public boolean saveAsync(PGraphics renderer, int[] pixels, // ignore
+                             int width, int height, int format,
+                             String filename) {
+      boolean half;
+      synchronized (this) {
+        boolean downscale = policy == SAVE_DOWNSCALE && 1 < width && 1 < height;
+        if (!reserve(downscale ? 2 * queueSize : queueSize)) return false;
+        half = downscale && queueSize < queued;
+        if (half) downscaledCount++;
+      }
+
+      PImage target;
+      if (half) {
+        target = obtainTarget(width / 2, height / 2, format);
+        downscale(pixels, width, target.pixels, target.width, target.height);
+      } else {
+        target = obtainTarget(width, height, format);
+        int count = PApplet.min(pixels.length, target.pixels.length);
+        System.arraycopy(pixels, 0, target.pixels, 0, count);
+      }
+      saveTargetAsync(renderer, target, filename);
+      return true;
     }
 
 
     public void saveTargetAsync(final PGraphics renderer, final PImage target, // ignore
-                                final String filename) {
+                                String filename) {
       target.parent = renderer.parent;
 
-      // if running every frame, smooth the framerate
-      if (target.parent.frameCount - 1 == lastFrameCount && TARGET_COUNT > 1) {
-
-        // count with one less thread to reduce jitter
-        // 2 cores - 1 save thread - no wait
-        // 4 cores - 3 save threads - wait 1/2 of save time
-        // 8 cores - 7 save threads - wait 1/6 of save time
-        long avgTimePerFrame = avgNanos / (Math.max(1, TARGET_COUNT - 1));
-        long now = System.nanoTime();
-        long delay = PApplet.round((lastTime + avgTimePerFrame - now) / 1e6f);
-        try {
-          if (delay > 0) Thread.sleep(delay);
-        } catch (InterruptedException e) { }
+      final String path;
+      final int saveQuality;
+      ExecutorService executor;
+      synchronized (this) {
+        path = extension == null ? filename : replaceExtension(filename);
+        saveQuality = quality;
+        if (saveExecutor == null) {
+          saveExecutor = Executors.newFixedThreadPool(threadCount);
+        }
+        executor = saveExecutor;
       }
 
-      lastFrameCount = target.parent.frameCount;
-      lastTime = System.nanoTime();
-
       try {
-        saveExecutor.submit(new Runnable() {
+        executor.submit(new Runnable() {
           @Override
           public void run() { // ignore
             try {
               long startTime = System.nanoTime();
               renderer.processImageBeforeAsyncSave(target);
-              target.save(filename);
-              long saveNanos = System.nanoTime() - startTime;
-              synchronized (AsyncImageSaver.this) {
-                if (avgNanos == 0) {
-                  avgNanos = saveNanos;
-                } else if (saveNanos < avgNanos) {
-                  avgNanos = (avgNanos * (TIME_AVG_FACTOR - 1) + saveNanos) /
-                      (TIME_AVG_FACTOR);
-                } else {
-                  avgNanos = saveNanos;
-                }
-              }
+              target.save(path, saveQuality);
+              saved(System.nanoTime() - startTime);
             } finally {
-              targetPool.offer(target);
+              release(target);
             }
           }
         });
       } catch (RejectedExecutionException e) {
         // the executor service was probably shut down, no more saving for us
+        release(target);
+      }
+    }
+
+
+    /**
+     * Takes a place in the queue, waiting while there are limit frames in it
+     * unless the policy is to drop them. Must hold the lock.
+     */
+    protected boolean reserve(int limit) {
+      while (limit <= queued) {
+        if (policy == SAVE_DROP) {
+          droppedCount++;
+          return false;
+        }
+        try {
+          wait();
+        } catch (InterruptedException e) {
+          return false;
+        }
+      }
+      queued++;
+      return true;
+    }
+
+
+    protected PImage obtainTarget(int width, int height, int format) {
+      PImage target = null;
+      synchronized (this) {
+        ArrayDeque<PImage> pool = targetPool.get(width * height);
+        if (pool != null && !pool.isEmpty()) {
+          target = pool.poll();
+          pooledCount--;
+        }
+      }
+      if (target == null) {
+        target = new PImage(width, height);
+      }
+      // Same number of pixels, but maybe not the same shape
+      target.width = target.pixelWidth = width;
+      target.height = target.pixelHeight = height;
+      target.format = format;
+      return target;
+    }
+
+
+    protected synchronized void release(PImage target) {
+      queued--;
+      // Keep as many targets as can be used at once, sizes seen recently
+      // replace the others
+      if (queueSize <= pooledCount) {
+        for (ArrayDeque<PImage> pool : targetPool.values()) {
+          if (pool.poll() != null) {
+            pooledCount--;
+            break;
+          }
+        }
+      }
+      if (pooledCount < queueSize) {
+        int size = target.pixels.length;
+        ArrayDeque<PImage> pool = targetPool.get(size);
+        if (pool == null) {
+          pool = new ArrayDeque<PImage>();
+          targetPool.put(size, pool);
+        }
+        pool.offer(target);
+        pooledCount++;
+      }
+      notifyAll();
+    }
+
+
+    protected synchronized void saved(long nanos) {
+      savedCount++;
+      if (avgNanos == 0) {
+        avgNanos = nanos;
+      } else {
+        avgNanos = (avgNanos * (TIME_AVG_FACTOR - 1) + nanos) / TIME_AVG_FACTOR;
+      }
+
+      long now = System.nanoTime();
+      if (rateStart == 0) {
+        rateStart = now;
+        rateCount = 0;
+      } else {
+        rateCount++;
+        long elapsed = now - rateStart;
+        if (1000000000L <= elapsed) {
+          rate = rateCount * 1e9f / elapsed;
+          rateStart = now;
+          rateCount = 0;
+        }
+      }
+    }
+
+
+    protected String replaceExtension(String filename) {
+      int dot = filename.lastIndexOf('.');
+      int slash = filename.lastIndexOf('/');
+      if (dot <= slash) dot = filename.length();
+      return filename.substring(0, dot) + "." + extension;
+    }
+
+
+    /**
+     * Averages each 2x2 block of pixels into one pixel of the target.
+     */
+    static protected void downscale(int[] src, int srcWidth,
+                                    int[] dst, int dstWidth, int dstHeight) {
+      for (int y = 0; y < dstHeight; y++) {
+        int i0 = 2 * y * srcWidth;
+        int i1 = i0 + srcWidth;
+        int o = y * dstWidth;
+        for (int x = 0; x < dstWidth; x++) {
+          int p0 = src[i0++], p1 = src[i0++];
+          int p2 = src[i1++], p3 = src[i1++];
+          // alpha and green, then red and blue, two channels at once
+          int ag = ((p0 >>> 8) & 0xFF00FF) + ((p1 >>> 8) & 0xFF00FF) +
+                   ((p2 >>> 8) & 0xFF00FF) + ((p3 >>> 8) & 0xFF00FF);
+          int rb = (p0 & 0xFF00FF) + (p1 & 0xFF00FF) +
+                   (p2 & 0xFF00FF) + (p3 & 0xFF00FF);
+          dst[o++] = ((ag << 6) & 0xFF00FF00) | ((rb >>> 2) & 0xFF00FF);
+        }
       }
     }
   }
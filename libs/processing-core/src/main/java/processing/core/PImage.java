@@ -25,6 +25,7 @@
 package processing.core;
 
 import java.io.*;
+import java.util.Arrays;
 import java.util.HashMap;
 
 import android.graphics.Bitmap;
@@ -82,6 +83,9 @@ public class PImage implements PConstants, Cloneable {
   protected boolean modified;
   protected int mx1, my1, mx2, my2;
 
+  /** tiles touched since the image was last marked as not modified */
+  protected ModifiedTiles modifiedTiles;
+
   /** Loaded pixels flag */
   public boolean loaded = false;
 
@@ -254,6 +258,23 @@ public class PImage implements PConstants, Cloneable {
   }
 
 
+  /**
+   * Returns the modified portion of the image as a list of rectangles, each
+   * one stored as four consecutive (x, y, w, h) values. If the image was
+   * marked as modified without giving a region, the list contains only the
+   * modified bounding rectangle.
+   */
+  public int[] getModifiedRegions() {  // ignore
+    if (!modified) {
+      return new int[0];
+    }
+    if (modifiedTiles == null || modifiedTiles.isEmpty()) {
+      return new int[] { mx1, my1, mx2 - mx1, my2 - my1 };
+    }
+    return modifiedTiles.getRegions(mx1, my1, mx2, my2);
+  }
+
+
   /**
    * Call this when you want to mess with the pixels[] array.
    * <p/>
@@ -273,7 +294,12 @@ public class PImage implements PConstants, Cloneable {
           // create a mutable version of this bitmap
           bitmap = bitmap.copy(Config.ARGB_8888, true);
         }
-        bitmap.setPixels(pixels, 0, width, mx1, my1, mx2 - mx1, my2 - my1);
+        int[] regions = getModifiedRegions();
+        for (int i = 0; i < regions.length; i += 4) {
+          int x = regions[i], y = regions[i + 1];
+          bitmap.setPixels(pixels, y * width + x, width, x, y,
+                           regions[i + 2], regions[i + 3]);
+        }
         modified = false;
       } else {
         // Get wherever it is in the bitmap right now, we assume is the most
@@ -286,6 +312,16 @@ public class PImage implements PConstants, Cloneable {
   }
 
 
+  /**
+   * Only the pixels inside the given rectangle need to be current in the
+   * pixels[] array. Renderers that can read back a part of the image
+   * override this, the others load all the pixels.
+   */
+  public void loadPixels(int x, int y, int w, int h) {  // ignore
+    loadPixels();
+  }
+
+
   /**
    * Call this when finished messing with the pixels[] array.
    * <p/>
@@ -330,6 +366,7 @@ public class PImage implements PConstants, Cloneable {
       //my2 = PApplet.min(height - 1, y2);
       my2 = PApplet.min(height, y2);
       modified = true;
+      if (modifiedTiles != null) modifiedTiles.clear();
 
     } else {
       if (x < mx1) mx1 = PApplet.max(0, x);
@@ -346,6 +383,145 @@ public class PImage implements PConstants, Cloneable {
       //if (y2 > my2) my2 = PApplet.min(height - 1, y2);
       if (y2 > my2) my2 = PApplet.min(height, y2);
     }
+
+    if (modifiedTiles == null) {
+      modifiedTiles = new ModifiedTiles(width, height);
+    } else {
+      modifiedTiles.resize(width, height);
+    }
+    modifiedTiles.mark(x, y, w, h);
+  }
+
+
+  /**
+   * Keeps track of the modified portion of an image as a grid of square
+   * tiles, so the renderers can update only the tiles that were touched
+   * instead of the bounding rectangle of all the changes.
+   */
+  static public class ModifiedTiles {
+    /** Default size, in pixels, of the tiles */
+    static public int TILE_SIZE = 64;
+
+    protected int width, height;
+    protected int tileSize;
+    protected int cols, rows;
+    protected boolean[] tiles;
+    protected int count;
+
+    public ModifiedTiles(int width, int height) {
+      this(width, height, TILE_SIZE);
+    }
+
+    public ModifiedTiles(int width, int height, int tileSize) {
+      this.tileSize = PApplet.max(1, tileSize);
+      resize(width, height);
+    }
+
+    public void resize(int width, int height) {
+      if (tiles != null && this.width == width && this.height == height) {
+        return;
+      }
+      this.width = width;
+      this.height = height;
+      cols = (width + tileSize - 1) / tileSize;
+      rows = (height + tileSize - 1) / tileSize;
+      tiles = new boolean[cols * rows];
+      count = 0;
+    }
+
+    public void mark(int x, int y, int w, int h) {
+      int x1 = PApplet.max(0, x);
+      int y1 = PApplet.max(0, y);
+      int x2 = PApplet.min(width, x + w);
+      int y2 = PApplet.min(height, y + h);
+      if (x2 <= x1 || y2 <= y1) return;
+
+      int c1 = x1 / tileSize, c2 = (x2 - 1) / tileSize;
+      int r1 = y1 / tileSize, r2 = (y2 - 1) / tileSize;
+      for (int r = r1; r <= r2; r++) {
+        for (int i = r * cols + c1; i <= r * cols + c2; i++) {
+          if (!tiles[i]) {
+            tiles[i] = true;
+            count++;
+          }
+        }
+      }
+    }
+
+    public void clear() {
+      if (0 < count) {
+        Arrays.fill(tiles, false);
+        count = 0;
+      }
+    }
+
+    public boolean isEmpty() {
+      return count == 0;
+    }
+
+    /**
+     * Returns the modified tiles coalesced into rectangles, as consecutive
+     * (x, y, w, h) values clipped to the given bounds. Each run of modified
+     * tiles in a row of the grid is a rectangle, which grows downwards as long
+     * as the next row has a run spanning the same columns.
+     */
+    public int[] getRegions(int bx1, int by1, int bx2, int by2) {
+      // Regions in tile units, as (c1, r1, c2, r2) with exclusive ends.
+      int[] regions = new int[16];
+      int regionCount = 0;
+
+      // Index of the region that ended on the previous row, by first column.
+      int[] open = new int[cols];
+      int[] nextOpen = new int[cols];
+      Arrays.fill(open, -1);
+
+      for (int r = 0; r < rows; r++) {
+        Arrays.fill(nextOpen, -1);
+        int c = 0;
+        while (c < cols) {
+          if (!tiles[r * cols + c]) {
+            c++;
+            continue;
+          }
+          int c1 = c;
+          while (c < cols && tiles[r * cols + c]) c++;
+
+          int idx = open[c1];
+          if (-1 < idx && regions[4 * idx + 2] == c) {
+            regions[4 * idx + 3] = r + 1;
+          } else {
+            if (regions.length < 4 * (regionCount + 1)) {
+              regions = PApplet.expand(regions);
+            }
+            idx = regionCount++;
+            regions[4 * idx    ] = c1;
+            regions[4 * idx + 1] = r;
+            regions[4 * idx + 2] = c;
+            regions[4 * idx + 3] = r + 1;
+          }
+          nextOpen[c1] = idx;
+        }
+        int[] temp = open;
+        open = nextOpen;
+        nextOpen = temp;
+      }
+
+      int[] rects = new int[4 * regionCount];
+      int n = 0;
+      for (int i = 0; i < regionCount; i++) {
+        int x1 = PApplet.max(bx1, regions[4 * i    ] * tileSize);
+        int y1 = PApplet.max(by1, regions[4 * i + 1] * tileSize);
+        int x2 = PApplet.min(bx2, regions[4 * i + 2] * tileSize);
+        int y2 = PApplet.min(by2, regions[4 * i + 3] * tileSize);
+        if (x1 < x2 && y1 < y2) {
+          rects[n++] = x1;
+          rects[n++] = y1;
+          rects[n++] = x2 - x1;
+          rects[n++] = y2 - y1;
+        }
+      }
+      return n < rects.length ? PApplet.subset(rects, 0, n) : rects;
+    }
   }
 
 
@@ -2837,6 +3013,15 @@ int testFunction(int dst, int src) {
    * file with no error.
    */
   public boolean save(String path) {  // ignore
+    return save(path, 100);
+  }
+
+
+  /**
+   * Save this image with the given compression quality, from 0 to 100,
+   * which is used by the jpg and webp formats.
+   */
+  public boolean save(String path, int quality) {  // ignore
     boolean success = false;
 
     // Make sure the pixel data is ready to go
@@ -2851,11 +3036,18 @@ int testFunction(int dst, int src) {
       if (extension.equals("jpg") || extension.equals("jpeg")) {
         // TODO probably not necessary to create another bitmap
         Bitmap outgoing = Bitmap.createBitmap(pixels, width, height, Config.ARGB_8888);
-        success = outgoing.compress(CompressFormat.JPEG, 100, output);
+        success = outgoing.compress(CompressFormat.JPEG, quality, output);
+        outgoing.recycle();
 
       } else if (extension.equals("png")) {
         Bitmap outgoing = Bitmap.createBitmap(pixels, width, height, Config.ARGB_8888);
         success = outgoing.compress(CompressFormat.PNG, 100, output);
+        outgoing.recycle();
+
+      } else if (extension.equals("webp")) {
+        Bitmap outgoing = Bitmap.createBitmap(pixels, width, height, Config.ARGB_8888);
+        success = outgoing.compress(CompressFormat.WEBP, quality, output);
+        outgoing.recycle();
 
       } else if (extension.equals("tga")) {
         success = saveTGA(output); //, pixels, width, height, format);
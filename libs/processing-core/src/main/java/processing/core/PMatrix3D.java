@@ -23,12 +23,18 @@
 
 package processing.core;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+
 
 /**
  * 4x4 matrix implementation.
  */
 public final class PMatrix3D implements PMatrix /*, PConstants*/ {
 
+  /** Smallest number of points per thread in parallelMultPoints() */
+  static public int PARALLEL_MIN = 16384;
+
   public float m00, m01, m02, m03;
   public float m10, m11, m12, m13;
   public float m20, m21, m22, m23;
@@ -546,6 +552,158 @@ public final class PMatrix3D implements PMatrix /*, PConstants*/ {
   }
 
 
+  //////////////////////////////////////////////////////////////
+
+  // BATCH TRANSFORMS
+
+
+  /**
+   * Transforms count points stored in source, starting at offset and
+   * stride floats apart, and writes them at the same positions in target,
+   * which can be the same array as source. With size 3, each point is
+   * (x, y, z) with an implicit w of 1, as in mult(PVector, PVector); with
+   * size 4 it's (x, y, z, w), the layout of the tessellated vertices. The
+   * loop is simpler when the matrix is affine or only a translation.
+   */
+  public void multPoints(float[] source, float[] target,
+                         int offset, int count, int stride, int size) {
+    int end = offset + count * stride;
+    if (isTranslation()) {
+      if (size == 4) {
+        for (int i = offset; i < end; i += stride) {
+          float w = source[i + 3];
+          target[i    ] = source[i    ] + m03*w;
+          target[i + 1] = source[i + 1] + m13*w;
+          target[i + 2] = source[i + 2] + m23*w;
+          target[i + 3] = w;
+        }
+      } else {
+        for (int i = offset; i < end; i += stride) {
+          target[i    ] = source[i    ] + m03;
+          target[i + 1] = source[i + 1] + m13;
+          target[i + 2] = source[i + 2] + m23;
+        }
+      }
+    } else if (size == 4 && !isAffine()) {
+      for (int i = offset; i < end; i += stride) {
+        float x = source[i], y = source[i + 1], z = source[i + 2];
+        float w = source[i + 3];
+        target[i    ] = m00*x + m01*y + m02*z + m03*w;
+        target[i + 1] = m10*x + m11*y + m12*z + m13*w;
+        target[i + 2] = m20*x + m21*y + m22*z + m23*w;
+        target[i + 3] = m30*x + m31*y + m32*z + m33*w;
+      }
+    } else if (size == 4) {
+      for (int i = offset; i < end; i += stride) {
+        float x = source[i], y = source[i + 1], z = source[i + 2];
+        float w = source[i + 3];
+        target[i    ] = m00*x + m01*y + m02*z + m03*w;
+        target[i + 1] = m10*x + m11*y + m12*z + m13*w;
+        target[i + 2] = m20*x + m21*y + m22*z + m23*w;
+        target[i + 3] = w;
+      }
+    } else {
+      for (int i = offset; i < end; i += stride) {
+        float x = source[i], y = source[i + 1], z = source[i + 2];
+        target[i    ] = m00*x + m01*y + m02*z + m03;
+        target[i + 1] = m10*x + m11*y + m12*z + m13;
+        target[i + 2] = m20*x + m21*y + m22*z + m23;
+      }
+    }
+  }
+
+
+  /**
+   * Transforms count directions or normals, stored as (x, y, z) at offset
+   * and stride floats apart, by the upper 3x3 part of the matrix.
+   */
+  public void multVectors(float[] source, float[] target,
+                          int offset, int count, int stride) {
+    int end = offset + count * stride;
+    if (isTranslation()) {
+      if (source != target) {
+        for (int i = offset; i < end; i += stride) {
+          target[i    ] = source[i    ];
+          target[i + 1] = source[i + 1];
+          target[i + 2] = source[i + 2];
+        }
+      }
+      return;
+    }
+    for (int i = offset; i < end; i += stride) {
+      float x = source[i], y = source[i + 1], z = source[i + 2];
+      target[i    ] = m00*x + m01*y + m02*z;
+      target[i + 1] = m10*x + m11*y + m12*z;
+      target[i + 2] = m20*x + m21*y + m22*z;
+    }
+  }
+
+
+  /**
+   * Same as multPoints(), but large arrays are split in ranges of at least
+   * PARALLEL_MIN points that are transformed by several threads at once.
+   * Called from a PVectorArray.parallelFor() task, it runs on that thread.
+   */
+  public void parallelMultPoints(final float[] source, final float[] target,
+                                 final int offset, int count,
+                                 final int stride, final int size) {
+    int threads = Runtime.getRuntime().availableProcessors();
+    int chunks = Math.min(threads, count / Math.max(1, PARALLEL_MIN));
+    if (chunks <= 1 || PVectorArray.isParallelWorker()) {
+      multPoints(source, target, offset, count, stride, size);
+      return;
+    }
+
+    final CountDownLatch done = new CountDownLatch(chunks - 1);
+    ExecutorService executor = PVectorArray.getParallelExecutor();
+    for (int c = 1; c < chunks; c++) {
+      final int start = (int) ((long) count * c / chunks);
+      final int n = (int) ((long) count * (c + 1) / chunks) - start;
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            multPoints(source, target, offset + start * stride, n,
+                       stride, size);
+          } finally {
+            done.countDown();
+          }
+        }
+      });
+    }
+    multPoints(source, target, offset, count / chunks, stride, size);
+
+    boolean interrupted = false;
+    while (true) {
+      try {
+        done.await();
+        break;
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) Thread.currentThread().interrupt();
+  }
+
+
+  /**
+   * True if the last row is (0, 0, 0, 1), so w is left unchanged.
+   */
+  protected boolean isAffine() {
+    return m30 == 0 && m31 == 0 && m32 == 0 && m33 == 1;
+  }
+
+
+  /**
+   * True if the matrix only moves points, without rotating or scaling them.
+   */
+  protected boolean isTranslation() {
+    return m00 == 1 && m01 == 0 && m02 == 0 &&
+           m10 == 0 && m11 == 1 && m12 == 0 &&
+           m20 == 0 && m21 == 0 && m22 == 1 && isAffine();
+  }
+
+
   /**
    * Transpose this matrix.
    */
@@ -205,6 +205,13 @@ public class PShape implements PConstants {
   protected int childCount;
   protected PShape[] children;
 
+  /** Spatial index of the children, built on demand when indexed is true */
+  protected boolean indexed;
+  protected ChildIndex childIndex;
+
+  /** Native outline of the path, built by renderers that can reuse it */
+  protected Object nativePath;
+
 
   /** Array of VERTEX, BEZIER_VERTEX, and CURVE_VERTEX calls. */
   protected int vertexCodeCount;
@@ -787,6 +794,7 @@ public class PShape implements PConstants {
 
     // this is the state of the shape
     openShape = false;
+    verticesChanged();
   }
 
 
@@ -1331,6 +1339,9 @@ public class PShape implements PConstants {
   public void curveTightness(float tightness) {
   }
 
+  public void curveFlatness(float flatness) {
+  }
+
   public void curveVertex(float x, float y) {
   }
 
@@ -1791,6 +1802,8 @@ public class PShape implements PConstants {
     // http://dev.processing.org/bugs/show_bug.cgi?id=982
     if (vertices == null) return;
 
+    if (g.drawCachedPath(this)) return;
+
     boolean insideContour = false;
     g.beginShape();
 
@@ -2070,6 +2083,7 @@ public class PShape implements PConstants {
     }
     children[childCount++] = who;
     who.parent = this;
+    invalidateIndex();
 
     if (who.getName() != null) {
       addName(who.getName(), who);
@@ -2096,6 +2110,7 @@ public class PShape implements PConstants {
       children[idx] = who;
 
       who.parent = this;
+      invalidateIndex();
 
       if (who.getName() != null) {
         addName(who.getName(), who);
@@ -2116,6 +2131,7 @@ public class PShape implements PConstants {
         children[i] = children[i + 1];
       }
       childCount--;
+      invalidateIndex();
 
       if (child.getName() != null && nameTable != null) {
         nameTable.remove(child.getName());
@@ -2223,6 +2239,7 @@ public class PShape implements PConstants {
       vertexCodes = new int[vertexCodeCount];
       PApplet.arrayCopy(codes, vertexCodes, vertexCodeCount);
     }
+    verticesChanged();
   }
 
   /**
@@ -2302,6 +2319,7 @@ public class PShape implements PConstants {
 
     vertices[index][X] = x;
     vertices[index][Y] = y;
+    verticesChanged();
   }
 
 
@@ -2317,6 +2335,7 @@ public class PShape implements PConstants {
     vertices[index][X] = x;
     vertices[index][Y] = y;
     vertices[index][Z] = z;
+    verticesChanged();
   }
 
 
@@ -2331,6 +2350,7 @@ public class PShape implements PConstants {
 
     vertices[index][X] = vec.x;
     vertices[index][Y] = vec.y;
+    verticesChanged();
 
     if (vertices[index].length > 2) {
       vertices[index][Z] = vec.z;
@@ -2340,6 +2360,27 @@ public class PShape implements PConstants {
   }
 
 
+  /**
+   * Sets the first vertices of the shape from the vectors, up to the number
+   * of vertices of the shape. The z coordinates are ignored on 2D shapes.
+   */
+  public void setVertices(PVectorArray vectors) {
+    if (openShape) {
+      PGraphics.showWarning(INSIDE_BEGIN_END_ERROR, "setVertices()");
+      return;
+    }
+
+    int count = Math.min(vertexCount, vectors.size());
+    for (int i = 0; i < count; i++) {
+      float[] vert = vertices[i];
+      vert[X] = vectors.x[i];
+      vert[Y] = vectors.y[i];
+      if (vert.length > 2) vert[Z] = vectors.z[i];
+    }
+    verticesChanged();
+  }
+
+
   public PVector getNormal(int index) {
     return getNormal(index, null);
   }
@@ -3012,7 +3053,7 @@ public class PShape implements PConstants {
         if (((vertices[i][Y] > p.y) != (vertices[j][Y] > p.y)) &&
             (p.x <
                 (vertices[j][X]-vertices[i][X]) *
-                (y-vertices[i][Y]) /
+                (p.y-vertices[i][Y]) /
                 (vertices[j][1]-vertices[i][Y]) +
                 vertices[i][X])) {
           c = !c;
@@ -3024,10 +3065,7 @@ public class PShape implements PConstants {
       // If this is a group, loop through children until we find one that
       // contains the supplied coordinates. If a child does not support
       // contains() throw a warning and continue.
-      for (int i = 0; i < childCount; i++) {
-        if (children[i].contains(x, y)) return true;
-      }
-      return false;
+      return getChildIndex(x, y) != -1;
 
     } else {
       // https://github.com/processing/processing/issues/1280
@@ -3036,6 +3074,343 @@ public class PShape implements PConstants {
   }
 
 
+  /**
+   * Returns the index of the first child of this group that contains the
+   * x, y coordinate, or -1 if none of them contains it.
+   */
+  public int getChildIndex(float x, float y) {
+    if (family != GROUP) {
+      return -1;
+    }
+
+    ChildIndex index = indexed ? getSpatialIndex() : null;
+    if (index != null && index.usable) {
+      int count = index.query(x, y);
+      for (int k = 0; k < count; k++) {
+        int i = index.candidates[k];
+        if (children[i].contains(x, y)) return i;
+      }
+      return -1;
+    }
+
+    for (int i = 0; i < childCount; i++) {
+      if (children[i].contains(x, y)) return i;
+    }
+    return -1;
+  }
+
+
+  /**
+   * Enables a spatial index over the bounds of the children of this group,
+   * so that contains() and getChildIndex(x, y) only test the children whose
+   * bounds hold the point, instead of all of them. Useful for groups with
+   * many children, such as maps loaded from SVG files. The index is built
+   * the first time it's needed, and again after the children change.
+   */
+  public void setIndexed(boolean indexed) {
+    this.indexed = indexed;
+    childIndex = null;
+  }
+
+
+  public boolean isIndexed() {
+    return indexed;
+  }
+
+
+  protected ChildIndex getSpatialIndex() {
+    if (childIndex == null) {
+      childIndex = new ChildIndex(children, childCount);
+    }
+    return childIndex;
+  }
+
+
+  /**
+   * Called when the vertices of this shape change, so anything built from
+   * them is dropped.
+   */
+  protected void verticesChanged() {
+    nativePath = null;
+    invalidateIndex();
+  }
+
+
+  /**
+   * Returns the native object (i.e.: android.graphics.Path) that a renderer
+   * has built from the vertices of this path, or null if there is none or
+   * the vertices changed since.
+   */
+  public Object getNativePath() {
+    return nativePath;
+  }
+
+
+  public void setNativePath(Object nativePath) {
+    this.nativePath = nativePath;
+  }
+
+
+  /**
+   * Drops the spatial indices of the groups that hold this shape, called
+   * when its vertices, transformation, or children change.
+   */
+  protected void invalidateIndex() {
+    for (PShape s = this; s != null; s = s.parent) {
+      s.childIndex = null;
+    }
+  }
+
+
+  /**
+   * Computes the bounds (x1, y1, x2, y2) of the points for which contains()
+   * can return true, in the same coordinates. Returns false if this shape
+   * doesn't support contains(). An empty shape gets x1 greater than x2.
+   */
+  protected boolean getContainsBounds(float[] bounds) {
+    bounds[0] = bounds[1] = Float.MAX_VALUE;
+    bounds[2] = bounds[3] = -Float.MAX_VALUE;
+
+    if (family == PATH) {
+      for (int i = 0; i < vertexCount; i++) {
+        float vx = vertices[i][X];
+        float vy = vertices[i][Y];
+        if (vx < bounds[0]) bounds[0] = vx;
+        if (vy < bounds[1]) bounds[1] = vy;
+        if (vx > bounds[2]) bounds[2] = vx;
+        if (vy > bounds[3]) bounds[3] = vy;
+      }
+      if (matrix != null && bounds[0] <= bounds[2]) {
+        // contains() tests the point transformed by the matrix, so these are
+        // the bounds of the box mapped back by the inverse transformation.
+        PMatrix2D inv;
+        if (matrix instanceof PMatrix3D) {
+          PMatrix3D m = (PMatrix3D) matrix;
+          inv = new PMatrix2D(m.m00, m.m01, m.m03, m.m10, m.m11, m.m13);
+        } else {
+          inv = (PMatrix2D) matrix.get();
+        }
+        if (!inv.invert()) {
+          return false;
+        }
+        float x1 = bounds[0], y1 = bounds[1], x2 = bounds[2], y2 = bounds[3];
+        bounds[0] = bounds[1] = Float.MAX_VALUE;
+        bounds[2] = bounds[3] = -Float.MAX_VALUE;
+        for (int i = 0; i < 4; i++) {
+          float cx = (i & 1) == 0 ? x1 : x2;
+          float cy = (i & 2) == 0 ? y1 : y2;
+          float tx = inv.multX(cx, cy);
+          float ty = inv.multY(cx, cy);
+          if (tx < bounds[0]) bounds[0] = tx;
+          if (ty < bounds[1]) bounds[1] = ty;
+          if (tx > bounds[2]) bounds[2] = tx;
+          if (ty > bounds[3]) bounds[3] = ty;
+        }
+        // Some room for the rounding errors of the inverse
+        float pad = 1e-4f * (Math.abs(bounds[0]) + Math.abs(bounds[1]) +
+                             Math.abs(bounds[2]) + Math.abs(bounds[3]));
+        bounds[0] -= pad;
+        bounds[1] -= pad;
+        bounds[2] += pad;
+        bounds[3] += pad;
+      }
+      return true;
+
+    } else if (family == GROUP) {
+      float[] child = new float[4];
+      for (int i = 0; i < childCount; i++) {
+        if (!children[i].getContainsBounds(child)) {
+          return false;
+        }
+        if (child[0] < bounds[0]) bounds[0] = child[0];
+        if (child[1] < bounds[1]) bounds[1] = child[1];
+        if (child[2] > bounds[2]) bounds[2] = child[2];
+        if (child[3] > bounds[3]) bounds[3] = child[3];
+      }
+      return true;
+    }
+    return false;
+  }
+
+
+  /**
+   * Bounding volume hierarchy over the bounds of the children of a group.
+   * Nodes are split at the median of the longest axis of their children,
+   * and stored in depth-first order, so the left child of a node is the
+   * next one. If the bounds of some child cannot be computed, the index is
+   * not usable and the children are tested one by one.
+   */
+  static protected class ChildIndex {
+    static final int LEAF_SIZE = 4;
+
+    boolean usable;
+
+    // x1, y1, x2, y2 of each child
+    float[] bounds;
+    // children in the index, grouped by leaf
+    int[] order;
+
+    int nodeCount;
+    float[] nodeBounds;
+    // first entry in order and number of entries for leaves, or 0 entries
+    // and the index of the right child for inner nodes
+    int[] nodeFirst;
+    int[] nodeSize;
+    int[] nodeRight;
+
+    int[] stack = new int[32];
+    int[] candidates = new int[8];
+    float[] keys;
+
+
+    ChildIndex(PShape[] children, int childCount) {
+      bounds = new float[4 * childCount];
+      float[] b = new float[4];
+      int count = 0;
+      order = new int[childCount];
+      for (int i = 0; i < childCount; i++) {
+        if (!children[i].getContainsBounds(b)) {
+          return;
+        }
+        System.arraycopy(b, 0, bounds, 4 * i, 4);
+        if (b[0] <= b[2] && b[1] <= b[3]) {
+          // Empty shapes never contain anything, so they are left out
+          order[count++] = i;
+        }
+      }
+
+      int maxNodes = Math.max(1, 2 * count);
+      nodeBounds = new float[4 * maxNodes];
+      nodeFirst = new int[maxNodes];
+      nodeSize = new int[maxNodes];
+      nodeRight = new int[maxNodes];
+      keys = new float[childCount];
+      build(0, count);
+      keys = null;
+      usable = true;
+    }
+
+
+    int build(int first, int end) {
+      int node = nodeCount++;
+      float x1 = Float.MAX_VALUE, y1 = Float.MAX_VALUE;
+      float x2 = -Float.MAX_VALUE, y2 = -Float.MAX_VALUE;
+      float cx1 = Float.MAX_VALUE, cy1 = Float.MAX_VALUE;
+      float cx2 = -Float.MAX_VALUE, cy2 = -Float.MAX_VALUE;
+      for (int k = first; k < end; k++) {
+        int i = 4 * order[k];
+        x1 = Math.min(x1, bounds[i]);
+        y1 = Math.min(y1, bounds[i + 1]);
+        x2 = Math.max(x2, bounds[i + 2]);
+        y2 = Math.max(y2, bounds[i + 3]);
+        float cx = bounds[i] + bounds[i + 2];
+        float cy = bounds[i + 1] + bounds[i + 3];
+        cx1 = Math.min(cx1, cx);
+        cy1 = Math.min(cy1, cy);
+        cx2 = Math.max(cx2, cx);
+        cy2 = Math.max(cy2, cy);
+      }
+      nodeBounds[4 * node] = x1;
+      nodeBounds[4 * node + 1] = y1;
+      nodeBounds[4 * node + 2] = x2;
+      nodeBounds[4 * node + 3] = y2;
+
+      if (end - first <= LEAF_SIZE) {
+        nodeFirst[node] = first;
+        nodeSize[node] = end - first;
+        return node;
+      }
+
+      // Splitting at the median of the centers along the longest axis
+      int axis = cx2 - cx1 >= cy2 - cy1 ? 0 : 1;
+      for (int k = first; k < end; k++) {
+        int i = 4 * order[k] + axis;
+        keys[order[k]] = bounds[i] + bounds[i + 2];
+      }
+      int mid = (first + end) >>> 1;
+      select(first, end - 1, mid);
+
+      build(first, mid);
+      nodeRight[node] = build(mid, end);
+      return node;
+    }
+
+
+    // Partially sorts order[lo..hi] so that the entry at k has the k-th key
+    void select(int lo, int hi, int k) {
+      while (lo < hi) {
+        float pivot = keys[order[(lo + hi) >>> 1]];
+        int i = lo, j = hi;
+        while (i <= j) {
+          while (keys[order[i]] < pivot) i++;
+          while (keys[order[j]] > pivot) j--;
+          if (i <= j) {
+            int temp = order[i];
+            order[i] = order[j];
+            order[j] = temp;
+            i++;
+            j--;
+          }
+        }
+        if (k <= j) {
+          hi = j;
+        } else if (k >= i) {
+          lo = i;
+        } else {
+          return;
+        }
+      }
+    }
+
+
+    /**
+     * Finds the children whose bounds contain the point, and stores their
+     * indices in candidates in increasing order. Returns how many there are.
+     */
+    int query(float x, float y) {
+      int count = 0;
+      if (nodeCount == 0) return 0;
+      int top = 0;
+      stack[top++] = 0;
+      while (0 < top) {
+        int node = stack[--top];
+        int n = 4 * node;
+        if (x < nodeBounds[n] || y < nodeBounds[n + 1] ||
+            nodeBounds[n + 2] < x || nodeBounds[n + 3] < y) {
+          continue;
+        }
+        if (0 < nodeSize[node]) {
+          int end = nodeFirst[node] + nodeSize[node];
+          for (int k = nodeFirst[node]; k < end; k++) {
+            int i = order[k];
+            int b = 4 * i;
+            if (bounds[b] <= x && bounds[b + 1] <= y &&
+                x <= bounds[b + 2] && y <= bounds[b + 3]) {
+              if (count == candidates.length) {
+                candidates = PApplet.expand(candidates);
+              }
+              // Insertion, to keep the order of the children
+              int j = count++;
+              while (0 < j && i < candidates[j - 1]) {
+                candidates[j] = candidates[j - 1];
+                j--;
+              }
+              candidates[j] = i;
+            }
+          }
+        } else {
+          if (stack.length < top + 2) {
+            stack = PApplet.expand(stack);
+          }
+          stack[top++] = nodeRight[node];
+          stack[top++] = node + 1;
+        }
+      }
+      return count;
+    }
+  }
+
+
   // . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . . .
 
 
@@ -3356,6 +3731,8 @@ public class PShape implements PConstants {
    * that can handle <em>at least</em> the specified number of dimensions.
    */
   protected void checkMatrix(int dimensions) {
+    // Called before any change to the matrix
+    invalidateIndex();
     if (matrix == null) {
       if (dimensions == 2) {
         matrix = new PMatrix2D();
@@ -41,6 +41,13 @@ import java.util.Hashtable;
  *
  */
 public class PShapeOBJ extends PShape {
+  // Indexed triangle mesh of the GEOMETRY children, with the vertices and
+  // normals packed as xyz and the texture coordinates as uv.
+  protected float[] meshVertices;
+  protected float[] meshNormals;
+  protected float[] meshTexcoords;
+  protected int[] meshIndices;
+
 
   /**
    * Initializes a new OBJ Object with the given filename.
@@ -54,38 +61,27 @@ public class PShapeOBJ extends PShape {
   }
 
   public PShapeOBJ(PApplet parent, BufferedReader reader, String basePath) {
-    ArrayList<OBJFace> faces = new ArrayList<OBJFace>();
     ArrayList<OBJMaterial> materials = new ArrayList<OBJMaterial>();
-    ArrayList<PVector> coords = new ArrayList<PVector>();
-    ArrayList<PVector> normals = new ArrayList<PVector>();
-    ArrayList<PVector> texcoords = new ArrayList<PVector>();
-    parseOBJ(parent, basePath,
-             reader, faces, materials, coords, normals, texcoords);
+    ArrayList<OBJMesh> meshes = new ArrayList<OBJMesh>();
+    parseOBJ(parent, basePath, reader, materials, meshes);
 
-    // The OBJ geometry is stored with each face in a separate child shape.
+    // The OBJ geometry is stored as one indexed triangle mesh per material,
+    // each in a separate child shape.
     parent = null;
     family = GROUP;
-    addChildren(faces, materials, coords, normals, texcoords);
+    addChildren(materials, meshes);
   }
 
 
-  protected PShapeOBJ(OBJFace face, OBJMaterial mtl,
-                      ArrayList<PVector> coords,
-                      ArrayList<PVector> normals,
-                      ArrayList<PVector> texcoords) {
+  protected PShapeOBJ(OBJMesh mesh, OBJMaterial mtl) {
     family = GEOMETRY;
-    if (face.vertIdx.size() == 3) {
-      kind = TRIANGLES;
-    } else if (face.vertIdx.size() == 4) {
-      kind = QUADS;
-    } else {
-      kind = POLYGON;
-    }
+    kind = TRIANGLES;
+    name = mtl.name;
 
     stroke = false;
     fill = true;
 
-    // Setting material properties for the new face
+    // Setting material properties for the new mesh
     fillColor = rgbaValue(mtl.kd);
     ambientColor = rgbaValue(mtl.ka);
     specularColor = rgbaValue(mtl.ks);
@@ -94,102 +90,288 @@ public class PShapeOBJ extends PShape {
       // If current material is textured, then tinting the texture using the
       // diffuse color.
       tintColor = rgbaValue(mtl.kd, mtl.d);
+      image = mtl.kdMap;
     }
 
-    vertexCount = face.vertIdx.size();
-    vertices = new float[vertexCount][12];
-    for (int j = 0; j < face.vertIdx.size(); j++){
-      int vertIdx, normIdx;
-      PVector vert, norms;
+    mesh.trim();
+    vertexCount = mesh.vertexCount;
+    meshVertices = mesh.vertices;
+    meshNormals = mesh.normals;
+    meshTexcoords = mesh.texcoords;
+    meshIndices = mesh.indices;
+  }
 
-      vert = norms = null;
 
-      vertIdx = face.vertIdx.get(j).intValue() - 1;
-      vert = coords.get(vertIdx);
+  protected void addChildren(ArrayList<OBJMaterial> materials,
+                             ArrayList<OBJMesh> meshes) {
+    for (int i = 0; i < meshes.size(); i++) {
+      OBJMesh mesh = meshes.get(i);
+      if (mesh == null || mesh.indexCount == 0) continue;
 
-      if (j < face.normIdx.size()) {
-        normIdx = face.normIdx.get(j).intValue() - 1;
-        if (-1 < normIdx) {
-          norms = normals.get(normIdx);
-        }
-      }
+      // Creating child shape for all the faces sharing the current material.
+      PShape child = new PShapeOBJ(mesh, materials.get(i));
+      addChild(child);
+    }
+  }
 
-      vertices[j][X] = vert.x;
-      vertices[j][Y] = vert.y;
-      vertices[j][Z] = vert.z;
 
-      vertices[j][PGraphics.R] = mtl.kd.x;
-      vertices[j][PGraphics.G] = mtl.kd.y;
-      vertices[j][PGraphics.B] = mtl.kd.z;
-      vertices[j][PGraphics.A] = 1;
+  /**
+   * Returns the triangle indices of this mesh, three per triangle, into the
+   * vertices returned by getVertex(), getNormal() and getTextureU/V(). Only
+   * the GEOMETRY children of a loaded OBJ shape have indices.
+   */
+  public int[] getIndices() {
+    return meshIndices;
+  }
 
-      if (norms != null) {
-        vertices[j][PGraphics.NX] = norms.x;
-        vertices[j][PGraphics.NY] = norms.y;
-        vertices[j][PGraphics.NZ] = norms.z;
-      }
 
-      if (mtl != null && mtl.kdMap != null) {
-        // This face is textured.
-        int texIdx;
-        PVector tex = null;
+  @Override
+  public PVector getVertex(int index, PVector vec) {
+    if (meshVertices == null) return super.getVertex(index, vec);
+    if (vec == null) {
+      vec = new PVector();
+    }
+    vec.x = meshVertices[3 * index + 0];
+    vec.y = meshVertices[3 * index + 1];
+    vec.z = meshVertices[3 * index + 2];
+    return vec;
+  }
 
-        if (j < face.texIdx.size()) {
-          texIdx = face.texIdx.get(j).intValue() - 1;
-          if (-1 < texIdx) {
-            tex = texcoords.get(texIdx);
-          }
-        }
 
-        image = mtl.kdMap;
-        if (tex != null) {
-          vertices[j][PGraphics.U] = tex.x;
-          vertices[j][PGraphics.V] = tex.y;
-        }
-      }
+  @Override
+  public float getVertexX(int index) {
+    if (meshVertices == null) return super.getVertexX(index);
+    return meshVertices[3 * index + 0];
+  }
+
+
+  @Override
+  public float getVertexY(int index) {
+    if (meshVertices == null) return super.getVertexY(index);
+    return meshVertices[3 * index + 1];
+  }
+
+
+  @Override
+  public float getVertexZ(int index) {
+    if (meshVertices == null) return super.getVertexZ(index);
+    return meshVertices[3 * index + 2];
+  }
+
+
+  @Override
+  public PVector getNormal(int index, PVector vec) {
+    if (meshNormals == null) return super.getNormal(index, vec);
+    if (vec == null) {
+      vec = new PVector();
     }
+    vec.x = meshNormals[3 * index + 0];
+    vec.y = meshNormals[3 * index + 1];
+    vec.z = meshNormals[3 * index + 2];
+    return vec;
   }
 
 
-  protected void addChildren(ArrayList<OBJFace> faces,
-                             ArrayList<OBJMaterial> materials,
-                             ArrayList<PVector> coords,
-                             ArrayList<PVector> normals,
-                             ArrayList<PVector> texcoords) {
-    int mtlIdxCur = -1;
-    OBJMaterial mtl = null;
-    for (int i = 0; i < faces.size(); i++) {
-      OBJFace face = faces.get(i);
-
-      // Getting current material.
-      if (mtlIdxCur != face.matIdx || face.matIdx == -1) {
-        // To make sure that at least we get the default material
-        mtlIdxCur = PApplet.max(0, face.matIdx);
-        mtl = materials.get(mtlIdxCur);
-      }
+  @Override
+  public float getNormalX(int index) {
+    if (meshNormals == null) return super.getNormalX(index);
+    return meshNormals[3 * index + 0];
+  }
 
-      // Creating child shape for current face.
-      PShape child = new PShapeOBJ(face, mtl, coords, normals, texcoords);
-      addChild(child);
+
+  @Override
+  public float getNormalY(int index) {
+    if (meshNormals == null) return super.getNormalY(index);
+    return meshNormals[3 * index + 1];
+  }
+
+
+  @Override
+  public float getNormalZ(int index) {
+    if (meshNormals == null) return super.getNormalZ(index);
+    return meshNormals[3 * index + 2];
+  }
+
+
+  @Override
+  public float getTextureU(int index) {
+    if (meshTexcoords == null) return super.getTextureU(index);
+    return meshTexcoords[2 * index + 0];
+  }
+
+
+  @Override
+  public float getTextureV(int index) {
+    if (meshTexcoords == null) return super.getTextureV(index);
+    return meshTexcoords[2 * index + 1];
+  }
+
+
+  @Override
+  public void setVertex(int index, float x, float y) {
+    if (meshVertices == null) {
+      super.setVertex(index, x, y);
+      return;
+    }
+    if (openShape) {
+      PGraphics.showWarning(INSIDE_BEGIN_END_ERROR, "setVertex()");
+      return;
+    }
+
+    meshVertices[3 * index + 0] = x;
+    meshVertices[3 * index + 1] = y;
+    verticesChanged();
+  }
+
+
+  @Override
+  public void setVertex(int index, float x, float y, float z) {
+    if (meshVertices == null) {
+      super.setVertex(index, x, y, z);
+      return;
+    }
+    if (openShape) {
+      PGraphics.showWarning(INSIDE_BEGIN_END_ERROR, "setVertex()");
+      return;
+    }
+
+    meshVertices[3 * index + 0] = x;
+    meshVertices[3 * index + 1] = y;
+    meshVertices[3 * index + 2] = z;
+    verticesChanged();
+  }
+
+
+  @Override
+  public void setVertex(int index, PVector vec) {
+    if (meshVertices == null) {
+      super.setVertex(index, vec);
+      return;
+    }
+    setVertex(index, vec.x, vec.y, vec.z);
+  }
+
+
+  @Override
+  public void setVertices(PVectorArray vectors) {
+    if (meshVertices == null) {
+      super.setVertices(vectors);
+      return;
+    }
+    if (openShape) {
+      PGraphics.showWarning(INSIDE_BEGIN_END_ERROR, "setVertices()");
+      return;
+    }
+
+    int count = Math.min(vertexCount, vectors.size());
+    for (int i = 0; i < count; i++) {
+      meshVertices[3 * i + 0] = vectors.x[i];
+      meshVertices[3 * i + 1] = vectors.y[i];
+      meshVertices[3 * i + 2] = vectors.z[i];
+    }
+    verticesChanged();
+  }
+
+
+  @Override
+  public void setNormal(int index, float nx, float ny, float nz) {
+    if (meshNormals == null) {
+      super.setNormal(index, nx, ny, nz);
+      return;
+    }
+    if (openShape) {
+      PGraphics.showWarning(INSIDE_BEGIN_END_ERROR, "setNormal()");
+      return;
+    }
+
+    meshNormals[3 * index + 0] = nx;
+    meshNormals[3 * index + 1] = ny;
+    meshNormals[3 * index + 2] = nz;
+  }
+
+
+  @Override
+  public void setTextureUV(int index, float u, float v) {
+    if (meshTexcoords == null) {
+      super.setTextureUV(index, u, v);
+      return;
+    }
+    if (openShape) {
+      PGraphics.showWarning(INSIDE_BEGIN_END_ERROR, "setTextureUV()");
+      return;
+    }
+
+    if (index < 0 || vertexCount <= index) {
+      PGraphics.showWarning(NO_SUCH_VERTEX_ERROR + " (" + index + ")", "setTextureUV()");
+      return;
+    }
+
+    meshTexcoords[2 * index + 0] = u;
+    meshTexcoords[2 * index + 1] = v;
+  }
+
+
+  /**
+   * Draws the mesh triangle by triangle, for the renderers that don't copy
+   * it into a retained shape (see PShapeOpenGL.createShape()).
+   */
+  @Override
+  protected void drawGeometry(PGraphics g) {
+    if (meshVertices == null) {
+      super.drawGeometry(g);
+      return;
+    }
+
+    boolean textured = image != null;
+    int savedTextureMode = g.textureMode;
+    g.textureMode(NORMAL);
+    g.beginShape(kind);
+    if (textured) g.texture(image);
+    for (int i = 0; i < meshIndices.length; i++) {
+      int idx = meshIndices[i];
+      g.normal(meshNormals[3 * idx + 0],
+               meshNormals[3 * idx + 1],
+               meshNormals[3 * idx + 2]);
+      if (textured) {
+        g.vertex(meshVertices[3 * idx + 0],
+                 meshVertices[3 * idx + 1],
+                 meshVertices[3 * idx + 2],
+                 meshTexcoords[2 * idx + 0],
+                 meshTexcoords[2 * idx + 1]);
+      } else {
+        g.vertex(meshVertices[3 * idx + 0],
+                 meshVertices[3 * idx + 1],
+                 meshVertices[3 * idx + 2]);
+      }
     }
+    g.endShape();
+    g.textureMode(savedTextureMode);
   }
 
 
   static protected void parseOBJ(PApplet parent, String path,
                                  BufferedReader reader,
-                                 ArrayList<OBJFace> faces,
                                  ArrayList<OBJMaterial> materials,
-                                 ArrayList<PVector> coords,
-                                 ArrayList<PVector> normals,
-                                 ArrayList<PVector> texcoords) {
+                                 ArrayList<OBJMesh> meshes) {
     Hashtable<String, Integer> mtlTable  = new Hashtable<String, Integer>();
     int mtlIdxCur = -1;
-    boolean readv, readvn, readvt;
+    OBJMesh mesh = null;
+
+    // Vertex data is stored in packed arrays, xyz for the coordinates and
+    // normals, and uv for the texture coordinates.
+    float[] coords = new float[3 * PGraphics.DEFAULT_VERTICES];
+    float[] normals = new float[3 * PGraphics.DEFAULT_VERTICES];
+    float[] texcoords = new float[2 * PGraphics.DEFAULT_VERTICES];
+    int coordCount = 0;
+    int normalCount = 0;
+    int texcoordCount = 0;
+
+    // Reference indices for the corners of the face being read.
+    int[] faceVert = new int[8];
+    int[] faceTex = new int[8];
+    int[] faceNorm = new int[8];
     try {
-
-      readv = readvn = readvt = false;
       String line;
-      String gname = "object";
       while ((line = reader.readLine()) != null) {
         // Parse the line.
         line = line.trim();
@@ -217,127 +399,143 @@ public class PShapeOBJ extends PShape {
         }
         // END OF RHINO OBJ FILES HACK
 
-        String[] parts = line.split("\\s+");
-        // if not a blank line, process the line.
-        if (parts.length > 0) {
-          if (parts[0].equals("v")) {
-            // vertex
-            PVector tempv = new PVector(Float.valueOf(parts[1]).floatValue(),
-                                        Float.valueOf(parts[2]).floatValue(),
-                                        Float.valueOf(parts[3]).floatValue());
-            coords.add(tempv);
-            readv = true;
-          } else if (parts[0].equals("vn")) {
-            // normal
-            PVector tempn = new PVector(Float.valueOf(parts[1]).floatValue(),
-                                        Float.valueOf(parts[2]).floatValue(),
-                                        Float.valueOf(parts[3]).floatValue());
-            normals.add(tempn);
-            readvn = true;
-          } else if (parts[0].equals("vt")) {
-            // uv, inverting v to take into account Processing's inverted Y axis
-            // with respect to OpenGL.
-            PVector tempv = new PVector(Float.valueOf(parts[1]).floatValue(),
-                                     1 - Float.valueOf(parts[2]).floatValue());
-            texcoords.add(tempv);
-            readvt = true;
-          } else if (parts[0].equals("o")) {
-            // Object name is ignored, for now.
-          } else if (parts[0].equals("mtllib")) {
-            if (parts[1] != null) {
-              String fn = parts[1];
-              if (fn.indexOf(File.separator) == -1 && !path.equals("")) {
-                // Relative file name, adding the base path.
-                fn = path + File.separator + fn;
-              }
-              BufferedReader mreader = parent.createReader(fn);
-              if (mreader != null) {
-                parseMTL(parent, path,
-                         mreader, materials, mtlTable);
-              }
+        OBJLexer lexer = new OBJLexer(line);
+        String keyword = lexer.nextWord();
+        if (keyword.equals("v")) {
+          // vertex
+          if (coordCount == coords.length / 3) {
+            coords = PApplet.expand(coords, coords.length << 1);
+          }
+          coords[3 * coordCount + 0] = lexer.nextFloat();
+          coords[3 * coordCount + 1] = lexer.nextFloat();
+          coords[3 * coordCount + 2] = lexer.nextFloat();
+          coordCount++;
+        } else if (keyword.equals("vn")) {
+          // normal
+          if (normalCount == normals.length / 3) {
+            normals = PApplet.expand(normals, normals.length << 1);
+          }
+          normals[3 * normalCount + 0] = lexer.nextFloat();
+          normals[3 * normalCount + 1] = lexer.nextFloat();
+          normals[3 * normalCount + 2] = lexer.nextFloat();
+          normalCount++;
+        } else if (keyword.equals("vt")) {
+          // uv, inverting v to take into account Processing's inverted Y axis
+          // with respect to OpenGL.
+          if (texcoordCount == texcoords.length / 2) {
+            texcoords = PApplet.expand(texcoords, texcoords.length << 1);
+          }
+          texcoords[2 * texcoordCount + 0] = lexer.nextFloat();
+          texcoords[2 * texcoordCount + 1] =
+            1 - (lexer.nextIsNumber() ? lexer.nextFloat() : 0);
+          texcoordCount++;
+        } else if (keyword.equals("o")) {
+          // Object name is ignored, for now.
+        } else if (keyword.equals("g")) {
+          // Group names are ignored, faces are grouped by material.
+        } else if (keyword.equals("mtllib")) {
+          if (lexer.hasNext()) {
+            String fn = lexer.nextWord();
+            if (fn.indexOf(File.separator) == -1 && !path.equals("")) {
+              // Relative file name, adding the base path.
+              fn = path + File.separator + fn;
             }
-          } else if (parts[0].equals("g")) {
-            gname = 1 < parts.length ? parts[1] : "";
-          } else if (parts[0].equals("usemtl")) {
-            // Getting index of current active material (will be applied on
-            // all subsequent faces).
-            if (parts[1] != null) {
-              String mtlname = parts[1];
-              if (mtlTable.containsKey(mtlname)) {
-                Integer tempInt = mtlTable.get(mtlname);
-                mtlIdxCur = tempInt.intValue();
-              } else {
-                mtlIdxCur = -1;
-              }
+            BufferedReader mreader = parent.createReader(fn);
+            if (mreader != null) {
+              parseMTL(parent, path,
+                       mreader, materials, mtlTable);
             }
-          } else if (parts[0].equals("f")) {
-            // Face setting
-            OBJFace face = new OBJFace();
-            face.matIdx = mtlIdxCur;
-            face.name = gname;
-
-            for (int i = 1; i < parts.length; i++) {
-              String seg = parts[i];
-
-              if (seg.indexOf("/") > 0) {
-                String[] forder = seg.split("/");
-
-                if (forder.length > 2) {
-                  // Getting vertex and texture and normal indexes.
-                  if (forder[0].length() > 0 && readv) {
-                    face.vertIdx.add(Integer.valueOf(forder[0]));
-                  }
-
-                  if (forder[1].length() > 0 && readvt) {
-                    face.texIdx.add(Integer.valueOf(forder[1]));
-                  }
-
-                  if (forder[2].length() > 0 && readvn) {
-                    face.normIdx.add(Integer.valueOf(forder[2]));
-                  }
-                } else if (forder.length > 1) {
-                  // Getting vertex and texture/normal indexes.
-                  if (forder[0].length() > 0 && readv) {
-                    face.vertIdx.add(Integer.valueOf(forder[0]));
-                  }
-
-                  if (forder[1].length() > 0) {
-                    if (readvt) {
-                      face.texIdx.add(Integer.valueOf(forder[1]));
-                    } else  if (readvn) {
-                      face.normIdx.add(Integer.valueOf(forder[1]));
-                    }
-
-                  }
-
-                } else if (forder.length > 0) {
-                  // Getting vertex index only.
-                  if (forder[0].length() > 0 && readv) {
-                    face.vertIdx.add(Integer.valueOf(forder[0]));
-                  }
-                }
-              } else {
-                // Getting vertex index only.
-                if (seg.length() > 0 && readv) {
-                  face.vertIdx.add(Integer.valueOf(seg));
-                }
+          }
+        } else if (keyword.equals("usemtl")) {
+          // Getting index of current active material (will be applied on
+          // all subsequent faces).
+          if (lexer.hasNext()) {
+            String mtlname = lexer.nextWord();
+            if (mtlTable.containsKey(mtlname)) {
+              Integer tempInt = mtlTable.get(mtlname);
+              mtlIdxCur = tempInt.intValue();
+            } else {
+              mtlIdxCur = -1;
+            }
+            mesh = null;
+          }
+        } else if (keyword.equals("f")) {
+          // Face setting, each corner is v, v/vt, v//vn or v/vt/vn
+          int count = 0;
+          boolean valid = true;
+          while (lexer.hasNext()) {
+            int vert = lexer.nextIndex(true);
+            int tex = 0;
+            int norm = 0;
+            if (lexer.nextIs('/')) {
+              tex = lexer.nextIndex(false);
+              if (lexer.nextIs('/')) {
+                norm = lexer.nextIndex(false);
+              } else if (texcoordCount == 0) {
+                // Only one index after the vertex, which refers to a
+                // normal if the file has no texture coordinates.
+                norm = tex;
+                tex = 0;
               }
             }
 
-            faces.add(face);
+            if (count == faceVert.length) {
+              faceVert = PApplet.expand(faceVert);
+              faceTex = PApplet.expand(faceTex);
+              faceNorm = PApplet.expand(faceNorm);
+            }
+            faceVert[count] = resolveIndex(vert, coordCount);
+            faceTex[count] = resolveIndex(tex, texcoordCount);
+            faceNorm[count] = resolveIndex(norm, normalCount);
+            if (faceVert[count] == -1) valid = false;
+            count++;
           }
-        }
-      }
 
-      if (materials.size() == 0) {
-        // No materials definition so far. Adding one default material.
-        OBJMaterial defMtl = new OBJMaterial();
-        materials.add(defMtl);
+          if (!valid) {
+            PGraphics.showWarning("Ignoring OBJ face with invalid vertex index");
+            continue;
+          }
+          if (count < 3) continue;
+
+          if (mesh == null) {
+            // To make sure that at least we get the default material
+            int idx = PApplet.max(0, mtlIdxCur);
+            while (meshes.size() <= idx) meshes.add(null);
+            mesh = meshes.get(idx);
+            if (mesh == null) {
+              mesh = new OBJMesh();
+              meshes.set(idx, mesh);
+            }
+          }
+          mesh.addFace(faceVert, faceTex, faceNorm, count,
+                       coords, texcoords, normals);
+        }
       }
 
     } catch (Exception e) {
       e.printStackTrace();
     }
+
+    // Adding default materials for the meshes that use a material index
+    // with no definition.
+    while (materials.size() < meshes.size()) {
+      materials.add(new OBJMaterial());
+    }
+  }
+
+
+  /**
+   * Converts a 1-based (or negative, relative to the end) OBJ reference into
+   * a 0-based index, returning -1 when missing or out of range.
+   */
+  static protected int resolveIndex(int ref, int count) {
+    int idx = -1;
+    if (0 < ref) {
+      idx = ref - 1;
+    } else if (ref < 0) {
+      idx = count + ref;
+    }
+    return (-1 < idx && idx < count) ? idx : -1;
   }
 
 
@@ -414,20 +612,229 @@ public class PShapeOBJ extends PShape {
   }
 
 
-  // Stores a face from an OBJ file
-  static protected class OBJFace {
-    ArrayList<Integer> vertIdx;
-    ArrayList<Integer> texIdx;
-    ArrayList<Integer> normIdx;
-    int matIdx;
-    String name;
+  // Stores the faces that share a material as an indexed triangle mesh, where
+  // each distinct (v, vt, vn) reference of the OBJ file becomes one vertex.
+  static protected class OBJMesh {
+    int vertexCount;
+    float[] vertices;
+    float[] normals;
+    float[] texcoords;
+    int indexCount;
+    int[] indices;
+
+    // (v, vt, vn) references of each vertex, and an open-addressing hash
+    // table holding vertex index + 1 (0 for empty slots) to find them.
+    int[] refs;
+    int[] table;
+    int tableCount;
+
+    OBJMesh() {
+      vertices = new float[3 * PGraphics.DEFAULT_VERTICES];
+      normals = new float[3 * PGraphics.DEFAULT_VERTICES];
+      texcoords = new float[2 * PGraphics.DEFAULT_VERTICES];
+      refs = new int[3 * PGraphics.DEFAULT_VERTICES];
+      indices = new int[3 * PGraphics.DEFAULT_VERTICES];
+      table = new int[2 * PGraphics.DEFAULT_VERTICES];
+      vertexCount = indexCount = tableCount = 0;
+    }
+
+    void addFace(int[] faceVert, int[] faceTex, int[] faceNorm, int count,
+                 float[] coords, float[] tcoords, float[] norms) {
+      boolean smooth = true;
+      for (int i = 0; i < count; i++) {
+        if (faceNorm[i] == -1) {
+          smooth = false;
+          break;
+        }
+      }
+
+      int first, prev;
+      if (smooth) {
+        first = getVertex(faceVert[0], faceTex[0], faceNorm[0],
+                          coords, tcoords, norms);
+        prev = getVertex(faceVert[1], faceTex[1], faceNorm[1],
+                         coords, tcoords, norms);
+        for (int i = 2; i < count; i++) {
+          int next = getVertex(faceVert[i], faceTex[i], faceNorm[i],
+                               coords, tcoords, norms);
+          addTriangle(first, prev, next);
+          prev = next;
+        }
+      } else {
+        // Faces without normals get their own vertices with the face normal,
+        // which is how they were shaded when each face was a separate shape.
+        // The normal is computed with Newell's method, so it has the same
+        // orientation as the automatic normals for CCW faces.
+        float nx = 0, ny = 0, nz = 0;
+        for (int i = 0; i < count; i++) {
+          int i0 = 3 * faceVert[i];
+          int i1 = 3 * faceVert[(i + 1) % count];
+          nx += (coords[i0 + 1] - coords[i1 + 1]) * (coords[i0 + 2] + coords[i1 + 2]);
+          ny += (coords[i0 + 2] - coords[i1 + 2]) * (coords[i0    ] + coords[i1    ]);
+          nz += (coords[i0    ] - coords[i1    ]) * (coords[i0 + 1] + coords[i1 + 1]);
+        }
+        float d = PApplet.sqrt(nx * nx + ny * ny + nz * nz);
+        if (0 < d) {
+          nx /= d;
+          ny /= d;
+          nz /= d;
+        }
+
+        first = addVertex(faceVert[0], faceTex[0], coords, tcoords, nx, ny, nz);
+        prev = addVertex(faceVert[1], faceTex[1], coords, tcoords, nx, ny, nz);
+        for (int i = 2; i < count; i++) {
+          int next = addVertex(faceVert[i], faceTex[i], coords, tcoords,
+                               nx, ny, nz);
+          addTriangle(first, prev, next);
+          prev = next;
+        }
+      }
+    }
+
+    int getVertex(int v, int t, int n,
+                  float[] coords, float[] tcoords, float[] norms) {
+      int mask = table.length - 1;
+      int slot = hash(v, t, n) & mask;
+      while (table[slot] != 0) {
+        int idx = table[slot] - 1;
+        if (refs[3 * idx] == v && refs[3 * idx + 1] == t &&
+            refs[3 * idx + 2] == n) {
+          return idx;
+        }
+        slot = (slot + 1) & mask;
+      }
+
+      int idx = addVertex(v, t, coords, tcoords,
+                          norms[3 * n + 0], norms[3 * n + 1], norms[3 * n + 2]);
+      refs[3 * idx + 2] = n;
+      table[slot] = idx + 1;
+      tableCount++;
+      if (table.length < 2 * tableCount) rehash();
+      return idx;
+    }
+
+    int addVertex(int v, int t, float[] coords, float[] tcoords,
+                  float nx, float ny, float nz) {
+      if (vertexCount == vertices.length / 3) {
+        int newSize = vertexCount << 1;
+        vertices = PApplet.expand(vertices, 3 * newSize);
+        normals = PApplet.expand(normals, 3 * newSize);
+        texcoords = PApplet.expand(texcoords, 2 * newSize);
+        refs = PApplet.expand(refs, 3 * newSize);
+      }
+
+      int idx = vertexCount;
+      vertices[3 * idx + 0] = coords[3 * v + 0];
+      vertices[3 * idx + 1] = coords[3 * v + 1];
+      vertices[3 * idx + 2] = coords[3 * v + 2];
+      normals[3 * idx + 0] = nx;
+      normals[3 * idx + 1] = ny;
+      normals[3 * idx + 2] = nz;
+      if (-1 < t) {
+        texcoords[2 * idx + 0] = tcoords[2 * t + 0];
+        texcoords[2 * idx + 1] = tcoords[2 * t + 1];
+      }
+      refs[3 * idx + 0] = v;
+      refs[3 * idx + 1] = t;
+      refs[3 * idx + 2] = -1;
+      vertexCount++;
+      return idx;
+    }
+
+    void addTriangle(int i0, int i1, int i2) {
+      if (indexCount + 3 > indices.length) {
+        indices = PApplet.expand(indices, indices.length << 1);
+      }
+      indices[indexCount++] = i0;
+      indices[indexCount++] = i1;
+      indices[indexCount++] = i2;
+    }
+
+    void rehash() {
+      int[] temp = new int[table.length << 1];
+      int mask = temp.length - 1;
+      for (int i = 0; i < table.length; i++) {
+        if (table[i] == 0) continue;
+        int idx = table[i] - 1;
+        int slot = hash(refs[3 * idx], refs[3 * idx + 1],
+                        refs[3 * idx + 2]) & mask;
+        while (temp[slot] != 0) slot = (slot + 1) & mask;
+        temp[slot] = table[i];
+      }
+      table = temp;
+    }
+
+    void trim() {
+      vertices = PApplet.subset(vertices, 0, 3 * vertexCount);
+      normals = PApplet.subset(normals, 0, 3 * vertexCount);
+      texcoords = PApplet.subset(texcoords, 0, 2 * vertexCount);
+      indices = PApplet.subset(indices, 0, indexCount);
+      refs = null;
+      table = null;
+    }
 
-    OBJFace() {
-      vertIdx = new ArrayList<Integer>();
-      texIdx = new ArrayList<Integer>();
-      normIdx = new ArrayList<Integer>();
-      matIdx = -1;
-      name = "";
+    static int hash(int v, int t, int n) {
+      int h = v * 73856093 ^ t * 19349663 ^ n * 83492791;
+      return h ^ (h >>> 16);
+    }
+  }
+
+
+  // Reads the keywords, numbers and face references of an OBJ statement.
+  static protected class OBJLexer extends FloatLexer {
+
+    OBJLexer(String line) {
+      super(line);
+    }
+
+
+    String nextWord() {
+      skipSeparators();
+      int start = pos;
+      while (pos < length && !Character.isWhitespace(chars[pos])) {
+        pos++;
+      }
+      return new String(chars, start, pos - start);
+    }
+
+
+    boolean nextIs(char c) {
+      if (pos < length && chars[pos] == c) {
+        pos++;
+        return true;
+      }
+      return false;
+    }
+
+
+    /**
+     * Reads a signed integer reference, returning 0 if there are no digits
+     * (as in the empty texture index of "1//3") and the reference is not
+     * required.
+     */
+    int nextIndex(boolean required) {
+      int start = pos;
+      boolean negative = false;
+      if (pos < length && chars[pos] == '-') {
+        negative = true;
+        pos++;
+      }
+      int value = 0;
+      int digits = 0;
+      while (pos < length && '0' <= chars[pos] && chars[pos] <= '9') {
+        value = 10 * value + (chars[pos] - '0');
+        pos++;
+        digits++;
+      }
+      if (digits == 0) {
+        pos = start;
+        if (required) {
+          throw new RuntimeException("Expected a vertex index at position " +
+                                     pos + " of face data");
+        }
+        return 0;
+      }
+      return negative ? -value : value;
     }
   }
 
@@ -34,8 +34,15 @@ import android.graphics.Matrix;
 //import java.awt.geom.AffineTransform;
 //import java.awt.geom.Point2D;
 
+import java.util.ArrayList;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -114,6 +121,29 @@ public class PShapeSVG extends PShape {
   protected Gradient fillGradient;
   String fillName;  // id of another object
 
+  /**
+   * Top-level groups of documents with at least this many elements are
+   * parsed concurrently, one group per task. Set to zero to always parse
+   * on the calling thread.
+   */
+  static public int parallelMinElements = 2000;
+
+  static protected ExecutorService parseExecutor;
+
+  // Names added while this group is parsed in a worker thread, which are
+  // added to the root once all the groups are done, in document order.
+  ArrayList<String> deferredNames;
+  ArrayList<PShape> deferredShapes;
+
+  // Names of the elements parsed before the groups, where the groups look
+  // up their url(#id) references while the worker threads run, since the
+  // name table is not modified until all of them are done.
+  Map<String, PShape> parseNames;
+
+  static final Pattern MANGLED_NAME = Pattern.compile("_x([A-Za-z0-9]{2})_");
+  static final Pattern SINGLE_TRANSFORM =
+    Pattern.compile("[,\\s]*(\\w+)\\((.*)\\)", Pattern.MULTILINE | Pattern.DOTALL);
+
 
   /**
    * Initializes a new SVG object from the given XML object.
@@ -191,10 +221,10 @@ public class PShapeSVG extends PShape {
     // @#$(* adobe illustrator mangles names of objects when re-saving
     if (name != null) {
       while (true) {
-        String[] m = PApplet.match(name, "_x([A-Za-z0-9]{2})_");
-        if (m == null) break;
-        char repair = (char) PApplet.unhex(m[1]);
-        name = name.replace(m[0], "" + repair);
+        Matcher m = MANGLED_NAME.matcher(name);
+        if (!m.find()) break;
+        char repair = (char) PApplet.unhex(m.group(1));
+        name = name.replace(m.group(0), "" + repair);
       }
     }
 
@@ -291,14 +321,200 @@ public class PShapeSVG extends PShape {
     children = new PShape[elements.length];
     childCount = 0;
 
-    for (XML elem : elements) {
-      PShape kid = parseChild(elem);
-      if (kid != null) addChild(kid);
+    if (parent == null && 0 < parallelMinElements &&
+        1 < Runtime.getRuntime().availableProcessors()) {
+      parseChildrenParallel(elements);
+    } else {
+      for (XML elem : elements) {
+        PShape kid = parseChild(elem);
+        if (kid != null) addChild(kid);
+      }
     }
     children = (PShape[]) PApplet.subset(children, 0, childCount);
   }
 
 
+  /**
+   * Parses the top-level groups of the document in a worker pool. Only
+   * groups that contain no gradients are parsed concurrently, since those
+   * are the only elements that others refer to (with url(#id) paints).
+   * All the other elements are parsed first, in order, so the groups see
+   * the same gradients no matter how the tasks are scheduled. The names
+   * and the children are added in document order once all the tasks are
+   * done, so duplicated ids resolve as in the serial parse.
+   */
+  protected void parseChildrenParallel(XML[] elements) {
+    boolean[] concurrent = new boolean[elements.length];
+    int groupCount = 0;
+    int elementCount = 0;
+    for (int i = 0; i < elements.length; i++) {
+      int count = countElements(elements[i]);
+      if ("g".equals(elements[i].getName()) && 0 <= count) {
+        concurrent[i] = true;
+        groupCount++;
+      }
+      elementCount += PApplet.abs(count);
+    }
+
+    if (groupCount < 2 || elementCount < parallelMinElements) {
+      for (XML elem : elements) {
+        PShape kid = parseChild(elem);
+        if (kid != null) addChild(kid);
+      }
+      return;
+    }
+
+    PShape[] kids = new PShape[elements.length];
+    @SuppressWarnings("unchecked")
+    ArrayList<String>[] names = new ArrayList[elements.length];
+    @SuppressWarnings("unchecked")
+    ArrayList<PShape>[] shapes = new ArrayList[elements.length];
+    parseNames = new HashMap<String, PShape>();
+    if (nameTable != null) {
+      parseNames.putAll(nameTable);
+    }
+    for (int i = 0; i < elements.length; i++) {
+      if (!concurrent[i]) {
+        deferredNames = names[i] = new ArrayList<String>();
+        deferredShapes = shapes[i] = new ArrayList<PShape>();
+        kids[i] = parseChild(elements[i]);
+        if (kids[i] != null && kids[i].getName() != null) {
+          parseNames.put(kids[i].getName(), kids[i]);
+        }
+      }
+    }
+    deferredNames = null;
+    deferredShapes = null;
+
+    // The lookups of the groups skip getChild(), which sets the size of the
+    // shape found, so it is set here for the gradients they can refer to.
+    for (PShape shape : parseNames.values()) {
+      if (shape instanceof Gradient) {
+        shape.width = width;
+        shape.height = height;
+      }
+    }
+
+    @SuppressWarnings("unchecked")
+    Future<PShapeSVG>[] tasks = new Future[elements.length];
+    for (int i = 0; i < elements.length; i++) {
+      if (concurrent[i]) {
+        final XML elem = elements[i];
+        tasks[i] = getParseExecutor().submit(new Callable<PShapeSVG>() {
+          @Override
+          public PShapeSVG call() {
+            PShapeSVG group = createShape(PShapeSVG.this, elem, false);
+            group.deferredNames = new ArrayList<String>();
+            group.deferredShapes = new ArrayList<PShape>();
+            group.parseColors(elem);
+            group.parseChildren(elem);
+            return group;
+          }
+        });
+      }
+    }
+
+    try {
+      for (int i = 0; i < elements.length; i++) {
+        if (concurrent[i]) {
+          PShapeSVG group = waitFor(tasks[i]);
+          names[i] = group.deferredNames;
+          shapes[i] = group.deferredShapes;
+          group.deferredNames = null;
+          group.deferredShapes = null;
+          kids[i] = group;
+        }
+      }
+    } finally {
+      parseNames = null;
+    }
+
+    for (int i = 0; i < elements.length; i++) {
+      for (int j = 0; j < names[i].size(); j++) {
+        addName(names[i].get(j), shapes[i].get(j));
+      }
+      if (kids[i] != null) addChild(kids[i]);
+    }
+  }
+
+
+  static protected PShapeSVG waitFor(Future<PShapeSVG> task) {
+    try {
+      return task.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new RuntimeException(e.getCause());
+    }
+  }
+
+
+  /**
+   * Counts the elements in the subtree, or returns minus the count if
+   * it contains gradients.
+   */
+  static protected int countElements(XML elem) {
+    String name = elem.getName();
+    if (name == null || name.startsWith("#")) return 0;
+    boolean gradient = name.equals("linearGradient") ||
+                       name.equals("radialGradient");
+    int count = 1;
+    for (XML kid : elem.getChildren()) {
+      int kidCount = countElements(kid);
+      if (kidCount < 0) gradient = true;
+      count += PApplet.abs(kidCount);
+    }
+    return gradient ? -count : count;
+  }
+
+
+  static synchronized protected ExecutorService getParseExecutor() {
+    if (parseExecutor == null) {
+      int threads = Runtime.getRuntime().availableProcessors();
+      parseExecutor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+          Thread thread = new Thread(r, "PShapeSVG parser");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+    return parseExecutor;
+  }
+
+
+  @Override
+  public void addName(String nom, PShape shape) {
+    if (deferredNames != null) {
+      deferredNames.add(nom);
+      deferredShapes.add(shape);
+      if (parseNames != null) {
+        parseNames.put(nom, shape);
+      }
+    } else {
+      super.addName(nom, shape);
+    }
+  }
+
+
+  @Override
+  public PShape findChild(String target) {
+    if (parent == null && parseNames != null) {
+      PShape found = parseNames.get(target);
+      if (found == null) {
+        found = parseNames.get(target.replace(' ', '_'));
+      }
+      return found;
+    }
+    return super.findChild(target);
+  }
+
+
   /**
    * Parse a child XML element.
    * Override this method to add parsing for more SVG elements.
@@ -480,27 +696,21 @@ public class PShapeSVG extends PShape {
 
     String pointsAttr = element.getString("points");
     if (pointsAttr != null) {
-      Pattern pattern = Pattern.compile("([+-]?[\\d]+(\\.[\\d]+)?([eE][+-][\\d]+)?)(,?\\s*)([+-]?[\\d]+(\\.[\\d]+)?([eE][+-][\\d]+)?)");
-      Matcher matcher = pattern.matcher(pointsAttr);
+      PathLexer lexer = new PathLexer(pointsAttr);
       vertexCount = 0;
-      while (matcher.find()) {
-        vertexCount++;
+      vertices = new float[PApplet.max(1, pointsAttr.length() / 8)][2];
+      // An odd number of coordinates is an error, the last one is ignored.
+      while (lexer.nextIsNumber()) {
+        float x = lexer.nextFloat();
+        if (!lexer.nextIsNumber()) break;
+        float y = lexer.nextFloat();
+        parsePathVertex(x, y);
       }
-      matcher.reset();
-      vertices = new float[vertexCount][2];
-      for (int i = 0; i < vertexCount; i++) {
-        matcher.find();
-        vertices[i][X] = Float.parseFloat(matcher.group(1));
-        vertices[i][Y] = Float.parseFloat(matcher.group(5));
+      if (vertexCount < vertices.length) {
+        float[][] temp = new float[vertexCount][];
+        System.arraycopy(vertices, 0, temp, 0, vertexCount);
+        vertices = temp;
       }
-//      String[] pointsBuffer = PApplet.splitTokens(pointsAttr);
-//      vertexCount = pointsBuffer.length;
-//      vertices = new float[vertexCount][2];
-//      for (int i = 0; i < vertexCount; i++) {
-//        String pb[] = PApplet.splitTokens(pointsBuffer[i], ", \t\r\n");
-//        vertices[i][X] = Float.parseFloat(pb[0]);
-//        vertices[i][Y] = Float.parseFloat(pb[1]);
-//      }
     }
   }
 
@@ -513,59 +723,16 @@ public class PShapeSVG extends PShape {
     if (pathData == null || PApplet.trim(pathData).length() == 0) {
       return;
     }
-    char[] pathDataChars = pathData.toCharArray();
-
-    StringBuilder pathBuffer = new StringBuilder();
-    boolean lastSeparate = false;
-
-    for (int i = 0; i < pathDataChars.length; i++) {
-      char c = pathDataChars[i];
-      boolean separate = false;
-
-      if (c == 'M' || c == 'm' ||
-          c == 'L' || c == 'l' ||
-          c == 'H' || c == 'h' ||
-          c == 'V' || c == 'v' ||
-          c == 'C' || c == 'c' ||  // beziers
-          c == 'S' || c == 's' ||
-          c == 'Q' || c == 'q' ||  // quadratic beziers
-          c == 'T' || c == 't' ||
-          c == 'A' || c == 'a' ||  // elliptical arc
-          c == 'Z' || c == 'z' ||  // closepath
-          c == ',') {
-        separate = true;
-        if (i != 0) {
-          pathBuffer.append("|");
-        }
-      }
-      if (c == 'Z' || c == 'z') {
-        separate = false;
-      }
-      if (c == '-' && !lastSeparate) {
-        // allow for 'e' notation in numbers, e.g. 2.10e-9
-        // http://dev.processing.org/bugs/show_bug.cgi?id=1408
-        if (i == 0 || pathDataChars[i-1] != 'e') {
-          pathBuffer.append("|");
-        }
-      }
-      if (c != ',') {
-        pathBuffer.append(c); //"" + pathDataBuffer.charAt(i));
-      }
-      if (separate && c != ',' && c != '-') {
-        pathBuffer.append("|");
-      }
-      lastSeparate = separate;
-    }
 
-    // use whitespace constant to get rid of extra spaces and CR or LF
-    String[] pathTokens =
-        PApplet.splitTokens(pathBuffer.toString(), "|" + WHITESPACE);
-    vertices = new float[pathTokens.length][2];
-    vertexCodes = new int[pathTokens.length];
+    // The commands and numbers are read straight from the path data, the
+    // arrays are sized from its length and expanded if needed.
+    PathLexer lexer = new PathLexer(pathData);
+    int estimate = PApplet.max(1, pathData.length() / 8);
+    vertices = new float[estimate][2];
+    vertexCodes = new int[estimate];
 
     float cx = 0;
     float cy = 0;
-    int i = 0;
 
     char implicitCommand = '\0';
 //    char prevCommand = '\0';
@@ -575,104 +742,94 @@ public class PShapeSVG extends PShape {
     float movetoX = 0;
     float movetoY = 0;
 
-    while (i < pathTokens.length) {
-      char c = pathTokens[i].charAt(0);
-      if (((c >= '0' && c <= '9') || (c == '-')) && implicitCommand != '\0') {
+    while (lexer.hasNext()) {
+      char c;
+      if (lexer.nextIsNumber() && implicitCommand != '\0') {
         c = implicitCommand;
-        i--;
       } else {
+        c = lexer.nextCommand();
         implicitCommand = c;
       }
       switch (c) {
 
         case 'M':  // M - move to (absolute)
-          cx = PApplet.parseFloat(pathTokens[i + 1]);
-          cy = PApplet.parseFloat(pathTokens[i + 2]);
+          cx = lexer.nextFloat();
+          cy = lexer.nextFloat();
           movetoX = cx;
           movetoY = cy;
           parsePathMoveto(cx, cy);
           implicitCommand = 'L';
-          i += 3;
           break;
 
         case 'm':  // m - move to (relative)
-          cx = cx + PApplet.parseFloat(pathTokens[i + 1]);
-          cy = cy + PApplet.parseFloat(pathTokens[i + 2]);
+          cx = cx + lexer.nextFloat();
+          cy = cy + lexer.nextFloat();
           movetoX = cx;
           movetoY = cy;
           parsePathMoveto(cx, cy);
           implicitCommand = 'l';
-          i += 3;
           break;
 
         case 'L':
-          cx = PApplet.parseFloat(pathTokens[i + 1]);
-          cy = PApplet.parseFloat(pathTokens[i + 2]);
+          cx = lexer.nextFloat();
+          cy = lexer.nextFloat();
           parsePathLineto(cx, cy);
-          i += 3;
           break;
 
         case 'l':
-          cx = cx + PApplet.parseFloat(pathTokens[i + 1]);
-          cy = cy + PApplet.parseFloat(pathTokens[i + 2]);
+          cx = cx + lexer.nextFloat();
+          cy = cy + lexer.nextFloat();
           parsePathLineto(cx, cy);
-          i += 3;
           break;
 
         // horizontal lineto absolute
         case 'H':
-          cx = PApplet.parseFloat(pathTokens[i + 1]);
+          cx = lexer.nextFloat();
           parsePathLineto(cx, cy);
-          i += 2;
           break;
 
         // horizontal lineto relative
         case 'h':
-          cx = cx + PApplet.parseFloat(pathTokens[i + 1]);
+          cx = cx + lexer.nextFloat();
           parsePathLineto(cx, cy);
-          i += 2;
           break;
 
         case 'V':
-          cy = PApplet.parseFloat(pathTokens[i + 1]);
+          cy = lexer.nextFloat();
           parsePathLineto(cx, cy);
-          i += 2;
           break;
 
         case 'v':
-          cy = cy + PApplet.parseFloat(pathTokens[i + 1]);
+          cy = cy + lexer.nextFloat();
           parsePathLineto(cx, cy);
-          i += 2;
           break;
 
         // C - curve to (absolute)
         case 'C': {
-          float ctrlX1 = PApplet.parseFloat(pathTokens[i + 1]);
-          float ctrlY1 = PApplet.parseFloat(pathTokens[i + 2]);
-          float ctrlX2 = PApplet.parseFloat(pathTokens[i + 3]);
-          float ctrlY2 = PApplet.parseFloat(pathTokens[i + 4]);
-          float endX = PApplet.parseFloat(pathTokens[i + 5]);
-          float endY = PApplet.parseFloat(pathTokens[i + 6]);
+          float ctrlX1 = lexer.nextFloat();
+          float ctrlY1 = lexer.nextFloat();
+          float ctrlX2 = lexer.nextFloat();
+          float ctrlY2 = lexer.nextFloat();
+          float endX = lexer.nextFloat();
+          float endY = lexer.nextFloat();
           parsePathCurveto(ctrlX1, ctrlY1, ctrlX2, ctrlY2, endX, endY);
           cx = endX;
           cy = endY;
-          i += 7;
           prevCurve = true;
         }
         break;
 
         // c - curve to (relative)
         case 'c': {
-          float ctrlX1 = cx + PApplet.parseFloat(pathTokens[i + 1]);
-          float ctrlY1 = cy + PApplet.parseFloat(pathTokens[i + 2]);
-          float ctrlX2 = cx + PApplet.parseFloat(pathTokens[i + 3]);
-          float ctrlY2 = cy + PApplet.parseFloat(pathTokens[i + 4]);
-          float endX = cx + PApplet.parseFloat(pathTokens[i + 5]);
-          float endY = cy + PApplet.parseFloat(pathTokens[i + 6]);
+          float ctrlX1 = cx + lexer.nextFloat();
+          float ctrlY1 = cy + lexer.nextFloat();
+          float ctrlX2 = cx + lexer.nextFloat();
+          float ctrlY2 = cy + lexer.nextFloat();
+          float endX = cx + lexer.nextFloat();
+          float endY = cy + lexer.nextFloat();
           parsePathCurveto(ctrlX1, ctrlY1, ctrlX2, ctrlY2, endX, endY);
           cx = endX;
           cy = endY;
-          i += 7;
           prevCurve = true;
         }
         break;
@@ -702,14 +859,13 @@ public class PShapeSVG extends PShape {
             ctrlX = px + (px - ppx);
             ctrlY = py + (py - ppy);
           }
-          float ctrlX2 = PApplet.parseFloat(pathTokens[i + 1]);
-          float ctrlY2 = PApplet.parseFloat(pathTokens[i + 2]);
-          float endX = PApplet.parseFloat(pathTokens[i + 3]);
-          float endY = PApplet.parseFloat(pathTokens[i + 4]);
+          float ctrlX2 = lexer.nextFloat();
+          float ctrlY2 = lexer.nextFloat();
+          float endX = lexer.nextFloat();
+          float endY = lexer.nextFloat();
           parsePathCurveto(ctrlX, ctrlY, ctrlX2, ctrlY2, endX, endY);
           cx = endX;
           cy = endY;
-          i += 5;
           prevCurve = true;
         }
         break;
@@ -727,14 +883,13 @@ public class PShapeSVG extends PShape {
             ctrlX = px + (px - ppx);
             ctrlY = py + (py - ppy);
           }
-          float ctrlX2 = cx + PApplet.parseFloat(pathTokens[i + 1]);
-          float ctrlY2 = cy + PApplet.parseFloat(pathTokens[i + 2]);
-          float endX = cx + PApplet.parseFloat(pathTokens[i + 3]);
-          float endY = cy + PApplet.parseFloat(pathTokens[i + 4]);
+          float ctrlX2 = cx + lexer.nextFloat();
+          float ctrlY2 = cy + lexer.nextFloat();
+          float endX = cx + lexer.nextFloat();
+          float endY = cy + lexer.nextFloat();
           parsePathCurveto(ctrlX, ctrlY, ctrlX2, ctrlY2, endX, endY);
           cx = endX;
           cy = endY;
-          i += 5;
           prevCurve = true;
         }
         break;
@@ -747,30 +902,28 @@ public class PShapeSVG extends PShape {
         // to draw a polybézier. At the end of the command, the new current point
         // becomes the final (x,y) coordinate pair used in the polybézier.
         case 'Q': {
-          ctrlX = PApplet.parseFloat(pathTokens[i + 1]);
-          ctrlY = PApplet.parseFloat(pathTokens[i + 2]);
-          float endX = PApplet.parseFloat(pathTokens[i + 3]);
-          float endY = PApplet.parseFloat(pathTokens[i + 4]);
+          ctrlX = lexer.nextFloat();
+          ctrlY = lexer.nextFloat();
+          float endX = lexer.nextFloat();
+          float endY = lexer.nextFloat();
           //parsePathQuadto(cx, cy, ctrlX, ctrlY, endX, endY);
           parsePathQuadto(ctrlX, ctrlY, endX, endY);
           cx = endX;
           cy = endY;
-          i += 5;
           prevCurve = true;
         }
         break;
 
         // q - quadratic curve to (relative)
         case 'q': {
-          ctrlX = cx + PApplet.parseFloat(pathTokens[i + 1]);
-          ctrlY = cy + PApplet.parseFloat(pathTokens[i + 2]);
-          float endX = cx + PApplet.parseFloat(pathTokens[i + 3]);
-          float endY = cy + PApplet.parseFloat(pathTokens[i + 4]);
+          ctrlX = cx + lexer.nextFloat();
+          ctrlY = cy + lexer.nextFloat();
+          float endX = cx + lexer.nextFloat();
+          float endY = cy + lexer.nextFloat();
           //parsePathQuadto(cx, cy, ctrlX, ctrlY, endX, endY);
           parsePathQuadto(ctrlX, ctrlY, endX, endY);
           cx = endX;
           cy = endY;
-          i += 5;
           prevCurve = true;
         }
         break;
@@ -793,13 +946,12 @@ public class PShapeSVG extends PShape {
             ctrlX = px + (px - ppx);
             ctrlY = py + (py - ppy);
           }
-          float endX = PApplet.parseFloat(pathTokens[i + 1]);
-          float endY = PApplet.parseFloat(pathTokens[i + 2]);
+          float endX = lexer.nextFloat();
+          float endY = lexer.nextFloat();
           //parsePathQuadto(cx, cy, ctrlX, ctrlY, endX, endY);
           parsePathQuadto(ctrlX, ctrlY, endX, endY);
           cx = endX;
           cy = endY;
-          i += 3;
           prevCurve = true;
         }
         break;
@@ -817,47 +969,44 @@ public class PShapeSVG extends PShape {
             ctrlX = px + (px - ppx);
             ctrlY = py + (py - ppy);
           }
-          float endX = cx + PApplet.parseFloat(pathTokens[i + 1]);
-          float endY = cy + PApplet.parseFloat(pathTokens[i + 2]);
+          float endX = cx + lexer.nextFloat();
+          float endY = cy + lexer.nextFloat();
           //parsePathQuadto(cx, cy, ctrlX, ctrlY, endX, endY);
           parsePathQuadto(ctrlX, ctrlY, endX, endY);
           cx = endX;
           cy = endY;
-          i += 3;
           prevCurve = true;
         }
         break;
 
         // A - elliptical arc to (absolute)
         case 'A': {
-          float rx = PApplet.parseFloat(pathTokens[i + 1]);
-          float ry = PApplet.parseFloat(pathTokens[i + 2]);
-          float angle = PApplet.parseFloat(pathTokens[i + 3]);
-          boolean fa = PApplet.parseFloat(pathTokens[i + 4]) != 0;
-          boolean fs = PApplet.parseFloat(pathTokens[i + 5]) != 0;
-          float endX = PApplet.parseFloat(pathTokens[i + 6]);
-          float endY = PApplet.parseFloat(pathTokens[i + 7]);
+          float rx = lexer.nextFloat();
+          float ry = lexer.nextFloat();
+          float angle = lexer.nextFloat();
+          boolean fa = lexer.nextFlag();
+          boolean fs = lexer.nextFlag();
+          float endX = lexer.nextFloat();
+          float endY = lexer.nextFloat();
           parsePathArcto(cx, cy, rx, ry, angle, fa, fs, endX, endY);
           cx = endX;
           cy = endY;
-          i += 8;
           prevCurve = true;
         }
         break;
 
         // a - elliptical arc to (relative)
         case 'a': {
-          float rx = PApplet.parseFloat(pathTokens[i + 1]);
-          float ry = PApplet.parseFloat(pathTokens[i + 2]);
-          float angle = PApplet.parseFloat(pathTokens[i + 3]);
-          boolean fa = PApplet.parseFloat(pathTokens[i + 4]) != 0;
-          boolean fs = PApplet.parseFloat(pathTokens[i + 5]) != 0;
-          float endX = cx + PApplet.parseFloat(pathTokens[i + 6]);
-          float endY = cy + PApplet.parseFloat(pathTokens[i + 7]);
+          float rx = lexer.nextFloat();
+          float ry = lexer.nextFloat();
+          float angle = lexer.nextFloat();
+          boolean fa = lexer.nextFlag();
+          boolean fs = lexer.nextFlag();
+          float endX = cx + lexer.nextFloat();
+          float endY = cy + lexer.nextFloat();
           parsePathArcto(cx, cy, rx, ry, angle, fa, fs, endX, endY);
           cx = endX;
           cy = endY;
-          i += 8;
           prevCurve = true;
         }
         break;
@@ -870,17 +1019,14 @@ public class PShapeSVG extends PShape {
           cx = movetoX;
           cy = movetoY;
           close = true;
-          i++;
+          // closepath takes no parameters, so it cannot be repeated
+          implicitCommand = '\0';
           break;
 
         default:
-          String parsed =
-              PApplet.join(PApplet.subset(pathTokens, 0, i), ",");
-          String unparsed =
-              PApplet.join(PApplet.subset(pathTokens, i), ",");
-          System.err.println("parsed: " + parsed);
-          System.err.println("unparsed: " + unparsed);
-          throw new RuntimeException("shape command not handled: " + pathTokens[i]);
+          System.err.println("parsed: " + pathData.substring(0, lexer.pos));
+          System.err.println("unparsed: " + pathData.substring(lexer.pos));
+          throw new RuntimeException("shape command not handled: " + c);
       }
 //      prevCommand = c;
     }
@@ -1052,6 +1198,62 @@ public class PShapeSVG extends PShape {
   }
 
 
+  /**
+   * Reads the commands and numbers of path data and points attributes
+   * directly from the characters of the attribute, without splitting it
+   * into strings first. Whitespace and commas are skipped as separators.
+   * Syntax defined at http://www.w3.org/TR/SVG/paths.html#PathDataBNF
+   */
+  static protected class PathLexer extends FloatLexer {
+
+    PathLexer(String data) {
+      super(data);
+    }
+
+
+    char nextCommand() {
+      skipSeparators();
+      return chars[pos++];
+    }
+
+
+    /**
+     * Commands and minus signs also start a new token in path data.
+     */
+    @Override
+    boolean isTokenEnd(char c) {
+      return isSeparator(c) || c == '-' || isCommand(c);
+    }
+
+
+    static boolean isCommand(char c) {
+      switch (c) {
+        case 'M': case 'm': case 'L': case 'l': case 'H': case 'h':
+        case 'V': case 'v': case 'C': case 'c': case 'S': case 's':
+        case 'Q': case 'q': case 'T': case 't': case 'A': case 'a':
+        case 'Z': case 'z':
+          return true;
+        default:
+          return false;
+      }
+    }
+
+
+    /**
+     * Arc flags are a single 0 or 1, and they are not required to be
+     * separated from the following number (i.e.: "a1,1 0 01.5,2"). Any
+     * other token is read as a number, and is true unless it is zero.
+     */
+    boolean nextFlag() {
+      skipSeparators();
+      if (pos < length && (chars[pos] == '0' || chars[pos] == '1')) {
+        return chars[pos++] == '1';
+      }
+      return nextFloat() != 0;
+    }
+  }
+
+
   /**
    * Parse the specified SVG matrix into a PMatrix2D. Note that PMatrix2D
    * is rotated relative to the SVG definition, so parameters are rearranged
@@ -1081,11 +1283,12 @@ public class PShapeSVG extends PShape {
 
   static protected PMatrix2D parseSingleTransform(String matrixStr) {
     //String[] pieces = PApplet.match(matrixStr, "^\\s*(\\w+)\\((.*)\\)\\s*$");
-    String[] pieces = PApplet.match(matrixStr, "[,\\s]*(\\w+)\\((.*)\\)");
-    if (pieces == null) {
+    Matcher matcher = SINGLE_TRANSFORM.matcher(matrixStr);
+    if (!matcher.find()) {
       System.err.println("Could not parse transform " + matrixStr);
       return null;
     }
+    String[] pieces = { matcher.group(0), matcher.group(1), matcher.group(2) };
     float[] m = PApplet.parseFloat(PApplet.splitTokens(pieces[2], ", "));
     if (pieces[1].equals("matrix")) {
       return new PMatrix2D(m[0], m[2], m[4], m[1], m[3], m[5]);
@@ -103,6 +103,10 @@ public interface PSurface {
 
   public void setFrameRate(float fps);
 
+  public void setSkipIdleFrames(boolean skip);
+
+  public void setVsyncPacing(boolean enable);
+
   public boolean hasPermission(String permission);
   public void requestPermissions(String[] permissions);
 }
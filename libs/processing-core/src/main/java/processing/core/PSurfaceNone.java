@@ -32,12 +32,15 @@ import android.graphics.Rect;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
+import android.view.Choreographer;
+import android.view.Display;
 import android.view.LayoutInflater;
 import android.view.SurfaceHolder;
 import android.view.SurfaceView;
 import android.view.View;
 import android.view.ViewGroup;
 import android.view.ViewGroup.LayoutParams;
+import android.view.WindowManager;
 import android.widget.LinearLayout;
 import android.widget.RelativeLayout;
 import android.os.ResultReceiver;
@@ -82,6 +85,13 @@ public class PSurfaceNone implements PSurface, PConstants {
   protected float frameRateTarget = 60;
   protected long frameRatePeriod = 1000000000L / 60L;
 
+  // Frames are not drawn until the sketch is invalidated
+  protected boolean skipIdleFrames = false;
+
+  // Frames are aligned with the vsync signal instead of sleeping
+  protected boolean vsyncPacing = false;
+  protected VsyncClock vsyncClock;
+
 
   @Override
   public AppComponent getComponent() {
@@ -462,6 +472,50 @@ public class PSurfaceNone implements PSurface, PConstants {
   }
 
 
+  @Override
+  public void setSkipIdleFrames(boolean skip) {
+    skipIdleFrames = skip;
+  }
+
+
+  @Override
+  public void setVsyncPacing(boolean enable) {
+    if (enable && vsyncClock == null) {
+      vsyncClock = new VsyncClock(getRefreshPeriod());
+    }
+    vsyncPacing = enable;
+  }
+
+
+  protected long getRefreshPeriod() {
+    float rate = 60;
+    Context context = getContext();
+    if (context != null) {
+      WindowManager manager =
+        (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
+      Display display = manager != null ? manager.getDefaultDisplay() : null;
+      if (display != null && 0 < display.getRefreshRate()) {
+        rate = display.getRefreshRate();
+      }
+    }
+    return (long) (1000000000.0 / rate);
+  }
+
+
+  /**
+   * Returns true if the next frame should not be drawn, because frames are
+   * only drawn when something changed and the sketch was not invalidated.
+   */
+  protected boolean skipFrame() {
+    if (skipIdleFrames && sketch != null && sketch.isLooping() &&
+        !sketch.isInvalid()) {
+      sketch.frameTimings.frameSkipped();
+      return true;
+    }
+    return false;
+  }
+
+
   protected void checkPause() throws InterruptedException {
     synchronized (pauseObject) {
       while (paused) {
@@ -473,12 +527,57 @@ public class PSurfaceNone implements PSurface, PConstants {
 
   protected void callDraw() {
     component.requestDraw();
-    if (component.canDraw() && sketch != null) {
+    if (component.canDraw() && sketch != null && !skipFrame()) {
       sketch.handleDraw();
     }
   }
 
 
+  /**
+   * Delivers the vsync signal of the display, taken from the Choreographer
+   * of the main thread, to the animation thread. A frame callback is only
+   * posted while the animation thread is waiting for the next vsync, so
+   * nothing runs on the main thread when the sketch is paused.
+   */
+  protected class VsyncClock implements Choreographer.FrameCallback, Runnable {
+    protected Handler handler = new Handler(Looper.getMainLooper());
+    protected long refreshPeriod;
+    protected long frameTime;
+
+    public VsyncClock(long refreshPeriod) {
+      this.refreshPeriod = refreshPeriod;
+    }
+
+    /**
+     * Waits for the next vsync at most timeout nanoseconds, and returns its
+     * time, or the time of the previous one if there was no vsync (i.e.: the
+     * display is off).
+     */
+    public synchronized long next(long timeout) throws InterruptedException {
+      long last = frameTime;
+      handler.post(this);
+      long deadline = System.nanoTime() + timeout;
+      while (frameTime == last) {
+        long left = deadline - System.nanoTime();
+        if (left <= 0) break;
+        wait(left / 1000000L, (int) (left % 1000000L));
+      }
+      return frameTime;
+    }
+
+    @Override
+    public void run() {
+      Choreographer.getInstance().postFrameCallback(this);
+    }
+
+    @Override
+    public synchronized void doFrame(long frameTimeNanos) {
+      frameTime = frameTimeNanos;
+      notifyAll();
+    }
+  }
+
+
   public class AnimationThread extends Thread {
     public AnimationThread() {
       super("Animation Thread");
@@ -492,6 +591,7 @@ public class PSurfaceNone implements PSurface, PConstants {
     public void run() {  // not good to make this synchronized, locks things up
       long beforeTime = System.nanoTime();
       long overSleepTime = 0L;
+      long lastVsync = 0L;
 
       int noDelays = 0;
       // Number of frames with a delay of 0 ms before the
@@ -516,6 +616,27 @@ public class PSurfaceNone implements PSurface, PConstants {
 
         callDraw();
 
+        if (vsyncPacing && vsyncClock != null) {
+          // Wait for the vsync that ends the current frame, skipping as many
+          // refreshes as needed to keep the target frame rate.
+          long period = vsyncClock.refreshPeriod;
+          long frames = Math.max(1L, Math.round((double) frameRatePeriod / period));
+          try {
+            long time = vsyncClock.next(2 * period);
+            while (time != 0 && time - lastVsync < frames * period - period / 2) {
+              long next = vsyncClock.next(2 * period);
+              if (next == time) break;  // No vsync, the display is off
+              time = next;
+            }
+            lastVsync = time != 0 ? time : System.nanoTime();
+          } catch (InterruptedException e) {
+            return;
+          }
+          overSleepTime = 0L;
+          beforeTime = System.nanoTime();
+          continue;
+        }
+
         // wait for update & paint to happen before drawing next frame
         // this is necessary since the drawing is sometimes in a
         // separate thread, meaning that the next frame will start
@@ -0,0 +1,567 @@
+/* -*- mode: java; c-basic-offset: 2; indent-tabs-mode: nil -*- */
+
+/*
+  Part of the Processing project - http://processing.org
+
+  Copyright (c) 2012-21 The Processing Foundation
+
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License as published by the Free Software Foundation, version 2.1.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+*/
+
+
+package processing.core;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * A list of vectors stored as three float arrays, one for each coordinate,
+ * instead of an array of PVector objects. Particle systems and other code
+ * that updates many vectors every frame can then loop over primitive arrays
+ * without chasing a pointer per vector, and without creating garbage.
+ * <p>
+ * As in PVector, the operations change the vectors in place and return this
+ * array, so they can be chained. The x, y and z arrays are public and can be
+ * longer than size(), only the first size() elements are used. For updates
+ * that are expensive enough, parallelFor() splits the array among several
+ * threads.
+ *
+ * @see PVector
+ */
+public class PVectorArray {
+  /** Smallest number of vectors given to each thread by parallelFor() */
+  static public int PARALLEL_MIN = 4096;
+
+  static protected ExecutorService parallelExecutor;
+
+  public float[] x;
+  public float[] y;
+  public float[] z;
+
+  protected int count;
+
+
+  /**
+   * Body of a parallel loop, which processes the vectors from start
+   * (inclusive) to end (exclusive).
+   */
+  public interface Task {
+    public void run(PVectorArray vectors, int start, int end);
+  }
+
+
+  public PVectorArray(int count) {
+    x = new float[count];
+    y = new float[count];
+    z = new float[count];
+    this.count = count;
+  }
+
+
+  public PVectorArray(PVector[] vectors) {
+    this(vectors.length);
+    set(vectors);
+  }
+
+
+  public int size() {
+    return count;
+  }
+
+
+  /**
+   * Changes the number of vectors, keeping the first ones. New vectors are
+   * set to zero.
+   */
+  public void resize(int count) {
+    if (x.length < count) {
+      int length = Math.max(count, x.length << 1);
+      x = PApplet.expand(x, length);
+      y = PApplet.expand(y, length);
+      z = PApplet.expand(z, length);
+    }
+    for (int i = this.count; i < count; i++) {
+      x[i] = y[i] = z[i] = 0;
+    }
+    this.count = count;
+  }
+
+
+  public PVectorArray copy() {
+    PVectorArray copy = new PVectorArray(count);
+    System.arraycopy(x, 0, copy.x, 0, count);
+    System.arraycopy(y, 0, copy.y, 0, count);
+    System.arraycopy(z, 0, copy.z, 0, count);
+    return copy;
+  }
+
+
+  //////////////////////////////////////////////////////////////
+
+  // CONVERSION
+
+
+  public PVector get(int i) {
+    return get(i, null);
+  }
+
+
+  /**
+   * @param target PVector to store the vector, or null to create a new one
+   */
+  public PVector get(int i, PVector target) {
+    if (target == null) {
+      return new PVector(x[i], y[i], z[i]);
+    }
+    return target.set(x[i], y[i], z[i]);
+  }
+
+
+  public void set(int i, float x, float y, float z) {
+    this.x[i] = x;
+    this.y[i] = y;
+    this.z[i] = z;
+  }
+
+
+  public void set(int i, PVector v) {
+    set(i, v.x, v.y, v.z);
+  }
+
+
+  /**
+   * Copies the vectors into the array, which is resized to hold them all.
+   */
+  public void set(PVector[] vectors) {
+    resize(vectors.length);
+    for (int i = 0; i < vectors.length; i++) {
+      PVector v = vectors[i];
+      x[i] = v.x;
+      y[i] = v.y;
+      z[i] = v.z;
+    }
+  }
+
+
+  /**
+   * Copies the vectors into target, reusing the PVector objects in it.
+   * @param target array of vectors, or null to create a new one
+   */
+  public PVector[] get(PVector[] target) {
+    if (target == null || target.length < count) {
+      PVector[] temp = new PVector[count];
+      if (target != null) System.arraycopy(target, 0, temp, 0, target.length);
+      target = temp;
+    }
+    for (int i = 0; i < count; i++) {
+      if (target[i] == null) {
+        target[i] = new PVector(x[i], y[i], z[i]);
+      } else {
+        target[i].set(x[i], y[i], z[i]);
+      }
+    }
+    return target;
+  }
+
+
+  /**
+   * Returns the vectors as consecutive (x, y, z) values, the layout of the
+   * vertex data of shapes and buffers.
+   * @param target array for the values, or null to create a new one
+   */
+  public float[] getVertices(float[] target) {
+    if (target == null || target.length < 3 * count) {
+      target = new float[3 * count];
+    }
+    for (int i = 0, j = 0; i < count; i++) {
+      target[j++] = x[i];
+      target[j++] = y[i];
+      target[j++] = z[i];
+    }
+    return target;
+  }
+
+
+  /**
+   * Sets the vectors from consecutive (x, y, z) values, keeping size().
+   */
+  public void setVertices(float[] source) {
+    int n = Math.min(count, source.length / 3);
+    for (int i = 0, j = 0; i < n; i++) {
+      x[i] = source[j++];
+      y[i] = source[j++];
+      z[i] = source[j++];
+    }
+  }
+
+
+  //////////////////////////////////////////////////////////////
+
+  // ARITHMETIC
+
+
+  /**
+   * Adds the same vector to all the vectors.
+   */
+  public PVectorArray add(float vx, float vy, float vz) {
+    for (int i = 0; i < count; i++) {
+      x[i] += vx;
+      y[i] += vy;
+      z[i] += vz;
+    }
+    return this;
+  }
+
+
+  public PVectorArray add(PVector v) {
+    return add(v.x, v.y, v.z);
+  }
+
+
+  /**
+   * Adds each vector of other to the vector with the same index.
+   */
+  public PVectorArray add(PVectorArray other) {
+    int n = Math.min(count, other.count);
+    float[] ox = other.x, oy = other.y, oz = other.z;
+    for (int i = 0; i < n; i++) {
+      x[i] += ox[i];
+      y[i] += oy[i];
+      z[i] += oz[i];
+    }
+    return this;
+  }
+
+
+  /**
+   * Adds each vector of other multiplied by n, the usual step of an
+   * integration like position.add(velocity, dt).
+   */
+  public PVectorArray add(PVectorArray other, float n) {
+    int c = Math.min(count, other.count);
+    float[] ox = other.x, oy = other.y, oz = other.z;
+    for (int i = 0; i < c; i++) {
+      x[i] += n * ox[i];
+      y[i] += n * oy[i];
+      z[i] += n * oz[i];
+    }
+    return this;
+  }
+
+
+  public PVectorArray sub(PVector v) {
+    return add(-v.x, -v.y, -v.z);
+  }
+
+
+  public PVectorArray sub(PVectorArray other) {
+    return add(other, -1);
+  }
+
+
+  /**
+   * Scales all the vectors by n.
+   */
+  public PVectorArray mult(float n) {
+    for (int i = 0; i < count; i++) {
+      x[i] *= n;
+      y[i] *= n;
+      z[i] *= n;
+    }
+    return this;
+  }
+
+
+  /**
+   * Scales each vector by the value with the same index.
+   */
+  public PVectorArray mult(float[] n) {
+    int c = Math.min(count, n.length);
+    for (int i = 0; i < c; i++) {
+      float s = n[i];
+      x[i] *= s;
+      y[i] *= s;
+      z[i] *= s;
+    }
+    return this;
+  }
+
+
+  /**
+   * Sets the length of all the vectors to 1, leaving zero vectors alone.
+   */
+  public PVectorArray normalize() {
+    for (int i = 0; i < count; i++) {
+      float m = x[i] * x[i] + y[i] * y[i] + z[i] * z[i];
+      if (m != 0 && m != 1) {
+        float s = 1 / (float) Math.sqrt(m);
+        x[i] *= s;
+        y[i] *= s;
+        z[i] *= s;
+      }
+    }
+    return this;
+  }
+
+
+  /**
+   * Shortens the vectors that are longer than max.
+   */
+  public PVectorArray limit(float max) {
+    float maxSq = max * max;
+    for (int i = 0; i < count; i++) {
+      float m = x[i] * x[i] + y[i] * y[i] + z[i] * z[i];
+      if (m > maxSq) {
+        float s = max / (float) Math.sqrt(m);
+        x[i] *= s;
+        y[i] *= s;
+        z[i] *= s;
+      }
+    }
+    return this;
+  }
+
+
+  /**
+   * Sets the length of all the non-zero vectors to len.
+   */
+  public PVectorArray setMag(float len) {
+    for (int i = 0; i < count; i++) {
+      float m = x[i] * x[i] + y[i] * y[i] + z[i] * z[i];
+      if (m != 0) {
+        float s = len / (float) Math.sqrt(m);
+        x[i] *= s;
+        y[i] *= s;
+        z[i] *= s;
+      }
+    }
+    return this;
+  }
+
+
+  /**
+   * Moves all the vectors towards v by the amount amt, between 0 and 1.
+   */
+  public PVectorArray lerp(PVector v, float amt) {
+    for (int i = 0; i < count; i++) {
+      x[i] += (v.x - x[i]) * amt;
+      y[i] += (v.y - y[i]) * amt;
+      z[i] += (v.z - z[i]) * amt;
+    }
+    return this;
+  }
+
+
+  /**
+   * Moves each vector towards the vector of other with the same index.
+   */
+  public PVectorArray lerp(PVectorArray other, float amt) {
+    int n = Math.min(count, other.count);
+    float[] ox = other.x, oy = other.y, oz = other.z;
+    for (int i = 0; i < n; i++) {
+      x[i] += (ox[i] - x[i]) * amt;
+      y[i] += (oy[i] - y[i]) * amt;
+      z[i] += (oz[i] - z[i]) * amt;
+    }
+    return this;
+  }
+
+
+  //////////////////////////////////////////////////////////////
+
+  // QUERIES
+
+
+  /**
+   * Lengths of all the vectors.
+   * @param target array for the lengths, or null to create a new one
+   */
+  public float[] mag(float[] target) {
+    if (target == null || target.length < count) {
+      target = new float[count];
+    }
+    for (int i = 0; i < count; i++) {
+      target[i] = (float) Math.sqrt(x[i] * x[i] + y[i] * y[i] + z[i] * z[i]);
+    }
+    return target;
+  }
+
+
+  /**
+   * Distances from all the vectors to v.
+   * @param target array for the distances, or null to create a new one
+   */
+  public float[] dist(PVector v, float[] target) {
+    if (target == null || target.length < count) {
+      target = new float[count];
+    }
+    for (int i = 0; i < count; i++) {
+      float dx = x[i] - v.x;
+      float dy = y[i] - v.y;
+      float dz = z[i] - v.z;
+      target[i] = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+    return target;
+  }
+
+
+  /**
+   * Index of the vector closest to (vx, vy, vz), or -1 if the array is
+   * empty.
+   */
+  public int nearest(float vx, float vy, float vz) {
+    int index = -1;
+    float min = Float.POSITIVE_INFINITY;
+    for (int i = 0; i < count; i++) {
+      float dx = x[i] - vx;
+      float dy = y[i] - vy;
+      float dz = z[i] - vz;
+      float d = dx * dx + dy * dy + dz * dz;
+      if (d < min) {
+        min = d;
+        index = i;
+      }
+    }
+    return index;
+  }
+
+
+  public int nearest(PVector v) {
+    return nearest(v.x, v.y, v.z);
+  }
+
+
+  /**
+   * Stores in indices the vectors that are at most radius away from
+   * (vx, vy, vz), and returns how many there are. Stops when indices is
+   * full.
+   */
+  public int within(float vx, float vy, float vz, float radius,
+                    int[] indices) {
+    float radiusSq = radius * radius;
+    int found = 0;
+    for (int i = 0; i < count && found < indices.length; i++) {
+      float dx = x[i] - vx;
+      float dy = y[i] - vy;
+      float dz = z[i] - vz;
+      if (dx * dx + dy * dy + dz * dz <= radiusSq) {
+        indices[found++] = i;
+      }
+    }
+    return found;
+  }
+
+
+  public int within(PVector v, float radius, int[] indices) {
+    return within(v.x, v.y, v.z, radius, indices);
+  }
+
+
+  //////////////////////////////////////////////////////////////
+
+  // PARALLEL LOOPS
+
+
+  /**
+   * Runs the task over the whole array, splitting it in ranges of at least
+   * PARALLEL_MIN vectors that are processed at the same time by different
+   * threads. The calling thread takes the first range, and the method
+   * returns when all of them are done. Each range must only touch its own
+   * vectors. When called from inside another parallel task, the whole array
+   * is processed by the calling thread.
+   */
+  public void parallelFor(final Task task) {
+    int threads = Runtime.getRuntime().availableProcessors();
+    int chunks = Math.min(threads, count / Math.max(1, PARALLEL_MIN));
+    if (chunks <= 1 || isParallelWorker()) {
+      task.run(this, 0, count);
+      return;
+    }
+
+    final CountDownLatch done = new CountDownLatch(chunks - 1);
+    final Throwable[] error = new Throwable[1];
+    ExecutorService executor = getParallelExecutor();
+    for (int c = 1; c < chunks; c++) {
+      final int start = (int) ((long) count * c / chunks);
+      final int end = (int) ((long) count * (c + 1) / chunks);
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            task.run(PVectorArray.this, start, end);
+          } catch (Throwable t) {
+            synchronized (error) {
+              if (error[0] == null) error[0] = t;
+            }
+          } finally {
+            done.countDown();
+          }
+        }
+      });
+    }
+    task.run(this, 0, count / chunks);
+
+    boolean interrupted = false;
+    while (true) {
+      try {
+        done.await();
+        break;
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) Thread.currentThread().interrupt();
+
+    synchronized (error) {
+      if (error[0] != null) {
+        throw new RuntimeException("Error in parallelFor()", error[0]);
+      }
+    }
+  }
+
+
+  static synchronized protected ExecutorService getParallelExecutor() {
+    if (parallelExecutor == null) {
+      int threads = Runtime.getRuntime().availableProcessors();
+      parallelExecutor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+          return new ParallelWorker(r);
+        }
+      });
+    }
+    return parallelExecutor;
+  }
+
+
+  /**
+   * True on the threads of the parallel pool. A task running there must not
+   * wait for other tasks in the pool, since all the workers could end up
+   * waiting and none would be left to run them.
+   */
+  static protected boolean isParallelWorker() {
+    return Thread.currentThread() instanceof ParallelWorker;
+  }
+
+
+  static protected class ParallelWorker extends Thread {
+    ParallelWorker(Runnable r) {
+      super(r, "PVectorArray worker");
+      setDaemon(true);
+    }
+  }
+}
@@ -52,6 +52,19 @@ public class Event {
   }
 
 
+  /**
+   * Sets the values of the event again, so the same object can be reused
+   * for another event instead of allocating a new one.
+   */
+  protected void set(Object nativeObject, long millis, int action,
+                     int modifiers) {
+    this.nativeObject = nativeObject;
+    this.millis = millis;
+    this.action = action;
+    this.modifiers = modifiers;
+  }
+
+
   public int getFlavor() {
     return flavor;
   }
@@ -54,6 +54,21 @@ public class KeyEvent extends Event {
   }
 
 
+  /**
+   * Reuses this object for a new event, the sketch recycles the events it
+   * receives once they have been handled.
+   */
+  public KeyEvent set(Object nativeObject,
+                      long millis, int action, int modifiers,
+                      char key, int keyCode, boolean isAutoRepeat) {
+    set(nativeObject, millis, action, modifiers);
+    this.key = key;
+    this.keyCode = keyCode;
+    this.isAutoRepeat = isAutoRepeat;
+    return this;
+  }
+
+
   public char getKey() {
     return key;
   }
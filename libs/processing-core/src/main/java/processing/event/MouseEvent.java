@@ -58,6 +58,22 @@ public class MouseEvent extends Event {
   }
 
 
+  /**
+   * Reuses this object for a new event, the sketch recycles the events it
+   * receives once they have been handled.
+   */
+  public MouseEvent set(Object nativeObject,
+                        long millis, int action, int modifiers,
+                        int x, int y, int button, int count) {
+    set(nativeObject, millis, action, modifiers);
+    this.x = x;
+    this.y = y;
+    this.button = button;
+    this.count = count;
+    return this;
+  }
+
+
   public int getX() {
     return x;
   }
@@ -50,13 +50,28 @@ public class TouchEvent extends Event {
     this.button = button;
   }
 
+  /**
+   * Reuses this object for a new event, the sketch recycles the events it
+   * receives once they have been handled. The pointers are set afterwards
+   * with setNumPointers() and setPointer().
+   */
+  public TouchEvent set(Object nativeObject, long millis, int action,
+                        int modifiers, int button) {
+    set(nativeObject, millis, action, modifiers);
+    this.button = button;
+    return this;
+  }
+
   public void setNumPointers(int n) {
     numPointers = n;
-    pointerId = new int[n];
-    pointerX = new float[n];
-    pointerY = new float[n];
-    pointerArea = new float[n];
-    pointerPressure = new float[n];
+    // The arrays are kept when the event is reused with fewer pointers
+    if (pointerId == null || pointerId.length < n) {
+      pointerId = new int[n];
+      pointerX = new float[n];
+      pointerY = new float[n];
+      pointerArea = new float[n];
+      pointerPressure = new float[n];
+    }
  }
 
 
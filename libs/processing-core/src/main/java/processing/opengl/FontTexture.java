@@ -30,8 +30,6 @@ import processing.core.PFont;
 import processing.core.PGraphics;
 import processing.core.PImage;
 
-import java.util.HashMap;
-
 /**
  * All the infrastructure needed for optimized font rendering
  * in OpenGL. Basically, this special class is needed because
@@ -45,12 +43,23 @@ import java.util.HashMap;
  * in the case that the font size is very large, one single
  * OpenGL texture might not be enough to store all the glyphs,
  * so PFontTexture also takes care of spreading a single font
- * over several textures.
+ * over several textures. The number of textures per font is
+ * bounded by PGL.MAX_FONT_TEX_COUNT, when all of them are full the
+ * least recently used one is cleared and its glyphs are added again
+ * the next time they are drawn. This keeps the memory used by fonts
+ * with very large character sets (i.e.: CJK) under control.
+ * In SDF mode, the textures store the signed distance to the outline
+ * of each glyph instead of its coverage, so the same texture can be
+ * used to render crisp text at any size.
  * @author Andres Colubri
  */
 class FontTexture implements PConstants {
   protected PGL pgl;
   protected boolean is3D;
+  protected boolean sdf;
+
+  // Width of the empty border around each glyph in the textures.
+  protected int border;
 
   protected int minSize;
   protected int maxSize;
@@ -60,12 +69,25 @@ class FontTexture implements PConstants {
   protected Texture[] textures = null;
   protected PImage[] images = null;
   protected int lastTex;
+  protected int maxTextures;
   protected TextureInfo[] glyphTexinfos;
-  protected HashMap<PFont.Glyph, TextureInfo> texinfoMap;
+
+  // Clock used to find the least recently used texture, it advances every
+  // time a line of text is rendered.
+  protected int useClock;
+  protected int[] lastUse;
 
   public FontTexture(PGraphicsOpenGL pg, PFont font, boolean is3D) {
+    this(pg, font, is3D, false);
+  }
+
+
+  public FontTexture(PGraphicsOpenGL pg, PFont font, boolean is3D,
+                     boolean sdf) {
     pgl = pg.pgl;
     this.is3D = is3D;
+    this.sdf = sdf;
+    border = sdf ? PApplet.max(1, PGL.FONT_SDF_SPREAD) : 1;
 
     initTexture(pg, font);
   }
@@ -93,6 +115,8 @@ class FontTexture implements PConstants {
     maxSize = PApplet.min(PGraphicsOpenGL.maxTextureSize,
                           PApplet.max(PGL.MAX_FONT_TEX_SIZE, 2 * spow));
 
+    maxTextures = PApplet.max(1, PGL.MAX_FONT_TEX_COUNT);
+
     if (maxSize < spow) {
       PGraphics.showWarning("The font size is too large to be properly " +
                             "displayed with OpenGL");
@@ -104,7 +128,6 @@ class FontTexture implements PConstants {
     offsetY = 0;
     lineHeight = 0;
 
-    texinfoMap = new HashMap<PFont.Glyph, TextureInfo>();
     glyphTexinfos = new TextureInfo[font.getGlyphCount()];
     addAllGlyphsToTexture(pg, font);
   }
@@ -126,9 +149,10 @@ class FontTexture implements PConstants {
     }
 
     Texture tex;
-    if (is3D) {
+    if (is3D || sdf) {
       // Bilinear sampling ensures that the texture doesn't look pixelated
-      // either when it is magnified or minified...
+      // either when it is magnified or minified (distance fields always
+      // need to be interpolated)...
       tex = new Texture(pg, w, h,
                         new Texture.Parameters(ARGB, Texture.BILINEAR, false));
     } else {
@@ -145,6 +169,7 @@ class FontTexture implements PConstants {
       textures[0] = tex;
       images = new PImage[1];
       images[0] = pg.wrapTexture(tex);
+      lastUse = new int[1];
       lastTex = 0;
     } else if (resize) {
       // Replacing old smaller texture with larger one.
@@ -169,7 +194,10 @@ class FontTexture implements PConstants {
       PApplet.arrayCopy(images, tempImg, images.length);
       tempImg[lastTex] = pg.wrapTexture(tex);
       images = tempImg;
+
+      lastUse = PApplet.expand(lastUse, textures.length);
     }
+    lastUse[lastTex] = useClock;
 
     // Make sure that the current texture is bound.
     tex.bind();
@@ -179,6 +207,7 @@ class FontTexture implements PConstants {
 
 
   public void begin() {
+    useClock++;
   }
 
 
@@ -196,8 +225,9 @@ class FontTexture implements PConstants {
 
   // Add all the current glyphs to opengl texture.
   public void addAllGlyphsToTexture(PGraphicsOpenGL pg, PFont font) {
-    // loop over current glyphs.
-    for (int i = 0; i < font.getGlyphCount(); i++) {
+    // loop over current glyphs, up to the capacity of the textures.
+    int count = PApplet.min(font.getGlyphCount(), glyphCapacity(font));
+    for (int i = 0; i < count; i++) {
       addToTexture(pg, i, font.getGlyph(i));
     }
   }
@@ -215,18 +245,28 @@ class FontTexture implements PConstants {
 
 
   public TextureInfo getTexInfo(PFont.Glyph glyph) {
-    TextureInfo info = texinfoMap.get(glyph);
-    return info;
+    // The index of a glyph in its font doesn't change once it is created,
+    // so it can be used to look up the texture info directly.
+    if (glyph.index < glyphTexinfos.length) {
+      TextureInfo info = glyphTexinfos[glyph.index];
+      if (info != null) lastUse[info.texIndex] = useClock;
+      return info;
+    }
+    return null;
   }
 
 
   public TextureInfo addToTexture(PGraphicsOpenGL pg, PFont.Glyph glyph) {
-    int n = glyphTexinfos.length;
-    if (n == 0) {
-      glyphTexinfos = new TextureInfo[1];
-    }
-    addToTexture(pg, n, glyph);
-    return glyphTexinfos[n];
+    addToTexture(pg, glyph.index, glyph);
+    return glyphTexinfos[glyph.index];
+  }
+
+
+  // Rough estimate of the number of glyphs that fit in all the textures,
+  // so that creating a font texture doesn't cycle through the textures.
+  protected int glyphCapacity(PFont font) {
+    int cell = PApplet.max(1, font.getSize() + 2 * border);
+    return maxTextures * (maxSize / cell) * (maxSize / cell);
   }
 
 
@@ -262,12 +302,63 @@ class FontTexture implements PConstants {
     // If the later contains a portion of the neighbor glyph and the former
     // doesn't, this would result in a shaded pixel when the correct output is
     // blank. This is a consequence of putting all the glyphs in a common
-    // texture with bilinear sampling.
-    int w = 1 + glyph.width + 1;
-    int h = 1 + glyph.height + 1;
+    // texture with bilinear sampling. Distance fields need a wider border to
+    // store the distance to the glyph outline.
+    int w = border + glyph.width + border;
+    int h = border + glyph.height + border;
+
+    int[] rgba = sdf ? getDistanceField(glyph, w, h) : getPixels(glyph, w, h);
+
+    // Is there room for this glyph in the current line?
+    if (offsetX + w > textures[lastTex].glWidth) {
+      // No room, go to the next line:
+      offsetX = 0;
+      offsetY += lineHeight;
+    }
+    lineHeight = Math.max(lineHeight, h);
 
-    // Converting the pixels array from the PImage into a valid RGBA array for
-    // OpenGL.
+    boolean resized = false;
+    if (offsetY + lineHeight > textures[lastTex].glHeight) {
+      if (maxSize <= textures[lastTex].glHeight &&
+          maxTextures <= textures.length) {
+        // We run out of space and cannot add more textures, so the least
+        // recently used one is cleared and reused for the new glyphs.
+        recycleTexture(pg);
+        lineHeight = h;
+      } else {
+        // We run out of space in the current texture, so we add a new texture:
+        resized = addTexture(pg);
+        if (resized) {
+          // Because the current texture has been resized, we need to
+          // update the UV coordinates of all the glyphs associated to it:
+          updateGlyphsTexCoords();
+        } else {
+          // A new texture has been created. Reseting texture coordinates
+          // and line.
+          offsetX = 0;
+          offsetY = 0;
+          lineHeight = 0;
+        }
+      }
+    }
+
+    TextureInfo tinfo = new TextureInfo(lastTex, offsetX, offsetY, w, h, rgba);
+    offsetX += w;
+
+    if (idx >= glyphTexinfos.length) {
+      TextureInfo[] temp = new TextureInfo[PApplet.max(idx + 1,
+                                                      2 * glyphTexinfos.length)];
+      System.arraycopy(glyphTexinfos, 0, temp, 0, glyphTexinfos.length);
+      glyphTexinfos = temp;
+    }
+
+    glyphTexinfos[idx] = tinfo;
+  }
+
+
+  // Converting the pixels array from the PImage into a valid RGBA array for
+  // OpenGL.
+  protected int[] getPixels(PFont.Glyph glyph, int w, int h) {
     int[] rgba = new int[w * h];
     int t = 0;
     int p = 0;
@@ -294,43 +385,131 @@ class FontTexture implements PConstants {
       }
       java.util.Arrays.fill(rgba, (h - 1) * w, h * w, 0x00FFFFFF); // Set the last row to blank pixels.
     }
+    return rgba;
+  }
 
-    // Is there room for this glyph in the current line?
-    if (offsetX + w > textures[lastTex].glWidth) {
-      // No room, go to the next line:
-      offsetX = 0;
-      offsetY += lineHeight;
+
+  // Computes the signed distance field of the glyph, using the coverage of
+  // the edge pixels to estimate the sub-pixel position of the outline (same
+  // approach as in Mapbox's TinySDF). The distance is stored in the alpha
+  // channel, with 0.5 on the outline and increasing towards the inside.
+  protected int[] getDistanceField(PFont.Glyph glyph, int w, int h) {
+    float[] outer = new float[w * h];
+    float[] inner = new float[w * h];
+    java.util.Arrays.fill(outer, INF);
+
+    int[] pixels = glyph.image.pixels;
+    for (int y = 0; y < glyph.height; y++) {
+      for (int x = 0; x < glyph.width; x++) {
+        float a = (pixels[y * glyph.width + x] & 0xFF) / 255f;
+        int i = (y + border) * w + x + border;
+        if (a == 1) {
+          outer[i] = 0;
+          inner[i] = INF;
+        } else if (0 < a) {
+          float d = 0.5f - a;
+          outer[i] = 0 < d ? d * d : 0;
+          inner[i] = d < 0 ? d * d : 0;
+        }
+      }
     }
-    lineHeight = Math.max(lineHeight, h);
 
-    boolean resized = false;
-    if (offsetY + lineHeight > textures[lastTex].glHeight) {
-      // We run out of space in the current texture, so we add a new texture:
-      resized = addTexture(pg);
-      if (resized) {
-        // Because the current texture has been resized, we need to
-        // update the UV coordinates of all the glyphs associated to it:
-        updateGlyphsTexCoords();
-      } else {
-        // A new texture has been created. Reseting texture coordinates
-        // and line.
-        offsetX = 0;
-        offsetY = 0;
-        lineHeight = 0;
+    int n = PApplet.max(w, h);
+    float[] f = new float[n];
+    float[] d = new float[n];
+    float[] z = new float[n + 1];
+    int[] v = new int[n];
+    distanceTransform(outer, w, h, f, d, z, v);
+    distanceTransform(inner, w, h, f, d, z, v);
+
+    int[] rgba = new int[w * h];
+    float scale = 0.5f / border;
+    for (int i = 0; i < rgba.length; i++) {
+      float dist = (float)Math.sqrt(outer[i]) - (float)Math.sqrt(inner[i]);
+      int a = PApplet.constrain(PApplet.round(255 * (0.5f - dist * scale)),
+                                0, 255);
+      rgba[i] = PGL.BIG_ENDIAN ? 0xFFFFFF00 | a : (a << 24) | 0x00FFFFFF;
+    }
+    return rgba;
+  }
+
+
+  static protected final float INF = 1e20f;
+
+
+  // Squared Euclidean distance transform of a 2D grid, computed separately
+  // along columns and rows.
+  static protected void distanceTransform(float[] grid, int w, int h,
+                                          float[] f, float[] d, float[] z,
+                                          int[] v) {
+    for (int x = 0; x < w; x++) {
+      for (int y = 0; y < h; y++) f[y] = grid[y * w + x];
+      distanceTransform(f, d, z, v, h);
+      for (int y = 0; y < h; y++) grid[y * w + x] = d[y];
+    }
+    for (int y = 0; y < h; y++) {
+      System.arraycopy(grid, y * w, f, 0, w);
+      distanceTransform(f, d, z, v, w);
+      System.arraycopy(d, 0, grid, y * w, w);
+    }
+  }
+
+
+  // 1D squared distance transform, from "Distance Transforms of Sampled
+  // Functions" by Felzenszwalb and Huttenlocher.
+  static protected void distanceTransform(float[] f, float[] d, float[] z,
+                                          int[] v, int n) {
+    int k = 0;
+    v[0] = 0;
+    z[0] = -INF;
+    z[1] = +INF;
+    for (int q = 1; q < n; q++) {
+      float s;
+      while (true) {
+        int r = v[k];
+        s = ((f[q] + q * q) - (f[r] + r * r)) / (2 * q - 2 * r);
+        if (s <= z[k] && 0 < k) {
+          k--;
+        } else {
+          break;
+        }
       }
+      k++;
+      v[k] = q;
+      z[k] = s;
+      z[k + 1] = +INF;
     }
+    k = 0;
+    for (int q = 0; q < n; q++) {
+      while (z[k + 1] < q) k++;
+      int r = v[k];
+      d[q] = (q - r) * (q - r) + f[r];
+    }
+  }
 
-    TextureInfo tinfo = new TextureInfo(lastTex, offsetX, offsetY, w, h, rgba);
-    offsetX += w;
 
-    if (idx == glyphTexinfos.length) {
-      TextureInfo[] temp = new TextureInfo[glyphTexinfos.length + 1];
-      System.arraycopy(glyphTexinfos, 0, temp, 0, glyphTexinfos.length);
-      glyphTexinfos = temp;
+  // Clears the least recently used texture and makes it the current one,
+  // the glyphs it contained will be added again when they are needed.
+  protected void recycleTexture(PGraphicsOpenGL pg) {
+    int lru = 0;
+    for (int i = 1; i < textures.length; i++) {
+      if (lastUse[i] - lastUse[lru] < 0) lru = i;
     }
 
-    glyphTexinfos[idx] = tinfo;
-    texinfoMap.put(glyph, tinfo);
+    // Geometry already batched could be referring to glyphs in the texture.
+    pg.flush();
+
+    for (int i = 0; i < glyphTexinfos.length; i++) {
+      TextureInfo tinfo = glyphTexinfos[i];
+      if (tinfo != null && tinfo.texIndex == lru) {
+        glyphTexinfos[i] = null;
+      }
+    }
+
+    lastTex = lru;
+    lastUse[lastTex] = useClock;
+    offsetX = 0;
+    offsetY = 0;
   }
 
 
@@ -348,15 +527,19 @@ class FontTexture implements PConstants {
       texIndex = tidx;
       crop = new int[4];
       // The region of the texture corresponding to the glyph is surrounded by a
-      // 1-pixel wide border to avoid artifacts due to bilinear sampling. This
-      // is why the additions and subtractions to the crop values.
-      crop[0] = cropX + 1;
-      crop[1] = cropY + 1 + cropH - 2;
-      crop[2] = cropW - 2;
-      crop[3] = -cropH + 2;
+      // border (1-pixel wide for regular glyphs) to avoid artifacts due to
+      // bilinear sampling. This is why the additions and subtractions to the
+      // crop values.
+      crop[0] = cropX + border;
+      crop[1] = cropY + border + cropH - 2 * border;
+      crop[2] = cropW - 2 * border;
+      crop[3] = -cropH + 2 * border;
       pixels = pix;
       updateUV();
       updateTex();
+      // Once uploaded, the pixels are no longer needed since resized
+      // textures copy the contents of the old ones.
+      pixels = null;
     }
 
 
@@ -372,8 +555,9 @@ class FontTexture implements PConstants {
 
 
     void updateTex() {
-      textures[texIndex].setNative(pixels, crop[0] - 1, crop[1] + crop[3] - 1,
-                                           crop[2] + 2, -crop[3] + 2);
+      textures[texIndex].setNative(pixels, crop[0] - border,
+                                   crop[1] + crop[3] - border,
+                                   crop[2] + 2 * border, -crop[3] + 2 * border);
     }
   }
 }
@@ -33,6 +33,11 @@ import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
 import java.nio.ShortBuffer;
 import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.regex.Pattern;
 
 import processing.core.PApplet;
@@ -77,6 +82,25 @@ public abstract class PGL {
   protected static boolean USE_DIRECT_BUFFERS = true;
   protected static int MIN_DIRECT_BUFFER_SIZE = 1;
 
+  /**
+   * Images with at least this many pixels are converted to and from the
+   * native format by several threads, each one working on a band of rows.
+   */
+  protected static int MIN_PARALLEL_CONVERSION_SIZE = 256 * 256;
+
+  /**
+   * Maximum number of separate regions uploaded when updating the modified
+   * pixels of an image, above which their bounding rectangle is uploaded.
+   */
+  protected static int MAX_UPDATE_REGIONS = 16;
+
+  /**
+   * Milliseconds spent at the start of each frame uploading the images
+   * loaded with requestImage(), and number of pixels uploaded at a time.
+   */
+  protected static int TEXTURE_UPLOAD_MILLIS = 2;
+  protected static int TEXTURE_UPLOAD_CHUNK = 256 * 256;
+
   /** Enables/disables mipmap use. */
   protected static boolean MIPMAPS_ENABLED = true;
 
@@ -110,6 +134,15 @@ public abstract class PGL {
   protected static int MIN_FONT_TEX_SIZE = 256;
   protected static int MAX_FONT_TEX_SIZE = 1024;
 
+  /** Maximum number of textures used to hold the glyphs of a single font.
+   * Once this budget is reached, the least recently used texture is recycled
+   * to make room for new glyphs. */
+  protected static int MAX_FONT_TEX_COUNT = 4;
+
+  /** Distance in pixels covered by the signed distance field around each
+   * glyph in textMode(SDF). */
+  protected static int FONT_SDF_SPREAD = 4;
+
   /** Minimum stroke weight needed to apply the full path stroking
    * algorithm that properly generates caps and joins.
    */
@@ -136,6 +169,34 @@ public abstract class PGL {
 
   // ........................................................
 
+  // Parameters for OpenGL ES devices
+
+  /**
+   * Sets the parameters above to the values used on OpenGL ES devices. Both
+   * PGLES and PGLHeadless call it, so the renderer runs the same way on both.
+   */
+  protected static void setGLESParameters() {
+    SINGLE_BUFFERED = true;
+
+    MIN_DIRECT_BUFFER_SIZE = 1;
+    INDEX_TYPE             = 0x1403; // GL_UNSIGNED_SHORT
+
+    MIPMAPS_ENABLED        = false;
+
+    DEFAULT_IN_VERTICES   = 16;
+    DEFAULT_IN_EDGES      = 32;
+    DEFAULT_IN_TEXTURES   = 16;
+    DEFAULT_TESS_VERTICES = 16;
+    DEFAULT_TESS_INDICES  = 32;
+
+    MIN_FONT_TEX_SIZE = 128;
+    MAX_FONT_TEX_SIZE = 512;
+
+    MAX_CAPS_JOINS_LENGTH = 1000;
+  }
+
+  // ........................................................
+
   // FBO layer
 
   protected boolean fboLayerEnabled = false;
@@ -349,6 +410,15 @@ public abstract class PGL {
   protected static boolean BIG_ENDIAN =
     ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN;
 
+  // Pixel conversions between the Java and native formats
+  protected static final int NATIVE_TO_JAVA_ARGB  = 0;
+  protected static final int NATIVE_TO_JAVA_RGB   = 1;
+  protected static final int JAVA_TO_NATIVE_ARGB  = 2;
+  protected static final int JAVA_TO_NATIVE_RGB   = 3;
+  protected static final int JAVA_TO_NATIVE_ALPHA = 4;
+
+  static protected ExecutorService conversionExecutor;
+
   // ........................................................
 
   // Present mode
@@ -1636,40 +1706,8 @@ public abstract class PGL {
    * flipped vertically.
    */
   protected static void nativeToJavaARGB(int[] pixels, int width, int height) {
-    int index = 0;
-    int yindex = (height - 1) * width;
-    for (int y = 0; y < height / 2; y++) {
-      for (int x = 0; x < width; x++) {
-        int pixy = pixels[yindex];
-        int pixi = pixels[index];
-        if (BIG_ENDIAN) { // RGBA to ARGB
-          pixels[index] = (pixy >>> 8) | (pixy << 24);
-          pixels[yindex] = (pixi >>> 8) | (pixi << 24);
-        } else { // ABGR to ARGB
-          int rbi = pixi & 0x00FF00FF;
-          int rby = pixy & 0x00FF00FF;
-          pixels[index] = (pixy & 0xFF00FF00) | (rby << 16) | (rby >> 16);
-          pixels[yindex] = (pixi & 0xFF00FF00) | (rbi << 16) | (rbi >> 16);
-        }
-        index++;
-        yindex++;
-      }
-      yindex -= width * 2;
-    }
-
-    if ((height % 2) == 1) { // Converts center row
-      index = (height / 2) * width;
-      for (int x = 0; x < width; x++) {
-        int pixi = pixels[index];
-        if (BIG_ENDIAN) { // RGBA to ARGB
-          pixels[index] = (pixi >>> 8) | (pixi << 24);
-        } else { // ABGR to ARGB
-          int rbi = pixi & 0x00FF00FF;
-          pixels[index] = (pixi & 0xFF00FF00) | (rbi << 16) | (rbi >> 16);
-        }
-        index++;
-      }
-    }
+    convertPixels(pixels, pixels, width, height, NATIVE_TO_JAVA_ARGB,
+                  false, true);
   }
 
 
@@ -1697,43 +1735,8 @@ public abstract class PGL {
    * vertically.
    */
   protected static void nativeToJavaRGB(int[] pixels, int width, int height) {
-    int index = 0;
-    int yindex = (height - 1) * width;
-    for (int y = 0; y < height / 2; y++) {
-      for (int x = 0; x < width; x++) {
-        int pixy = pixels[yindex];
-        int pixi = pixels[index];
-        if (BIG_ENDIAN) { // RGBA to ARGB
-          pixels[index] = (pixy >>> 8) | 0xFF000000;
-          pixels[yindex] = (pixi >>> 8) | 0xFF000000;
-        } else { // ABGR to ARGB
-          int rbi = pixi & 0x00FF00FF;
-          int rby = pixy & 0x00FF00FF;
-          pixels[index] = 0xFF000000 | (rby << 16) |
-                          (pixy & 0x0000FF00) | (rby >> 16);
-          pixels[yindex] = 0xFF000000 | (rbi << 16) |
-                           (pixi & 0x0000FF00) | (rbi >> 16);
-        }
-        index++;
-        yindex++;
-      }
-      yindex -= width * 2;
-    }
-
-    if ((height % 2) == 1) { // Converts center row
-      index = (height / 2) * width;
-      for (int x = 0; x < width; x++) {
-        int pixi = pixels[index];
-        if (BIG_ENDIAN) { // RGBA to ARGB
-          pixels[index] = (pixi >>> 8) | 0xFF000000;
-        } else { // ABGR to ARGB
-          int rbi = pixi & 0x00FF00FF;
-          pixels[index] = 0xFF000000 | (rbi << 16) |
-                          (pixi & 0x000FF00) | (rbi >> 16);
-        }
-        index++;
-      }
-    }
+    convertPixels(pixels, pixels, width, height, NATIVE_TO_JAVA_RGB,
+                  false, true);
   }
 
 
@@ -1758,40 +1761,8 @@ public abstract class PGL {
    * image is flipped vertically.
    */
   protected static void javaToNativeARGB(int[] pixels, int width, int height) {
-    int index = 0;
-    int yindex = (height - 1) * width;
-    for (int y = 0; y < height / 2; y++) {
-      for (int x = 0; x < width; x++) {
-        int pixy = pixels[yindex];
-        int pixi = pixels[index];
-        if (BIG_ENDIAN) { // ARGB to RGBA
-          pixels[index] = (pixy >>> 24) | (pixy << 8);
-          pixels[yindex] = (pixi >>> 24) | (pixi << 8);
-        } else { // ARGB to ABGR
-          int rbi = pixi & 0x00FF00FF;
-          int rby = pixy & 0x00FF00FF;
-          pixels[index] = (pixy & 0xFF00FF00) | (rby << 16) | (rby >> 16);
-          pixels[yindex] = (pixi & 0xFF00FF00) | (rbi << 16) | (rbi >> 16);
-        }
-        index++;
-        yindex++;
-      }
-      yindex -= width * 2;
-    }
-
-    if ((height % 2) == 1) { // Converts center row
-      index = (height / 2) * width;
-      for (int x = 0; x < width; x++) {
-        int pixi = pixels[index];
-        if (BIG_ENDIAN) { // ARGB to RGBA
-          pixels[index] = (pixi >>> 24) | (pixi << 8);
-        } else { // ARGB to ABGR
-          int rbi = pixi & 0x00FF00FF;
-          pixels[index] = (pixi & 0xFF00FF00) | (rbi << 16) | (rbi >> 16);
-        }
-        index++;
-      }
-    }
+    convertPixels(pixels, pixels, width, height, JAVA_TO_NATIVE_ARGB,
+                  false, true);
   }
 
 
@@ -1817,46 +1788,241 @@ public abstract class PGL {
    * flipped vertically.
    */
   protected static void javaToNativeRGB(int[] pixels, int width, int height) {
-    int index = 0;
-    int yindex = (height - 1) * width;
-    for (int y = 0; y < height / 2; y++) {
-      for (int x = 0; x < width; x++) {
-        int pixy = pixels[yindex];
-        int pixi = pixels[index];
-        if (BIG_ENDIAN) { // ARGB to RGB
-          pixels[index] = 0xFF | (pixy << 8);
-          pixels[yindex] = 0xFF | (pixi << 8);
-        } else { // ARGB to BGR
-          int rbi = pixi & 0x00FF00FF;
-          int rby = pixy & 0x00FF00FF;
-          pixels[index] = 0xFF000000 | (rby << 16) |
-                          (pixy & 0x0000FF00) | (rby >> 16);
-          pixels[yindex] = 0xFF000000 | (rbi << 16) |
-                           (pixi & 0x0000FF00) | (rbi >> 16);
+    convertPixels(pixels, pixels, width, height, JAVA_TO_NATIVE_RGB,
+                  false, true);
+  }
+
+
+  /**
+   * Converts input Java alpha value (stored in the lowest byte) to native
+   * OpenGL format, with the RGB components set to white.
+   */
+  protected static int javaToNativeAlpha(int alpha) {
+    if (BIG_ENDIAN) { // xxxA to RGBA
+      return 0xFFFFFF00 | alpha;
+    } else { // xxxA to ABGR
+      return (alpha << 24) | 0x00FFFFFF;
+    }
+  }
+
+
+  protected static int convertPixel(int color, int conversion) {
+    switch (conversion) {
+    case NATIVE_TO_JAVA_ARGB: return nativeToJavaARGB(color);
+    case NATIVE_TO_JAVA_RGB:  return nativeToJavaRGB(color);
+    case JAVA_TO_NATIVE_ARGB: return javaToNativeARGB(color);
+    case JAVA_TO_NATIVE_RGB:  return javaToNativeRGB(color);
+    case JAVA_TO_NATIVE_ALPHA: return javaToNativeAlpha(color);
+    default: return color;
+    }
+  }
+
+
+  /**
+   * Converts the src array, representing an image of width x height
+   * resolution, with the given conversion and writes the result into dst,
+   * flipping the image horizontally and/or vertically in the same pass. The
+   * src and dst arrays can be the same, in which case the conversion is done
+   * in place. Large images are split into bands of rows that are converted
+   * concurrently.
+   */
+  protected static void convertPixels(final int[] src, final int[] dst,
+                                      final int width, final int height,
+                                      final int conversion,
+                                      final boolean flipX,
+                                      final boolean flipY) {
+    if (src == dst) {
+      // Each band swaps pairs of rows (y, height - 1 - y), so the vertical
+      // flip never reads a row that another band already wrote.
+      int rows = flipY ? (height + 1) / 2 : height;
+      convertBands(rows, width * height, new ConversionBand() {
+        @Override
+        public void convert(int y0, int y1) {
+          for (int y = y0; y < y1; y++) {
+            int other = flipY ? height - 1 - y : y;
+            convertRowPair(dst, y * width, other * width, width, conversion,
+                           flipX);
+          }
+        }
+      });
+    } else {
+      convertPixels(src, 0, width, dst, width, height, conversion,
+                    flipX, flipY);
+    }
+  }
+
+
+  /**
+   * Same as above, but the width x height image is read from src starting at
+   * srcOffset, with rows that are srcStride elements apart. This allows to
+   * convert a region of a larger image without copying it first. src and dst
+   * cannot be the same array.
+   */
+  protected static void convertPixels(final int[] src, final int srcOffset,
+                                      final int srcStride, final int[] dst,
+                                      final int width, final int height,
+                                      final int conversion,
+                                      final boolean flipX,
+                                      final boolean flipY) {
+    convertBands(height, width * height, new ConversionBand() {
+      @Override
+      public void convert(int y0, int y1) {
+        for (int y = y0; y < y1; y++) {
+          int sy = flipY ? height - 1 - y : y;
+          convertRow(src, srcOffset + sy * srcStride, dst, y * width, width,
+                     conversion, flipX);
         }
-        index++;
-        yindex++;
       }
-      yindex -= width * 2;
-    }
-
-    if ((height % 2) == 1) { // Converts center row
-      index = (height / 2) * width;
-      for (int x = 0; x < width; x++) {
-        int pixi = pixels[index];
-        if (BIG_ENDIAN) { // ARGB to RGB
-          pixels[index] = 0xFF | (pixi << 8);
-        } else { // ARGB to BGR
-          int rbi = pixi & 0x00FF00FF;
-          pixels[index] = 0xFF000000 | (rbi << 16) |
-                          (pixi & 0x0000FF00) | (rbi >> 16);
+    });
+  }
+
+
+  /**
+   * Same as above, but the result is written directly into the buffer dst,
+   * which must have a capacity of at least width * height. The position of
+   * the buffer is set to zero when the conversion is done.
+   */
+  protected static void convertPixels(final int[] src, final IntBuffer dst,
+                                      final int width, final int height,
+                                      final int conversion,
+                                      final boolean flipX,
+                                      final boolean flipY) {
+    convertPixels(src, 0, width, dst, width, height, conversion, flipX, flipY);
+  }
+
+
+  protected static void convertPixels(final int[] src, final int srcOffset,
+                                      final int srcStride, final IntBuffer dst,
+                                      final int width, final int height,
+                                      final int conversion,
+                                      final boolean flipX,
+                                      final boolean flipY) {
+    convertBands(height, width * height, new ConversionBand() {
+      @Override
+      public void convert(int y0, int y1) {
+        // Each band writes through its own view of the buffer, and converts
+        // the rows in a scratch array first so they can be put in bulk.
+        IntBuffer buf = dst.duplicate();
+        int[] row = new int[width];
+        buf.position(y0 * width);
+        for (int y = y0; y < y1; y++) {
+          int sy = flipY ? height - 1 - y : y;
+          convertRow(src, srcOffset + sy * srcStride, row, 0, width,
+                     conversion, flipX);
+          buf.put(row);
+        }
+      }
+    });
+    dst.rewind();
+  }
+
+
+  protected static void convertRow(int[] src, int srcOffset,
+                                   int[] dst, int dstOffset, int width,
+                                   int conversion, boolean flipX) {
+    int d = flipX ? dstOffset + width - 1 : dstOffset;
+    int step = flipX ? -1 : 1;
+    for (int i = srcOffset; i < srcOffset + width; i++) {
+      dst[d] = convertPixel(src[i], conversion);
+      d += step;
+    }
+  }
+
+
+  // Converts in place the rows starting at offsets a and b, exchanging their
+  // contents unless they are the same row.
+  protected static void convertRowPair(int[] pixels, int a, int b, int width,
+                                       int conversion, boolean flipX) {
+    if (a != b) {
+      for (int i = 0; i < width; i++) {
+        int j = flipX ? b + width - 1 - i : b + i;
+        int pixa = pixels[a + i];
+        pixels[a + i] = convertPixel(pixels[j], conversion);
+        pixels[j] = convertPixel(pixa, conversion);
+      }
+    } else if (flipX) {
+      int i = a;
+      int j = a + width - 1;
+      while (i < j) {
+        int pixi = pixels[i];
+        pixels[i++] = convertPixel(pixels[j], conversion);
+        pixels[j--] = convertPixel(pixi, conversion);
+      }
+      if (i == j) pixels[i] = convertPixel(pixels[i], conversion);
+    } else {
+      for (int i = a; i < a + width; i++) {
+        pixels[i] = convertPixel(pixels[i], conversion);
+      }
+    }
+  }
+
+
+  /**
+   * Runs the conversion over the given number of rows, splitting them into
+   * one band per available processor when the image has at least
+   * MIN_PARALLEL_CONVERSION_SIZE pixels. The calling thread converts the last
+   * band and waits for the others to finish.
+   */
+  protected static void convertBands(int rows, int size,
+                                     final ConversionBand band) {
+    int count = PApplet.min(rows, Runtime.getRuntime().availableProcessors());
+    if (size < MIN_PARALLEL_CONVERSION_SIZE || count < 2) {
+      band.convert(0, rows);
+      return;
+    }
+
+    ExecutorService executor = getConversionExecutor();
+    Future<?>[] tasks = new Future<?>[count - 1];
+    for (int i = 0; i < count - 1; i++) {
+      final int y0 = i * rows / count;
+      final int y1 = (i + 1) * rows / count;
+      tasks[i] = executor.submit(new Runnable() {
+        @Override
+        public void run() {
+          band.convert(y0, y1);
+        }
+      });
+    }
+    band.convert((count - 1) * rows / count, rows);
+
+    for (Future<?> task : tasks) {
+      try {
+        task.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeException(e);
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof RuntimeException) {
+          throw (RuntimeException) e.getCause();
         }
-        index++;
+        throw new RuntimeException(e.getCause());
       }
     }
   }
 
 
+  static synchronized protected ExecutorService getConversionExecutor() {
+    if (conversionExecutor == null) {
+      int threads = Runtime.getRuntime().availableProcessors();
+      conversionExecutor = Executors.newFixedThreadPool(threads,
+                                                        new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+          Thread thread = new Thread(r, "PGL pixel conversion");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+    return conversionExecutor;
+  }
+
+
+  protected interface ConversionBand {
+    void convert(int y0, int y1);
+  }
+
+
   protected static int qualityToSamples(int quality) {
     if (quality <= 1) {
       return 1;
@@ -2252,6 +2418,15 @@ public abstract class PGL {
   }
 
 
+  protected boolean hasUniformBuffers() {
+    int[] version = getGLVersion();
+    if (isES()) {
+      return version[0] >= 3;
+    }
+    return (version[0] > 3) || (version[0] == 3 && version[1] >= 1);
+  }
+
+
   protected boolean hasReadBuffer() {
     int[] version = getGLVersion();
     if (isES()) {
@@ -2826,6 +3001,7 @@ public abstract class PGL {
   public static int ARRAY_BUFFER;
   public static int ELEMENT_ARRAY_BUFFER;
   public static int PIXEL_PACK_BUFFER;
+  public static int UNIFORM_BUFFER;
 
   public static int MAX_VERTEX_ATTRIBS;
 
@@ -3047,6 +3223,8 @@ public abstract class PGL {
   public static int LINE_SMOOTH;
   public static int POLYGON_SMOOTH;
 
+  public static int INVALID_INDEX;
+
   public static int SYNC_GPU_COMMANDS_COMPLETE;
   public static int ALREADY_SIGNALED;
   public static int CONDITION_SATISFIED;
@@ -3087,6 +3265,7 @@ public abstract class PGL {
   public abstract void bindBuffer(int target, int buffer);
   public abstract void bufferData(int target, int size, Buffer data, int usage);
   public abstract void bufferSubData(int target, int offset, int size, Buffer data);
+  public abstract void bindBufferBase(int target, int index, int buffer);
   public abstract void isBuffer(int buffer);
   public abstract void getBufferParameteriv(int target, int value, IntBuffer data);
   public abstract ByteBuffer mapBuffer(int target, int access);
@@ -3267,6 +3446,8 @@ public abstract class PGL {
   public abstract void bindAttribLocation(int program, int index, String name);
   public abstract int getUniformLocation(int program, String name);
   public abstract String getActiveUniform(int program, int index, IntBuffer size, IntBuffer type);
+  public abstract int getUniformBlockIndex(int program, String name);
+  public abstract void uniformBlockBinding(int program, int index, int binding);
   public abstract void uniform1i(int location, int value);
   public abstract void uniform2i(int location, int value0, int value1);
   public abstract void uniform3i(int location, int value0, int value1, int value2);
@@ -34,8 +34,10 @@ import javax.microedition.khronos.egl.EGLContext;
 import javax.microedition.khronos.opengles.GL10;
 
 import android.opengl.GLES20;
+import android.opengl.GLES30;
 import android.opengl.GLSurfaceView;
 import android.opengl.GLU;
+import android.os.Build;
 import android.view.SurfaceView;
 
 import processing.opengl.tess.PGLU;
@@ -69,23 +71,7 @@ public class PGLES extends PGL {
   // GLES
 
   static {
-    SINGLE_BUFFERED = true;
-
-    MIN_DIRECT_BUFFER_SIZE = 1;
-    INDEX_TYPE             = GLES20.GL_UNSIGNED_SHORT;
-
-    MIPMAPS_ENABLED        = false;
-
-    DEFAULT_IN_VERTICES   = 16;
-    DEFAULT_IN_EDGES      = 32;
-    DEFAULT_IN_TEXTURES   = 16;
-    DEFAULT_TESS_VERTICES = 16;
-    DEFAULT_TESS_INDICES  = 32;
-
-    MIN_FONT_TEX_SIZE = 128;
-    MAX_FONT_TEX_SIZE = 512;
-
-    MAX_CAPS_JOINS_LENGTH = 1000;
+    setGLESParameters();
   }
 
   // Some EGL constants needed to initialize a GLES2 context.
@@ -234,6 +220,19 @@ public class PGLES extends PGL {
   }
 
 
+  // The ES 3.0 functions need the GLES30 bindings (API level 18) and a
+  // context created with version = 3.
+  protected boolean hasES3() {
+    return 3 <= version && 18 <= Build.VERSION.SDK_INT;
+  }
+
+
+  @Override
+  protected boolean hasUniformBuffers() {
+    return hasES3() && super.hasUniformBuffers();
+  }
+
+
   @Override
   protected void initFBOLayer() {
     if (0 < sketch.frameCount) {
@@ -469,6 +468,8 @@ public class PGLES extends PGL {
 
     ARRAY_BUFFER         = GLES20.GL_ARRAY_BUFFER;
     ELEMENT_ARRAY_BUFFER = GLES20.GL_ELEMENT_ARRAY_BUFFER;
+    UNIFORM_BUFFER       = GLES30.GL_UNIFORM_BUFFER;
+    INVALID_INDEX        = GLES30.GL_INVALID_INDEX;
 
     MAX_VERTEX_ATTRIBS  = GLES20.GL_MAX_VERTEX_ATTRIBS;
 
@@ -807,6 +808,15 @@ public class PGLES extends PGL {
     GLES20.glBufferSubData(target, offset, size, data);
   }
 
+  @Override
+  public void bindBufferBase(int target, int index, int buffer) {
+    if (hasES3()) {
+      GLES30.glBindBufferBase(target, index, buffer);
+    } else {
+      throw new RuntimeException(String.format(MISSING_GLFUNC_ERROR, "glBindBufferBase()"));
+    }
+  }
+
   @Override
   public void isBuffer(int buffer) {
     GLES20.glIsBuffer(buffer);
@@ -1156,6 +1166,24 @@ public class PGLES extends PGL {
     return GLES20.glGetUniformLocation(program, name);
   }
 
+  @Override
+  public int getUniformBlockIndex(int program, String name) {
+    if (hasES3()) {
+      return GLES30.glGetUniformBlockIndex(program, name);
+    } else {
+      throw new RuntimeException(String.format(MISSING_GLFUNC_ERROR, "glGetUniformBlockIndex()"));
+    }
+  }
+
+  @Override
+  public void uniformBlockBinding(int program, int index, int binding) {
+    if (hasES3()) {
+      GLES30.glUniformBlockBinding(program, index, binding);
+    } else {
+      throw new RuntimeException(String.format(MISSING_GLFUNC_ERROR, "glUniformBlockBinding()"));
+    }
+  }
+
   @Override
   public String getActiveUniform(int program, int index, IntBuffer size, IntBuffer type) {
     int[] tmp= {0, 0, 0};
@@ -0,0 +1,1912 @@
+/* -*- mode: java; c-basic-offset: 2; indent-tabs-mode: nil -*- */
+
+/*
+  Part of the Processing project - http://processing.org
+
+  Copyright (c) 2012-21 The Processing Foundation
+
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License as published by the Free Software Foundation, version 2.1.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+*/
+
+package processing.opengl;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import processing.opengl.tess.PGLU;
+import processing.opengl.tess.PGLUtessellator;
+import processing.opengl.tess.PGLUtessellatorCallbackAdapter;
+
+/**
+ * PGL implementation that doesn't need an OpenGL context or a device. The GL
+ * calls are recorded into an in-memory command log and otherwise ignored,
+ * except for the little state the renderer reads back: object names, buffer
+ * storage, and the uniform and attribute locations of the shaders. This
+ * allows to run the tessellation, batching and buffer management of
+ * PGraphicsOpenGL on a plain JVM, which is what the benchmarks do. To use it,
+ * override PGraphicsOpenGL.createPGL() so it returns an instance of this
+ * class.
+ */
+public class PGLHeadless extends PGL {
+  /** Extensions reported by getString(EXTENSIONS) */
+  static public String EXTENSIONS_STRING =
+    "GL_OES_texture_npot GL_EXT_texture_non_power_of_two " +
+    "GL_OES_packed_depth_stencil GL_SGIS_generate_mipmap";
+
+  /** Records every GL call into the command log */
+  public boolean logging = true;
+
+  protected ArrayList<Command> commands = new ArrayList<Command>();
+  protected HashMap<String, int[]> callCounts = new HashMap<String, int[]>();
+  protected int drawCount;
+
+  // Names are shared by all kinds of GL objects, starting at 1 since 0 is
+  // the default object.
+  protected int nextName = 1;
+
+  protected HashSet<Integer> capabilities = new HashSet<Integer>();
+  protected int[] viewport = new int[4];
+
+  protected HashMap<Integer, ByteBuffer> bufferStore =
+    new HashMap<Integer, ByteBuffer>();
+  protected int boundArrayBuffer;
+  protected int boundElementBuffer;
+
+  protected HashMap<Integer, String> shaderSources =
+    new HashMap<Integer, String>();
+  protected HashMap<Integer, Integer> shaderTypes =
+    new HashMap<Integer, Integer>();
+  protected HashMap<Integer, Program> programs = new HashMap<Integer, Program>();
+
+  // Uniform and attribute declarations in the shader sources, the locations
+  // are assigned in the order the variables appear.
+  static protected Pattern DECLARATION =
+    Pattern.compile("\\b(uniform|attribute|in)\\s+" +
+                    "(?:(?:lowp|mediump|highp)\\s+)?\\w+\\s+([^;{}()]+);");
+
+  // ........................................................
+
+  // Same parameters as the GLES renderer, so the costs measured headlessly
+  // correspond to the ones on the device.
+
+  static {
+    setGLESParameters();
+
+    SHAPE_TEXT_SUPPORTED = false;
+  }
+
+  ///////////////////////////////////////////////////////////
+
+  // Initialization, finalization
+
+
+  public PGLHeadless(PGraphicsOpenGL pg) {
+    super(pg);
+    glThread = Thread.currentThread();
+    glContext = hashCode();
+  }
+
+
+  ///////////////////////////////////////////////////////////
+
+  // Command log
+
+
+  /**
+   * Returns the GL calls recorded since the log was last cleared.
+   */
+  public List<Command> getCommands() {
+    return commands;
+  }
+
+
+  public void clearCommands() {
+    commands.clear();
+  }
+
+
+  /**
+   * Returns how many times the GL function with the given name was called,
+   * whether logging is enabled or not.
+   */
+  public int getCallCount(String name) {
+    int[] count = callCounts.get(name);
+    return count == null ? 0 : count[0];
+  }
+
+
+  public int getDrawCount() {
+    return drawCount;
+  }
+
+
+  public void resetCounts() {
+    callCounts.clear();
+    drawCount = 0;
+  }
+
+
+  protected void log(String name, Object... args) {
+    int[] count = callCounts.get(name);
+    if (count == null) {
+      count = new int[1];
+      callCounts.put(name, count);
+    }
+    count[0]++;
+    if (logging) {
+      commands.add(new Command(name, args));
+    }
+  }
+
+
+  static public class Command {
+    public final String name;
+    public final Object[] args;
+
+    public Command(String name, Object[] args) {
+      this.name = name;
+      this.args = args;
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder str = new StringBuilder(name).append('(');
+      for (int i = 0; i < args.length; i++) {
+        if (0 < i) str.append(", ");
+        str.append(args[i]);
+      }
+      return str.append(')').toString();
+    }
+  }
+
+
+  ///////////////////////////////////////////////////////////
+
+  // Platform
+
+
+  @Override
+  public Object getNative() {
+    return null;
+  }
+
+
+  @Override
+  protected void initSurface(int antialias) {
+    reqNumSamples = qualityToSamples(antialias);
+    registerListeners();
+  }
+
+
+  @Override
+  protected void reinitSurface() { }
+
+
+  @Override
+  protected void registerListeners() { }
+
+
+  @Override
+  public void queueEvent(Runnable runnable) {
+    runnable.run();
+  }
+
+
+  @Override
+  protected int getDepthBits() {
+    return 24;
+  }
+
+
+  @Override
+  protected int getStencilBits() {
+    return 8;
+  }
+
+
+  @Override
+  protected float getPixelScale() {
+    return 1;
+  }
+
+
+  @Override
+  protected void getGL(PGL pgl) {
+    setThread(pgl.glThread);
+  }
+
+
+  @Override
+  protected boolean canDraw() {
+    return true;
+  }
+
+
+  @Override
+  protected void requestFocus() { }
+
+
+  @Override
+  protected void requestDraw() { }
+
+
+  @Override
+  protected void swapBuffers() {
+    log("swapBuffers");
+  }
+
+
+  @Override
+  protected void initFBOLayer() { }
+
+
+  @Override
+  protected int getGLSLVersion() {
+    return 100;
+  }
+
+
+  @Override
+  protected int getFontAscent(Object font) {
+    return 0;
+  }
+
+
+  @Override
+  protected int getFontDescent(Object font) {
+    return 0;
+  }
+
+
+  @Override
+  protected int getTextWidth(Object font, char[] buffer, int start, int stop) {
+    return 0;
+  }
+
+
+  @Override
+  protected Object getDerivedFont(Object font, float size) {
+    return font;
+  }
+
+
+  @Override
+  protected FontOutline createFontOutline(char ch, Object font) {
+    return null;
+  }
+
+
+  ///////////////////////////////////////////////////////////
+
+  // State of the emulated context
+
+
+  protected void genNames(int n, IntBuffer names) {
+    for (int i = 0; i < n; i++) {
+      names.put(i, nextName++);
+    }
+  }
+
+
+  protected void getParameter(int value, IntBuffer data) {
+    if (value == VIEWPORT) {
+      for (int i = 0; i < 4; i++) data.put(i, viewport[i]);
+    } else if (value == MAX_TEXTURE_SIZE) {
+      data.put(0, 4096);
+    } else if (value == MAX_VERTEX_ATTRIBS) {
+      data.put(0, 16);
+    } else if (value == MAX_TEXTURE_IMAGE_UNITS ||
+               value == MAX_VERTEX_TEXTURE_IMAGE_UNITS) {
+      data.put(0, 8);
+    } else if (value == MAX_COMBINED_TEXTURE_IMAGE_UNITS) {
+      data.put(0, 16);
+    } else if (value == DEPTH_BITS) {
+      data.put(0, getDepthBits());
+    } else if (value == STENCIL_BITS) {
+      data.put(0, getStencilBits());
+    } else if (value == SAMPLES || value == MAX_SAMPLES) {
+      data.put(0, 1);
+    } else {
+      data.put(0, 0);
+    }
+  }
+
+
+  protected int getBoundBuffer(int target) {
+    if (target == ARRAY_BUFFER) return boundArrayBuffer;
+    if (target == ELEMENT_ARRAY_BUFFER) return boundElementBuffer;
+    return 0;
+  }
+
+
+  protected class Program {
+    ArrayList<Integer> shaders = new ArrayList<Integer>();
+    HashMap<String, Integer> attribs = new HashMap<String, Integer>();
+    HashMap<String, Integer> uniforms = new HashMap<String, Integer>();
+
+    void link() {
+      for (int shader : shaders) {
+        String source = shaderSources.get(shader);
+        if (source == null) continue;
+        source = source.replaceAll("(?s)/\\*.*?\\*/", "").
+                        replaceAll("//[^\n]*", "");
+        boolean vertex = Integer.valueOf(VERTEX_SHADER).
+                         equals(shaderTypes.get(shader));
+        Matcher matcher = DECLARATION.matcher(source);
+        while (matcher.find()) {
+          boolean uniform = matcher.group(1).equals("uniform");
+          if (!uniform && !vertex) continue;
+          for (String var : matcher.group(2).split(",")) {
+            String name = var.trim();
+            int bracket = name.indexOf('[');
+            if (-1 < bracket) name = name.substring(0, bracket).trim();
+            if (uniform) {
+              if (!uniforms.containsKey(name)) {
+                uniforms.put(name, uniforms.size());
+              }
+            } else if (!attribs.containsKey(name)) {
+              int loc = 0;
+              while (attribs.containsValue(loc)) loc++;
+              attribs.put(name, loc);
+            }
+          }
+        }
+      }
+    }
+  }
+
+
+  ///////////////////////////////////////////////////////////
+
+  // Tessellator interface
+
+
+  @Override
+  protected Tessellator createTessellator(TessellatorCallback callback) {
+    return new Tessellator(callback);
+  }
+
+
+  protected class Tessellator implements PGL.Tessellator {
+    protected PGLUtessellator tess;
+    protected TessellatorCallback callback;
+    protected GLUCallback gluCallback;
+
+    public Tessellator(TessellatorCallback callback) {
+      this.callback = callback;
+      tess = PGLU.gluNewTess();
+      gluCallback = new GLUCallback();
+
+      PGLU.gluTessCallback(tess, PGLU.GLU_TESS_BEGIN, gluCallback);
+      PGLU.gluTessCallback(tess, PGLU.GLU_TESS_END, gluCallback);
+      PGLU.gluTessCallback(tess, PGLU.GLU_TESS_VERTEX, gluCallback);
+      PGLU.gluTessCallback(tess, PGLU.GLU_TESS_COMBINE, gluCallback);
+      PGLU.gluTessCallback(tess, PGLU.GLU_TESS_ERROR, gluCallback);
+    }
+
+    @Override
+    public void setCallback(int flag) {
+      PGLU.gluTessCallback(tess, flag, gluCallback);
+    }
+
+    @Override
+    public void setWindingRule(int rule) {
+      setProperty(PGLU.GLU_TESS_WINDING_RULE, rule);
+    }
+
+    public void setProperty(int property, int value) {
+      PGLU.gluTessProperty(tess, property, value);
+    }
+
+    @Override
+    public void beginPolygon() {
+      beginPolygon(null);
+    }
+
+    @Override
+    public void beginPolygon(Object data) {
+      PGLU.gluTessBeginPolygon(tess, data);
+    }
+
+    @Override
+    public void endPolygon() {
+      PGLU.gluTessEndPolygon(tess);
+    }
+
+    @Override
+    public void beginContour() {
+      PGLU.gluTessBeginContour(tess);
+    }
+
+    @Override
+    public void endContour() {
+      PGLU.gluTessEndContour(tess);
+    }
+
+    @Override
+    public void addVertex(double[] v) {
+      addVertex(v, 0, v);
+    }
+
+    @Override
+    public void addVertex(double[] v, int n, Object data) {
+      PGLU.gluTessVertex(tess, v, n, data);
+    }
+
+    protected class GLUCallback extends PGLUtessellatorCallbackAdapter {
+      @Override
+      public void begin(int type) {
+        callback.begin(type);
+      }
+
+      @Override
+      public void end() {
+        callback.end();
+      }
+
+      @Override
+      public void vertex(Object data) {
+        callback.vertex(data);
+      }
+
+      @Override
+      public void combine(double[] coords, Object[] data,
+                          float[] weight, Object[] outData) {
+        callback.combine(coords, data, weight, outData);
+      }
+
+      @Override
+      public void error(int errnum) {
+        callback.error(errnum);
+      }
+    }
+  }
+
+
+  @Override
+  protected String tessError(int err) {
+    return PGLU.gluErrorString(err);
+  }
+
+
+  ///////////////////////////////////////////////////////////
+
+  // Constants
+  //
+  // Same values as in the OpenGL ES 2.0 headers, so the recorded commands
+  // can be compared with the calls made on a device.
+
+
+  static {
+    FALSE = 0;
+    TRUE  = 1;
+
+    INT            = 0x1404;
+    BYTE           = 0x1400;
+    SHORT          = 0x1402;
+    FLOAT          = 0x1406;
+    BOOL           = 0x8B56;
+    UNSIGNED_INT   = 0x1405;
+    UNSIGNED_BYTE  = 0x1401;
+    UNSIGNED_SHORT = 0x1403;
+
+    RGB             = 0x1907;
+    RGBA            = 0x1908;
+    ALPHA           = 0x1906;
+    LUMINANCE       = 0x1909;
+    LUMINANCE_ALPHA = 0x190A;
+
+    UNSIGNED_SHORT_5_6_5   = 0x8363;
+    UNSIGNED_SHORT_4_4_4_4 = 0x8033;
+    UNSIGNED_SHORT_5_5_5_1 = 0x8034;
+
+    RGBA4   = 0x8056;
+    RGB5_A1 = 0x8057;
+    RGB565  = 0x8D62;
+    RGB8   = 0x8051;
+    RGBA8  = 0x8058;
+    ALPHA8 = -1;
+
+    READ_ONLY  = -1;
+    WRITE_ONLY = 0x88B9;
+    READ_WRITE = -1;
+
+    TESS_WINDING_NONZERO = PGLU.GLU_TESS_WINDING_NONZERO;
+    TESS_WINDING_ODD     = PGLU.GLU_TESS_WINDING_ODD;
+    TESS_EDGE_FLAG       = PGLU.GLU_TESS_EDGE_FLAG;
+
+    GENERATE_MIPMAP_HINT = 0x8192;
+    FASTEST              = 0x1101;
+    NICEST               = 0x1102;
+    DONT_CARE            = 0x1100;
+
+    VENDOR                   = 0x1F00;
+    RENDERER                 = 0x1F01;
+    VERSION                  = 0x1F02;
+    EXTENSIONS               = 0x1F03;
+    SHADING_LANGUAGE_VERSION = 0x8B8C;
+
+    MAX_SAMPLES = -1;
+    SAMPLES     = 0x80A9;
+
+    ALIASED_LINE_WIDTH_RANGE = 0x846E;
+    ALIASED_POINT_SIZE_RANGE = 0x846D;
+
+    DEPTH_BITS   = 0x0D56;
+    STENCIL_BITS = 0x0D57;
+
+    CCW = 0x0901;
+    CW  = 0x0900;
+
+    VIEWPORT = 0x0BA2;
+
+    ARRAY_BUFFER         = 0x8892;
+    ELEMENT_ARRAY_BUFFER = 0x8893;
+    UNIFORM_BUFFER       = 0x8A11;
+    INVALID_INDEX        = -1;
+
+    MAX_VERTEX_ATTRIBS  = 0x8869;
+
+    STATIC_DRAW  = 0x88E4;
+    DYNAMIC_DRAW = 0x88E8;
+    STREAM_DRAW  = 0x88E0;
+
+    BUFFER_SIZE  = 0x8764;
+    BUFFER_USAGE = 0x8765;
+
+    POINTS         = 0;
+    LINE_STRIP     = 3;
+    LINE_LOOP      = 2;
+    LINES          = 1;
+    TRIANGLE_FAN   = 6;
+    TRIANGLE_STRIP = 5;
+    TRIANGLES      = 4;
+
+    CULL_FACE      = 0x0B44;
+    FRONT          = 0x0404;
+    BACK           = 0x0405;
+    FRONT_AND_BACK = 0x0408;
+
+    POLYGON_OFFSET_FILL = 0x8037;
+
+    UNPACK_ALIGNMENT = 0x0CF5;
+    PACK_ALIGNMENT   = 0x0D05;
+
+    TEXTURE_2D        = 0x0DE1;
+    TEXTURE_RECTANGLE = -1;
+
+    TEXTURE_BINDING_2D        = 0x8069;
+    TEXTURE_BINDING_RECTANGLE = -1;
+
+    MAX_TEXTURE_SIZE           = 0x0D33;
+    TEXTURE_MAX_ANISOTROPY     = 0x84FE;
+    MAX_TEXTURE_MAX_ANISOTROPY = 0x84FF;
+
+    MAX_VERTEX_TEXTURE_IMAGE_UNITS   = 0x8B4C;
+    MAX_TEXTURE_IMAGE_UNITS          = 0x8872;
+    MAX_COMBINED_TEXTURE_IMAGE_UNITS = 0x8B4D;
+
+    NUM_COMPRESSED_TEXTURE_FORMATS = 0x86A2;
+    COMPRESSED_TEXTURE_FORMATS     = 0x86A3;
+
+    NEAREST               = 0x2600;
+    LINEAR                = 0x2601;
+    LINEAR_MIPMAP_NEAREST = 0x2701;
+    LINEAR_MIPMAP_LINEAR  = 0x2703;
+
+    CLAMP_TO_EDGE = 0x812F;
+    REPEAT        = 0x2901;
+
+    TEXTURE0           = 0x84C0;
+    TEXTURE1           = 0x84C1;
+    TEXTURE2           = 0x84C2;
+    TEXTURE3           = 0x84C3;
+    TEXTURE_MIN_FILTER = 0x2801;
+    TEXTURE_MAG_FILTER = 0x2800;
+    TEXTURE_WRAP_S     = 0x2802;
+    TEXTURE_WRAP_T     = 0x2803;
+    TEXTURE_WRAP_R     = 0x8072;
+
+    TEXTURE_CUBE_MAP = 0x8513;
+    TEXTURE_CUBE_MAP_POSITIVE_X = 0x8515;
+    TEXTURE_CUBE_MAP_POSITIVE_Y = 0x8517;
+    TEXTURE_CUBE_MAP_POSITIVE_Z = 0x8519;
+    TEXTURE_CUBE_MAP_NEGATIVE_X = 0x8516;
+    TEXTURE_CUBE_MAP_NEGATIVE_Y = 0x8518;
+    TEXTURE_CUBE_MAP_NEGATIVE_Z = 0x851A;
+
+    VERTEX_SHADER        = 0x8B31;
+    FRAGMENT_SHADER      = 0x8B30;
+    INFO_LOG_LENGTH      = 0x8B84;
+    SHADER_SOURCE_LENGTH = 0x8B88;
+    COMPILE_STATUS       = 0x8B81;
+    LINK_STATUS          = 0x8B82;
+    VALIDATE_STATUS      = 0x8B83;
+    SHADER_TYPE          = 0x8B4F;
+    DELETE_STATUS        = 0x8B80;
+
+    FLOAT_VEC2   = 0x8B50;
+    FLOAT_VEC3   = 0x8B51;
+    FLOAT_VEC4   = 0x8B52;
+    FLOAT_MAT2   = 0x8B5A;
+    FLOAT_MAT3   = 0x8B5B;
+    FLOAT_MAT4   = 0x8B5C;
+    INT_VEC2     = 0x8B53;
+    INT_VEC3     = 0x8B54;
+    INT_VEC4     = 0x8B55;
+    BOOL_VEC2    = 0x8B57;
+    BOOL_VEC3    = 0x8B58;
+    BOOL_VEC4    = 0x8B59;
+    SAMPLER_2D   = 0x8B5E;
+    SAMPLER_CUBE = 0x8B60;
+
+    LOW_FLOAT    = 0x8DF0;
+    MEDIUM_FLOAT = 0x8DF1;
+    HIGH_FLOAT   = 0x8DF2;
+    LOW_INT      = 0x8DF3;
+    MEDIUM_INT   = 0x8DF4;
+    HIGH_INT     = 0x8DF5;
+
+    CURRENT_VERTEX_ATTRIB = 0x8626;
+
+    VERTEX_ATTRIB_ARRAY_BUFFER_BINDING = 0x889F;
+    VERTEX_ATTRIB_ARRAY_ENABLED        = 0x8622;
+    VERTEX_ATTRIB_ARRAY_SIZE           = 0x8623;
+    VERTEX_ATTRIB_ARRAY_STRIDE         = 0x8624;
+    VERTEX_ATTRIB_ARRAY_TYPE           = 0x8625;
+    VERTEX_ATTRIB_ARRAY_NORMALIZED     = 0x886A;
+    VERTEX_ATTRIB_ARRAY_POINTER        = 0x8645;
+
+    BLEND               = 0x0BE2;
+    ONE                 = 1;
+    ZERO                = 0;
+    SRC_ALPHA           = 0x0302;
+    DST_ALPHA           = 0x0304;
+    ONE_MINUS_SRC_ALPHA = 0x0303;
+    ONE_MINUS_DST_COLOR = 0x0307;
+    ONE_MINUS_SRC_COLOR = 0x0301;
+    DST_COLOR           = 0x0306;
+    SRC_COLOR           = 0x0300;
+
+    SAMPLE_ALPHA_TO_COVERAGE = 0x809E;
+    SAMPLE_COVERAGE          = 0x80A0;
+
+    KEEP      = 0x1E00;
+    REPLACE   = 0x1E01;
+    INCR      = 0x1E02;
+    DECR      = 0x1E03;
+    INVERT    = 0x150A;
+    INCR_WRAP = 0x8507;
+    DECR_WRAP = 0x8508;
+    NEVER     = 0x0200;
+    ALWAYS    = 0x0207;
+
+    EQUAL    = 0x0202;
+    LESS     = 0x0201;
+    LEQUAL   = 0x0203;
+    GREATER  = 0x0204;
+    GEQUAL   = 0x0206;
+    NOTEQUAL = 0x0205;
+
+    FUNC_ADD              = 0x8006;
+    FUNC_MIN              = 0x8007;
+    FUNC_MAX              = 0x8008;
+    FUNC_REVERSE_SUBTRACT = 0x800B;
+    FUNC_SUBTRACT         = 0x800A;
+
+    DITHER = 0x0BD0;
+
+    CONSTANT_COLOR           = 0x8001;
+    CONSTANT_ALPHA           = 0x8003;
+    ONE_MINUS_CONSTANT_COLOR = 0x8002;
+    ONE_MINUS_CONSTANT_ALPHA = 0x8004;
+    SRC_ALPHA_SATURATE       = 0x0308;
+
+    SCISSOR_TEST    = 0x0C11;
+    STENCIL_TEST    = 0x0B90;
+    DEPTH_TEST      = 0x0B71;
+    DEPTH_WRITEMASK = 0x0B72;
+
+    COLOR_BUFFER_BIT   = 0x4000;
+    DEPTH_BUFFER_BIT   = 0x0100;
+    STENCIL_BUFFER_BIT = 0x0400;
+
+    FRAMEBUFFER        = 0x8D40;
+    COLOR_ATTACHMENT0  = 0x8CE0;
+    COLOR_ATTACHMENT1  = -1;
+    COLOR_ATTACHMENT2  = -1;
+    COLOR_ATTACHMENT3  = -1;
+    RENDERBUFFER       = 0x8D41;
+    DEPTH_ATTACHMENT   = 0x8D00;
+    STENCIL_ATTACHMENT = 0x8D20;
+    READ_FRAMEBUFFER   = -1;
+    DRAW_FRAMEBUFFER   = -1;
+
+    DEPTH24_STENCIL8 = 0x88F0;
+
+    DEPTH_COMPONENT   = 0x1902;
+    DEPTH_COMPONENT16 = 0x81A5;
+    DEPTH_COMPONENT24 = 0x81A6;
+    DEPTH_COMPONENT32 = 0x81A7;
+
+    STENCIL_INDEX  = 6401;
+    STENCIL_INDEX1 = 0x8D46;
+    STENCIL_INDEX4 = 0x8D47;
+    STENCIL_INDEX8 = 0x8D48;
+
+    DEPTH_STENCIL = 0x84F9;
+
+    FRAMEBUFFER_COMPLETE                      = 0x8CD5;
+    FRAMEBUFFER_INCOMPLETE_ATTACHMENT         = 0x8CD6;
+    FRAMEBUFFER_INCOMPLETE_MISSING_ATTACHMENT = 0x8CD7;
+    FRAMEBUFFER_INCOMPLETE_DIMENSIONS         = 0x8CD9;
+    FRAMEBUFFER_INCOMPLETE_FORMATS            = 0x8CDA;
+    FRAMEBUFFER_INCOMPLETE_DRAW_BUFFER        = -1;
+    FRAMEBUFFER_INCOMPLETE_READ_BUFFER        = -1;
+    FRAMEBUFFER_UNSUPPORTED                   = 0x8CDD;
+
+    FRAMEBUFFER_ATTACHMENT_OBJECT_TYPE           = 0x8CD0;
+    FRAMEBUFFER_ATTACHMENT_OBJECT_NAME           = 0x8CD1;
+    FRAMEBUFFER_ATTACHMENT_TEXTURE_LEVEL         = 0x8CD2;
+    FRAMEBUFFER_ATTACHMENT_TEXTURE_CUBE_MAP_FACE = 0x8CD3;
+
+    RENDERBUFFER_WIDTH           = 0x8D42;
+    RENDERBUFFER_HEIGHT          = 0x8D43;
+    RENDERBUFFER_RED_SIZE        = 0x8D50;
+    RENDERBUFFER_GREEN_SIZE      = 0x8D51;
+    RENDERBUFFER_BLUE_SIZE       = 0x8D52;
+    RENDERBUFFER_ALPHA_SIZE      = 0x8D53;
+    RENDERBUFFER_DEPTH_SIZE      = 0x8D54;
+    RENDERBUFFER_STENCIL_SIZE    = 0x8D55;
+    RENDERBUFFER_INTERNAL_FORMAT = 0x8D44;
+
+    MULTISAMPLE    = -1;
+    LINE_SMOOTH    = -1;
+    POLYGON_SMOOTH = -1;
+  }
+
+  ///////////////////////////////////////////////////////////
+
+  // Special Functions
+
+
+  @Override
+  public void flush() {
+    log("flush");
+  }
+
+
+  @Override
+  public void finish() {
+    log("finish");
+  }
+
+
+  @Override
+  public void hint(int target, int hint) {
+    log("hint", target, hint);
+  }
+
+
+  ///////////////////////////////////////////////////////////
+
+  // State and State Requests
+
+
+  @Override
+  public void enable(int value) {
+    log("enable", value);
+    capabilities.add(value);
+  }
+
+
+  @Override
+  public void disable(int value) {
+    log("disable", value);
+    capabilities.remove(value);
+  }
+
+
+  @Override
+  public void getBooleanv(int value, IntBuffer data) {
+    log("getBooleanv", value);
+    data.put(0, capabilities.contains(value) ? 1 : 0);
+  }
+
+
+  @Override
+  public void getIntegerv(int value, IntBuffer data) {
+    log("getIntegerv", value);
+    getParameter(value, data);
+  }
+
+
+  @Override
+  public void getFloatv(int value, FloatBuffer data) {
+    log("getFloatv", value);
+    if (value == ALIASED_LINE_WIDTH_RANGE || value == ALIASED_POINT_SIZE_RANGE) {
+      data.put(0, 1);
+      data.put(1, 64);
+    } else if (value == MAX_TEXTURE_MAX_ANISOTROPY) {
+      data.put(0, 1);
+    } else {
+      data.put(0, 0);
+    }
+  }
+
+
+  @Override
+  public boolean isEnabled(int value) {
+    log("isEnabled", value);
+    return capabilities.contains(value);
+  }
+
+
+  @Override
+  public String getString(int name) {
+    log("getString", name);
+    if (name == VENDOR) return "The Processing Foundation";
+    if (name == RENDERER) return "Processing headless";
+    if (name == VERSION) return "OpenGL ES 2.0 headless";
+    if (name == SHADING_LANGUAGE_VERSION) return "OpenGL ES GLSL ES 1.00";
+    if (name == EXTENSIONS) return EXTENSIONS_STRING;
+    return "";
+  }
+
+
+  ///////////////////////////////////////////////////////////
+
+  // Error Handling
+
+
+  @Override
+  public int getError() {
+    return 0;
+  }
+
+
+  @Override
+  public String errorString(int err) {
+    return "";
+  }
+
+
+  ///////////////////////////////////////////////////////////
+
+  // Buffer Objects
+
+
+  @Override
+  public void genBuffers(int n, IntBuffer buffers) {
+    log("genBuffers", n);
+    genNames(n, buffers);
+  }
+
+
+  @Override
+  public void deleteBuffers(int n, IntBuffer buffers) {
+    log("deleteBuffers", n);
+    for (int i = 0; i < n; i++) bufferStore.remove(buffers.get(i));
+  }
+
+
+  @Override
+  public void bindBuffer(int target, int buffer) {
+    log("bindBuffer", target, buffer);
+    if (target == ARRAY_BUFFER) {
+      boundArrayBuffer = buffer;
+    } else if (target == ELEMENT_ARRAY_BUFFER) {
+      boundElementBuffer = buffer;
+    }
+  }
+
+
+  @Override
+  public void bufferData(int target, int size, Buffer data, int usage) {
+    log("bufferData", target, size, usage);
+    // Only the storage is kept, for mapBuffer(), the contents are not read.
+    ByteBuffer store = ByteBuffer.allocate(size).order(ByteOrder.nativeOrder());
+    bufferStore.put(getBoundBuffer(target), store);
+  }
+
+
+  @Override
+  public void bufferSubData(int target, int offset, int size, Buffer data) {
+    log("bufferSubData", target, offset, size);
+  }
+
+
+  @Override
+  public void bindBufferBase(int target, int index, int buffer) {
+    log("bindBufferBase", target, index, buffer);
+  }
+
+
+  @Override
+  public void isBuffer(int buffer) {
+    log("isBuffer", buffer);
+  }
+
+
+  @Override
+  public void getBufferParameteriv(int target, int value, IntBuffer data) {
+    log("getBufferParameteriv", target, value);
+    ByteBuffer store = bufferStore.get(getBoundBuffer(target));
+    data.put(0, value == BUFFER_SIZE && store != null ? store.capacity() : 0);
+  }
+
+
+  @Override
+  public ByteBuffer mapBuffer(int target, int access) {
+    log("mapBuffer", target, access);
+    ByteBuffer store = bufferStore.get(getBoundBuffer(target));
+    return store == null ? null : (ByteBuffer)store.duplicate().order(ByteOrder.nativeOrder());
+  }
+
+
+  @Override
+  public ByteBuffer mapBufferRange(int target, int offset, int length, int access) {
+    log("mapBufferRange", target, offset, length, access);
+    ByteBuffer store = bufferStore.get(getBoundBuffer(target));
+    if (store == null) return null;
+    ByteBuffer range = store.duplicate();
+    range.position(offset);
+    range.limit(offset + length);
+    return range.slice().order(ByteOrder.nativeOrder());
+  }
+
+
+  @Override
+  public void unmapBuffer(int target) {
+    log("unmapBuffer", target);
+  }
+
+
+  ///////////////////////////////////////////////////////////
+
+  // Synchronization
+
+
+  @Override
+  public long fenceSync(int condition, int flags) {
+    log("fenceSync", condition, flags);
+    return nextName++;
+  }
+
+
+  @Override
+  public void deleteSync(long sync) {
+    log("deleteSync", sync);
+  }
+
+
+  @Override
+  public int clientWaitSync(long sync, int flags, long timeout) {
+    log("clientWaitSync", sync, flags, timeout);
+    return ALREADY_SIGNALED;
+  }
+
+
+  ///////////////////////////////////////////////////////////
+
+  // Viewport and Clipping
+
+
+  @Override
+  public void depthRangef(float n, float f) {
+    log("depthRangef", n, f);
+  }
+
+
+  @Override
+  public void viewport(int x, int y, int w, int h) {
+    viewportImpl(x, y, w, h);
+  }
+
+
+  @Override
+  protected void viewportImpl(int x, int y, int w, int h) {
+    log("viewport", x, y, w, h);
+    viewport[0] = x;
+    viewport[1] = y;
+    viewport[2] = w;
+    viewport[3] = h;
+  }
+
+
+  ///////////////////////////////////////////////////////////
+
+  // Reading Pixels
+
+
+  @Override
+  protected void readPixelsImpl(int x, int y, int width, int height, int format, int type, Buffer buffer) {
+    log("readPixels", x, y, width, height, format, type);
+  }
+
+
+  @Override
+  protected void readPixelsImpl(int x, int y, int width, int height, int format, int type, long offset) {
+    log("readPixels", x, y, width, height, format, type, offset);
+  }
+
+
+  ///////////////////////////////////////////////////////////
+
+  // Vertices
+
+
+  @Override
+  public void vertexAttrib1f(int index, float value) {
+    log("vertexAttrib1f", index, value);
+  }
+
+
+  @Override
+  public void vertexAttrib2f(int index, float value0, float value1) {
+    log("vertexAttrib2f", index, value0, value1);
+  }
+
+
+  @Override
+  public void vertexAttrib3f(int index, float value0, float value1, float value2) {
+    log("vertexAttrib3f", index, value0, value1, value2);
+  }
+
+
+  @Override
+  public void vertexAttrib4f(int index, float value0, float value1, float value2, float value3) {
+    log("vertexAttrib4f", index, value0, value1, value2, value3);
+  }
+
+
+  @Override
+  public void vertexAttrib1fv(int index, FloatBuffer values) {
+    log("vertexAttrib1fv", index);
+  }
+
+
+  @Override
+  public void vertexAttrib2fv(int index, FloatBuffer values) {
+    log("vertexAttrib2fv", index);
+  }
+
+
+  @Override
+  public void vertexAttrib3fv(int index, FloatBuffer values) {
+    log("vertexAttrib3fv", index);
+  }
+
+
+  @Override
+  public void vertexAttrib4fv(int index, FloatBuffer values) {
+    log("vertexAttrib4fv", index);
+  }
+
+
+  @Override
+  public void vertexAttribPointer(int index, int size, int type, boolean normalized, int stride, int offset) {
+    log("vertexAttribPointer", index, size, type, normalized, stride, offset);
+  }
+
+
+  @Override
+  public void enableVertexAttribArray(int index) {
+    log("enableVertexAttribArray", index);
+  }
+
+
+  @Override
+  public void disableVertexAttribArray(int index) {
+    log("disableVertexAttribArray", index);
+  }
+
+
+  @Override
+  public void drawArraysImpl(int mode, int first, int count) {
+    log("drawArrays", mode, first, count);
+    drawCount++;
+  }
+
+
+  @Override
+  public void drawElementsImpl(int mode, int count, int type, int offset) {
+    log("drawElements", mode, count, type, offset);
+    drawCount++;
+  }
+
+
+  ///////////////////////////////////////////////////////////
+
+  // Rasterization
+
+
+  @Override
+  public void lineWidth(float width) {
+    log("lineWidth", width);
+  }
+
+
+  @Override
+  public void frontFace(int dir) {
+    log("frontFace", dir);
+  }
+
+
+  @Override
+  public void cullFace(int mode) {
+    log("cullFace", mode);
+  }
+
+
+  @Override
+  public void polygonOffset(float factor, float units) {
+    log("polygonOffset", factor, units);
+  }
+
+
+  ///////////////////////////////////////////////////////////
+
+  // Pixel Rectangles
+
+
+  @Override
+  public void pixelStorei(int pname, int param) {
+    log("pixelStorei", pname, param);
+  }
+
+
+  ///////////////////////////////////////////////////////////
+
+  // Texturing
+
+
+  @Override
+  public void texImage2D(int target, int level, int internalFormat, int width, int height, int border, int format, int type, Buffer data) {
+    log("texImage2D", target, level, internalFormat, width, height, border, format, type);
+  }
+
+
+  @Override
+  public void copyTexImage2D(int target, int level, int internalFormat, int x, int y, int width, int height, int border) {
+    log("copyTexImage2D", target, level, internalFormat, x, y, width, height, border);
+  }
+
+
+  @Override
+  public void texSubImage2D(int target, int level, int xOffset, int yOffset, int width, int height, int format, int type, Buffer data) {
+    log("texSubImage2D", target, level, xOffset, yOffset, width, height, format, type);
+  }
+
+
+  @Override
+  public void copyTexSubImage2D(int target, int level, int xOffset, int yOffset, int x, int y, int width, int height) {
+    log("copyTexSubImage2D", target, level, xOffset, yOffset, x, y, width, height);
+  }
+
+
+  @Override
+  public void compressedTexImage2D(int target, int level, int internalFormat, int width, int height, int border, int imageSize, Buffer data) {
+    log("compressedTexImage2D", target, level, internalFormat, width, height, border, imageSize);
+  }
+
+
+  @Override
+  public void compressedTexSubImage2D(int target, int level, int xOffset, int yOffset, int width, int height, int format, int imageSize, Buffer data) {
+    log("compressedTexSubImage2D", target, level, xOffset, yOffset, width, height, format, imageSize);
+  }
+
+
+  @Override
+  public void texParameteri(int target, int pname, int param) {
+    log("texParameteri", target, pname, param);
+  }
+
+
+  @Override
+  public void texParameterf(int target, int pname, float param) {
+    log("texParameterf", target, pname, param);
+  }
+
+
+  @Override
+  public void texParameteriv(int target, int pname, IntBuffer params) {
+    log("texParameteriv", target, pname);
+  }
+
+
+  @Override
+  public void texParameterfv(int target, int pname, FloatBuffer params) {
+    log("texParameterfv", target, pname);
+  }
+
+
+  @Override
+  public void generateMipmap(int target) {
+    log("generateMipmap", target);
+  }
+
+
+  @Override
+  public void genTextures(int n, IntBuffer textures) {
+    log("genTextures", n);
+    genNames(n, textures);
+  }
+
+
+  @Override
+  public void deleteTextures(int n, IntBuffer textures) {
+    log("deleteTextures", n);
+  }
+
+
+  @Override
+  public void getTexParameteriv(int target, int pname, IntBuffer params) {
+    log("getTexParameteriv", target, pname);
+    params.put(0, 0);
+  }
+
+
+  @Override
+  public void getTexParameterfv(int target, int pname, FloatBuffer params) {
+    log("getTexParameterfv", target, pname);
+    params.put(0, 0);
+  }
+
+
+  @Override
+  public boolean isTexture(int texture) {
+    log("isTexture", texture);
+    return 0 < texture && texture < nextName;
+  }
+
+
+  @Override
+  protected void activeTextureImpl(int texture) {
+    log("activeTextureImpl", texture);
+  }
+
+
+  @Override
+  protected void bindTextureImpl(int target, int texture) {
+    log("bindTextureImpl", target, texture);
+  }
+
+
+  ///////////////////////////////////////////////////////////
+
+  // Shaders and Programs
+
+
+  @Override
+  public int createShader(int type) {
+    log("createShader", type);
+    int shader = nextName++;
+    shaderTypes.put(shader, type);
+    return shader;
+  }
+
+
+  @Override
+  public void shaderSource(int shader, String source) {
+    log("shaderSource", shader);
+    shaderSources.put(shader, source);
+  }
+
+
+  @Override
+  public void compileShader(int shader) {
+    log("compileShader", shader);
+  }
+
+
+  @Override
+  public void releaseShaderCompiler() {
+    log("releaseShaderCompiler");
+  }
+
+
+  @Override
+  public void deleteShader(int shader) {
+    log("deleteShader", shader);
+    shaderSources.remove(shader);
+    shaderTypes.remove(shader);
+  }
+
+
+  @Override
+  public void shaderBinary(int count, IntBuffer shaders, int binaryFormat, Buffer binary, int length) {
+    log("shaderBinary", count, binaryFormat, length);
+  }
+
+
+  @Override
+  public int createProgram() {
+    log("createProgram");
+    int program = nextName++;
+    programs.put(program, new Program());
+    return program;
+  }
+
+
+  @Override
+  public void attachShader(int program, int shader) {
+    log("attachShader", program, shader);
+    Program prog = programs.get(program);
+    if (prog != null) prog.shaders.add(shader);
+  }
+
+
+  @Override
+  public void detachShader(int program, int shader) {
+    log("detachShader", program, shader);
+    Program prog = programs.get(program);
+    if (prog != null) prog.shaders.remove(Integer.valueOf(shader));
+  }
+
+
+  @Override
+  public void linkProgram(int program) {
+    log("linkProgram", program);
+    Program prog = programs.get(program);
+    if (prog != null) prog.link();
+  }
+
+
+  @Override
+  public void useProgram(int program) {
+    log("useProgram", program);
+  }
+
+
+  @Override
+  public void deleteProgram(int program) {
+    log("deleteProgram", program);
+    programs.remove(program);
+  }
+
+
+  @Override
+  public String getActiveAttrib(int program, int index, IntBuffer size, IntBuffer type) {
+    log("getActiveAttrib", program, index);
+    return "";
+  }
+
+
+  @Override
+  public int getAttribLocation(int program, String name) {
+    log("getAttribLocation", program, name);
+    Program prog = programs.get(program);
+    Integer loc = prog == null ? null : prog.attribs.get(name);
+    return loc == null ? -1 : loc;
+  }
+
+
+  @Override
+  public void bindAttribLocation(int program, int index, String name) {
+    log("bindAttribLocation", program, index, name);
+    Program prog = programs.get(program);
+    if (prog != null) prog.attribs.put(name, index);
+  }
+
+
+  @Override
+  public int getUniformLocation(int program, String name) {
+    log("getUniformLocation", program, name);
+    Program prog = programs.get(program);
+    Integer loc = prog == null ? null : prog.uniforms.get(name);
+    return loc == null ? -1 : loc;
+  }
+
+
+  @Override
+  public String getActiveUniform(int program, int index, IntBuffer size, IntBuffer type) {
+    log("getActiveUniform", program, index);
+    return "";
+  }
+
+
+  @Override
+  public int getUniformBlockIndex(int program, String name) {
+    log("getUniformBlockIndex", program, name);
+    return INVALID_INDEX;
+  }
+
+
+  @Override
+  public void uniformBlockBinding(int program, int index, int binding) {
+    log("uniformBlockBinding", program, index, binding);
+  }
+
+
+  @Override
+  public void uniform1i(int location, int value) {
+    log("uniform1i", location, value);
+  }
+
+
+  @Override
+  public void uniform2i(int location, int value0, int value1) {
+    log("uniform2i", location, value0, value1);
+  }
+
+
+  @Override
+  public void uniform3i(int location, int value0, int value1, int value2) {
+    log("uniform3i", location, value0, value1, value2);
+  }
+
+
+  @Override
+  public void uniform4i(int location, int value0, int value1, int value2, int value3) {
+    log("uniform4i", location, value0, value1, value2, value3);
+  }
+
+
+  @Override
+  public void uniform1f(int location, float value) {
+    log("uniform1f", location, value);
+  }
+
+
+  @Override
+  public void uniform2f(int location, float value0, float value1) {
+    log("uniform2f", location, value0, value1);
+  }
+
+
+  @Override
+  public void uniform3f(int location, float value0, float value1, float value2) {
+    log("uniform3f", location, value0, value1, value2);
+  }
+
+
+  @Override
+  public void uniform4f(int location, float value0, float value1, float value2, float value3) {
+    log("uniform4f", location, value0, value1, value2, value3);
+  }
+
+
+  @Override
+  public void uniform1iv(int location, int count, IntBuffer v) {
+    log("uniform1iv", location, count);
+  }
+
+
+  @Override
+  public void uniform2iv(int location, int count, IntBuffer v) {
+    log("uniform2iv", location, count);
+  }
+
+
+  @Override
+  public void uniform3iv(int location, int count, IntBuffer v) {
+    log("uniform3iv", location, count);
+  }
+
+
+  @Override
+  public void uniform4iv(int location, int count, IntBuffer v) {
+    log("uniform4iv", location, count);
+  }
+
+
+  @Override
+  public void uniform1fv(int location, int count, FloatBuffer v) {
+    log("uniform1fv", location, count);
+  }
+
+
+  @Override
+  public void uniform2fv(int location, int count, FloatBuffer v) {
+    log("uniform2fv", location, count);
+  }
+
+
+  @Override
+  public void uniform3fv(int location, int count, FloatBuffer v) {
+    log("uniform3fv", location, count);
+  }
+
+
+  @Override
+  public void uniform4fv(int location, int count, FloatBuffer v) {
+    log("uniform4fv", location, count);
+  }
+
+
+  @Override
+  public void uniformMatrix2fv(int location, int count, boolean transpose, FloatBuffer mat) {
+    log("uniformMatrix2fv", location, count, transpose);
+  }
+
+
+  @Override
+  public void uniformMatrix3fv(int location, int count, boolean transpose, FloatBuffer mat) {
+    log("uniformMatrix3fv", location, count, transpose);
+  }
+
+
+  @Override
+  public void uniformMatrix4fv(int location, int count, boolean transpose, FloatBuffer mat) {
+    log("uniformMatrix4fv", location, count, transpose);
+  }
+
+
+  @Override
+  public void validateProgram(int program) {
+    log("validateProgram", program);
+  }
+
+
+  @Override
+  public boolean isShader(int shader) {
+    log("isShader", shader);
+    return shaderTypes.containsKey(shader);
+  }
+
+
+  @Override
+  public void getShaderiv(int shader, int pname, IntBuffer params) {
+    log("getShaderiv", shader, pname);
+    if (pname == COMPILE_STATUS) {
+      params.put(0, 1);
+    } else if (pname == SHADER_TYPE) {
+      Integer type = shaderTypes.get(shader);
+      params.put(0, type == null ? 0 : type);
+    } else {
+      params.put(0, 0);
+    }
+  }
+
+
+  @Override
+  public void getAttachedShaders(int program, int maxCount, IntBuffer count, IntBuffer shaders) {
+    log("getAttachedShaders", program, maxCount);
+  }
+
+
+  @Override
+  public String getShaderInfoLog(int shader) {
+    log("getShaderInfoLog", shader);
+    return "";
+  }
+
+
+  @Override
+  public String getShaderSource(int shader) {
+    log("getShaderSource", shader);
+    String source = shaderSources.get(shader);
+    return source == null ? "" : source;
+  }
+
+
+  @Override
+  public void getShaderPrecisionFormat(int shaderType, int precisionType, IntBuffer range, IntBuffer precision) {
+    log("getShaderPrecisionFormat", shaderType, precisionType);
+  }
+
+
+  @Override
+  public void getVertexAttribfv(int index, int pname, FloatBuffer params) {
+    log("getVertexAttribfv", index, pname);
+  }
+
+
+  @Override
+  public void getVertexAttribiv(int index, int pname, IntBuffer params) {
+    log("getVertexAttribiv", index, pname);
+  }
+
+
+  @Override
+  public void getVertexAttribPointerv(int index, int pname, ByteBuffer data) {
+    log("getVertexAttribPointerv", index, pname);
+  }
+
+
+  @Override
+  public void getUniformfv(int program, int location, FloatBuffer params) {
+    log("getUniformfv", program, location);
+    params.put(0, 0);
+  }
+
+
+  @Override
+  public void getUniformiv(int program, int location, IntBuffer params) {
+    log("getUniformiv", program, location);
+    params.put(0, 0);
+  }
+
+
+  @Override
+  public boolean isProgram(int program) {
+    log("isProgram", program);
+    return programs.containsKey(program);
+  }
+
+
+  @Override
+  public void getProgramiv(int program, int pname, IntBuffer params) {
+    log("getProgramiv", program, pname);
+    params.put(0, pname == LINK_STATUS || pname == VALIDATE_STATUS ? 1 : 0);
+  }
+
+
+  @Override
+  public String getProgramInfoLog(int program) {
+    log("getProgramInfoLog", program);
+    return "";
+  }
+
+
+  ///////////////////////////////////////////////////////////
+
+  // Per-Fragment Operations
+
+
+  @Override
+  public void scissor(int x, int y, int w, int h) {
+    log("scissor", x, y, w, h);
+  }
+
+
+  @Override
+  public void sampleCoverage(float value, boolean invert) {
+    log("sampleCoverage", value, invert);
+  }
+
+
+  @Override
+  public void stencilFunc(int func, int ref, int mask) {
+    log("stencilFunc", func, ref, mask);
+  }
+
+
+  @Override
+  public void stencilFuncSeparate(int face, int func, int ref, int mask) {
+    log("stencilFuncSeparate", face, func, ref, mask);
+  }
+
+
+  @Override
+  public void stencilOp(int sfail, int dpfail, int dppass) {
+    log("stencilOp", sfail, dpfail, dppass);
+  }
+
+
+  @Override
+  public void stencilOpSeparate(int face, int sfail, int dpfail, int dppass) {
+    log("stencilOpSeparate", face, sfail, dpfail, dppass);
+  }
+
+
+  @Override
+  public void depthFunc(int func) {
+    log("depthFunc", func);
+  }
+
+
+  @Override
+  public void blendEquation(int mode) {
+    log("blendEquation", mode);
+  }
+
+
+  @Override
+  public void blendEquationSeparate(int modeRGB, int modeAlpha) {
+    log("blendEquationSeparate", modeRGB, modeAlpha);
+  }
+
+
+  @Override
+  public void blendFunc(int src, int dst) {
+    log("blendFunc", src, dst);
+  }
+
+
+  @Override
+  public void blendFuncSeparate(int srcRGB, int dstRGB, int srcAlpha, int dstAlpha) {
+    log("blendFuncSeparate", srcRGB, dstRGB, srcAlpha, dstAlpha);
+  }
+
+
+  @Override
+  public void blendColor(float red, float green, float blue, float alpha) {
+    log("blendColor", red, green, blue, alpha);
+  }
+
+
+  ///////////////////////////////////////////////////////////
+
+  // Whole Framebuffer Operations
+
+
+  @Override
+  public void colorMask(boolean r, boolean g, boolean b, boolean a) {
+    log("colorMask", r, g, b, a);
+  }
+
+
+  @Override
+  public void depthMask(boolean mask) {
+    log("depthMask", mask);
+  }
+
+
+  @Override
+  public void stencilMask(int mask) {
+    log("stencilMask", mask);
+  }
+
+
+  @Override
+  public void stencilMaskSeparate(int face, int mask) {
+    log("stencilMaskSeparate", face, mask);
+  }
+
+
+  @Override
+  public void clearColor(float r, float g, float b, float a) {
+    log("clearColor", r, g, b, a);
+  }
+
+
+  @Override
+  public void clearDepth(float d) {
+    log("clearDepth", d);
+  }
+
+
+  @Override
+  public void clearStencil(int s) {
+    log("clearStencil", s);
+  }
+
+
+  @Override
+  public void clear(int buf) {
+    log("clear", buf);
+  }
+
+
+  ///////////////////////////////////////////////////////////
+
+  // Framebuffers Objects
+
+
+  @Override
+  protected void bindFramebufferImpl(int target, int framebuffer) {
+    log("bindFramebufferImpl", target, framebuffer);
+  }
+
+
+  @Override
+  public void deleteFramebuffers(int n, IntBuffer framebuffers) {
+    log("deleteFramebuffers", n);
+  }
+
+
+  @Override
+  public void genFramebuffers(int n, IntBuffer framebuffers) {
+    log("genFramebuffers", n);
+    genNames(n, framebuffers);
+  }
+
+
+  @Override
+  public void bindRenderbuffer(int target, int renderbuffer) {
+    log("bindRenderbuffer", target, renderbuffer);
+  }
+
+
+  @Override
+  public void deleteRenderbuffers(int n, IntBuffer renderbuffers) {
+    log("deleteRenderbuffers", n);
+  }
+
+
+  @Override
+  public void genRenderbuffers(int n, IntBuffer renderbuffers) {
+    log("genRenderbuffers", n);
+    genNames(n, renderbuffers);
+  }
+
+
+  @Override
+  public void renderbufferStorage(int target, int internalFormat, int width, int height) {
+    log("renderbufferStorage", target, internalFormat, width, height);
+  }
+
+
+  @Override
+  public void framebufferRenderbuffer(int target, int attachment, int rendbuferfTarget, int renderbuffer) {
+    log("framebufferRenderbuffer", target, attachment, rendbuferfTarget, renderbuffer);
+  }
+
+
+  @Override
+  public void framebufferTexture2D(int target, int attachment, int texTarget, int texture, int level) {
+    log("framebufferTexture2D", target, attachment, texTarget, texture, level);
+  }
+
+
+  @Override
+  public int checkFramebufferStatus(int target) {
+    log("checkFramebufferStatus", target);
+    return FRAMEBUFFER_COMPLETE;
+  }
+
+
+  @Override
+  public boolean isFramebuffer(int framebuffer) {
+    log("isFramebuffer", framebuffer);
+    return 0 < framebuffer && framebuffer < nextName;
+  }
+
+
+  @Override
+  public void getFramebufferAttachmentParameteriv(int target, int attachment, int pname, IntBuffer params) {
+    log("getFramebufferAttachmentParameteriv", target, attachment, pname);
+    params.put(0, 0);
+  }
+
+
+  @Override
+  public boolean isRenderbuffer(int renderbuffer) {
+    log("isRenderbuffer", renderbuffer);
+    return 0 < renderbuffer && renderbuffer < nextName;
+  }
+
+
+  @Override
+  public void getRenderbufferParameteriv(int target, int pname, IntBuffer params) {
+    log("getRenderbufferParameteriv", target, pname);
+    params.put(0, 0);
+  }
+
+
+  @Override
+  public void blitFramebuffer(int srcX0, int srcY0, int srcX1, int srcY1, int dstX0, int dstY0, int dstX1, int dstY1, int mask, int filter) {
+    log("blitFramebuffer", srcX0, srcY0, srcX1, srcY1, dstX0, dstY0, dstX1, dstY1, mask, filter);
+  }
+
+
+  @Override
+  public void renderbufferStorageMultisample(int target, int samples, int format, int width, int height) {
+    log("renderbufferStorageMultisample", target, samples, format, width, height);
+  }
+
+
+  @Override
+  public void readBuffer(int buf) {
+    log("readBuffer", buf);
+  }
+
+
+  @Override
+  public void drawBuffer(int buf) {
+    log("drawBuffer", buf);
+  }
+}
@@ -27,6 +27,9 @@ import static processing.core.PApplet.println;
 import java.net.URL;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import processing.core.PApplet;
 import processing.core.PGraphics;
 import processing.core.PImage;
@@ -83,9 +86,11 @@ public final class PGraphics2DX extends PGraphicsOpenGL {
   protected int colorLoc;
   protected int texCoordLoc;
   protected int texFactorLoc;
+  protected int texSlotLoc;
 
   protected int transformLoc;
   protected int texScaleLoc;
+  protected int[] texUnitLocs;
 
   static protected URL defP2DShaderVertURL =
     PGraphicsOpenGL.class.getResource("/assets/shaders/P2DVert.glsl");
@@ -504,84 +509,91 @@ public final class PGraphics2DX extends PGraphicsOpenGL {
     if (stroke) {
       incrementDepth();
 
-      if (shapeType == POLYGON) {
-        if (vertCount < 3) {
-          return;
-        }
+      if (!strokeCache.draw(mode)) {
+        strokeShape(mode);
+      }
+    }
+  }
 
-        int c = 0;
-        sr.beginLine();
-        for (int i = 0; i < vertCount; ++i) {
-          if (contours[c] == i) {
-            sr.endLine(mode == CLOSE);
-            sr.beginLine();
-            c++;
-          }
 
-          sr.lineVertex(shapeVerts[i].x, shapeVerts[i].y);
-        }
-        sr.endLine(mode == CLOSE);
-      } else if (shapeType == QUAD_STRIP) {
-        for (int i = 0; i <= vertCount - 4; i += 2) {
-          sr.beginLine();
-          sr.lineVertex(shapeVerts[i + 0].x, shapeVerts[i + 0].y);
-          sr.lineVertex(shapeVerts[i + 1].x, shapeVerts[i + 1].y);
-          sr.lineVertex(shapeVerts[i + 3].x, shapeVerts[i + 3].y);
-          sr.lineVertex(shapeVerts[i + 2].x, shapeVerts[i + 2].y);
-          sr.endLine(true);
-        }
-      } else if (shapeType == QUADS) {
-        for (int i = 0; i <= vertCount - 4; i += 4) {
-          sr.beginLine();
-          sr.lineVertex(shapeVerts[i + 0].x, shapeVerts[i + 0].y);
-          sr.lineVertex(shapeVerts[i + 1].x, shapeVerts[i + 1].y);
-          sr.lineVertex(shapeVerts[i + 2].x, shapeVerts[i + 2].y);
-          sr.lineVertex(shapeVerts[i + 3].x, shapeVerts[i + 3].y);
-          sr.endLine(true);
-        }
-      } else if (shapeType == TRIANGLE_STRIP) {
-        for (int i = 0; i <= vertCount - 3; i += 1) {
-          sr.beginLine();
-          sr.lineVertex(shapeVerts[i + 0].x, shapeVerts[i + 0].y);
-          sr.lineVertex(shapeVerts[i + 1].x, shapeVerts[i + 1].y);
-          sr.lineVertex(shapeVerts[i + 2].x, shapeVerts[i + 2].y);
-          sr.endLine(true);
-        }
-      } else if (shapeType == TRIANGLE_FAN) {
-        for (int i = 0; i <= vertCount - 3; i += 1) {
-          sr.beginLine();
-          sr.lineVertex(shapeVerts[0 + 0].x, shapeVerts[0 + 0].y);
-          sr.lineVertex(shapeVerts[i + 1].x, shapeVerts[i + 1].y);
-          sr.lineVertex(shapeVerts[i + 2].x, shapeVerts[i + 2].y);
-          sr.endLine(true);
-        }
+  private void strokeShape(int mode) {
+    if (shapeType == POLYGON) {
+      if (vertCount < 3) {
+        return;
+      }
 
-        //close the fan
-        if (vertCount >= 3) {
-          sr.beginLine();
-          sr.lineVertex(shapeVerts[0].x, shapeVerts[0].y);
-          sr.lineVertex(shapeVerts[vertCount - 1].x, shapeVerts[vertCount - 1].y);
-          sr.lineVertex(shapeVerts[1].x, shapeVerts[1].y);
-          sr.endLine(true);
-        }
-      } else if (shapeType == TRIANGLES) {
-        for (int i = 0; i <= vertCount - 3; i += 3) {
+      int c = 0;
+      sr.beginLine();
+      for (int i = 0; i < vertCount; ++i) {
+        if (contours[c] == i) {
+          sr.endLine(mode == CLOSE);
           sr.beginLine();
-          sr.lineVertex(shapeVerts[i + 0].x, shapeVerts[i + 0].y);
-          sr.lineVertex(shapeVerts[i + 1].x, shapeVerts[i + 1].y);
-          sr.lineVertex(shapeVerts[i + 2].x, shapeVerts[i + 2].y);
-          sr.endLine(true);
-        }
-      } else if (shapeType == LINES) {
-        for (int i = 0; i <= vertCount - 2;  i += 2) {
-          TessVertex s1 = shapeVerts[i + 0];
-          TessVertex s2 = shapeVerts[i + 1];
-          singleLine(s1.x, s1.y, s2.x, s2.y, strokeColor);
-        }
-      } else if (shapeType == POINTS) {
-        for (int i = 0; i <= vertCount - 1; i += 1) {
-          singlePoint(shapeVerts[i].x, shapeVerts[i].y, strokeColor);
+          c++;
         }
+
+        sr.lineVertex(shapeVerts[i].x, shapeVerts[i].y);
+      }
+      sr.endLine(mode == CLOSE);
+    } else if (shapeType == QUAD_STRIP) {
+      for (int i = 0; i <= vertCount - 4; i += 2) {
+        sr.beginLine();
+        sr.lineVertex(shapeVerts[i + 0].x, shapeVerts[i + 0].y);
+        sr.lineVertex(shapeVerts[i + 1].x, shapeVerts[i + 1].y);
+        sr.lineVertex(shapeVerts[i + 3].x, shapeVerts[i + 3].y);
+        sr.lineVertex(shapeVerts[i + 2].x, shapeVerts[i + 2].y);
+        sr.endLine(true);
+      }
+    } else if (shapeType == QUADS) {
+      for (int i = 0; i <= vertCount - 4; i += 4) {
+        sr.beginLine();
+        sr.lineVertex(shapeVerts[i + 0].x, shapeVerts[i + 0].y);
+        sr.lineVertex(shapeVerts[i + 1].x, shapeVerts[i + 1].y);
+        sr.lineVertex(shapeVerts[i + 2].x, shapeVerts[i + 2].y);
+        sr.lineVertex(shapeVerts[i + 3].x, shapeVerts[i + 3].y);
+        sr.endLine(true);
+      }
+    } else if (shapeType == TRIANGLE_STRIP) {
+      for (int i = 0; i <= vertCount - 3; i += 1) {
+        sr.beginLine();
+        sr.lineVertex(shapeVerts[i + 0].x, shapeVerts[i + 0].y);
+        sr.lineVertex(shapeVerts[i + 1].x, shapeVerts[i + 1].y);
+        sr.lineVertex(shapeVerts[i + 2].x, shapeVerts[i + 2].y);
+        sr.endLine(true);
+      }
+    } else if (shapeType == TRIANGLE_FAN) {
+      for (int i = 0; i <= vertCount - 3; i += 1) {
+        sr.beginLine();
+        sr.lineVertex(shapeVerts[0 + 0].x, shapeVerts[0 + 0].y);
+        sr.lineVertex(shapeVerts[i + 1].x, shapeVerts[i + 1].y);
+        sr.lineVertex(shapeVerts[i + 2].x, shapeVerts[i + 2].y);
+        sr.endLine(true);
+      }
+
+      //close the fan
+      if (vertCount >= 3) {
+        sr.beginLine();
+        sr.lineVertex(shapeVerts[0].x, shapeVerts[0].y);
+        sr.lineVertex(shapeVerts[vertCount - 1].x, shapeVerts[vertCount - 1].y);
+        sr.lineVertex(shapeVerts[1].x, shapeVerts[1].y);
+        sr.endLine(true);
+      }
+    } else if (shapeType == TRIANGLES) {
+      for (int i = 0; i <= vertCount - 3; i += 3) {
+        sr.beginLine();
+        sr.lineVertex(shapeVerts[i + 0].x, shapeVerts[i + 0].y);
+        sr.lineVertex(shapeVerts[i + 1].x, shapeVerts[i + 1].y);
+        sr.lineVertex(shapeVerts[i + 2].x, shapeVerts[i + 2].y);
+        sr.endLine(true);
+      }
+    } else if (shapeType == LINES) {
+      for (int i = 0; i <= vertCount - 2;  i += 2) {
+        TessVertex s1 = shapeVerts[i + 0];
+        TessVertex s2 = shapeVerts[i + 1];
+        singleLine(s1.x, s1.y, s2.x, s2.y, strokeColor);
+      }
+    } else if (shapeType == POINTS) {
+      for (int i = 0; i <= vertCount - 1; i += 1) {
+        singlePoint(shapeVerts[i].x, shapeVerts[i].y, strokeColor);
       }
     }
   }
@@ -653,12 +665,15 @@ public final class PGraphics2DX extends PGraphicsOpenGL {
 
     bezierInitCheck();
 //    bezierVertexCheck(); //TODO: re-implement this (and other run-time sanity checks)
-    PMatrix3D draw = bezierDrawMatrix;
 
     //(these are the only lines that are different)
     float x1 = shapeVerts[vertCount - 1].x;
     float y1 = shapeVerts[vertCount - 1].y;
 
+    int segments = bezierSegments(x1, y1, 0, x2, y2, 0, x3, y3, 0, x4, y4, 0,
+                                  curveScale());
+    PMatrix3D draw = bezierForward(segments);
+
     float xplot1 = draw.m10*x1 + draw.m11*x2 + draw.m12*x3 + draw.m13*x4;
     float xplot2 = draw.m20*x1 + draw.m21*x2 + draw.m22*x3 + draw.m23*x4;
     float xplot3 = draw.m30*x1 + draw.m31*x2 + draw.m32*x3 + draw.m33*x4;
@@ -667,7 +682,7 @@ public final class PGraphics2DX extends PGraphicsOpenGL {
     float yplot2 = draw.m20*y1 + draw.m21*y2 + draw.m22*y3 + draw.m23*y4;
     float yplot3 = draw.m30*y1 + draw.m31*y2 + draw.m32*y3 + draw.m33*y4;
 
-    for (int j = 0; j < bezierDetail; j++) {
+    for (int j = 0; j < segments; j++) {
       x1 += xplot1; xplot1 += xplot2; xplot2 += xplot3;
       y1 += yplot1; yplot1 += yplot2; yplot2 += yplot3;
       shapeVertex(x1, y1, 0, 0, fillColor, 0);
@@ -753,7 +768,9 @@ public final class PGraphics2DX extends PGraphicsOpenGL {
     if (curveVerts > 3) {
       println("drawing curve...");
 
-      PMatrix3D draw = curveDrawMatrix;
+      int segments = curveSegments(cx1, cy1, 0, cx2, cy2, 0,
+                                   cx3, cy3, 0, cx4, cy4, 0, curveScale());
+      PMatrix3D draw = curveForward(segments);
 
       float xplot1 = draw.m10*cx1 + draw.m11*cx2 + draw.m12*cx3 + draw.m13*cx4;
       float xplot2 = draw.m20*cx1 + draw.m21*cx2 + draw.m22*cx3 + draw.m23*cx4;
@@ -770,7 +787,7 @@ public final class PGraphics2DX extends PGraphicsOpenGL {
         shapeVertex(x0, y0, 0, 0, fillColor, 0);
       }
 
-      for (int j = 0; j < curveDetail; j++) {
+      for (int j = 0; j < segments; j++) {
         x0 += xplot1; xplot1 += xplot2; xplot2 += xplot3;
         y0 += yplot1; yplot1 += yplot2; yplot2 += yplot3;
         shapeVertex(x0, y0, 0, 0, fillColor, 0);
@@ -1073,6 +1090,13 @@ public final class PGraphics2DX extends PGraphicsOpenGL {
   // TEXT
 
 
+  @Override
+  protected boolean textModeCheck(int mode) {
+    // The P2DX shader doesn't support distance field text.
+    return mode != SDF && super.textModeCheck(mode);
+  }
+
+
   //NOTE: a possible improvement to text rendering performance is to batch all glyphs
   //from the same texture page together instead of rendering each char strictly in sequence.
   //it remains to be seen whether this would improve performance in practice
@@ -1356,10 +1380,23 @@ public final class PGraphics2DX extends PGraphicsOpenGL {
   //in my testing, performance seems to plateau after around 6000 (= 2000*3)
   //memory usage should be around ~165kb for 6000 verts
   final private int maxVerts = 2000*3;
-  final private int vertSize = 7*Float.BYTES; //xyzuvcf
-  private float[] vertexData = new float[maxVerts*7];
+  final private int vertSize = 8*Float.BYTES; //xyzuvcfs
+  private float[] vertexData = new float[maxVerts*8];
   private int usedVerts = 0;
 
+  //the default shader samples from up to this many textures, so images and
+  //font pages can be mixed in a single batch, each vertex stores the unit
+  //of its texture (GLES 2 guarantees at least 8 texture units)
+  final private int maxTexUnits = 8;
+  private int[] unitTex = new int[maxTexUnits];
+  private int usedUnits = 0;
+  //textures bound to each unit by the last flush, to count texture switches
+  private int[] flushedUnitTex = new int[maxTexUnits];
+  private int texUnit;
+  //uv scale of the current texture, applied to the vertices when batching
+  //several textures since the texScale uniform cannot change within a batch
+  private float texScaleU = 1, texScaleV = 1;
+
   private float depth = 1.0f;
 
   private int imageTex;
@@ -1483,14 +1520,51 @@ public final class PGraphics2DX extends PGraphicsOpenGL {
 
     pgl.drawArrays(PGL.TRIANGLES, 0, usedVerts);
 
+    int switches = countTextureSwitches();
+    RenderMetrics metrics = getMetrics();
+    if (metrics != null) {
+      metrics.count(RenderMetrics.FLUSHES, 1);
+      metrics.count(RenderMetrics.DRAW_CALLS, 1);
+      metrics.count(RenderMetrics.VERTICES, usedVerts);
+      if (0 < switches) {
+        metrics.count(RenderMetrics.TEXTURE_SWITCHES, switches);
+      }
+    }
+
     usedVerts = 0;
     shader.unbind();
 
+    //the current texture stays in the first unit of the next batch
+    usedUnits = 0;
+    if (tex != 0) {
+      unitTex[usedUnits++] = tex;
+    }
+    texUnit = 0;
+
     //XXX: DEBUG
 //    println("flushed: " + tex + ", " + imageTex);
   }
 
 
+  //counts the units whose texture is not the one bound by the last flush,
+  //following what loadUniforms() binds
+  private int countTextureSwitches() {
+    int switches = 0;
+    if (multiTexture() && 0 < usedUnits) {
+      for (int i = 0; i < usedUnits; i++) {
+        if (flushedUnitTex[i] != unitTex[i]) {
+          flushedUnitTex[i] = unitTex[i];
+          switches++;
+        }
+      }
+    } else if (flushedUnitTex[0] != tex) {
+      flushedUnitTex[0] = tex;
+      switches++;
+    }
+    return switches;
+  }
+
+
   private boolean checkShaderLocs(PShader shader) {
     int positionLoc = shader.getAttributeLoc("position");
     if (positionLoc == -1) {
@@ -1525,6 +1599,7 @@ public final class PGraphics2DX extends PGraphicsOpenGL {
     colorLoc = shader.getAttributeLoc("color");
     texCoordLoc = shader.getAttributeLoc("texCoord");
     texFactorLoc = shader.getAttributeLoc("texFactor");
+    texSlotLoc = shader.getAttributeLoc("texSlot");
     transformLoc = shader.getUniformLoc("transform");
     if (transformLoc == -1) {
       transformLoc = shader.getUniformLoc("transformMatrix");
@@ -1545,6 +1620,7 @@ public final class PGraphics2DX extends PGraphicsOpenGL {
         String[] vertSource = pgl.loadVertexShader(defP2DShaderVertURL);
         String[] fragSource = pgl.loadFragmentShader(defP2DShaderFragURL);
         defTwoShader = new PShader(parent, vertSource, fragSource);
+        texUnitLocs = null;
       }
       shader = defTwoShader;
     } else {
@@ -1553,6 +1629,13 @@ public final class PGraphics2DX extends PGraphicsOpenGL {
 //    if (shader != defTwoShader) {
     loadShaderLocs(shader);
 //    }
+    if (shader == defTwoShader && texUnitLocs == null) {
+      texUnitLocs = new int[maxTexUnits];
+      texUnitLocs[0] = shader.getUniformLoc("texture");
+      for (int i = 1; i < maxTexUnits; i++) {
+        texUnitLocs[i] = shader.getUniformLoc("texture" + i);
+      }
+    }
     return shader;
   }
 
@@ -1574,6 +1657,10 @@ public final class PGraphics2DX extends PGraphicsOpenGL {
       pgl.vertexAttribPointer(texFactorLoc, 1, PGL.FLOAT, false, vertSize, 6*Float.BYTES);
       pgl.enableVertexAttribArray(texFactorLoc);
     }
+    if (-1 < texSlotLoc) {
+      pgl.vertexAttribPointer(texSlotLoc, 1, PGL.FLOAT, false, vertSize, 7*Float.BYTES);
+      pgl.enableVertexAttribArray(texSlotLoc);
+    }
   }
 
 
@@ -1581,6 +1668,26 @@ public final class PGraphics2DX extends PGraphicsOpenGL {
     //set matrix uniform
     pgl.uniformMatrix4fv(transformLoc, 1, true, FloatBuffer.wrap(new PMatrix3D().get(null)));
 
+    if (multiTexture()) {
+      //bind every texture used in the batch to its own unit, the uvs have
+      //already been scaled
+      for (int i = usedUnits - 1; 0 <= i; i--) {
+        pgl.activeTexture(PGL.TEXTURE0 + i);
+        pgl.bindTexture(PGL.TEXTURE_2D, unitTex[i]);
+        if (-1 < texUnitLocs[i]) {
+          pgl.uniform1i(texUnitLocs[i], i);
+        }
+      }
+      if (usedUnits == 0) {
+        pgl.activeTexture(PGL.TEXTURE0);
+        pgl.bindTexture(PGL.TEXTURE_2D, tex);
+      }
+      if (-1 < texScaleLoc) {
+        pgl.uniform2f(texScaleLoc, 1, 1);
+      }
+      return;
+    }
+
     //set texture info
     pgl.activeTexture(PGL.TEXTURE0);
     pgl.bindTexture(PGL.TEXTURE_2D, tex);
@@ -1600,8 +1707,41 @@ public final class PGraphics2DX extends PGraphicsOpenGL {
       return; //texture is already bound; no work to be done
     }
 
-    flushBuffer();
+    //the batch continues as long as there are texture units left
+    int unit = -1;
+    if (multiTexture()) {
+      for (int i = 0; i < usedUnits; i++) {
+        if (unitTex[i] == glId) {
+          unit = i;
+          break;
+        }
+      }
+    }
+    if (unit == -1) {
+      if (!multiTexture() || usedUnits == maxTexUnits) {
+        flushBuffer();
+        usedUnits = 0;
+      }
+      unit = usedUnits++;
+      unitTex[unit] = glId;
+    }
+    texUnit = unit;
     tex = glId;
+
+    //enable uv scaling only for use-defined images, not for fonts
+    if (glId == imageTex) {
+      texScaleU = 1f / texWidth;
+      texScaleV = 1f / texHeight;
+    } else {
+      texScaleU = 1;
+      texScaleV = 1;
+    }
+  }
+
+
+  //custom shaders get a single texture and the texScale uniform, like before
+  private boolean multiTexture() {
+    return twoShader == null;
   }
 
 
@@ -1613,7 +1753,7 @@ public final class PGraphics2DX extends PGraphicsOpenGL {
 
 
   private void vertexImpl(float x, float y, float u, float v, int c, float f) {
-    int idx = usedVerts * 7;
+    int idx = usedVerts * 8;
     //inline multiply only x and y to avoid an allocation and a few flops
     vertexData[idx + 0] = projmodelview.m00*x + projmodelview.m01*y + projmodelview.m03;
     vertexData[idx + 1] = projmodelview.m10*x + projmodelview.m11*y + projmodelview.m13;
@@ -1622,6 +1762,11 @@ public final class PGraphics2DX extends PGraphicsOpenGL {
     vertexData[idx + 4] = v;
     vertexData[idx + 5] = Float.intBitsToFloat(c);
     vertexData[idx + 6] = f;
+    vertexData[idx + 7] = texUnit;
+    if (twoShader == null) {
+      vertexData[idx + 3] *= texScaleU;
+      vertexData[idx + 4] *= texScaleV;
+    }
     usedVerts++;
   }
 
@@ -1690,6 +1835,9 @@ public final class PGraphics2DX extends PGraphicsOpenGL {
 
 
   private void triangle(float x1, float y1, float x2, float y2, float x3, float y3, int color) {
+    if (strokeCache.recording) {
+      strokeCache.record(x1, y1, x2, y2, x3, y3);
+    }
     check(3);
     vertexImpl(x1, y1, 0, 0, color, 0);
     vertexImpl(x2, y2, 0, 0, color, 0);
@@ -1778,6 +1926,204 @@ public final class PGraphics2DX extends PGraphicsOpenGL {
 
 
   private StrokeRenderer sr = new StrokeRenderer();
+  private StrokeCache strokeCache = new StrokeCache();
+
+
+  /**
+   * Sets the size of the cache of stroke geometry. Strokes drawn with the
+   * same vertices, weight, join, and cap more than once are stored in the
+   * cache, so the joins and caps are not computed again in later frames.
+   * Setting either limit to 0 disables the cache.
+   *
+   * @param maxShapes maximum number of stroked shapes in the cache
+   * @param maxVertices maximum number of vertices stored for all shapes
+   */
+  public void strokeCache(int maxShapes, int maxVertices) {
+    strokeCache.setLimits(maxShapes, maxVertices);
+  }
+
+
+  /**
+   * Number of strokes drawn from the cache since the renderer was created.
+   */
+  public int getStrokeCacheHits() {
+    return strokeCache.hits;
+  }
+
+
+  /**
+   * Number of strokes that had to be computed since the renderer was created.
+   */
+  public int getStrokeCacheMisses() {
+    return strokeCache.misses;
+  }
+
+
+  //stores the stroke triangles of shapes in model coordinates, keyed on everything
+  //that goes into computing them, so they can be replayed under any transformation
+  private class StrokeCache {
+    int maxShapes = 256;
+    int maxVertices = 64 * 1024;
+    int hits, misses;
+
+    //hashes of the strokes drawn once, only those drawn again are stored,
+    //so geometry that changes in every frame doesn't churn the cache
+    int[] seen = new int[1024];
+
+    LinkedHashMap<StrokeKey, float[]> shapes =
+      new LinkedHashMap<StrokeKey, float[]>(16, 0.75f, true);
+    int storedVertices;
+    StrokeKey probe = new StrokeKey(new float[64], 0);
+
+    boolean recording;
+    float[] triangles = new float[6 * 64];
+    int triangleCount;
+
+
+    void setLimits(int maxShapes, int maxVertices) {
+      this.maxShapes = maxShapes;
+      this.maxVertices = maxVertices;
+      trim(0);
+    }
+
+
+    //draws the stroke of the current shape, returns false if it should
+    //be computed instead
+    boolean draw(int mode) {
+      if (maxShapes <= 0 || maxVertices <= 0) {
+        return false;
+      }
+
+      setKey(mode);
+      float[] stored = shapes.get(probe);
+      if (stored != null) {
+        hits++;
+        for (int i = 0; i < stored.length; i += 6) {
+          check(3);
+          vertexImpl(stored[i + 0], stored[i + 1], 0, 0, strokeColor, 0);
+          vertexImpl(stored[i + 2], stored[i + 3], 0, 0, strokeColor, 0);
+          vertexImpl(stored[i + 4], stored[i + 5], 0, 0, strokeColor, 0);
+        }
+        return true;
+      }
+
+      misses++;
+      int idx = probe.hash & (seen.length - 1);
+      if (seen[idx] != probe.hash) {
+        seen[idx] = probe.hash;
+        return false;
+      }
+
+      triangleCount = 0;
+      recording = true;
+      strokeShape(mode);
+      recording = false;
+
+      int count = triangleCount * 3;
+      if (count <= maxVertices) {
+        trim(count);
+        float[] data = new float[probe.length];
+        System.arraycopy(probe.data, 0, data, 0, probe.length);
+        float[] geometry = new float[triangleCount * 6];
+        System.arraycopy(triangles, 0, geometry, 0, geometry.length);
+        shapes.put(new StrokeKey(data, probe.hash), geometry);
+        storedVertices += count;
+      }
+      return true;
+    }
+
+
+    void record(float x1, float y1, float x2, float y2, float x3, float y3) {
+      int idx = triangleCount * 6;
+      if (triangles.length < idx + 6) {
+        triangles = PApplet.expand(triangles, triangles.length * 2);
+      }
+      triangles[idx + 0] = x1;
+      triangles[idx + 1] = y1;
+      triangles[idx + 2] = x2;
+      triangles[idx + 3] = y2;
+      triangles[idx + 4] = x3;
+      triangles[idx + 5] = y3;
+      triangleCount++;
+    }
+
+
+    //removes the least recently used strokes until there is room for
+    //another one with the given number of vertices
+    void trim(int count) {
+      Iterator<Map.Entry<StrokeKey, float[]>> it = shapes.entrySet().iterator();
+      while (it.hasNext() && (maxShapes <= shapes.size() ||
+                              maxVertices < storedVertices + count)) {
+        storedVertices -= it.next().getValue().length / 2;
+        it.remove();
+      }
+    }
+
+
+    void setKey(int mode) {
+      //the arcs of round joins and caps depend on the on-screen size
+      boolean round = strokeJoin == ROUND || strokeCap == ROUND;
+
+      int length = 7 + contourCount + 2 * vertCount;
+      if (probe.data.length < length) {
+        probe.data = new float[PApplet.max(length, 2 * probe.data.length)];
+      }
+      float[] data = probe.data;
+      int n = 0;
+      data[n++] = shapeType;
+      data[n++] = mode;
+      data[n++] = strokeWeight;
+      data[n++] = strokeJoin;
+      data[n++] = strokeCap;
+      data[n++] = round ? detailMultiplier() : 0;
+      data[n++] = contourCount;
+      for (int i = 0; i < contourCount; i++) {
+        data[n++] = contours[i];
+      }
+      for (int i = 0; i < vertCount; i++) {
+        data[n++] = shapeVerts[i].x;
+        data[n++] = shapeVerts[i].y;
+      }
+
+      int hash = 1;
+      for (int i = 0; i < n; i++) {
+        hash = 31 * hash + Float.floatToIntBits(data[i]);
+      }
+      probe.length = n;
+      probe.hash = hash;
+    }
+  }
+
+
+  static private class StrokeKey {
+    float[] data;
+    int length;
+    int hash;
+
+    StrokeKey(float[] data, int hash) {
+      this.data = data;
+      this.length = data.length;
+      this.hash = hash;
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof StrokeKey)) return false;
+      StrokeKey other = (StrokeKey) obj;
+      if (other.hash != hash || other.length != length) return false;
+      for (int i = 0; i < length; i++) {
+        if (Float.floatToIntBits(other.data[i]) != Float.floatToIntBits(data[i])) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
 
 
   private class StrokeRenderer {
@@ -2004,18 +2350,22 @@ public final class PGraphics2DX extends PGraphicsOpenGL {
 
   //returns the total number of points needed to approximate an arc of a given radius and extent
   int circleDetail(float radius, float delta) {
-    //this serves as a rough approximation of how much the longest axis
-    //of an ellipse will be scaled by a given matrix
-    //(in other words, the amount by which its on-screen size changes)
+    radius *= detailMultiplier();
+    return (int)(PApplet.min(127, PApplet.sqrt(radius) / QUARTER_PI * PApplet.abs(delta) * 0.75f) + 1);
+  }
+
+
+  //this serves as a rough approximation of how much the longest axis
+  //of an ellipse will be scaled by a given matrix
+  //(in other words, the amount by which its on-screen size changes)
+  float detailMultiplier() {
     float sxi = projmodelview.m00 * width / 2;
     float syi = projmodelview.m10 * height / 2;
     float sxj = projmodelview.m01 * width / 2;
     float syj = projmodelview.m11 * height / 2;
     float Imag2 = sxi * sxi + syi * syi;
     float Jmag2 = sxj * sxj + syj * syj;
-    float ellipseDetailMultiplier = PApplet.sqrt(PApplet.max(Imag2, Jmag2));
-    radius *= ellipseDetailMultiplier;
-    return (int)(PApplet.min(127, PApplet.sqrt(radius) / QUARTER_PI * PApplet.abs(delta) * 0.75f) + 1);
+    return PApplet.sqrt(PApplet.max(Imag2, Jmag2));
   }
 
 
@@ -37,6 +37,7 @@ import java.lang.ref.WeakReference;
 import java.net.URL;
 import java.nio.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import android.content.Context;
 import android.os.Environment;
@@ -56,6 +57,11 @@ public class PGraphicsOpenGL extends PGraphics {
 
   /** Font cache for texture objects. */
   protected WeakHashMap<PFont, FontTexture> fontMap;
+  protected WeakHashMap<PFont, FontTexture> sdfFontMap;
+
+  /** Uniform buffers shared by all the shaders, in order of creation. */
+  protected HashMap<String, UniformBlock> uniformBlockMap;
+  protected ArrayList<UniformBlock> uniformBlocks;
 
   // ........................................................
 
@@ -168,6 +174,7 @@ public class PGraphicsOpenGL extends PGraphics {
   static public boolean blendEqSupported;
   static public boolean readBufferSupported;
   static public boolean drawBufferSupported;
+  static public boolean uniformBufferSupported;
 
   /** Some hardware limits */
   static public int maxTextureSize;
@@ -214,6 +221,10 @@ public class PGraphicsOpenGL extends PGraphics {
     PGraphicsOpenGL.class.getResource("/assets/shaders/PointFrag.glsl");
   static protected URL maskShaderFragURL =
     PGraphicsOpenGL.class.getResource("/assets/shaders/MaskFrag.glsl");
+  static protected URL sdfTextShaderFragURL =
+    PGraphicsOpenGL.class.getResource("/assets/shaders/SDFTextFrag.glsl");
+  static protected URL sdfTextLightShaderFragURL =
+    PGraphicsOpenGL.class.getResource("/assets/shaders/SDFTextLightFrag.glsl");
 
   protected PShader defColorShader;
   protected PShader defTextureShader;
@@ -222,6 +233,8 @@ public class PGraphicsOpenGL extends PGraphics {
   protected PShader defLineShader;
   protected PShader defPointShader;
   protected PShader maskShader;
+  protected PShader sdfTextShader;
+  protected PShader sdfTextLightShader;
 
   protected PShader polyShader;
   protected PShader lineShader;
@@ -234,10 +247,26 @@ public class PGraphicsOpenGL extends PGraphics {
   protected InGeometry inGeo;
   protected TessGeometry tessGeo;
   protected TexCache texCache;
+  protected PrimitiveCache primitiveCache;
   protected Tessellator tessellator;
 
   // ........................................................
 
+  // Frame metrics, only set in the primary surface while enabled
+
+  protected RenderMetrics metrics;
+
+  // ........................................................
+
+  // Images loaded with requestImage(), waiting to be uploaded to their
+  // textures at the start of the next frames (only in the primary surface)
+
+  protected Queue<PendingTexture> pendingTextures =
+    new ConcurrentLinkedQueue<PendingTexture>();
+  protected PendingTexture currentUpload;
+
+  // ........................................................
+
   // Depth sorter
 
   protected DepthSorter sorter;
@@ -588,6 +617,8 @@ public class PGraphicsOpenGL extends PGraphics {
     "The vertex shader is missing, cannot create shader object";
   static final String UNKNOWN_SHADER_KIND_ERROR =
     "Unknown shader kind";
+  static final String MISSING_UNIFORM_BUFFERS =
+    "Uniform blocks require an OpenGL ES 3.0 context";
   static final String NO_TEXLIGHT_SHADER_ERROR =
     "Your shader needs to be of TEXLIGHT type " +
     "to render this geometry properly, using default shader instead.";
@@ -628,6 +659,7 @@ public class PGraphicsOpenGL extends PGraphics {
     inGeo = newInGeometry(this, polyAttribs, IMMEDIATE);
     tessGeo = newTessGeometry(this, polyAttribs, IMMEDIATE);
     texCache = newTexCache(this);
+    primitiveCache = newPrimitiveCache(this);
 
     projection = new PMatrix3D();
     camera = new PMatrix3D();
@@ -667,6 +699,9 @@ public class PGraphicsOpenGL extends PGraphics {
     if (primary) {
       fbStack = new FrameBuffer[FB_STACK_DEPTH];
       fontMap = new WeakHashMap<PFont, FontTexture>();
+      sdfFontMap = new WeakHashMap<PFont, FontTexture>();
+      uniformBlockMap = new HashMap<String, UniformBlock>();
+      uniformBlocks = new ArrayList<UniformBlock>();
       tessellator = new Tessellator();
     } else {
       tessellator = getPrimaryPG().tessellator;
@@ -1166,7 +1201,11 @@ public class PGraphicsOpenGL extends PGraphics {
 
 
   protected void setFontTexture(PFont font, FontTexture fontTexture) {
-    getPrimaryPG().fontMap.put(font, fontTexture);
+    if (fontTexture.sdf) {
+      getPrimaryPG().sdfFontMap.put(font, fontTexture);
+    } else {
+      getPrimaryPG().fontMap.put(font, fontTexture);
+    }
   }
 
 
@@ -1175,8 +1214,18 @@ public class PGraphicsOpenGL extends PGraphics {
   }
 
 
+  protected FontTexture getFontTexture(PFont font, boolean sdf) {
+    if (sdf) {
+      return getPrimaryPG().sdfFontMap.get(font);
+    } else {
+      return getPrimaryPG().fontMap.get(font);
+    }
+  }
+
+
   protected void removeFontTexture(PFont font) {
     getPrimaryPG().fontMap.remove(font);
+    getPrimaryPG().sdfFontMap.remove(font);
   }
 
 
@@ -1602,6 +1651,18 @@ public class PGraphicsOpenGL extends PGraphics {
     pgl.bufferData(PGL.ELEMENT_ARRAY_BUFFER,
       tessGeo.polyIndexCount * PGL.SIZEOF_INDEX, tessGeo.polyIndicesBuffer,
       PGL.STATIC_DRAW);
+
+    RenderMetrics metrics = getMetrics();
+    if (metrics != null) {
+      long bytes = 4 * sizef + sizei + tessGeo.polyIndexCount * PGL.SIZEOF_INDEX;
+      if (lit) bytes += 3 * sizei + sizef;
+      if (lit || needNormals) bytes += 3 * sizef;
+      if (tex || needTexCoords) bytes += 2 * sizef;
+      for (VertexAttribute attrib: polyAttribs.values()) {
+        bytes += attrib.sizeInBytes(size);
+      }
+      metrics.count(RenderMetrics.BUFFER_BYTES, bytes);
+    }
   }
 
 
@@ -1661,6 +1722,12 @@ public class PGraphicsOpenGL extends PGraphics {
     pgl.bufferData(PGL.ELEMENT_ARRAY_BUFFER,
                    tessGeo.lineIndexCount * PGL.SIZEOF_INDEX,
                    tessGeo.lineIndicesBuffer, PGL.STATIC_DRAW);
+
+    RenderMetrics metrics = getMetrics();
+    if (metrics != null) {
+      metrics.count(RenderMetrics.BUFFER_BYTES, 8 * sizef + sizei +
+                    tessGeo.lineIndexCount * PGL.SIZEOF_INDEX);
+    }
   }
 
 
@@ -1718,6 +1785,12 @@ public class PGraphicsOpenGL extends PGraphics {
     pgl.bufferData(PGL.ELEMENT_ARRAY_BUFFER,
       tessGeo.pointIndexCount * PGL.SIZEOF_INDEX,
       tessGeo.pointIndicesBuffer, PGL.STATIC_DRAW);
+
+    RenderMetrics metrics = getMetrics();
+    if (metrics != null) {
+      metrics.count(RenderMetrics.BUFFER_BYTES, 6 * sizef + sizei +
+                    tessGeo.pointIndexCount * PGL.SIZEOF_INDEX);
+    }
   }
 
 
@@ -1778,8 +1851,16 @@ public class PGraphicsOpenGL extends PGraphics {
     }
     checkSettings();
 
+    if (primaryGraphics) {
+      uploadPendingTextures();
+    }
+
     drawing = true;
 
+    if (primaryGraphics && metrics != null) {
+      metrics.beginSpan(RenderMetrics.DRAW);
+    }
+
     report("bot beginDraw()");
   }
 
@@ -1808,6 +1889,11 @@ public class PGraphicsOpenGL extends PGraphics {
     }
     drawing = false;
 
+    if (primaryGraphics && metrics != null) {
+      metrics.endSpan(RenderMetrics.DRAW);
+      metrics.endFrame();
+    }
+
     report("bot endDraw()");
   }
 
@@ -1856,6 +1942,36 @@ public class PGraphicsOpenGL extends PGraphics {
   }
 
 
+  /**
+   * Starts recording the counters and timings of each frame, keeping the
+   * values of the last given number of frames. The metrics are shared by
+   * the primary surface and all the offscreen surfaces.
+   */
+  @Override
+  public RenderMetrics enableMetrics(int frames) {
+    PGraphicsOpenGL ppg = getPrimaryPG();
+    if (ppg.metrics == null || ppg.metrics.capacity != frames + 1) {
+      ppg.metrics = new RenderMetrics(frames);
+    }
+    return ppg.metrics;
+  }
+
+
+  @Override
+  public void disableMetrics() {
+    getPrimaryPG().metrics = null;
+  }
+
+
+  /**
+   * Returns the metrics of the last frames, or null if they are not enabled.
+   */
+  @Override
+  public RenderMetrics getMetrics() {
+    return getPrimaryPG().metrics;
+  }
+
+
   public void updateProjmodelview() {
     projmodelview.set(projection);
     projmodelview.apply(modelview);
@@ -2274,7 +2390,14 @@ public class PGraphicsOpenGL extends PGraphics {
 
   @Override
   public void endShape(int mode) {
-    tessellate(mode);
+    RenderMetrics metrics = getMetrics();
+    if (metrics != null) {
+      metrics.beginSpan(RenderMetrics.TESSELLATE);
+      tessellate(mode);
+      metrics.endSpan(RenderMetrics.TESSELLATE);
+    } else {
+      tessellate(mode);
+    }
 
     if ((flushMode == FLUSH_CONTINUOUSLY) ||
         (flushMode == FLUSH_WHEN_FULL && tessGeo.isFull())) {
@@ -2292,7 +2415,14 @@ public class PGraphicsOpenGL extends PGraphics {
                                  "TRIANGLE shapes");
     }
 
-    tessellate(indices);
+    RenderMetrics metrics = getMetrics();
+    if (metrics != null) {
+      metrics.beginSpan(RenderMetrics.TESSELLATE);
+      tessellate(indices);
+      metrics.endSpan(RenderMetrics.TESSELLATE);
+    } else {
+      tessellate(indices);
+    }
 
     if (flushMode == FLUSH_CONTINUOUSLY ||
         (flushMode == FLUSH_WHEN_FULL && tessGeo.isFull())) {
@@ -2605,6 +2735,11 @@ public class PGraphicsOpenGL extends PGraphics {
     }
 
     if (hasPoints || hasLines || hasPolys) {
+      RenderMetrics metrics = getMetrics();
+      if (metrics != null) {
+        metrics.count(RenderMetrics.FLUSHES, 1);
+      }
+
       PMatrix3D modelview0 = null;
       PMatrix3D modelviewInv0 = null;
       if (flushMode == FLUSH_WHEN_FULL) {
@@ -2667,12 +2802,18 @@ public class PGraphicsOpenGL extends PGraphics {
 
 
   protected void flushPixels() {
-    drawPixels(mx1, my1, mx2 - mx1, my2 - my1);
+    int[] regions = getUpdateRegions(this);
+    for (int i = 0; i < regions.length; i += 4) {
+      drawPixels(regions[i], regions[i + 1], regions[i + 2], regions[i + 3]);
+    }
     modified = false;
   }
 
 
   protected void flushPolys() {
+    RenderMetrics metrics = getMetrics();
+    if (metrics != null) metrics.beginSpan(RenderMetrics.FLUSH_POLYS);
+
     boolean customShader = polyShader != null;
     boolean needNormals = customShader ? polyShader.accessNormals() : false;
     boolean needTexCoords = customShader ? polyShader.accessTexCoords() : false;
@@ -2681,6 +2822,9 @@ public class PGraphicsOpenGL extends PGraphics {
 
     for (int i = 0; i < texCache.size; i++) {
       Texture tex = texCache.getTexture(i);
+      if (metrics != null && 0 < i && tex != texCache.getTexture(i - 1)) {
+        metrics.count(RenderMetrics.TEXTURE_SWITCHES, 1);
+      }
 
       // If the renderer is 2D, then lights should always be false,
       // so no need to worry about that.
@@ -2743,9 +2887,14 @@ public class PGraphicsOpenGL extends PGraphics {
       shader.unbind();
     }
     unbindPolyBuffers();
+
+    if (metrics != null) metrics.endSpan(RenderMetrics.FLUSH_POLYS);
   }
 
   protected void flushSortedPolys() {
+    RenderMetrics metrics = getMetrics();
+    if (metrics != null) metrics.beginSpan(RenderMetrics.FLUSH_POLYS);
+
     boolean customShader = polyShader != null;
     boolean needNormals = customShader ? polyShader.accessNormals() : false;
     boolean needTexCoords = customShader ? polyShader.accessTexCoords() : false;
@@ -2777,6 +2926,9 @@ public class PGraphicsOpenGL extends PGraphics {
       int endTi = ti;
 
       Texture tex = texCache.getTexture(texId);
+      if (metrics != null && 0 < startTi && texId != texMap[startTi - 1]) {
+        metrics.count(RenderMetrics.TEXTURE_SWITCHES, 1);
+      }
 
       int voffset = vertexOffset[voffsetId];
 
@@ -2833,6 +2985,8 @@ public class PGraphicsOpenGL extends PGraphics {
       shader.unbind();
     }
     unbindPolyBuffers();
+
+    if (metrics != null) metrics.endSpan(RenderMetrics.FLUSH_POLYS);
   }
 
 
@@ -3045,6 +3199,9 @@ public class PGraphicsOpenGL extends PGraphics {
 
 
   protected void flushLines() {
+    RenderMetrics metrics = getMetrics();
+    if (metrics != null) metrics.beginSpan(RenderMetrics.FLUSH_LINES);
+
     updateLineBuffers();
 
     PShader shader = getLineShader();
@@ -3068,6 +3225,8 @@ public class PGraphicsOpenGL extends PGraphics {
 
     shader.unbind();
     unbindLineBuffers();
+
+    if (metrics != null) metrics.endSpan(RenderMetrics.FLUSH_LINES);
   }
 
 
@@ -3146,6 +3305,9 @@ public class PGraphicsOpenGL extends PGraphics {
 
 
   protected void flushPoints() {
+    RenderMetrics metrics = getMetrics();
+    if (metrics != null) metrics.beginSpan(RenderMetrics.FLUSH_POINTS);
+
     updatePointBuffers();
 
     PShader shader = getPointShader();
@@ -3169,6 +3331,8 @@ public class PGraphicsOpenGL extends PGraphics {
 
     shader.unbind();
     unbindPointBuffers();
+
+    if (metrics != null) metrics.endSpan(RenderMetrics.FLUSH_POINTS);
   }
 
 
@@ -3537,6 +3701,8 @@ public class PGraphicsOpenGL extends PGraphics {
 
   // public void curveTightness(float tightness)
 
+  // public void curveFlatness(float flatness)
+
   // public void curve(float x1, float y1,
   // float x2, float y2,
   // float x3, float y3,
@@ -3547,6 +3713,13 @@ public class PGraphicsOpenGL extends PGraphics {
   // float x3, float y3, float z3,
   // float x4, float y4, float z4)
 
+
+
+  @Override
+  protected float curveScale() {
+    return matrixScale(modelview);
+  }
+
   //////////////////////////////////////////////////////////////
 
   // IMAGES
@@ -3754,7 +3927,8 @@ public class PGraphicsOpenGL extends PGraphics {
 
   @Override
   protected boolean textModeCheck(int mode) {
-    return mode == MODEL || (mode == SHAPE && PGL.SHAPE_TEXT_SUPPORTED);
+    return mode == MODEL || mode == SDF ||
+           (mode == SHAPE && PGL.SHAPE_TEXT_SUPPORTED);
   }
 
   // public void textSize(float size)
@@ -4003,16 +4177,24 @@ public class PGraphicsOpenGL extends PGraphics {
   @Override
   protected void textLineImpl(char buffer[], int start, int stop,
                               float x, float y) {
-    if (textMode == MODEL) {
-      textTex = getFontTexture(textFont);
+    if (textMode == MODEL || textMode == SDF) {
+      boolean sdf = textMode == SDF;
+      textTex = getFontTexture(textFont, sdf);
 
       if (textTex == null || textTex.contextIsOutdated()) {
-        textTex = new FontTexture(this, textFont, is3D());
+        textTex = new FontTexture(this, textFont, is3D(), sdf);
         setFontTexture(textFont, textTex);
       }
 
       textTex.begin();
 
+      PShader savedShader = polyShader;
+      if (sdf) {
+        // The glyphs batched so far need to be drawn with the previous shader.
+        flush();
+        polyShader = getSDFTextShader(x, y);
+      }
+
       // Saving style parameters modified by text rendering.
       int savedTextureMode = textureMode;
       boolean savedStroke = stroke;
@@ -4051,6 +4233,11 @@ public class PGraphicsOpenGL extends PGraphics {
       // will be flushed when restoring the user's blend.
       blendMode(savedBlendMode);
 
+      if (sdf) {
+        flush();
+        polyShader = savedShader;
+      }
+
       textTex.end();
     } else if (textMode == SHAPE) {
       super.textLineImpl(buffer, start, stop, x, y);
@@ -4062,7 +4249,7 @@ public class PGraphicsOpenGL extends PGraphics {
   protected void textCharImpl(char ch, float x, float y) {
     PFont.Glyph glyph = textFont.getGlyph(ch);
     if (glyph != null) {
-      if (textMode == MODEL) {
+      if (textMode == MODEL || textMode == SDF) {
         FontTexture.TextureInfo tinfo = textTex.getTexInfo(glyph);
 
         if (tinfo == null) {
@@ -4092,6 +4279,51 @@ public class PGraphicsOpenGL extends PGraphics {
   }
 
 
+  protected PShader getSDFTextShader(float x, float y) {
+    PGraphicsOpenGL ppg = getPrimaryPG();
+    PShader shader;
+    if (lights) {
+      // The lit variant goes with the texlight vertex shader, so getPolyShader()
+      // keeps it instead of falling back to the default texlight shader.
+      if (ppg.sdfTextLightShader == null) {
+        ppg.sdfTextLightShader = loadShaderFromURL(sdfTextLightShaderFragURL,
+                                                   defTexlightShaderVertURL);
+      }
+      shader = ppg.sdfTextLightShader;
+    } else {
+      if (ppg.sdfTextShader == null) {
+        ppg.sdfTextShader = loadShaderFromURL(sdfTextShaderFragURL,
+                                              defTextureShaderVertURL);
+      }
+      shader = ppg.sdfTextShader;
+    }
+
+    // The width of the anti-aliased edge should be around one pixel on the
+    // screen, which depends on how much the glyphs are scaled.
+    float scale = textSize / textFont.getSize() * textScreenScale(x, y);
+    float smoothing = 0.7f / (2 * textTex.border * PApplet.max(scale, 0.01f));
+    shader.set("smoothing", PApplet.constrain(smoothing, 0.01f, 0.5f));
+    return shader;
+  }
+
+
+  /**
+   * Size in pixels of one unit of the text plane around (x, y), once the
+   * modelview and the projection are applied. Under perspective this changes
+   * with the distance to the camera, so it is measured at the text origin.
+   */
+  protected float textScreenScale(float x, float y) {
+    float sx0 = screenXImpl(x, y, 0);
+    float sy0 = screenYImpl(x, y, 0);
+    float dxx = screenXImpl(x + 1, y, 0) - sx0;
+    float dxy = screenYImpl(x + 1, y, 0) - sy0;
+    float dyx = screenXImpl(x, y + 1, 0) - sx0;
+    float dyy = screenYImpl(x, y + 1, 0) - sy0;
+    // The square root of the area of the projected unit square.
+    return PApplet.sqrt(PApplet.abs(dxx * dyy - dxy * dyx));
+  }
+
+
   protected void textCharModelImpl(FontTexture.TextureInfo info,
                                    float x0, float y0,
                                    float x1, float y1) {
@@ -6414,12 +6646,16 @@ public class PGraphicsOpenGL extends PGraphics {
         PImage target = asyncImageSaver.getAvailableTarget(widths[tail],
                                                            heights[tail],
                                                            format);
-        if (target == null) return;
-        readBuffer.rewind();
-        readBuffer.asIntBuffer().get(target.pixels);
+        // no target when the saver drops the frame
+        if (target != null) {
+          readBuffer.rewind();
+          readBuffer.asIntBuffer().get(target.pixels);
+        }
         pgl.unmapBuffer(PGL.PIXEL_PACK_BUFFER);
-        asyncImageSaver.saveTargetAsync(PGraphicsOpenGL.this, target,
-                                        filenames[tail]);
+        if (target != null) {
+          asyncImageSaver.saveTargetAsync(PGraphicsOpenGL.this, target,
+                                          filenames[tail]);
+        }
       }
 
       pgl.bindBuffer(PGL.PIXEL_PACK_BUFFER, 0);
@@ -7032,6 +7268,48 @@ public class PGraphicsOpenGL extends PGraphics {
   }
 
 
+  /**
+   * Called from the threads of requestImage(). The pixels of the image are
+   * read from the bitmap in the loading thread, and then uploaded to the
+   * texture a few rows at a time during the following frames, so large
+   * images don't stall the frame where they are first drawn. The image
+   * returned by requestImage() is filled in once its texture is complete.
+   */
+  @Override
+  protected void requestImageLoaded(PImage vessel, PImage actual) {
+    actual.loadPixels();
+    getPrimaryPG().pendingTextures.add(new PendingTexture(vessel, actual));
+    parent.invalidate();
+  }
+
+
+  protected void uploadPendingTextures() {
+    if (currentUpload == null && pendingTextures.isEmpty()) {
+      return;
+    }
+
+    // If the sketch is not looping, there might not be another frame soon,
+    // so everything is uploaded at once.
+    boolean sliced = parent.isLooping();
+    long deadline = System.nanoTime() + PGL.TEXTURE_UPLOAD_MILLIS * 1000000L;
+    do {
+      if (currentUpload == null) {
+        currentUpload = pendingTextures.poll();
+        if (currentUpload == null) return;
+      }
+      if (currentUpload.upload(this)) {
+        currentUpload = null;
+      }
+    } while (!sliced || System.nanoTime() < deadline);
+
+    if (currentUpload != null || !pendingTextures.isEmpty()) {
+      // Make sure the next frame is drawn even if the sketch skips the idle
+      // frames, otherwise the upload would not continue.
+      parent.invalidate();
+    }
+  }
+
+
   protected void bindFrontTexture() {
     if (primaryGraphics) {
       pgl.bindFrontTexture();
@@ -7119,17 +7397,29 @@ public class PGraphicsOpenGL extends PGraphics {
   protected void updateTexture(PImage img, Texture tex) {
     if (tex != null) {
       if (img.isModified()) {
-        int x = img.getModifiedX1();
-        int y = img.getModifiedY1();
-        int w = img.getModifiedX2() - x;
-        int h = img.getModifiedY2() - y;
-        tex.set(img.pixels, x, y, w, h, img.format);
+        tex.setRegions(img.pixels, getUpdateRegions(img), img.format);
       }
     }
     img.setModified(false);
   }
 
 
+  // Returns the modified regions of the image, or only their bounding
+  // rectangle if there are so many of them that uploading each one
+  // separately would be slower.
+  protected static int[] getUpdateRegions(PImage img) {
+    int[] regions = img.getModifiedRegions();
+    if (PGL.MAX_UPDATE_REGIONS < regions.length / 4) {
+      int x = img.getModifiedX1();
+      int y = img.getModifiedY1();
+      int w = img.getModifiedX2() - x;
+      int h = img.getModifiedY2() - y;
+      regions = new int[] { x, y, w, h };
+    }
+    return regions;
+  }
+
+
   protected void deleteSurfaceTextures() {
     if (texture != null) {
       texture.dispose();
@@ -7479,6 +7769,7 @@ public class PGraphicsOpenGL extends PGraphics {
     anisoSamplingSupported = pgl.hasAnisoSamplingSupport();
     readBufferSupported = pgl.hasReadBuffer();
     drawBufferSupported = pgl.hasDrawBuffer();
+    uniformBufferSupported = pgl.hasUniformBuffers();
 
     try {
       pgl.blendEquation(PGL.FUNC_ADD);
@@ -7621,6 +7912,105 @@ public class PGraphicsOpenGL extends PGraphics {
   }
 
 
+  /**
+   * Sets the contents of the uniform block with the given name, which is
+   * shared by all the shaders that declare it. Data common to many shaders,
+   * such as per-frame parameters, is then uploaded once instead of once per
+   * shader. The values must follow the std140 layout of the block. Requires
+   * an OpenGL ES 3.0 context (PGLES.version = 3).
+   */
+  public void setUniformBlock(String name, float[] data) {
+    if (!uniformBufferSupported) {
+      PGraphics.showWarning(MISSING_UNIFORM_BUFFERS);
+      return;
+    }
+
+    PGraphicsOpenGL ppg = getPrimaryPG();
+    UniformBlock block = ppg.uniformBlockMap.get(name);
+    if (block == null) {
+      block = new UniformBlock(name, ppg.uniformBlocks.size());
+      ppg.uniformBlockMap.put(name, block);
+      ppg.uniformBlocks.add(block);
+    }
+
+    if (block.buffer == null || block.buffer.contextIsOutdated()) {
+      block.buffer = new VertexBuffer(this, PGL.UNIFORM_BUFFER, 1,
+                                      PGL.SIZEOF_FLOAT);
+      block.size = 0;
+    }
+
+    block.data = PGL.updateFloatBuffer(block.data, data, false);
+    int size = data.length * PGL.SIZEOF_FLOAT;
+    pgl.bindBuffer(PGL.UNIFORM_BUFFER, block.buffer.glId);
+    if (block.size == size) {
+      pgl.bufferSubData(PGL.UNIFORM_BUFFER, 0, size, block.data);
+    } else {
+      pgl.bufferData(PGL.UNIFORM_BUFFER, size, block.data, PGL.DYNAMIC_DRAW);
+      block.size = size;
+    }
+    pgl.bindBuffer(PGL.UNIFORM_BUFFER, 0);
+    pgl.bindBufferBase(PGL.UNIFORM_BUFFER, block.binding, block.buffer.glId);
+  }
+
+
+  /**
+   * Image decoded by requestImage() that is being uploaded to its texture.
+   */
+  static protected class PendingTexture {
+    PImage vessel;
+    PImage image;
+    Texture tex;
+    int row;
+
+    PendingTexture(PImage vessel, PImage image) {
+      this.vessel = vessel;
+      this.image = image;
+    }
+
+    // Uploads the next rows of the image, returns true once all of them have
+    // been uploaded and the vessel is ready to be drawn.
+    boolean upload(PGraphicsOpenGL pg) {
+      if (tex == null || tex.contextIsOutdated()) {
+        Texture.Parameters params =
+          new Texture.Parameters(ARGB, pg.textureSampling,
+                                 pg.getHint(ENABLE_TEXTURE_MIPMAPS),
+                                 pg.textureWrap);
+        tex = new Texture(pg, image.width, image.height, params);
+        tex.invertedY(pg.cameraUp);
+        row = 0;
+      }
+
+      int rows = Math.max(1, PGL.TEXTURE_UPLOAD_CHUNK / image.width);
+      tex.setRows(image.pixels, row, rows, image.format);
+      row += rows;
+      if (row < image.height) {
+        return false;
+      }
+
+      pg.setCache(vessel, tex);
+      // The pixels were only needed for the upload, the bitmap is still
+      // there if the sketch calls loadPixels() on the image.
+      image.pixels = null;
+      fillRequestedImage(vessel, image);
+      return true;
+    }
+  }
+
+
+  static protected class UniformBlock {
+    String name;
+    int binding;
+    VertexBuffer buffer;
+    FloatBuffer data;
+    int size;
+
+    UniformBlock(String name, int binding) {
+      this.name = name;
+      this.binding = binding;
+    }
+  }
+
+
   protected PShader getPolyShader(boolean lit, boolean tex) {
     PShader shader;
     PGraphicsOpenGL ppg = getPrimaryPG();
@@ -8003,6 +8393,11 @@ public class PGraphicsOpenGL extends PGraphics {
   }
 
 
+  static protected PrimitiveCache newPrimitiveCache(PGraphicsOpenGL pg) {
+    return new PrimitiveCache(pg);
+  }
+
+
   // Holds an array of textures and the range of vertex
   // indices each texture applies to.
   static protected class TexCache {
@@ -8238,6 +8633,140 @@ public class PGraphicsOpenGL extends PGraphics {
   }
 
 
+  // Holds the input geometry of the ellipses, arcs, boxes and spheres
+  // generated so far, in unit size, so drawing the same primitive again
+  // only needs to scale and translate the cached vertices, instead of
+  // recomputing them together with their edges and indices.
+  static protected class PrimitiveCache {
+    static final int MAX_SIZE = 256;
+
+    PGraphicsOpenGL pg;
+    InGeometry geo;
+    HashMap<Long, Primitive> primitives;
+
+    PrimitiveCache(PGraphicsOpenGL pg) {
+      this.pg = pg;
+      primitives = new HashMap<Long, Primitive>();
+    }
+
+    Primitive getEllipse(int accuracy, boolean fill, boolean stroke) {
+      long key = key(ELLIPSE, fill, stroke, accuracy);
+      Primitive prim = primitives.get(key);
+      if (prim == null) {
+        begin().addEllipseVertices(0, 0, 1, 1, accuracy, fill, stroke);
+        prim = end(key, false, null);
+      }
+      return prim;
+    }
+
+    Primitive getArc(int startLUT, int stopLUT, int length, int inc,
+                     boolean fill, boolean stroke, int arcMode) {
+      long key = key(ARC, fill, stroke,
+                     ((long) startLUT << 38) | ((long) stopLUT << 28) |
+                     ((long) length << 18) | ((long) inc << 8) |
+                     (arcMode & 0xFF));
+      Primitive prim = primitives.get(key);
+      if (prim == null) {
+        begin().addArcVertices(0, 0, 1, 1, startLUT, stopLUT, length, inc,
+                               fill, stroke, arcMode);
+        prim = end(key, false, null);
+      }
+      return prim;
+    }
+
+    // The signs of the dimensions are part of the key, since they set the
+    // direction of the normals.
+    Primitive getBox(boolean posW, boolean posH, boolean posD,
+                     boolean fill, boolean stroke) {
+      long key = key(BOX, fill, stroke,
+                     (posW ? 4 : 0) + (posH ? 2 : 0) + (posD ? 1 : 0));
+      Primitive prim = primitives.get(key);
+      if (prim == null) {
+        begin().addBoxVertices(posW ? 1 : -1, posH ? 1 : -1, posD ? 1 : -1,
+                               fill, stroke);
+        prim = end(key, true, null);
+      }
+      return prim;
+    }
+
+    Primitive getSphere(int detailU, int detailV,
+                        boolean fill, boolean stroke) {
+      long key = key(SPHERE, fill, stroke,
+                     ((long) detailU << 27) | detailV);
+      Primitive prim = primitives.get(key);
+      if (prim == null) {
+        int[] indices = begin().addSphereVertices(1, detailU, detailV,
+                                                  fill, stroke);
+        prim = end(key, true, indices);
+      }
+      return prim;
+    }
+
+    protected long key(int kind, boolean fill, boolean stroke, long params) {
+      return ((long) kind << 56) | (fill ? 1L << 55 : 0) |
+             (stroke ? 1L << 54 : 0) | params;
+    }
+
+    protected InGeometry begin() {
+      if (geo == null) {
+        geo = newInGeometry(pg, newAttributeMap(), IMMEDIATE);
+      }
+      geo.clear();
+      return geo;
+    }
+
+    protected Primitive end(long key, boolean normals, int[] indices) {
+      if (MAX_SIZE <= primitives.size()) {
+        // Arcs of arbitrary angles could fill the cache forever
+        primitives.clear();
+      }
+      Primitive prim = new Primitive(geo, normals, indices);
+      primitives.put(key, prim);
+      return prim;
+    }
+  }
+
+
+  // Unit-size input geometry of a primitive, with the edges and indices
+  // relative to its first vertex. The normals are null when the primitive
+  // takes the current normal.
+  static protected class Primitive {
+    int vertexCount;
+    float[] vertices;
+    float[] normals;
+    float[] texcoords;
+    int[] codes;
+    int edgeCount;
+    int[] edges;
+    int[] indices;
+
+    Primitive(InGeometry geo, boolean hasNormals, int[] indices) {
+      vertexCount = geo.vertexCount;
+      vertices = new float[3 * vertexCount];
+      PApplet.arrayCopy(geo.vertices, vertices, 3 * vertexCount);
+      if (hasNormals) {
+        normals = new float[3 * vertexCount];
+        PApplet.arrayCopy(geo.normals, normals, 3 * vertexCount);
+      }
+      texcoords = new float[2 * vertexCount];
+      PApplet.arrayCopy(geo.texcoords, texcoords, 2 * vertexCount);
+
+      if (geo.codes != null && 0 < geo.codeCount) {
+        codes = new int[geo.codeCount];
+        PApplet.arrayCopy(geo.codes, codes, geo.codeCount);
+      }
+
+      edgeCount = geo.edgeCount;
+      edges = new int[3 * edgeCount];
+      for (int i = 0; i < edgeCount; i++) {
+        PApplet.arrayCopy(geo.edges[i], 0, edges, 3 * i, 3);
+      }
+
+      this.indices = indices;
+    }
+  }
+
+
   // Holds the input vertices: xyz coordinates, fill/tint color,
   // normal, texture coordinates and stroke color and weight.
   static protected class InGeometry {
@@ -8371,6 +8900,37 @@ public class PGraphicsOpenGL extends PGraphics {
       }
     }
 
+    void vertexCheck(int count) {
+      int oldSize = vertices.length / 3;
+      if (vertexCount + count > oldSize) {
+        int newSize = expandArraySize(oldSize, vertexCount + count);
+
+        expandVertices(newSize);
+        expandColors(newSize);
+        expandNormals(newSize);
+        expandTexCoords(newSize);
+        expandStrokeColors(newSize);
+        expandStrokeWeights(newSize);
+        expandAmbient(newSize);
+        expandSpecular(newSize);
+        expandEmissive(newSize);
+        expandShininess(newSize);
+        expandAttribs(newSize);
+      }
+    }
+
+    void codeCheck(int count) {
+      if (codeCount + count > codes.length) {
+        expandCodes(expandArraySize(codes.length, codeCount + count));
+      }
+    }
+
+    void edgeCheck(int count) {
+      if (edgeCount + count > edges.length) {
+        expandEdges(expandArraySize(edges.length, edgeCount + count));
+      }
+    }
+
     // -----------------------------------------------------------------
     //
     // Query
@@ -9047,6 +9607,19 @@ public class PGraphicsOpenGL extends PGraphics {
       }
     }
 
+    void addTrianglesEdges(int[] indices) {
+      for (int i = 0; i < indices.length / 3; i++) {
+        int i0 = indices[3 * i + 0];
+        int i1 = indices[3 * i + 1];
+        int i2 = indices[3 * i + 2];
+
+        addEdge(i0, i1, true, false);
+        addEdge(i1, i2, false, false);
+        addEdge(i2, i0, false, false);
+        closeEdge(i2, i0);
+      }
+    }
+
     void addTriangleFanEdges() {
       for (int i = 1; i < vertexCount - 1; i++) {
         int i0 = 0;
@@ -9352,16 +9925,33 @@ public class PGraphicsOpenGL extends PGraphics {
       float centerX = x + radiusH;
       float centerY = y + radiusV;
 
+      int accuracy = ellipseAccuracy(x, y, w, h);
+
+      PrimitiveCache cache = primitiveCache();
+      if (cache != null) {
+        addPrimitive(cache.getEllipse(accuracy, fill, stroke),
+                     centerX, centerY, 0, radiusH, radiusV, 1);
+      } else {
+        addEllipseVertices(centerX, centerY, radiusH, radiusV, accuracy,
+                           fill, stroke);
+      }
+    }
+
+    int ellipseAccuracy(float x, float y, float w, float h) {
       // should call screenX/Y using current renderer.
       float sx1 = pg.screenX(x, y);
       float sy1 = pg.screenY(x, y);
       float sx2 = pg.screenX(x + w, y + h);
       float sy2 = pg.screenY(x + w, y + h);
 
-      int accuracy =
-        PApplet.min(MAX_POINT_ACCURACY, PApplet.max(MIN_POINT_ACCURACY,
-                    (int) (TWO_PI * PApplet.dist(sx1, sy1, sx2, sy2) /
-                    POINT_ACCURACY_FACTOR)));
+      return PApplet.min(MAX_POINT_ACCURACY, PApplet.max(MIN_POINT_ACCURACY,
+                         (int) (TWO_PI * PApplet.dist(sx1, sy1, sx2, sy2) /
+                         POINT_ACCURACY_FACTOR)));
+    }
+
+    void addEllipseVertices(float centerX, float centerY,
+                            float radiusH, float radiusV, int accuracy,
+                            boolean fill, boolean stroke) {
       float inc = (float) SINCOS_LENGTH / accuracy;
 
       if (fill) {
@@ -9427,6 +10017,29 @@ public class PGraphicsOpenGL extends PGraphics {
         if (stopLUT < 0) stopLUT += SINCOS_LENGTH;
       }
 
+      // initializes inc the same way ellipse does
+      int inc = PApplet.max(1, SINCOS_LENGTH / ellipseAccuracy(x, y, w, h));
+
+      PrimitiveCache cache = primitiveCache();
+      if (cache != null) {
+        addPrimitive(cache.getArc(startLUT, stopLUT, length, inc,
+                                  fill, stroke, arcMode),
+                     centerX, centerY, 0, hr, vr, 1);
+      } else {
+        addArcVertices(centerX, centerY, hr, vr, startLUT, stopLUT, length,
+                       inc, fill, stroke, arcMode);
+      }
+    }
+
+    // startLUT and stopLUT are already wrapped around the LUT, and length
+    // shortened for full chords.
+    void addArcVertices(float centerX, float centerY, float hr, float vr,
+                        int startLUT, int stopLUT, int length, int inc,
+                        boolean fill, boolean stroke, int arcMode) {
+      // only checked when the mode is not CHORD or PIE, so length has not
+      // been shortened
+      boolean fullCircle = length == SINCOS_LENGTH;
+
       int idx0;
       if (arcMode == CHORD || arcMode == OPEN) {
         // move center to the middle of flat side
@@ -9438,20 +10051,6 @@ public class PGraphicsOpenGL extends PGraphics {
         idx0 = addVertex(centerX, centerY, VERTEX, true);
       }
 
-      int inc;
-      { // initializes inc the same way ellipse does
-        float sx1 = pg.screenX(x, y);
-        float sy1 = pg.screenY(x, y);
-        float sx2 = pg.screenX(x + w, y + h);
-        float sy2 = pg.screenY(x + w, y + h);
-
-        int accuracy =
-          PApplet.min(MAX_POINT_ACCURACY, PApplet.max(MIN_POINT_ACCURACY,
-                      (int) (TWO_PI * PApplet.dist(sx1, sy1, sx2, sy2) /
-                      POINT_ACCURACY_FACTOR)));
-        inc = PApplet.max(1, SINCOS_LENGTH / accuracy);
-      }
-
       int idx = idx0;
       int pidx;
 
@@ -9498,6 +10097,17 @@ public class PGraphicsOpenGL extends PGraphics {
 
     void addBox(float w, float h, float d,
                 boolean fill, boolean stroke) {
+      PrimitiveCache cache = primitiveCache();
+      if (cache != null) {
+        addPrimitive(cache.getBox(0 < w, 0 < h, 0 < d, fill, stroke),
+                     0, 0, 0, PApplet.abs(w), PApplet.abs(h), PApplet.abs(d));
+      } else {
+        addBoxVertices(w, h, d, fill, stroke);
+      }
+    }
+
+    void addBoxVertices(float w, float h, float d,
+                        boolean fill, boolean stroke) {
 
       // Correct normals if some dimensions are negative so they always
       // extend from front face. We could just take absolute value
@@ -9602,10 +10212,20 @@ public class PGraphicsOpenGL extends PGraphics {
       }
     }
 
-    // Adds the vertices that define an sphere, without duplicating
-    // any vertex or edge.
     int[] addSphere(float r, int detailU, int detailV,
                     boolean fill, boolean stroke) {
+      PrimitiveCache cache = primitiveCache();
+      if (cache != null) {
+        return addPrimitive(cache.getSphere(detailU, detailV, fill, stroke),
+                            0, 0, 0, r, r, r);
+      }
+      return addSphereVertices(r, detailU, detailV, fill, stroke);
+    }
+
+    // Adds the vertices that define an sphere, without duplicating
+    // any vertex or edge.
+    int[] addSphereVertices(float r, int detailU, int detailV,
+                            boolean fill, boolean stroke) {
       int nind = 3 * detailU + (6 * detailU + 3) * (detailV - 2) + 3 * detailU;
       int[] indices = new int[nind];
 
@@ -9728,6 +10348,93 @@ public class PGraphicsOpenGL extends PGraphics {
 
       return indices;
     }
+
+    // The primitives are cached only when there are no custom attributes,
+    // since those take the values set by the user for every vertex.
+    PrimitiveCache primitiveCache() {
+      return attribs.isEmpty() ? pg.primitiveCache : null;
+    }
+
+    // Adds a primitive from the cache, scaled by (sx, sy, sz) and moved to
+    // (x, y, z), with the current material. The result is the same as
+    // generating the primitive again with its actual size. Returns the
+    // triangle indices of the primitive, or null if it has none.
+    int[] addPrimitive(Primitive prim, float x, float y, float z,
+                       float sx, float sy, float sz) {
+      int first = vertexCount;
+      int count = prim.vertexCount;
+      vertexCheck(count);
+
+      float[] unit = prim.vertices;
+      int index = 3 * first;
+      for (int i = 0; i < 3 * count; i += 3) {
+        vertices[index++] = x + unit[i    ] * sx;
+        vertices[index++] = y + unit[i + 1] * sy;
+        vertices[index++] = z + unit[i + 2] * sz;
+      }
+
+      if (prim.normals != null) {
+        PApplet.arrayCopy(prim.normals, 0, normals, 3 * first, 3 * count);
+        if (0 < count) {
+          // leaves the last normal as the current one, as the add*() methods
+          index = 3 * (count - 1);
+          setNormal(prim.normals[index], prim.normals[index + 1],
+                    prim.normals[index + 2]);
+        }
+      } else {
+        index = 3 * first;
+        for (int i = 0; i < count; i++) {
+          normals[index++] = normalX;
+          normals[index++] = normalY;
+          normals[index++] = normalZ;
+        }
+      }
+      PApplet.arrayCopy(prim.texcoords, 0, texcoords, 2 * first, 2 * count);
+
+      int last = first + count;
+      Arrays.fill(colors, first, last, PGL.javaToNativeARGB(fillColor));
+      Arrays.fill(strokeColors, first, last,
+                  PGL.javaToNativeARGB(strokeColor));
+      Arrays.fill(strokeWeights, first, last, strokeWeight);
+      Arrays.fill(ambient, first, last, PGL.javaToNativeARGB(ambientColor));
+      Arrays.fill(specular, first, last, PGL.javaToNativeARGB(specularColor));
+      Arrays.fill(emissive, first, last, PGL.javaToNativeARGB(emissiveColor));
+      Arrays.fill(shininess, first, last, shininessFactor);
+
+      if (prim.codes != null) {
+        if (codes == null) {
+          codes = new int[PApplet.max(PGL.DEFAULT_IN_VERTICES, first)];
+          Arrays.fill(codes, 0, first, VERTEX);
+          codeCount = first;
+        }
+        codeCheck(prim.codes.length);
+        PApplet.arrayCopy(prim.codes, 0, codes, codeCount, prim.codes.length);
+        codeCount += prim.codes.length;
+      } else if (codes != null) {
+        codeCheck(count);
+        Arrays.fill(codes, codeCount, codeCount + count, VERTEX);
+        codeCount += count;
+      }
+
+      edgeCheck(prim.edgeCount);
+      for (int i = 0; i < 3 * prim.edgeCount; i += 3) {
+        int[] edge = edges[edgeCount++];
+        edge[0] = first + prim.edges[i];
+        edge[1] = first + prim.edges[i + 1];
+        edge[2] = prim.edges[i + 2];
+      }
+
+      vertexCount = last;
+
+      int[] indices = prim.indices;
+      if (indices != null && 0 < first) {
+        indices = new int[prim.indices.length];
+        for (int i = 0; i < indices.length; i++) {
+          indices[i] = first + prim.indices[i];
+        }
+      }
+      return indices;
+    }
   }
 
 
@@ -11421,56 +12128,18 @@ public class PGraphicsOpenGL extends PGraphics {
 
     void applyMatrixOnPolyGeometry(PMatrix3D tr, int first, int last) {
       if (first < last) {
-        int index;
+        int count = last - first + 1;
+        tr.multPoints(polyVertices, polyVertices, 4 * first, count, 4, 4);
+        tr.multVectors(polyNormals, polyNormals, 3 * first, count, 3);
 
-        for (int i = first; i <= last; i++) {
-          index = 4 * i;
-          float x = polyVertices[index++];
-          float y = polyVertices[index++];
-          float z = polyVertices[index++];
-          float w = polyVertices[index  ];
-
-          index = 3 * i;
-          float nx = polyNormals[index++];
-          float ny = polyNormals[index++];
-          float nz = polyNormals[index  ];
-
-          index = 4 * i;
-          polyVertices[index++] = x*tr.m00 + y*tr.m01 + z*tr.m02 + w*tr.m03;
-          polyVertices[index++] = x*tr.m10 + y*tr.m11 + z*tr.m12 + w*tr.m13;
-          polyVertices[index++] = x*tr.m20 + y*tr.m21 + z*tr.m22 + w*tr.m23;
-          polyVertices[index  ] = x*tr.m30 + y*tr.m31 + z*tr.m32 + w*tr.m33;
-
-          index = 3 * i;
-          polyNormals[index++] = nx*tr.m00 + ny*tr.m01 + nz*tr.m02;
-          polyNormals[index++] = nx*tr.m10 + ny*tr.m11 + nz*tr.m12;
-          polyNormals[index  ] = nx*tr.m20 + ny*tr.m21 + nz*tr.m22;
-
-          for (String name: polyAttribs.keySet()) {
-            VertexAttribute attrib = polyAttribs.get(name);
-            if (attrib.isColor() || attrib.isOther()) continue;
-            float[] values = fpolyAttribs.get(name);
-            if (attrib.isPosition()) {
-              index = 4 * i;
-              x = values[index++];
-              y = values[index++];
-              z = values[index++];
-              w = values[index  ];
-              index = 4 * i;
-              values[index++] = x*tr.m00 + y*tr.m01 + z*tr.m02 + w*tr.m03;
-              values[index++] = x*tr.m10 + y*tr.m11 + z*tr.m12 + w*tr.m13;
-              values[index++] = x*tr.m20 + y*tr.m21 + z*tr.m22 + w*tr.m23;
-              values[index  ] = x*tr.m30 + y*tr.m31 + z*tr.m32 + w*tr.m33;
-            } else {
-              index = 3 * i;
-              nx = values[index++];
-              ny = values[index++];
-              nz = values[index  ];
-              index = 3 * i;
-              values[index++] = nx*tr.m00 + ny*tr.m01 + nz*tr.m02;
-              values[index++] = nx*tr.m10 + ny*tr.m11 + nz*tr.m12;
-              values[index  ] = nx*tr.m20 + ny*tr.m21 + nz*tr.m22;
-            }
+        for (String name: polyAttribs.keySet()) {
+          VertexAttribute attrib = polyAttribs.get(name);
+          if (attrib.isColor() || attrib.isOther()) continue;
+          float[] values = fpolyAttribs.get(name);
+          if (attrib.isPosition()) {
+            tr.multPoints(values, values, 4 * first, count, 4, 4);
+          } else {
+            tr.multVectors(values, values, 3 * first, count, 3);
           }
         }
       }
@@ -11478,57 +12147,29 @@ public class PGraphicsOpenGL extends PGraphics {
 
     void applyMatrixOnLineGeometry(PMatrix3D tr, int first, int last) {
       if (first < last) {
-        int index;
+        int count = last - first + 1;
+        tr.multPoints(lineVertices, lineVertices, 4 * first, count, 4, 4);
+        tr.multVectors(lineDirections, lineDirections, 4 * first, count, 4);
 
         float scaleFactor = matrixScale(tr);
-        for (int i = first; i <= last; i++) {
-          index = 4 * i;
-          float x = lineVertices[index++];
-          float y = lineVertices[index++];
-          float z = lineVertices[index++];
-          float w = lineVertices[index  ];
-
-          index = 4 * i;
-          float dx = lineDirections[index++];
-          float dy = lineDirections[index++];
-          float dz = lineDirections[index  ];
-
-          index = 4 * i;
-          lineVertices[index++] = x*tr.m00 + y*tr.m01 + z*tr.m02 + w*tr.m03;
-          lineVertices[index++] = x*tr.m10 + y*tr.m11 + z*tr.m12 + w*tr.m13;
-          lineVertices[index++] = x*tr.m20 + y*tr.m21 + z*tr.m22 + w*tr.m23;
-          lineVertices[index  ] = x*tr.m30 + y*tr.m31 + z*tr.m32 + w*tr.m33;
-
-          index = 4 * i;
-          lineDirections[index++] = dx*tr.m00 + dy*tr.m01 + dz*tr.m02;
-          lineDirections[index++] = dx*tr.m10 + dy*tr.m11 + dz*tr.m12;
-          lineDirections[index++] = dx*tr.m20 + dy*tr.m21 + dz*tr.m22;
-          lineDirections[index] *= scaleFactor;
+        if (scaleFactor != 1) {
+          for (int i = first; i <= last; i++) {
+            lineDirections[4 * i + 3] *= scaleFactor;
+          }
         }
       }
     }
 
     void applyMatrixOnPointGeometry(PMatrix3D tr, int first, int last) {
       if (first < last) {
-        int index;
+        int count = last - first + 1;
+        tr.multPoints(pointVertices, pointVertices, 4 * first, count, 4, 4);
 
         float matrixScale = matrixScale(tr);
-        for (int i = first; i <= last; i++) {
-          index = 4 * i;
-          float x = pointVertices[index++];
-          float y = pointVertices[index++];
-          float z = pointVertices[index++];
-          float w = pointVertices[index  ];
-
-          index = 4 * i;
-          pointVertices[index++] = x*tr.m00 + y*tr.m01 + z*tr.m02 + w*tr.m03;
-          pointVertices[index++] = x*tr.m10 + y*tr.m11 + z*tr.m12 + w*tr.m13;
-          pointVertices[index++] = x*tr.m20 + y*tr.m21 + z*tr.m22 + w*tr.m23;
-          pointVertices[index  ] = x*tr.m30 + y*tr.m31 + z*tr.m32 + w*tr.m33;
-
-          index = 2 * i;
-          pointOffsets[index++] *= matrixScale;
-          pointOffsets[index] *= matrixScale;
+        if (matrixScale != 1) {
+          for (int i = 2 * first; i < 2 * (last + 1); i++) {
+            pointOffsets[i] *= matrixScale;
+          }
         }
       }
     }
@@ -13247,8 +13888,6 @@ public class PGraphicsOpenGL extends PGraphics {
       pg.bezierInitCheck();
       pg.bezierVertexCheck(POLYGON, i);
 
-      PMatrix3D draw = pg.bezierDrawMatrix;
-
       int i1 = i - 1;
       float x1 = in.vertices[3*i1 + 0];
       float y1 = in.vertices[3*i1 + 1];
@@ -13273,6 +13912,10 @@ public class PGraphicsOpenGL extends PGraphics {
       float y4 = in.vertices[3*(i+2) + 1];
       float z4 = in.vertices[3*(i+2) + 2];
 
+      int segments = pg.bezierSegments(x1, y1, z1, x2, y2, z2, x3, y3, z3,
+                                       x4, y4, z4, transformScale());
+      PMatrix3D draw = pg.bezierForward(segments);
+
       float xplot1 = draw.m10*x1 + draw.m11*x2 + draw.m12*x3 + draw.m13*x4;
       float xplot2 = draw.m20*x1 + draw.m21*x2 + draw.m22*x3 + draw.m23*x4;
       float xplot3 = draw.m30*x1 + draw.m31*x2 + draw.m32*x3 + draw.m33*x4;
@@ -13285,7 +13928,7 @@ public class PGraphicsOpenGL extends PGraphics {
       float zplot2 = draw.m20*z1 + draw.m21*z2 + draw.m22*z3 + draw.m23*z4;
       float zplot3 = draw.m30*z1 + draw.m31*z2 + draw.m32*z3 + draw.m33*z4;
 
-      for (int j = 0; j < pg.bezierDetail; j++) {
+      for (int j = 0; j < segments; j++) {
         x1 += xplot1; xplot1 += xplot2; xplot2 += xplot3;
         y1 += yplot1; yplot1 += yplot2; yplot2 += yplot3;
         z1 += zplot1; zplot1 += zplot2; zplot2 += zplot3;
@@ -13305,8 +13948,6 @@ public class PGraphicsOpenGL extends PGraphics {
       pg.bezierInitCheck();
       pg.bezierVertexCheck(POLYGON, i);
 
-      PMatrix3D draw = pg.bezierDrawMatrix;
-
       int i1 = i - 1;
       float x1 = in.vertices[3*i1 + 0];
       float y1 = in.vertices[3*i1 + 1];
@@ -13338,6 +13979,10 @@ public class PGraphicsOpenGL extends PGraphics {
       float y4 = y;
       float z4 = z;
 
+      int segments = pg.bezierSegments(x1, y1, z1, x2, y2, z2, x3, y3, z3,
+                                       x4, y4, z4, transformScale());
+      PMatrix3D draw = pg.bezierForward(segments);
+
       float xplot1 = draw.m10*x1 + draw.m11*x2 + draw.m12*x3 + draw.m13*x4;
       float xplot2 = draw.m20*x1 + draw.m21*x2 + draw.m22*x3 + draw.m23*x4;
       float xplot3 = draw.m30*x1 + draw.m31*x2 + draw.m32*x3 + draw.m33*x4;
@@ -13350,7 +13995,7 @@ public class PGraphicsOpenGL extends PGraphics {
       float zplot2 = draw.m20*z1 + draw.m21*z2 + draw.m22*z3 + draw.m23*z4;
       float zplot3 = draw.m30*z1 + draw.m31*z2 + draw.m32*z3 + draw.m33*z4;
 
-      for (int j = 0; j < pg.bezierDetail; j++) {
+      for (int j = 0; j < segments; j++) {
         x1 += xplot1; xplot1 += xplot2; xplot2 += xplot3;
         y1 += yplot1; yplot1 += yplot2; yplot2 += yplot3;
         z1 += zplot1; zplot1 += zplot2; zplot2 += zplot3;
@@ -13421,7 +14066,9 @@ public class PGraphicsOpenGL extends PGraphics {
       float y = y2;
       float z = z2;
 
-      PMatrix3D draw = pg.curveDrawMatrix;
+      int segments = pg.curveSegments(x1, y1, z1, x2, y2, z2, x3, y3, z3,
+                                      x4, y4, z4, transformScale());
+      PMatrix3D draw = pg.curveForward(segments);
 
       float xplot1 = draw.m10*x1 + draw.m11*x2 + draw.m12*x3 + draw.m13*x4;
       float xplot2 = draw.m20*x1 + draw.m21*x2 + draw.m22*x3 + draw.m23*x4;
@@ -13435,7 +14082,7 @@ public class PGraphicsOpenGL extends PGraphics {
       float zplot2 = draw.m20*z1 + draw.m21*z2 + draw.m22*z3 + draw.m23*z4;
       float zplot3 = draw.m30*z1 + draw.m31*z2 + draw.m32*z3 + draw.m33*z4;
 
-      for (int j = 0; j < pg.curveDetail; j++) {
+      for (int j = 0; j < segments; j++) {
         x += xplot1; xplot1 += xplot2; xplot2 += xplot3;
         y += yplot1; yplot1 += yplot2; yplot2 += yplot3;
         z += zplot1; zplot1 += zplot2; zplot2 += zplot3;
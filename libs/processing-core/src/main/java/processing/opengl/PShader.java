@@ -30,6 +30,7 @@ import processing.opengl.PGraphicsOpenGL.GLResourceShader;
 import java.net.URL;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
+import java.util.ArrayList;
 import java.util.HashMap;
 
 /**
@@ -107,10 +108,24 @@ public class PShader implements PConstants {
 
   protected boolean bound;
 
-  protected HashMap<Integer, UniformValue> uniformValues = null;
+  // One slot per uniform, created the first time the uniform is looked up
+  // by name, which also caches its location.
+  protected HashMap<String, UniformValue> uniformValues;
 
-  protected HashMap<Integer, Texture> textures;
-  protected HashMap<Integer, Integer> texUnits;
+  // Uniforms with values that haven't been sent to GL yet.
+  protected UniformValue[] dirtyUniforms;
+  protected int dirtyCount;
+
+  // Uniforms of sampler type, with their texture units.
+  protected UniformValue[] samplers;
+  protected int samplerCount;
+
+  // Scratch arrays to pass the set() arguments without allocating.
+  protected int[] intValues;
+  protected float[] floatValues;
+
+  // Number of the renderer's uniform blocks already bound in this program.
+  protected int uniformBlockCount;
 
   // Direct buffers to pass shader data to GL
   protected IntBuffer intBuffer;
@@ -353,6 +368,7 @@ public class PShader implements PConstants {
       pgl.useProgram(glProgram);
       bound = true;
       consumeUniforms();
+      bindUniformBlocks();
       bindTextures();
     }
 
@@ -388,79 +404,91 @@ public class PShader implements PConstants {
    * @param x first component of the variable to modify
    */
   public void set(String name, int x) {
-    setUniformImpl(name, UniformValue.INT1, new int[] { x });
+    int[] v = getIntValues(1);
+    v[0] = x;
+    setUniformImpl(name, UniformValue.INT1, v, 1);
   }
 
   /**
    * @param y second component of the variable to modify. The variable has to be declared with an array/vector type in the shader (i.e.: int[2], vec2)
    */
   public void set(String name, int x, int y) {
-    setUniformImpl(name, UniformValue.INT2, new int[] { x, y });
+    int[] v = getIntValues(2);
+    v[0] = x; v[1] = y;
+    setUniformImpl(name, UniformValue.INT2, v, 2);
   }
 
   /**
    * @param z third component of the variable to modify. The variable has to be declared with an array/vector type in the shader (i.e.: int[3], vec3)
    */
   public void set(String name, int x, int y, int z) {
-    setUniformImpl(name, UniformValue.INT3, new int[] { x, y, z });
+    int[] v = getIntValues(3);
+    v[0] = x; v[1] = y; v[2] = z;
+    setUniformImpl(name, UniformValue.INT3, v, 3);
   }
 
   /**
    * @param w fourth component of the variable to modify. The variable has to be declared with an array/vector type in the shader (i.e.: int[4], vec4)
    */
   public void set(String name, int x, int y, int z, int w) {
-    setUniformImpl(name, UniformValue.INT4, new int[] { x, y, z, w });
+    int[] v = getIntValues(4);
+    v[0] = x; v[1] = y; v[2] = z; v[3] = w;
+    setUniformImpl(name, UniformValue.INT4, v, 4);
   }
 
 
   public void set(String name, float x) {
-    setUniformImpl(name, UniformValue.FLOAT1, new float[] { x });
+    float[] v = getFloatValues(1);
+    v[0] = x;
+    setUniformImpl(name, UniformValue.FLOAT1, v, 1);
   }
 
 
   public void set(String name, float x, float y) {
-    setUniformImpl(name, UniformValue.FLOAT2, new float[] { x, y });
+    float[] v = getFloatValues(2);
+    v[0] = x; v[1] = y;
+    setUniformImpl(name, UniformValue.FLOAT2, v, 2);
   }
 
 
   public void set(String name, float x, float y, float z) {
-    setUniformImpl(name, UniformValue.FLOAT3, new float[] { x, y, z });
+    float[] v = getFloatValues(3);
+    v[0] = x; v[1] = y; v[2] = z;
+    setUniformImpl(name, UniformValue.FLOAT3, v, 3);
   }
 
 
   public void set(String name, float x, float y, float z, float w) {
-    setUniformImpl(name, UniformValue.FLOAT4, new float[] { x, y, z, w });
+    float[] v = getFloatValues(4);
+    v[0] = x; v[1] = y; v[2] = z; v[3] = w;
+    setUniformImpl(name, UniformValue.FLOAT4, v, 4);
   }
 
   /**
    * @param vec modifies all the components of an array/vector uniform variable. PVector can only be used if the type of the variable is vec3.
    */
   public void set(String name, PVector vec) {
-    setUniformImpl(name, UniformValue.FLOAT3,
-                   new float[] { vec.x, vec.y, vec.z });
+    set(name, vec.x, vec.y, vec.z);
   }
 
 
   public void set(String name, boolean x) {
-    setUniformImpl(name, UniformValue.INT1, new int[] { (x)?1:0 });
+    set(name, (x)?1:0);
   }
 
 
   public void set(String name, boolean x, boolean y) {
-    setUniformImpl(name, UniformValue.INT2,
-                   new int[] { (x)?1:0, (y)?1:0 });
+    set(name, (x)?1:0, (y)?1:0);
   }
 
 
   public void set(String name, boolean x, boolean y, boolean z) {
-    setUniformImpl(name, UniformValue.INT3,
-                   new int[] { (x)?1:0, (y)?1:0, (z)?1:0 });
+    set(name, (x)?1:0, (y)?1:0, (z)?1:0);
   }
 
 
   public void set(String name, boolean x, boolean y, boolean z, boolean w) {
-    setUniformImpl(name, UniformValue.INT4,
-                   new int[] { (x)?1:0, (y)?1:0, (z)?1:0, (w)?1:0 });
+    set(name, (x)?1:0, (y)?1:0, (z)?1:0, (w)?1:0);
   }
 
 
@@ -519,11 +547,24 @@ public class PShader implements PConstants {
 
 
   public void set(String name, boolean[] boolvec, int ncoords) {
-    int[] vec = new int[boolvec.length];
+    int[] vec = getIntValues(boolvec.length);
     for (int i = 0; i < boolvec.length; i++) {
       vec[i] = (boolvec[i])?1:0;
     }
-    set(name, vec, ncoords);
+    if (ncoords == 1) {
+      setUniformImpl(name, UniformValue.INT1VEC, vec, boolvec.length);
+    } else if (ncoords == 2) {
+      setUniformImpl(name, UniformValue.INT2VEC, vec, boolvec.length);
+    } else if (ncoords == 3) {
+      setUniformImpl(name, UniformValue.INT3VEC, vec, boolvec.length);
+    } else if (ncoords == 4) {
+      setUniformImpl(name, UniformValue.INT4VEC, vec, boolvec.length);
+    } else if (4 < ncoords) {
+      PGraphics.showWarning("Only up to 4 coordinates per element are " +
+                            "supported.");
+    } else {
+      PGraphics.showWarning("Wrong number of coordinates: it is negative!");
+    }
   }
 
 
@@ -531,9 +572,10 @@ public class PShader implements PConstants {
    * @param mat matrix of values
    */
   public void set(String name, PMatrix2D mat) {
-    float[] matv = { mat.m00, mat.m01,
-                     mat.m10, mat.m11 };
-    setUniformImpl(name, UniformValue.MAT2, matv);
+    float[] matv = getFloatValues(4);
+    matv[0] = mat.m00; matv[1] = mat.m01;
+    matv[2] = mat.m10; matv[3] = mat.m11;
+    setUniformImpl(name, UniformValue.MAT2, matv, 4);
   }
 
 
@@ -546,16 +588,18 @@ public class PShader implements PConstants {
    */
   public void set(String name, PMatrix3D mat, boolean use3x3) {
     if (use3x3) {
-      float[] matv = { mat.m00, mat.m01, mat.m02,
-                       mat.m10, mat.m11, mat.m12,
-                       mat.m20, mat.m21, mat.m22 };
-      setUniformImpl(name, UniformValue.MAT3, matv);
+      float[] matv = getFloatValues(9);
+      matv[0] = mat.m00; matv[1] = mat.m01; matv[2] = mat.m02;
+      matv[3] = mat.m10; matv[4] = mat.m11; matv[5] = mat.m12;
+      matv[6] = mat.m20; matv[7] = mat.m21; matv[8] = mat.m22;
+      setUniformImpl(name, UniformValue.MAT3, matv, 9);
     } else {
-      float[] matv = { mat.m00, mat.m01, mat.m02, mat.m03,
-                       mat.m10, mat.m11, mat.m12, mat.m13,
-                       mat.m20, mat.m21, mat.m22, mat.m23,
-                       mat.m30, mat.m31, mat.m32, mat.m33 };
-      setUniformImpl(name, UniformValue.MAT4, matv);
+      float[] matv = getFloatValues(16);
+      matv[ 0] = mat.m00; matv[ 1] = mat.m01; matv[ 2] = mat.m02; matv[ 3] = mat.m03;
+      matv[ 4] = mat.m10; matv[ 5] = mat.m11; matv[ 6] = mat.m12; matv[ 7] = mat.m13;
+      matv[ 8] = mat.m20; matv[ 9] = mat.m21; matv[10] = mat.m22; matv[11] = mat.m23;
+      matv[12] = mat.m30; matv[13] = mat.m31; matv[14] = mat.m32; matv[15] = mat.m33;
+      setUniformImpl(name, UniformValue.MAT4, matv, 16);
     }
   }
 
@@ -582,6 +626,11 @@ public class PShader implements PConstants {
     pgl.drawElements(PGL.TRIANGLES, count, PGL.INDEX_TYPE,
                      offset * PGL.SIZEOF_INDEX);
     pgl.bindBuffer(PGL.ELEMENT_ARRAY_BUFFER, 0);
+
+    if (primaryPG != null && primaryPG.metrics != null) {
+      primaryPG.metrics.count(RenderMetrics.DRAW_CALLS, 1);
+      primaryPG.metrics.count(RenderMetrics.VERTICES, count);
+    }
   }
 
 
@@ -604,8 +653,25 @@ public class PShader implements PConstants {
    * @return int
    */
   protected int getUniformLoc(String name) {
+    return getUniformValue(name).loc;
+  }
+
+
+  /**
+   * Returns the slot of the uniform parameter given its name, querying its
+   * location only the first time.
+   */
+  protected UniformValue getUniformValue(String name) {
     init();
-    return pgl.getUniformLocation(glProgram, name);
+    if (uniformValues == null) {
+      uniformValues = new HashMap<String, UniformValue>();
+    }
+    UniformValue val = uniformValues.get(name);
+    if (val == null) {
+      val = new UniformValue(name, pgl.getUniformLocation(glProgram, name));
+      uniformValues.put(name, val);
+    }
+    return val;
   }
 
 
@@ -684,7 +750,7 @@ public class PShader implements PConstants {
       } else if (ncoords == 3) {
         pgl.uniform3iv(loc, length, intBuffer);
       } else if (ncoords == 4) {
-        pgl.uniform3iv(loc, length, intBuffer);
+        pgl.uniform4iv(loc, length, intBuffer);
       }
     }
   }
@@ -722,125 +788,221 @@ public class PShader implements PConstants {
 
 
   protected void setUniformTex(int loc, Texture tex) {
-    if (texUnits != null) {
-      Integer unit = texUnits.get(loc);
-      if (unit != null) {
-        pgl.activeTexture(PGL.TEXTURE0 + unit);
+    for (int i = 0; i < samplerCount; i++) {
+      if (samplers[i].loc == loc) {
+        pgl.activeTexture(PGL.TEXTURE0 + samplers[i].unit);
         tex.bind();
-      } else {
-        throw new RuntimeException("Cannot find unit for texture " + tex);
+        return;
       }
     }
+    throw new RuntimeException("Cannot find unit for texture " + tex);
   }
 
 
   protected void setUniformImpl(String name, int type, Object value) {
-    int loc = getUniformLoc(name);
-    if (-1 < loc) {
-      if (uniformValues == null) {
-        uniformValues = new HashMap<Integer, UniformValue>();
-      }
-      uniformValues.put(loc, new UniformValue(type, value));
+    if (value instanceof int[]) {
+      int[] v = (int[])value;
+      setUniformImpl(name, type, v, v.length);
+    } else if (value instanceof float[]) {
+      float[] v = (float[])value;
+      setUniformImpl(name, type, v, v.length);
     } else {
+      UniformValue val = getSetUniformValue(name);
+      if (val != null) {
+        val.set(type, value);
+        markDirty(val);
+      }
+    }
+  }
+
+
+  protected void setUniformImpl(String name, int type, int[] value, int n) {
+    UniformValue val = getSetUniformValue(name);
+    if (val != null && val.set(type, value, n)) {
+      markDirty(val);
+    }
+  }
+
+
+  protected void setUniformImpl(String name, int type, float[] value, int n) {
+    UniformValue val = getSetUniformValue(name);
+    if (val != null && val.set(type, value, n)) {
+      markDirty(val);
+    }
+  }
+
+
+  protected UniformValue getSetUniformValue(String name) {
+    UniformValue val = getUniformValue(name);
+    if (val.loc == -1) {
       PGraphics.showWarning("The shader doesn't have a uniform called \"" +
                             name + "\" OR the uniform was removed during " +
                             "compilation because it was unused.");
+      return null;
     }
+    return val;
   }
 
 
+  protected void markDirty(UniformValue val) {
+    if (val.dirty) return;
+    if (dirtyUniforms == null) {
+      dirtyUniforms = new UniformValue[16];
+    } else if (dirtyCount == dirtyUniforms.length) {
+      UniformValue[] temp = new UniformValue[dirtyCount << 1];
+      System.arraycopy(dirtyUniforms, 0, temp, 0, dirtyCount);
+      dirtyUniforms = temp;
+    }
+    dirtyUniforms[dirtyCount++] = val;
+    val.dirty = true;
+  }
+
+
+  /**
+   * Looks up the locations again after the program is (re)created, and
+   * marks the values set so far to be sent to the new program.
+   */
+  protected void resetUniforms() {
+    uniformBlockCount = 0;
+    if (uniformValues == null) return;
+    for (UniformValue val: uniformValues.values()) {
+      val.loc = pgl.getUniformLocation(glProgram, val.name);
+      if (-1 < val.type && -1 < val.loc) markDirty(val);
+    }
+  }
+
+
+  protected int[] getIntValues(int n) {
+    if (intValues == null || intValues.length < n) {
+      intValues = new int[PApplet.max(16, n)];
+    }
+    return intValues;
+  }
+
+
+  protected float[] getFloatValues(int n) {
+    if (floatValues == null || floatValues.length < n) {
+      floatValues = new float[PApplet.max(16, n)];
+    }
+    return floatValues;
+  }
+
+
+  /**
+   * Sends the uniform values that changed since the last time the shader
+   * was bound.
+   */
   protected void consumeUniforms() {
-    if (uniformValues != null && 0 < uniformValues.size()) {
-      int unit = 0;
-      for (Integer loc: uniformValues.keySet()) {
-        UniformValue val = uniformValues.get(loc);
-        if (val.type == UniformValue.INT1) {
-          int[] v = ((int[])val.value);
-          pgl.uniform1i(loc, v[0]);
-        } else if (val.type == UniformValue.INT2) {
-          int[] v = ((int[])val.value);
-          pgl.uniform2i(loc, v[0], v[1]);
-        } else if (val.type == UniformValue.INT3) {
-          int[] v = ((int[])val.value);
-          pgl.uniform3i(loc, v[0], v[1], v[2]);
-        } else if (val.type == UniformValue.INT4) {
-          int[] v = ((int[])val.value);
-          pgl.uniform4i(loc, v[0], v[1], v[2], v[3]);
-        } else if (val.type == UniformValue.FLOAT1) {
-          float[] v = ((float[])val.value);
-          pgl.uniform1f(loc, v[0]);
-        } else if (val.type == UniformValue.FLOAT2) {
-          float[] v = ((float[])val.value);
-          pgl.uniform2f(loc, v[0], v[1]);
-        } else if (val.type == UniformValue.FLOAT3) {
-          float[] v = ((float[])val.value);
-          pgl.uniform3f(loc, v[0], v[1], v[2]);
-        } else if (val.type == UniformValue.FLOAT4) {
-          float[] v = ((float[])val.value);
-          pgl.uniform4f(loc, v[0], v[1], v[2], v[3]);
-        } else if (val.type == UniformValue.INT1VEC) {
-          int[] v = ((int[])val.value);
-          updateIntBuffer(v);
-          pgl.uniform1iv(loc, v.length, intBuffer);
-        } else if (val.type == UniformValue.INT2VEC) {
-          int[] v = ((int[])val.value);
-          updateIntBuffer(v);
-          pgl.uniform2iv(loc, v.length / 2, intBuffer);
-        } else if (val.type == UniformValue.INT3VEC) {
-          int[] v = ((int[])val.value);
-          updateIntBuffer(v);
-          pgl.uniform3iv(loc, v.length / 3, intBuffer);
-        } else if (val.type == UniformValue.INT4VEC) {
-          int[] v = ((int[])val.value);
-          updateIntBuffer(v);
-          pgl.uniform4iv(loc, v.length / 4, intBuffer);
-        } else if (val.type == UniformValue.FLOAT1VEC) {
-          float[] v = ((float[])val.value);
-          updateFloatBuffer(v);
-          pgl.uniform1fv(loc, v.length, floatBuffer);
-        } else if (val.type == UniformValue.FLOAT2VEC) {
-          float[] v = ((float[])val.value);
-          updateFloatBuffer(v);
-          pgl.uniform2fv(loc, v.length / 2, floatBuffer);
-        } else if (val.type == UniformValue.FLOAT3VEC) {
-          float[] v = ((float[])val.value);
-          updateFloatBuffer(v);
-          pgl.uniform3fv(loc, v.length / 3, floatBuffer);
-        } else if (val.type == UniformValue.FLOAT4VEC) {
-          float[] v = ((float[])val.value);
-          updateFloatBuffer(v);
-          pgl.uniform4fv(loc, v.length / 4, floatBuffer);
-        } else if (val.type == UniformValue.MAT2) {
-          float[] v = ((float[])val.value);
-          updateFloatBuffer(v);
-          pgl.uniformMatrix2fv(loc, 1, false, floatBuffer);
-        } else if (val.type == UniformValue.MAT3) {
-          float[] v = ((float[])val.value);
-          updateFloatBuffer(v);
-          pgl.uniformMatrix3fv(loc, 1, false, floatBuffer);
-        } else if (val.type == UniformValue.MAT4) {
-          float[] v = ((float[])val.value);
-          updateFloatBuffer(v);
-          pgl.uniformMatrix4fv(loc, 1, false, floatBuffer);
-        } else if (val.type == UniformValue.SAMPLER2D) {
-          PImage img = (PImage)val.value;
-          Texture tex = currentPG.getTexture(img);
-
-          if (textures == null) textures = new HashMap<Integer, Texture>();
-          textures.put(loc, tex);
-
-          if (texUnits == null) texUnits = new HashMap<Integer, Integer>();
-          if (texUnits.containsKey(loc)) {
-            unit = texUnits.get(loc);
-            pgl.uniform1i(loc, unit);
-          } else {
-            texUnits.put(loc, unit);
-            pgl.uniform1i(loc, unit);
+    for (int i = 0; i < dirtyCount; i++) {
+      UniformValue val = dirtyUniforms[i];
+      dirtyUniforms[i] = null;
+      val.dirty = false;
+
+      int loc = val.loc;
+      if (loc == -1) continue;
+      if (val.type == UniformValue.INT1) {
+        int[] v = val.ivalue;
+        pgl.uniform1i(loc, v[0]);
+      } else if (val.type == UniformValue.INT2) {
+        int[] v = val.ivalue;
+        pgl.uniform2i(loc, v[0], v[1]);
+      } else if (val.type == UniformValue.INT3) {
+        int[] v = val.ivalue;
+        pgl.uniform3i(loc, v[0], v[1], v[2]);
+      } else if (val.type == UniformValue.INT4) {
+        int[] v = val.ivalue;
+        pgl.uniform4i(loc, v[0], v[1], v[2], v[3]);
+      } else if (val.type == UniformValue.FLOAT1) {
+        float[] v = val.fvalue;
+        pgl.uniform1f(loc, v[0]);
+      } else if (val.type == UniformValue.FLOAT2) {
+        float[] v = val.fvalue;
+        pgl.uniform2f(loc, v[0], v[1]);
+      } else if (val.type == UniformValue.FLOAT3) {
+        float[] v = val.fvalue;
+        pgl.uniform3f(loc, v[0], v[1], v[2]);
+      } else if (val.type == UniformValue.FLOAT4) {
+        float[] v = val.fvalue;
+        pgl.uniform4f(loc, v[0], v[1], v[2], v[3]);
+      } else if (val.type == UniformValue.INT1VEC) {
+        int[] v = val.ivalue;
+        updateIntBuffer(v);
+        pgl.uniform1iv(loc, v.length, intBuffer);
+      } else if (val.type == UniformValue.INT2VEC) {
+        int[] v = val.ivalue;
+        updateIntBuffer(v);
+        pgl.uniform2iv(loc, v.length / 2, intBuffer);
+      } else if (val.type == UniformValue.INT3VEC) {
+        int[] v = val.ivalue;
+        updateIntBuffer(v);
+        pgl.uniform3iv(loc, v.length / 3, intBuffer);
+      } else if (val.type == UniformValue.INT4VEC) {
+        int[] v = val.ivalue;
+        updateIntBuffer(v);
+        pgl.uniform4iv(loc, v.length / 4, intBuffer);
+      } else if (val.type == UniformValue.FLOAT1VEC) {
+        float[] v = val.fvalue;
+        updateFloatBuffer(v);
+        pgl.uniform1fv(loc, v.length, floatBuffer);
+      } else if (val.type == UniformValue.FLOAT2VEC) {
+        float[] v = val.fvalue;
+        updateFloatBuffer(v);
+        pgl.uniform2fv(loc, v.length / 2, floatBuffer);
+      } else if (val.type == UniformValue.FLOAT3VEC) {
+        float[] v = val.fvalue;
+        updateFloatBuffer(v);
+        pgl.uniform3fv(loc, v.length / 3, floatBuffer);
+      } else if (val.type == UniformValue.FLOAT4VEC) {
+        float[] v = val.fvalue;
+        updateFloatBuffer(v);
+        pgl.uniform4fv(loc, v.length / 4, floatBuffer);
+      } else if (val.type == UniformValue.MAT2) {
+        updateFloatBuffer(val.fvalue);
+        pgl.uniformMatrix2fv(loc, 1, false, floatBuffer);
+      } else if (val.type == UniformValue.MAT3) {
+        updateFloatBuffer(val.fvalue);
+        pgl.uniformMatrix3fv(loc, 1, false, floatBuffer);
+      } else if (val.type == UniformValue.MAT4) {
+        updateFloatBuffer(val.fvalue);
+        pgl.uniformMatrix4fv(loc, 1, false, floatBuffer);
+      } else if (val.type == UniformValue.SAMPLER2D) {
+        PImage img = (PImage)val.value;
+        val.tex = currentPG.getTexture(img);
+
+        if (val.unit == -1) {
+          if (samplers == null) {
+            samplers = new UniformValue[4];
+          } else if (samplerCount == samplers.length) {
+            UniformValue[] temp = new UniformValue[samplerCount << 1];
+            System.arraycopy(samplers, 0, temp, 0, samplerCount);
+            samplers = temp;
           }
-          unit++;
+          val.unit = samplerCount;
+          samplers[samplerCount++] = val;
         }
+        pgl.uniform1i(loc, val.unit);
+      }
+    }
+    dirtyCount = 0;
+  }
+
+
+  /**
+   * Connects the uniform blocks of this program to the uniform buffers
+   * created with PGraphicsOpenGL.setUniformBlock(). The binding is stored in
+   * the program, so each block only needs to be looked up once.
+   */
+  protected void bindUniformBlocks() {
+    if (primaryPG == null) return;
+    ArrayList<PGraphicsOpenGL.UniformBlock> blocks =
+      primaryPG.getPrimaryPG().uniformBlocks;
+    if (blocks == null) return;
+    while (uniformBlockCount < blocks.size()) {
+      PGraphicsOpenGL.UniformBlock block = blocks.get(uniformBlockCount++);
+      int index = pgl.getUniformBlockIndex(glProgram, block.name);
+      if (index != PGL.INVALID_INDEX) {
+        pgl.uniformBlockBinding(glProgram, index, block.binding);
       }
-      uniformValues.clear();
     }
   }
 
@@ -856,31 +1018,23 @@ public class PShader implements PConstants {
 
 
   protected void bindTextures() {
-    if (textures != null && texUnits != null) {
-      for (int loc: textures.keySet()) {
-        Texture tex = textures.get(loc);
-        Integer unit = texUnits.get(loc);
-        if (unit != null) {
-          pgl.activeTexture(PGL.TEXTURE0 + unit);
-          tex.bind();
-        } else {
-          throw new RuntimeException("Cannot find unit for texture " + tex);
-        }
+    for (int i = 0; i < samplerCount; i++) {
+      UniformValue val = samplers[i];
+      if (val.tex != null) {
+        pgl.activeTexture(PGL.TEXTURE0 + val.unit);
+        val.tex.bind();
       }
     }
   }
 
 
   protected void unbindTextures() {
-    if (textures != null && texUnits != null) {
-      for (int loc: textures.keySet()) {
-        Texture tex = textures.get(loc);
-        Integer unit = texUnits.get(loc);
-        if (unit != null) {
-          pgl.activeTexture(PGL.TEXTURE0 + unit);
-          tex.unbind();
-        } else {
-          throw new RuntimeException("Cannot find unit for texture " + tex);
+    if (0 < samplerCount) {
+      for (int i = 0; i < samplerCount; i++) {
+        UniformValue val = samplers[i];
+        if (val.tex != null) {
+          pgl.activeTexture(PGL.TEXTURE0 + val.unit);
+          val.tex.unbind();
         }
       }
       pgl.activeTexture(PGL.TEXTURE0);
@@ -900,6 +1054,7 @@ public class PShader implements PConstants {
         pgl.linkProgram(glProgram);
 
         validate();
+        resetUniforms();
       }
     }
   }
@@ -1108,7 +1263,7 @@ public class PShader implements PConstants {
 
 
   protected int getLastTexUnit() {
-    return texUnits == null ? -1 : texUnits.size() - 1;
+    return samplerCount - 1;
   }
 
 
@@ -1467,10 +1622,65 @@ public class PShader implements PConstants {
     static final int MAT4      = 18;
     static final int SAMPLER2D = 19;
 
-    int type;
+    String name;
+    int loc;
+
+    int type = -1;
+    int[] ivalue;
+    float[] fvalue;
     Object value;
 
-    UniformValue(int type, Object value) {
+    // Only for samplers
+    Texture tex;
+    int unit = -1;
+
+    // The value needs to be sent to GL
+    boolean dirty;
+
+    UniformValue(String name, int loc) {
+      this.name = name;
+      this.loc = loc;
+    }
+
+    /**
+     * Stores the first n values of v, returning true if they are different
+     * from the ones stored before.
+     */
+    boolean set(int type, int[] v, int n) {
+      boolean changed = this.type != type;
+      this.type = type;
+      if (ivalue == null || ivalue.length != n) {
+        ivalue = new int[n];
+        changed = true;
+      }
+      for (int i = 0; i < n; i++) {
+        if (ivalue[i] != v[i]) {
+          ivalue[i] = v[i];
+          changed = true;
+        }
+      }
+      return changed;
+    }
+
+    boolean set(int type, float[] v, int n) {
+      boolean changed = this.type != type;
+      this.type = type;
+      if (fvalue == null || fvalue.length != n) {
+        fvalue = new float[n];
+        changed = true;
+      }
+      for (int i = 0; i < n; i++) {
+        if (fvalue[i] != v[i]) {
+          fvalue[i] = v[i];
+          changed = true;
+        }
+      }
+      return changed;
+    }
+
+    void set(int type, Object value) {
+      // Samplers are always resent, since the texture of the image might
+      // have changed even if the image is the same.
       this.type = type;
       this.value = value;
     }
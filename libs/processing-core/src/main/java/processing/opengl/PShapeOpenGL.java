@@ -32,7 +32,9 @@ import processing.core.PMatrix;
 import processing.core.PMatrix2D;
 import processing.core.PMatrix3D;
 import processing.core.PShape;
+import processing.core.PShapeOBJ;
 import processing.core.PVector;
+import processing.core.PVectorArray;
 import processing.opengl.PGraphicsOpenGL.AttributeMap;
 import processing.opengl.PGraphicsOpenGL.IndexCache;
 import processing.opengl.PGraphicsOpenGL.InGeometry;
@@ -90,6 +92,10 @@ public class PShapeOpenGL extends PShape {
 
   protected AttributeMap polyAttribs;
 
+  // Triangle indices into inGeo, for TRIANGLES shapes created from indexed
+  // meshes (null when the vertices are simply taken three at a time)
+  protected int[] inIndices;
+
   // ........................................................
 
   // Texturing
@@ -204,10 +210,12 @@ public class PShapeOpenGL extends PShape {
   protected int bezierDetail;
   protected int curveDetail;
   protected float curveTightness;
+  protected float curveFlatness;
 
   protected int savedBezierDetail;
   protected int savedCurveDetail;
   protected float savedCurveTightness;
+  protected float savedCurveFlatness;
 
   // ........................................................
 
@@ -380,6 +388,7 @@ public class PShapeOpenGL extends PShape {
     bezierDetail = pg.bezierDetail;
     curveDetail = pg.curveDetail;
     curveTightness = pg.curveTightness;
+    curveFlatness = pg.curveFlatness;
 
     rectMode = pg.rectMode;
     ellipseMode = pg.ellipseMode;
@@ -529,6 +538,10 @@ public class PShapeOpenGL extends PShape {
       //dest = PGraphics3D.createShapeImpl(pg, src.getKind(), src.getParams());
       dest = (PShapeOpenGL) pg.createShapePrimitive(src.getKind(), src.getParams());
       PShape.copyPrimitive(src, dest);
+    } else if (src instanceof PShapeOBJ &&
+               ((PShapeOBJ) src).getIndices() != null) {
+      dest = (PShapeOpenGL) pg.createShapeFamily(PShape.GEOMETRY);
+      copyMesh((PShapeOBJ) src, dest);
     } else if (src.getFamily() == GEOMETRY) {
       //dest = PGraphics3D.createShapeImpl(pg, PShape.GEOMETRY);
       dest = (PShapeOpenGL) pg.createShapeFamily(PShape.GEOMETRY);
@@ -585,6 +598,32 @@ public class PShapeOpenGL extends PShape {
   }
 
 
+  /**
+   * Copies an indexed triangle mesh loaded from an OBJ file, sharing the
+   * vertices between the triangles instead of adding three per triangle.
+   */
+  static public void copyMesh(PShapeOBJ src, PShapeOpenGL dest) {
+    dest.beginShape(TRIANGLES);
+
+    copyMatrix(src, dest);
+    copyStyles(src, dest);
+    copyImage(src, dest);
+
+    int count = src.getVertexCount();
+    for (int i = 0; i < count; i++) {
+      dest.normalX = src.getNormalX(i);
+      dest.normalY = src.getNormalY(i);
+      dest.normalZ = src.getNormalZ(i);
+      dest.vertex(src.getVertexX(i), src.getVertexY(i), src.getVertexZ(i),
+                  src.getTextureU(i), src.getTextureV(i));
+    }
+    dest.normalMode = NORMAL_MODE_VERTEX;
+    dest.inIndices = src.getIndices();
+
+    dest.endShape();
+  }
+
+
   /*
   static public void copyGroup2D(PGraphicsOpenGL pg, PShape src, PShape dest) {
     copyMatrix(src, dest);
@@ -1577,6 +1616,15 @@ public class PShapeOpenGL extends PShape {
   }
 
 
+  @Override
+  public void curveFlatness(float flatness) {
+    curveFlatness = flatness;
+    if (0 < inGeo.codeCount) {
+      markForTessellation();
+    }
+  }
+
+
   @Override
   public void curveVertex(float x, float y) {
     curveVertexImpl(x, y, 0);
@@ -1714,6 +1762,50 @@ public class PShapeOpenGL extends PShape {
   }
 
 
+  /**
+   * Copies the vectors straight into the input geometry, and tessellates
+   * the shape once for all of them.
+   */
+  @Override
+  public void setVertices(PVectorArray vectors) {
+    if (openShape) {
+      PGraphics.showWarning(INSIDE_BEGIN_END_ERROR, "setVertices()");
+      return;
+    }
+
+    if (family == PATH) {
+      // As in setVertex(), the positions with a code other than VERTEX are
+      // left untouched.
+      boolean checkCodes = vertexCodes != null && vertexCodeCount > 0;
+      boolean skipped = false;
+      int count = Math.min(vertexCount, vectors.size());
+      for (int i = 0; i < count; i++) {
+        if (checkCodes && i < vertexCodeCount && vertexCodes[i] != VERTEX) {
+          skipped = true;
+          continue;
+        }
+        float[] vert = vertices[i];
+        vert[X] = vectors.x[i];
+        vert[Y] = vectors.y[i];
+        if (is3D && vert.length > 2) vert[Z] = vectors.z[i];
+      }
+      if (skipped) {
+        PGraphics.showWarning(NOT_A_SIMPLE_VERTEX, "setVertices()");
+      }
+    } else {
+      int count = Math.min(inGeo.vertexCount, vectors.size());
+      float[] xs = vectors.x, ys = vectors.y, zs = vectors.z;
+      float[] verts = inGeo.vertices;
+      for (int i = 0, j = 0; i < count; i++, j += 3) {
+        verts[j    ] = xs[i];
+        verts[j + 1] = ys[i];
+        if (is3D) verts[j + 2] = zs[i];
+      }
+    }
+    markForTessellation();
+  }
+
+
   @Override
   public PVector getNormal(int index, PVector vec) {
     if (vec == null) {
@@ -2751,12 +2843,33 @@ public class PShapeOpenGL extends PShape {
         }
       }
       return c;
+    } else if (family == GROUP) {
+      return super.contains(x, y);
     } else {
       throw new IllegalArgumentException("The contains() method is only implemented for paths.");
     }
   }
 
 
+  @Override
+  protected boolean getContainsBounds(float[] bounds) {
+    if (family == PATH) {
+      bounds[0] = bounds[1] = Float.MAX_VALUE;
+      bounds[2] = bounds[3] = -Float.MAX_VALUE;
+      for (int i = 0; i < inGeo.vertexCount; i++) {
+        float vx = inGeo.vertices[3 * i + 0];
+        float vy = inGeo.vertices[3 * i + 1];
+        if (vx < bounds[0]) bounds[0] = vx;
+        if (vy < bounds[1]) bounds[1] = vy;
+        if (vx > bounds[2]) bounds[2] = vx;
+        if (vy > bounds[3]) bounds[3] = vy;
+      }
+      return true;
+    }
+    return super.getContainsBounds(bounds);
+  }
+
+
   ///////////////////////////////////////////////////////////
 
   //
@@ -2777,6 +2890,7 @@ public class PShapeOpenGL extends PShape {
   protected void markForTessellation() {
     root.tessellated = false;
     tessellated = false;
+    invalidateIndex();
   }
 
 
@@ -2855,7 +2969,10 @@ public class PShapeOpenGL extends PShape {
         tessGeo.initAttrib(attrib);
       }
 
+      RenderMetrics metrics = pg.getMetrics();
+      if (metrics != null) metrics.beginSpan(RenderMetrics.TESSELLATE);
       tessellateImpl();
+      if (metrics != null) metrics.endSpan(RenderMetrics.TESSELLATE);
 
       // Tessellated arrays are trimmed since they are expanded
       // by doubling their old size, which might lead to arrays
@@ -2940,6 +3057,9 @@ public class PShapeOpenGL extends PShape {
             tessellator.tessellateLineStrip();
           } else if (kind == LINE_LOOP) {
             tessellator.tessellateLineLoop();
+          } else if (kind == TRIANGLES && inIndices != null) {
+            if (stroke) inGeo.addTrianglesEdges(inIndices);
+            tessellator.tessellateTriangles(inIndices);
           } else if (kind == TRIANGLE || kind == TRIANGLES) {
             if (stroke) inGeo.addTrianglesEdges();
             if (normalMode == NORMAL_MODE_AUTO) inGeo.calcTrianglesNormals();
@@ -3487,6 +3607,7 @@ public class PShapeOpenGL extends PShape {
     boolean bez = inGeo.hasBezierVertex();
     boolean quad = inGeo.hasQuadraticVertex();
     boolean curv = inGeo.hasCurveVertex();
+    if (bez || quad || curv) saveCurveFlatness();
     if (bez || quad) saveBezierVertexSettings();
     if (curv) {
       saveCurveVertexSettings();
@@ -3495,6 +3616,16 @@ public class PShapeOpenGL extends PShape {
     tessellator.tessellatePolygon(true, close, true);
     if (bez || quad) restoreBezierVertexSettings();
     if (curv) restoreCurveVertexSettings();
+    if (bez || quad || curv) restoreCurveFlatness();
+  }
+
+  protected void saveCurveFlatness() {
+    savedCurveFlatness = pg.curveFlatness;
+    pg.curveFlatness = curveFlatness;
+  }
+
+  protected void restoreCurveFlatness() {
+    pg.curveFlatness = savedCurveFlatness;
   }
 
   protected void saveBezierVertexSettings() {
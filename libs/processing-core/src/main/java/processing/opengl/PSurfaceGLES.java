@@ -89,7 +89,7 @@ public class PSurfaceGLES extends PSurfaceNone {
   @Override
   protected void callDraw() {
     component.requestDraw();
-    if (component.canDraw() && glsurf != null) {
+    if (component.canDraw() && glsurf != null && !skipFrame()) {
       glsurf.requestRender();
     }
   }
@@ -0,0 +1,239 @@
+/* -*- mode: java; c-basic-offset: 2; indent-tabs-mode: nil -*- */
+
+/*
+  Part of the Processing project - http://processing.org
+
+  Copyright (c) 2012-21 The Processing Foundation
+
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License as published by the Free Software Foundation, version 2.1.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+*/
+
+package processing.opengl;
+
+/**
+ * Per-frame counters and timings of the OpenGL renderer. The values of the
+ * frame being drawn are accumulated in one slot of a ring buffer that keeps
+ * the last N frames, so recording a value is just an addition to an array
+ * element, and nothing is allocated while drawing. The renderer only calls
+ * into this object when the metrics are enabled with enableMetrics().
+ * Offscreen surfaces record into the metrics of the primary surface.
+ * The values should be read from the animation thread, for instance at the
+ * beginning of draw(), where frame 0 is the last frame that was completed.
+ */
+public class RenderMetrics {
+  // Counters: flushes of the tessellated geometry, draw calls, vertices
+  // drawn (counting each index of the draw calls), changes of texture between
+  // draw calls, and bytes uploaded to vertex buffers and textures.
+  static public final int FLUSHES          = 0;
+  static public final int DRAW_CALLS       = 1;
+  static public final int VERTICES         = 2;
+  static public final int TEXTURE_SWITCHES = 3;
+  static public final int BUFFER_BYTES     = 4;
+  static public final int TEXTURE_BYTES    = 5;
+  static public final int COUNTER_COUNT    = 6;
+
+  // Timing spans: from beginDraw() to endDraw() of the primary surface, the
+  // flushes of each type of geometry, the tessellation in endShape(), and the
+  // conversion and upload of texture pixels.
+  static public final int DRAW           = 0;
+  static public final int FLUSH_POLYS    = 1;
+  static public final int FLUSH_LINES    = 2;
+  static public final int FLUSH_POINTS   = 3;
+  static public final int TESSELLATE     = 4;
+  static public final int TEXTURE_UPLOAD = 5;
+  static public final int SPAN_COUNT     = 6;
+
+  static protected final String[] COUNTER_NAMES = {
+    "flushes", "drawCalls", "vertices", "textureSwitches", "bufferBytes",
+    "textureBytes"
+  };
+
+  static protected final String[] SPAN_NAMES = {
+    "draw", "flushPolys", "flushLines", "flushPoints", "tessellate",
+    "textureUpload"
+  };
+
+  protected int capacity;
+
+  // Ring buffers with COUNTER_COUNT and SPAN_COUNT values per frame, the
+  // times are stored in nanoseconds.
+  protected long[] counters;
+  protected long[] times;
+
+  // Slot of the frame that is being recorded, and number of completed frames
+  // stored in the other slots.
+  protected int current;
+  protected int frameCount;
+
+  // Start of the spans that are open in the current frame. Spans of the same
+  // kind can be nested (i.e.: a flush triggered while drawing an offscreen
+  // surface), only the outermost one is timed.
+  protected long[] spanStart;
+  protected int[] spanDepth;
+
+
+  public RenderMetrics(int frames) {
+    capacity = frames + 1;
+    counters = new long[capacity * COUNTER_COUNT];
+    times = new long[capacity * SPAN_COUNT];
+    spanStart = new long[SPAN_COUNT];
+    spanDepth = new int[SPAN_COUNT];
+  }
+
+
+  ///////////////////////////////////////////////////////////
+
+  // Recording
+
+
+  public void count(int counter, long amount) {
+    counters[current * COUNTER_COUNT + counter] += amount;
+  }
+
+
+  public void beginSpan(int span) {
+    if (spanDepth[span]++ == 0) {
+      spanStart[span] = System.nanoTime();
+    }
+  }
+
+
+  public void endSpan(int span) {
+    if (0 < spanDepth[span] && --spanDepth[span] == 0) {
+      times[current * SPAN_COUNT + span] += System.nanoTime() - spanStart[span];
+    }
+  }
+
+
+  /**
+   * Closes the frame being recorded and starts a new one. Anything recorded
+   * between frames is added to the next one.
+   */
+  public void endFrame() {
+    current = (current + 1) % capacity;
+    for (int i = 0; i < COUNTER_COUNT; i++) {
+      counters[current * COUNTER_COUNT + i] = 0;
+    }
+    for (int i = 0; i < SPAN_COUNT; i++) {
+      times[current * SPAN_COUNT + i] = 0;
+    }
+    if (frameCount < capacity - 1) frameCount++;
+  }
+
+
+  public void clear() {
+    for (int i = 0; i < counters.length; i++) counters[i] = 0;
+    for (int i = 0; i < times.length; i++) times[i] = 0;
+    for (int i = 0; i < SPAN_COUNT; i++) spanDepth[i] = 0;
+    frameCount = 0;
+  }
+
+
+  ///////////////////////////////////////////////////////////
+
+  // Queries
+
+
+  /**
+   * Number of completed frames that are available, at most the number of
+   * frames given to enableMetrics().
+   */
+  public int getFrameCount() {
+    return frameCount;
+  }
+
+
+  /**
+   * Returns the value of the counter in the given frame, where 0 is the last
+   * completed frame, 1 the one before, and so on.
+   */
+  public long getCount(int frame, int counter) {
+    return counters[slot(frame) * COUNTER_COUNT + counter];
+  }
+
+
+  /**
+   * Returns the time spent in the span during the given frame, in
+   * milliseconds.
+   */
+  public float getTime(int frame, int span) {
+    return times[slot(frame) * SPAN_COUNT + span] / 1e6f;
+  }
+
+
+  /**
+   * Average of the counter over all the stored frames.
+   */
+  public float getAverageCount(int counter) {
+    if (frameCount == 0) return 0;
+    long sum = 0;
+    for (int f = 0; f < frameCount; f++) {
+      sum += counters[slot(f) * COUNTER_COUNT + counter];
+    }
+    return (float) sum / frameCount;
+  }
+
+
+  /**
+   * Average time of the span over all the stored frames, in milliseconds.
+   */
+  public float getAverageTime(int span) {
+    if (frameCount == 0) return 0;
+    long sum = 0;
+    for (int f = 0; f < frameCount; f++) {
+      sum += times[slot(f) * SPAN_COUNT + span];
+    }
+    return sum / (1e6f * frameCount);
+  }
+
+
+  static public String getCounterName(int counter) {
+    return COUNTER_NAMES[counter];
+  }
+
+
+  static public String getSpanName(int span) {
+    return SPAN_NAMES[span];
+  }
+
+
+  /**
+   * Summary of the last completed frame.
+   */
+  @Override
+  public String toString() {
+    if (frameCount == 0) return "no frames recorded";
+    StringBuilder str = new StringBuilder();
+    for (int i = 0; i < COUNTER_COUNT; i++) {
+      if (0 < i) str.append(", ");
+      str.append(COUNTER_NAMES[i]).append(": ").append(getCount(0, i));
+    }
+    for (int i = 0; i < SPAN_COUNT; i++) {
+      str.append(", ").append(SPAN_NAMES[i]).append(": ");
+      str.append(String.format("%.3f", getTime(0, i))).append(" ms");
+    }
+    return str.toString();
+  }
+
+
+  protected int slot(int frame) {
+    if (frame < 0 || frameCount <= frame) {
+      throw new IndexOutOfBoundsException("Frame " + frame +
+                                          " is not available, there are " +
+                                          frameCount + " frames recorded");
+    }
+    return (current - 1 - frame + capacity) % capacity;
+  }
+}
@@ -338,14 +338,7 @@ public class Texture implements PConstants {
     }
     pgl.bindTexture(glTarget, glName);
 
-    loadPixels(w * h);
-    convertToRGBA(pixels, format, w, h);
-    if (invertedX) flipArrayOnX(rgbaPixels, 1);
-    if (invertedY) flipArrayOnY(rgbaPixels, 1);
-    updatePixelBuffer(rgbaPixels);
-    pgl.texSubImage2D(glTarget, 0, x, y, w, h, PGL.RGBA, PGL.UNSIGNED_BYTE,
-                      pixelBuffer);
-    fillEdges(x, y, w, h);
+    setRegion(pixels, 0, w, x, y, w, h, format);
 
     if (usingMipmaps) {
       if (PGraphicsOpenGL.autoMipmapGenSupported) {
@@ -367,6 +360,149 @@ public class Texture implements PConstants {
   }
 
 
+  /**
+   * Copies the given regions of an image with the same size as the texture,
+   * stored as consecutive (x, y, w, h) values, into the texture. Only the
+   * pixels inside the regions are converted and uploaded.
+   */
+  public void setRegions(int[] pixels, int[] regions, int format) {
+    if (pixels == null) {
+      PGraphics.showWarning("The pixels array is null.");
+      return;
+    }
+    if (pixels.length < width * height) {
+      PGraphics.showWarning("The pixel array has a length of " +
+                            pixels.length + ", but it should be at least " +
+                            width * height);
+      return;
+    }
+
+    if (regions.length == 0) {
+      return;
+    }
+
+    boolean enabledTex = false;
+    if (!pgl.texturingIsEnabled(glTarget)) {
+      pgl.enableTexturing(glTarget);
+      enabledTex = true;
+    }
+    pgl.bindTexture(glTarget, glName);
+
+    for (int i = 0; i < regions.length; i += 4) {
+      int x = regions[i], y = regions[i + 1];
+      int w = regions[i + 2], h = regions[i + 3];
+      if (w <= 0 || h <= 0) continue;
+      setRegion(pixels, y * width + x, width, x, y, w, h, format);
+    }
+
+    if (usingMipmaps) {
+      if (PGraphicsOpenGL.autoMipmapGenSupported) {
+        pgl.generateMipmap(glTarget);
+      } else {
+        manualMipmap();
+      }
+    }
+
+    pgl.bindTexture(glTarget, 0);
+    if (enabledTex) {
+      pgl.disableTexturing(glTarget);
+    }
+
+    releasePixelBuffer();
+    releaseRGBAPixels();
+
+    for (int i = 0; i < regions.length; i += 4) {
+      updateTexels(regions[i], regions[i + 1], regions[i + 2], regions[i + 3]);
+    }
+  }
+
+
+  /**
+   * Copies h rows of an image with the same size as the texture, starting at
+   * row y. The mipmaps are only generated once the last row is set, so large
+   * images can be uploaded in several steps.
+   */
+  public void setRows(int[] pixels, int y, int h, int format) {
+    if (pixels == null) {
+      PGraphics.showWarning("The pixels array is null.");
+      return;
+    }
+    if (pixels.length < width * height) {
+      PGraphics.showWarning("The pixel array has a length of " +
+                            pixels.length + ", but it should be at least " +
+                            width * height);
+      return;
+    }
+
+    h = Math.min(h, height - y);
+    if (h <= 0) {
+      return;
+    }
+
+    boolean enabledTex = false;
+    if (!pgl.texturingIsEnabled(glTarget)) {
+      pgl.enableTexturing(glTarget);
+      enabledTex = true;
+    }
+    pgl.bindTexture(glTarget, glName);
+
+    setRegion(pixels, y * width, width, 0, y, width, h, format);
+
+    if (usingMipmaps && y + h == height) {
+      if (PGraphicsOpenGL.autoMipmapGenSupported) {
+        pgl.generateMipmap(glTarget);
+      } else {
+        manualMipmap();
+      }
+    }
+
+    pgl.bindTexture(glTarget, 0);
+    if (enabledTex) {
+      pgl.disableTexturing(glTarget);
+    }
+
+    releasePixelBuffer();
+    releaseRGBAPixels();
+
+    updateTexels(0, y, width, h);
+  }
+
+
+  // Converts the w x h region of pixels that starts at offset, with rows that
+  // are stride elements apart, and uploads it to the bound texture at (x, y).
+  protected void setRegion(int[] pixels, int offset, int stride,
+                           int x, int y, int w, int h, int format) {
+    RenderMetrics metrics = pg.getMetrics();
+    if (metrics != null) {
+      metrics.beginSpan(RenderMetrics.TEXTURE_UPLOAD);
+      metrics.count(RenderMetrics.TEXTURE_BYTES, 4L * w * h);
+    }
+
+    int conversion = getNativeConversion(format);
+    if (width < glWidth || height < glHeight || !PGL.USE_DIRECT_BUFFERS) {
+      // The edges are filled from the converted pixels, so they need to be
+      // kept in rgbaPixels as well.
+      loadPixels(w * h);
+      PGL.convertPixels(pixels, offset, stride, rgbaPixels, w, h, conversion,
+                        invertedX, invertedY);
+      rgbaPixUpdateCount++;
+      updatePixelBuffer(rgbaPixels);
+    } else {
+      // Converting and flipping the pixels in one pass, straight into the
+      // buffer that is uploaded to the texture.
+      loadPixelBuffer(w * h);
+      PGL.convertPixels(pixels, offset, stride, pixelBuffer, w, h, conversion,
+                        invertedX, invertedY);
+      pixBufUpdateCount++;
+    }
+    pgl.texSubImage2D(glTarget, 0, x, y, w, h, PGL.RGBA, PGL.UNSIGNED_BYTE,
+                      pixelBuffer);
+    fillEdges(x, y, w, h);
+
+    if (metrics != null) metrics.endSpan(RenderMetrics.TEXTURE_UPLOAD);
+  }
+
+
   ////////////////////////////////////////////////////////////
 
   // Native set methods
@@ -409,9 +545,15 @@ public class Texture implements PConstants {
     }
     pgl.bindTexture(glTarget, glName);
 
+    RenderMetrics metrics = pg.getMetrics();
+    if (metrics != null) {
+      metrics.beginSpan(RenderMetrics.TEXTURE_UPLOAD);
+      metrics.count(RenderMetrics.TEXTURE_BYTES, 4L * w * h);
+    }
     pgl.texSubImage2D(glTarget, 0, x, y, w, h, PGL.RGBA, PGL.UNSIGNED_BYTE,
                       pixBuf);
     fillEdges(x, y, w, h);
+    if (metrics != null) metrics.endSpan(RenderMetrics.TEXTURE_UPLOAD);
 
     if (usingMipmaps) {
       if (PGraphicsOpenGL.autoMipmapGenSupported) {
@@ -460,10 +602,8 @@ public class Texture implements PConstants {
     pg.popFramebuffer();
 
     tempFbo.getPixels(pixels);
-    convertToARGB(pixels);
-
-    if (invertedX) flipArrayOnX(pixels, 1);
-    if (invertedY) flipArrayOnY(pixels, 1);
+    PGL.convertPixels(pixels, pixels, width, height, PGL.NATIVE_TO_JAVA_ARGB,
+                      invertedX, invertedY);
   }
 
 
@@ -789,6 +929,13 @@ public class Texture implements PConstants {
   }
 
 
+  protected void loadPixelBuffer(int len) {
+    if (pixelBuffer == null || pixelBuffer.capacity() < len) {
+      pixelBuffer = PGL.allocateDirectIntBuffer(len);
+    }
+  }
+
+
   protected void updatePixelBuffer(int[] pixels) {
     pixelBuffer = PGL.updateIntBuffer(pixelBuffer, pixels, true);
     pixBufUpdateCount++;
@@ -999,65 +1146,8 @@ public class Texture implements PConstants {
    * @param h int
    */
   protected void convertToRGBA(int[] pixels, int format, int w, int h)  {
-    if (PGL.BIG_ENDIAN)  {
-      switch (format) {
-      case ALPHA:
-        // Converting from xxxA into RGBA. RGB is set to white
-        // (0xFFFFFF, i.e.: (255, 255, 255))
-        for (int i = 0; i< pixels.length; i++) {
-          rgbaPixels[i] = 0xFFFFFF00 | pixels[i];
-        }
-        break;
-      case RGB:
-        // Converting xRGB into RGBA. A is set to 0xFF (255, full opacity).
-        for (int i = 0; i< pixels.length; i++) {
-          int pixel = pixels[i];
-          rgbaPixels[i] = (pixel << 8) | 0xFF;
-        }
-        break;
-      case ARGB:
-        // Converting ARGB into RGBA. Shifting RGB to 8 bits to the left,
-        // and bringing A to the first byte.
-        for (int i = 0; i< pixels.length; i++) {
-          int pixel = pixels[i];
-          rgbaPixels[i] = (pixel << 8) | ((pixel >> 24) & 0xFF);
-        }
-        break;
-      }
-    } else {
-      // LITTLE_ENDIAN
-      // ARGB native, and RGBA opengl means ABGR on windows
-      // for the most part just need to swap two components here
-      // the sun.cpu.endian here might be "false", oddly enough..
-      // (that's why just using an "else", rather than check for "little")
-      switch (format)  {
-      case ALPHA:
-        // Converting xxxA into ARGB, with RGB set to white.
-        for (int i = 0; i< pixels.length; i++) {
-          rgbaPixels[i] = (pixels[i] << 24) | 0x00FFFFFF;
-        }
-        break;
-      case RGB:
-        // We need to convert xRGB into ABGR,
-        // so R and B must be swapped, and the x just made 0xFF.
-        for (int i = 0; i< pixels.length; i++) {
-          int pixel = pixels[i];
-          rgbaPixels[i] = 0xFF000000 |
-                          ((pixel & 0xFF) << 16) | ((pixel & 0xFF0000) >> 16) |
-                          (pixel & 0x0000FF00);
-        }
-        break;
-      case ARGB:
-        // We need to convert ARGB into ABGR,
-        // so R and B must be swapped, A and G just brought back in.
-        for (int i = 0; i < pixels.length; i++) {
-          int pixel = pixels[i];
-          rgbaPixels[i] = ((pixel & 0xFF) << 16) | ((pixel & 0xFF0000) >> 16) |
-                          (pixel & 0xFF00FF00);
-        }
-        break;
-      }
-    }
+    PGL.convertPixels(pixels, rgbaPixels, w, h, getNativeConversion(format),
+                      false, false);
     rgbaPixUpdateCount++;
   }
 
@@ -1068,27 +1158,24 @@ public class Texture implements PConstants {
    * @param pixels int[]
    */
   protected void convertToARGB(int[] pixels) {
-    int t = 0;
-    int p = 0;
-    if (PGL.BIG_ENDIAN) {
-      // RGBA to ARGB conversion: shifting RGB 8 bits to the right,
-      // and placing A 24 bits to the left.
-      for (int y = 0; y < height; y++) {
-        for (int x = 0; x < width; x++) {
-          int pixel = pixels[p++];
-          pixels[t++] = (pixel >>> 8) | ((pixel << 24) & 0xFF000000);
-        }
-      }
+    PGL.convertPixels(pixels, pixels, width, height, PGL.NATIVE_TO_JAVA_ARGB,
+                      false, false);
+  }
+
+
+  /**
+   * Returns the conversion from the given Java format (ALPHA, RGB or ARGB)
+   * into the order required by OpenGL (RGBA). ALPHA pixels are converted to
+   * white with the alpha stored in the lowest byte, and RGB pixels are made
+   * fully opaque.
+   */
+  protected int getNativeConversion(int format) {
+    if (format == ALPHA) {
+      return PGL.JAVA_TO_NATIVE_ALPHA;
+    } else if (format == RGB) {
+      return PGL.JAVA_TO_NATIVE_RGB;
     } else {
-      // We have to convert ABGR into ARGB, so R and B must be swapped,
-      // A and G just brought back in.
-      for (int y = 0; y < height; y++) {
-        for (int x = 0; x < width; x++) {
-          int pixel = pixels[p++];
-          pixels[t++] = ((pixel & 0xFF) << 16) | ((pixel & 0xFF0000) >> 16) |
-                          (pixel & 0xFF00FF00);
-        }
-      }
+      return PGL.JAVA_TO_NATIVE_ARGB;
     }
   }
 
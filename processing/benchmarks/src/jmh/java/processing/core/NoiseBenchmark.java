@@ -0,0 +1,83 @@
+/* -*- mode: java; c-basic-offset: 2; indent-tabs-mode: nil -*- */
+
+/*
+  Part of the Processing project - http://processing.org
+
+  Copyright (c) 2012-21 The Processing Foundation
+
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License as published by the Free Software Foundation, version 2.1.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+*/
+
+package processing.core;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Perlin noise sampled over a grid, the way sketches usually fill a terrain
+ * or a flow field every frame.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class NoiseBenchmark {
+  static final int GRID_SIZE = 64;
+
+  @Param({"4", "8"})
+  int octaves;
+
+  PApplet applet;
+  float time;
+
+  @Setup
+  public void setup() {
+    applet = new PApplet();
+    applet.noiseSeed(0);
+    applet.noiseDetail(octaves, 0.5f);
+  }
+
+  @Benchmark
+  public float noise1D() {
+    float sum = 0;
+    for (int i = 0; i < GRID_SIZE * GRID_SIZE; i++) {
+      sum += applet.noise(i * 0.01f);
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public float noise2D() {
+    float sum = 0;
+    for (int y = 0; y < GRID_SIZE; y++) {
+      for (int x = 0; x < GRID_SIZE; x++) {
+        sum += applet.noise(x * 0.02f, y * 0.02f);
+      }
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public float noise3D() {
+    float sum = 0;
+    time += 0.01f;
+    for (int y = 0; y < GRID_SIZE; y++) {
+      for (int x = 0; x < GRID_SIZE; x++) {
+        sum += applet.noise(x * 0.02f, y * 0.02f, time);
+      }
+    }
+    return sum;
+  }
+}
@@ -0,0 +1,99 @@
+/* -*- mode: java; c-basic-offset: 2; indent-tabs-mode: nil -*- */
+
+/*
+  Part of the Processing project - http://processing.org
+
+  Copyright (c) 2012-21 The Processing Foundation
+
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License as published by the Free Software Foundation, version 2.1.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+*/
+
+package processing.core;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * The image filters of PImage. The pixels are restored before each call,
+ * since the filters work in place, the copy is negligible compared to the
+ * filters themselves.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class PImageFilterBenchmark {
+  @Param({"256", "1024"})
+  int size;
+
+  @Param({"BLUR", "GRAY", "INVERT", "POSTERIZE", "THRESHOLD", "ERODE", "DILATE"})
+  String filter;
+
+  PImage image;
+  int[] original;
+  int kind;
+  float param;
+
+  @Setup
+  public void setup() {
+    image = new PImage(size, size, PConstants.ARGB);
+    original = new int[size * size];
+
+    // Smooth gradients with some noise on top, so the blur and the
+    // morphological filters don't hit only trivial cases.
+    Random random = new Random(0);
+    for (int y = 0; y < size; y++) {
+      for (int x = 0; x < size; x++) {
+        int r = (255 * x / size + random.nextInt(32)) & 0xFF;
+        int g = (255 * y / size + random.nextInt(32)) & 0xFF;
+        int b = random.nextInt(256);
+        original[y * size + x] = 0xFF000000 | (r << 16) | (g << 8) | b;
+      }
+    }
+
+    if (filter.equals("BLUR")) {
+      kind = PConstants.BLUR;
+      param = 3;
+    } else if (filter.equals("GRAY")) {
+      kind = PConstants.GRAY;
+    } else if (filter.equals("INVERT")) {
+      kind = PConstants.INVERT;
+    } else if (filter.equals("POSTERIZE")) {
+      kind = PConstants.POSTERIZE;
+      param = 4;
+    } else if (filter.equals("THRESHOLD")) {
+      kind = PConstants.THRESHOLD;
+      param = 0.5f;
+    } else if (filter.equals("ERODE")) {
+      kind = PConstants.ERODE;
+    } else if (filter.equals("DILATE")) {
+      kind = PConstants.DILATE;
+    }
+  }
+
+  @Benchmark
+  public PImage filter() {
+    image.loadPixels();
+    System.arraycopy(original, 0, image.pixels, 0, original.length);
+    if (kind == PConstants.BLUR || kind == PConstants.POSTERIZE ||
+        kind == PConstants.THRESHOLD) {
+      image.filter(kind, param);
+    } else {
+      image.filter(kind);
+    }
+    return image;
+  }
+}
@@ -0,0 +1,177 @@
+/* -*- mode: java; c-basic-offset: 2; indent-tabs-mode: nil -*- */
+
+/*
+  Part of the Processing project - http://processing.org
+
+  Copyright (c) 2012-21 The Processing Foundation
+
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License as published by the Free Software Foundation, version 2.1.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+*/
+
+package processing.core;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Matrix operations done by the renderers for every shape: composing the
+ * modelview, inverting it for the normal matrix, and transforming vertices
+ * one at a time or in batches.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class PMatrix3DBenchmark {
+  static final int VERTEX_COUNT = 4096;
+  static final int LARGE_COUNT = 262144;
+
+  PMatrix3D modelview;
+  PMatrix3D transform;
+  PMatrix3D target;
+  float[] source;
+  float[] point;
+  float[] result;
+  float[] targets;
+  float[] tessVertices;
+  float[] tessTargets;
+  float[] largeVertices;
+  float[] largeTargets;
+
+  @Setup
+  public void setup() {
+    Random random = new Random(0);
+    modelview = new PMatrix3D();
+    modelview.translate(120, -40, -300);
+    modelview.rotateY(0.7f);
+    modelview.rotateX(-0.3f);
+    modelview.scale(1.5f);
+
+    transform = new PMatrix3D();
+    transform.rotate(0.1f, 0.3f, 0.5f, 0.8f);
+    transform.translate(5, 10, 15);
+
+    target = new PMatrix3D();
+    source = new float[3 * VERTEX_COUNT];
+    for (int i = 0; i < source.length; i++) {
+      source[i] = 1000 * random.nextFloat() - 500;
+    }
+    point = new float[3];
+    result = new float[3];
+    targets = new float[source.length];
+
+    // the layout of the tessellated vertices: x, y, z, w
+    tessVertices = new float[4 * VERTEX_COUNT];
+    for (int i = 0; i < VERTEX_COUNT; i++) {
+      System.arraycopy(source, 3 * i, tessVertices, 4 * i, 3);
+      tessVertices[4 * i + 3] = 1;
+    }
+    tessTargets = new float[tessVertices.length];
+    largeVertices = new float[4 * LARGE_COUNT];
+    for (int i = 0; i < largeVertices.length; i++) {
+      largeVertices[i] = i % 4 == 3 ? 1 : 1000 * random.nextFloat() - 500;
+    }
+    largeTargets = new float[largeVertices.length];
+  }
+
+  @Benchmark
+  public PMatrix3D apply() {
+    target.set(modelview);
+    target.apply(transform);
+    return target;
+  }
+
+  @Benchmark
+  public PMatrix3D preApply() {
+    target.set(modelview);
+    target.preApply(transform);
+    return target;
+  }
+
+  @Benchmark
+  public PMatrix3D rotateTranslateScale() {
+    target.set(modelview);
+    target.rotate(0.25f, 0, 1, 0);
+    target.translate(10, 20, 30);
+    target.scale(2, 2, 2);
+    return target;
+  }
+
+  @Benchmark
+  public boolean invert() {
+    target.set(modelview);
+    return target.invert();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(VERTEX_COUNT)
+  public void multVertices(Blackhole bh) {
+    PMatrix3D mm = modelview;
+    float[] src = source;
+    for (int i = 0; i < src.length; i += 3) {
+      float x = src[i], y = src[i + 1], z = src[i + 2];
+      bh.consume(mm.multX(x, y, z));
+      bh.consume(mm.multY(x, y, z));
+      bh.consume(mm.multZ(x, y, z));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(VERTEX_COUNT)
+  public float[] multPerPoint() {
+    float[] src = source;
+    for (int i = 0; i < src.length; i += 3) {
+      point[0] = src[i];
+      point[1] = src[i + 1];
+      point[2] = src[i + 2];
+      modelview.mult(point, result);
+      targets[i] = result[0];
+      targets[i + 1] = result[1];
+      targets[i + 2] = result[2];
+    }
+    return targets;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(VERTEX_COUNT)
+  public float[] multPoints() {
+    modelview.multPoints(source, targets, 0, VERTEX_COUNT, 3, 3);
+    return targets;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(VERTEX_COUNT)
+  public float[] multTessVertices() {
+    modelview.multPoints(tessVertices, tessTargets, 0, VERTEX_COUNT, 4, 4);
+    return tessTargets;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(LARGE_COUNT)
+  public float[] multLargeSerial() {
+    transform.multPoints(largeVertices, largeTargets, 0, LARGE_COUNT, 4, 4);
+    return largeTargets;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(LARGE_COUNT)
+  public float[] multLargeParallel() {
+    transform.parallelMultPoints(largeVertices, largeTargets, 0, LARGE_COUNT,
+                                 4, 4);
+    return largeTargets;
+  }
+}
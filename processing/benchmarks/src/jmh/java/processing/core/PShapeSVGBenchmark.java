@@ -0,0 +1,175 @@
+/* -*- mode: java; c-basic-offset: 2; indent-tabs-mode: nil -*- */
+
+/*
+  Part of the Processing project - http://processing.org
+
+  Copyright (c) 2012-21 The Processing Foundation
+
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License as published by the Free Software Foundation, version 2.1.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+*/
+
+package processing.core;
+
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import processing.data.XML;
+
+/**
+ * Loading of SVG files: the complete document, and the path data alone. The
+ * corpus is generated with a fixed seed so the results are comparable across
+ * runs; it mimics the output of illustration tools, with nested groups,
+ * transforms, and long paths mixing absolute and relative commands, curves,
+ * and arcs.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+public class PShapeSVGBenchmark {
+  @Param({"16", "64"})
+  int groupCount;
+
+  @Param({"32"})
+  int pathsPerGroup;
+
+  String document;
+  String pathData;
+
+  @Setup
+  public void setup() {
+    Random random = new Random(0);
+    StringBuilder svg = new StringBuilder();
+    svg.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+    svg.append("<svg xmlns=\"http://www.w3.org/2000/svg\" ");
+    svg.append("width=\"1000px\" height=\"1000px\" viewBox=\"0 0 1000 1000\">\n");
+    for (int g = 0; g < groupCount; g++) {
+      svg.append(String.format(Locale.US,
+        "<g transform=\"translate(%.2f,%.2f) rotate(%.1f)\">\n",
+        1000 * random.nextFloat(), 1000 * random.nextFloat(),
+        360 * random.nextFloat()));
+      for (int p = 0; p < pathsPerGroup; p++) {
+        if (p % 8 == 7) {
+          svg.append("<polygon fill=\"#336699\" points=\"");
+          svg.append(createPoints(random, 24));
+          svg.append("\"/>\n");
+        } else {
+          svg.append("<path fill=\"#ff8800\" stroke=\"#000000\" ");
+          svg.append("stroke-width=\"1.5\" d=\"");
+          svg.append(createPathData(random, 48));
+          svg.append("\"/>\n");
+        }
+      }
+      svg.append("</g>\n");
+    }
+    svg.append("</svg>\n");
+    document = svg.toString();
+    pathData = createPathData(random, 4096);
+  }
+
+  @Benchmark
+  public PShape parseDocument() throws Exception {
+    return new PShapeSVG(XML.parse(document));
+  }
+
+  @Benchmark
+  public float lexPathData() {
+    PShapeSVG.PathLexer lexer = new PShapeSVG.PathLexer(pathData);
+    float sum = 0;
+    while (lexer.hasNext()) {
+      char c = lexer.nextCommand();
+      switch (c) {
+        case 'A':
+        case 'a':
+          sum += lexer.nextFloat() + lexer.nextFloat() + lexer.nextFloat();
+          if (lexer.nextFlag()) sum++;
+          if (lexer.nextFlag()) sum++;
+          // $FALL-THROUGH$
+        default:
+          while (lexer.nextIsNumber()) {
+            sum += lexer.nextFloat();
+          }
+      }
+    }
+    return sum;
+  }
+
+  static String createPathData(Random random, int segmentCount) {
+    StringBuilder d = new StringBuilder();
+    d.append(String.format(Locale.US, "M%.3f,%.3f",
+                           100 * random.nextFloat(), 100 * random.nextFloat()));
+    for (int i = 0; i < segmentCount; i++) {
+      switch (random.nextInt(6)) {
+        case 0:
+          d.append(String.format(Locale.US, "L%.3f %.3f",
+                                 100 * random.nextFloat(),
+                                 100 * random.nextFloat()));
+          break;
+        case 1:
+          d.append(String.format(Locale.US, "l%.2f-%.2f",
+                                 10 * random.nextFloat(),
+                                 10 * random.nextFloat()));
+          break;
+        case 2:
+          d.append(String.format(Locale.US, "C%.3f,%.3f %.3f,%.3f %.3f,%.3f",
+                                 100 * random.nextFloat(),
+                                 100 * random.nextFloat(),
+                                 100 * random.nextFloat(),
+                                 100 * random.nextFloat(),
+                                 100 * random.nextFloat(),
+                                 100 * random.nextFloat()));
+          break;
+        case 3:
+          d.append(String.format(Locale.US, "c-%.2f.%d %.2f,%.2f %.2f %.2f",
+                                 5 * random.nextFloat(), random.nextInt(100),
+                                 5 * random.nextFloat(),
+                                 5 * random.nextFloat(),
+                                 5 * random.nextFloat(),
+                                 5 * random.nextFloat()));
+          break;
+        case 4:
+          d.append(String.format(Locale.US, "q%.2f,%.2f,%.2f,%.2f",
+                                 10 * random.nextFloat(),
+                                 10 * random.nextFloat(),
+                                 10 * random.nextFloat(),
+                                 10 * random.nextFloat()));
+          break;
+        case 5:
+          d.append(String.format(Locale.US, "a%.1f,%.1f 0 %d%d %.2f,%.2f",
+                                 1 + 10 * random.nextFloat(),
+                                 1 + 10 * random.nextFloat(),
+                                 random.nextInt(2), random.nextInt(2),
+                                 10 * random.nextFloat(),
+                                 10 * random.nextFloat()));
+          break;
+      }
+    }
+    d.append('z');
+    return d.toString();
+  }
+
+  static String createPoints(Random random, int pointCount) {
+    StringBuilder points = new StringBuilder();
+    for (int i = 0; i < pointCount; i++) {
+      if (i > 0) points.append(' ');
+      points.append(String.format(Locale.US, "%.3f,%.3f",
+                                  100 * random.nextFloat(),
+                                  100 * random.nextFloat()));
+    }
+    return points.toString();
+  }
+}
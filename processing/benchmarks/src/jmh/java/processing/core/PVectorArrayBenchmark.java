@@ -0,0 +1,105 @@
+/* -*- mode: java; c-basic-offset: 2; indent-tabs-mode: nil -*- */
+
+/*
+  Part of the Processing project - http://processing.org
+
+  Copyright (c) 2012-21 The Processing Foundation
+
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License as published by the Free Software Foundation, version 2.1.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+*/
+
+
+package processing.core;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * One step of a particle system, integrating velocities into positions and
+ * limiting the speed, with an array of PVector objects and with the
+ * PVectorArray that stores the coordinates in float arrays.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class PVectorArrayBenchmark {
+  static final int PARTICLE_COUNT = 100000;
+
+  PVector[] positions;
+  PVector[] velocities;
+  PVectorArray positionArray;
+  PVectorArray velocityArray;
+
+  @Setup
+  public void setup() {
+    Random random = new Random(0);
+    positions = new PVector[PARTICLE_COUNT];
+    velocities = new PVector[PARTICLE_COUNT];
+    for (int i = 0; i < PARTICLE_COUNT; i++) {
+      positions[i] = new PVector(1000 * random.nextFloat(),
+                                 1000 * random.nextFloat(),
+                                 1000 * random.nextFloat());
+      velocities[i] = new PVector(10 * random.nextFloat() - 5,
+                                  10 * random.nextFloat() - 5,
+                                  10 * random.nextFloat() - 5);
+    }
+    positionArray = new PVectorArray(positions);
+    velocityArray = new PVectorArray(velocities);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(PARTICLE_COUNT)
+  public PVector[] objects() {
+    for (int i = 0; i < PARTICLE_COUNT; i++) {
+      velocities[i].limit(4);
+      positions[i].add(PVector.mult(velocities[i], 0.5f));
+    }
+    return positions;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(PARTICLE_COUNT)
+  public PVectorArray arrays() {
+    velocityArray.limit(4);
+    positionArray.add(velocityArray, 0.5f);
+    return positionArray;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(PARTICLE_COUNT)
+  public PVectorArray parallelArrays() {
+    positionArray.parallelFor(new PVectorArray.Task() {
+      @Override
+      public void run(PVectorArray vectors, int start, int end) {
+        float[] vx = velocityArray.x, vy = velocityArray.y, vz = velocityArray.z;
+        for (int i = start; i < end; i++) {
+          float m = vx[i] * vx[i] + vy[i] * vy[i] + vz[i] * vz[i];
+          if (m > 16) {
+            float s = 4 / (float) Math.sqrt(m);
+            vx[i] *= s;
+            vy[i] *= s;
+            vz[i] *= s;
+          }
+          vectors.x[i] += 0.5f * vx[i];
+          vectors.y[i] += 0.5f * vy[i];
+          vectors.z[i] += 0.5f * vz[i];
+        }
+      }
+    });
+    return positionArray;
+  }
+}
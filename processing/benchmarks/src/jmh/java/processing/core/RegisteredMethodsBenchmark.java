@@ -0,0 +1,116 @@
+/* -*- mode: java; c-basic-offset: 2; indent-tabs-mode: nil -*- */
+
+/*
+  Part of the Processing project - http://processing.org
+
+  Copyright (c) 2012-21 The Processing Foundation
+
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License as published by the Free Software Foundation, version 2.1.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+*/
+
+
+package processing.core;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import processing.event.MouseEvent;
+
+/**
+ * Dispatch of the methods registered by libraries, once per frame for draw()
+ * and once per input event for mouseEvent(). The reflective benchmarks call
+ * the same methods the way RegisteredMethods used to, with the access checks
+ * and a new argument array on every call.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class RegisteredMethodsBenchmark {
+  @Param({"1", "8", "32"})
+  int libraries;
+
+  PApplet applet;
+  PApplet.RegisteredMethods drawMethods;
+  PApplet.RegisteredMethods eventMethods;
+
+  Listener[] listeners;
+  Method[] drawReflect;
+  Method[] eventReflect;
+
+  MouseEvent event;
+
+  @Setup
+  public void setup() throws Exception {
+    applet = new PApplet();
+    drawMethods = applet.new RegisteredMethods();
+    eventMethods = applet.new RegisteredMethods();
+
+    listeners = new Listener[libraries];
+    drawReflect = new Method[libraries];
+    eventReflect = new Method[libraries];
+    for (int i = 0; i < libraries; i++) {
+      listeners[i] = new Listener();
+      drawMethods.add(listeners[i], Listener.class.getMethod("draw"));
+      eventMethods.add(listeners[i],
+                       Listener.class.getMethod("mouseEvent", MouseEvent.class));
+      drawReflect[i] = Listener.class.getMethod("draw");
+      eventReflect[i] = Listener.class.getMethod("mouseEvent", MouseEvent.class);
+    }
+
+    event = new MouseEvent(null, 0, MouseEvent.DRAG, 0, 10, 20, PConstants.LEFT, 1);
+  }
+
+  @Benchmark
+  public int draw() {
+    drawMethods.handle();
+    return listeners[0].count;
+  }
+
+  @Benchmark
+  public int drawReflective() throws Exception {
+    for (int i = 0; i < libraries; i++) {
+      drawReflect[i].invoke(listeners[i], new Object[] { });
+    }
+    return listeners[0].count;
+  }
+
+  @Benchmark
+  public int mouseEvent() {
+    eventMethods.handle(event);
+    return listeners[0].count;
+  }
+
+  @Benchmark
+  public int mouseEventReflective() throws Exception {
+    for (int i = 0; i < libraries; i++) {
+      eventReflect[i].invoke(listeners[i], new Object[] { event });
+    }
+    return listeners[0].count;
+  }
+
+  static public class Listener {
+    int count;
+
+    public void draw() {
+      count++;
+    }
+
+    public void mouseEvent(MouseEvent e) {
+      count += e.getX();
+    }
+  }
+}
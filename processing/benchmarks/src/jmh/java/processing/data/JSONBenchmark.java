@@ -0,0 +1,86 @@
+/* -*- mode: java; c-basic-offset: 2; indent-tabs-mode: nil -*- */
+
+/*
+  Part of the Processing project - http://processing.org
+
+  Copyright (c) 2012-21 The Processing Foundation
+
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License as published by the Free Software Foundation, version 2.1.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+*/
+
+package processing.data;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Parsing of large JSON documents: an array of records with nested objects
+ * and arrays, numbers, booleans, and strings with escape sequences.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+public class JSONBenchmark {
+  @Param({"1000", "10000"})
+  int recordCount;
+
+  String array;
+  String object;
+
+  @Setup
+  public void setup() {
+    Random random = new Random(0);
+    JSONArray records = new JSONArray();
+    for (int i = 0; i < recordCount; i++) {
+      JSONObject record = new JSONObject();
+      record.setInt("id", i);
+      record.setString("name", "record \"" + i + "\"\tunicode \u00e9\u00e8");
+      record.setFloat("value", 1000 * random.nextFloat());
+      record.setDouble("precise", random.nextDouble());
+      record.setBoolean("active", random.nextBoolean());
+
+      JSONObject position = new JSONObject();
+      position.setFloat("x", 100 * random.nextFloat());
+      position.setFloat("y", 100 * random.nextFloat());
+      position.setFloat("z", 100 * random.nextFloat());
+      record.setJSONObject("position", position);
+
+      JSONArray samples = new JSONArray();
+      for (int j = 0; j < 8; j++) {
+        samples.append(random.nextInt(1000));
+      }
+      record.setJSONArray("samples", samples);
+      records.append(record);
+    }
+    array = records.toString();
+
+    JSONObject root = new JSONObject();
+    root.setString("version", "1.0");
+    root.setJSONArray("records", records);
+    object = root.toString();
+  }
+
+  @Benchmark
+  public JSONArray parseArray() {
+    return JSONArray.parse(array);
+  }
+
+  @Benchmark
+  public JSONObject parseObject() {
+    return JSONObject.parse(object);
+  }
+}
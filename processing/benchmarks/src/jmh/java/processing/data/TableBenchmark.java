@@ -0,0 +1,98 @@
+/* -*- mode: java; c-basic-offset: 2; indent-tabs-mode: nil -*- */
+
+/*
+  Part of the Processing project - http://processing.org
+
+  Copyright (c) 2012-21 The Processing Foundation
+
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License as published by the Free Software Foundation, version 2.1.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+*/
+
+package processing.data;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Parsing of large CSV and TSV files into a Table, with a header row and a
+ * mix of integer, float, and string columns. Some of the CSV strings are
+ * quoted and contain separators or escaped quotes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Thread)
+public class TableBenchmark {
+  static final String[] NAMES = {
+    "Amsterdam", "Buenos Aires", "Cairo", "Delhi", "Edinburgh", "Fortaleza",
+    "Guadalajara", "Hanoi", "Istanbul", "Johannesburg", "Kyoto", "Lagos"
+  };
+
+  @Param({"10000", "100000"})
+  int rowCount;
+
+  byte[] csv;
+  byte[] tsv;
+
+  @Setup
+  public void setup() {
+    Random random = new Random(0);
+    StringBuilder c = new StringBuilder();
+    StringBuilder t = new StringBuilder();
+    c.append("id,name,latitude,longitude,population,notes\n");
+    t.append("id\tname\tlatitude\tlongitude\tpopulation\tnotes\n");
+    for (int i = 0; i < rowCount; i++) {
+      String name = NAMES[random.nextInt(NAMES.length)];
+      float lat = 180 * random.nextFloat() - 90;
+      float lon = 360 * random.nextFloat() - 180;
+      int population = random.nextInt(20000000);
+      String values = String.format(Locale.US, "%d,%s,%.5f,%.5f,%d,", i,
+                                    name, lat, lon, population);
+      c.append(values);
+      t.append(values.replace(',', '\t'));
+      switch (i % 4) {
+        case 0:
+          c.append("\"quoted, with a comma\"");
+          t.append("plain text");
+          break;
+        case 1:
+          c.append("\"an \"\"escaped\"\" quote\"");
+          t.append("another value");
+          break;
+        default:
+          c.append("plain");
+          t.append("plain");
+      }
+      c.append('\n');
+      t.append('\n');
+    }
+    csv = c.toString().getBytes(StandardCharsets.UTF_8);
+    tsv = t.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  @Benchmark
+  public Table parseCSV() throws Exception {
+    return new Table(new ByteArrayInputStream(csv), "csv,header");
+  }
+
+  @Benchmark
+  public Table parseTSV() throws Exception {
+    return new Table(new ByteArrayInputStream(tsv), "tsv,header");
+  }
+}
@@ -0,0 +1,82 @@
+/* -*- mode: java; c-basic-offset: 2; indent-tabs-mode: nil -*- */
+
+/*
+  Part of the Processing project - http://processing.org
+
+  Copyright (c) 2012-21 The Processing Foundation
+
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License as published by the Free Software Foundation, version 2.1.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+*/
+
+package processing.opengl;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Generation of the outline of thick lines with LineStroker, which is what
+ * the 2D stroke tessellation runs through. The path is a long polyline with
+ * short segments and sharp turns, the worst case for caps and joins.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class LineStrokerBenchmark {
+  @Param({"1000", "10000"})
+  int segmentCount;
+
+  @Param({"MITER", "ROUND", "BEVEL"})
+  String join;
+
+  LinePath path;
+  int joinStyle;
+  int capStyle;
+
+  @Setup
+  public void setup() {
+    Random random = new Random(0);
+    path = new LinePath(LinePath.WIND_NON_ZERO, segmentCount + 1);
+    float x = 500, y = 500;
+    path.moveTo(x, y, 0xFF000000);
+    for (int i = 0; i < segmentCount; i++) {
+      x += 20 * random.nextFloat() - 10;
+      y += 20 * random.nextFloat() - 10;
+      path.lineTo(x, y, 0xFF000000 | random.nextInt(0x1000000));
+    }
+
+    if (join.equals("ROUND")) {
+      joinStyle = LinePath.JOIN_ROUND;
+      capStyle = LinePath.CAP_ROUND;
+    } else if (join.equals("BEVEL")) {
+      joinStyle = LinePath.JOIN_BEVEL;
+      capStyle = LinePath.CAP_SQUARE;
+    } else {
+      joinStyle = LinePath.JOIN_MITER;
+      capStyle = LinePath.CAP_BUTT;
+    }
+  }
+
+  @Benchmark
+  public LinePath strokeThin() {
+    return LinePath.createStrokedPath(path, 1, capStyle, joinStyle);
+  }
+
+  @Benchmark
+  public LinePath strokeThick() {
+    return LinePath.createStrokedPath(path, 12, capStyle, joinStyle);
+  }
+}
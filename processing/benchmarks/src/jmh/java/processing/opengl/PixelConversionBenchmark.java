@@ -0,0 +1,205 @@
+/* -*- mode: java; c-basic-offset: 2; indent-tabs-mode: nil -*- */
+
+/*
+  Part of the Processing project - http://processing.org
+
+  Copyright (c) 2012-21 The Processing Foundation
+
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License as published by the Free Software Foundation, version 2.1.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+*/
+
+package processing.opengl;
+
+import java.nio.IntBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Conversion of pixels between the ARGB format of PImage and the RGBA format
+ * of the textures, flipping the image vertically as done when uploading and
+ * reading back textures. The inPlace benchmarks convert the array twice per
+ * call so the pixels go back to their original values. The legacy
+ * benchmarks run the per-pixel loops that Texture and PGL used before
+ * convertPixels(), and parallel switches the band conversion on and off, on
+ * images below and above MIN_PARALLEL_CONVERSION_SIZE.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class PixelConversionBenchmark {
+  @Param({"128", "256", "1024", "2048"})
+  int size;
+
+  @Param({"true", "false"})
+  boolean parallel;
+
+  int[] pixels;
+  int[] converted;
+  IntBuffer buffer;
+  int minParallelSize;
+
+  @Setup
+  public void setup() {
+    minParallelSize = PGL.MIN_PARALLEL_CONVERSION_SIZE;
+    if (!parallel) {
+      PGL.MIN_PARALLEL_CONVERSION_SIZE = Integer.MAX_VALUE;
+    }
+
+    Random random = new Random(0);
+    pixels = new int[size * size];
+    for (int i = 0; i < pixels.length; i++) {
+      pixels[i] = random.nextInt();
+    }
+    converted = new int[size * size];
+    buffer = PGL.allocateDirectIntBuffer(size * size);
+  }
+
+  @TearDown
+  public void tearDown() {
+    PGL.MIN_PARALLEL_CONVERSION_SIZE = minParallelSize;
+  }
+
+  @Benchmark
+  public int[] toNative() {
+    PGL.convertPixels(pixels, converted, size, size,
+                      PGL.JAVA_TO_NATIVE_ARGB, false, true);
+    return converted;
+  }
+
+  @Benchmark
+  public IntBuffer toNativeBuffer() {
+    PGL.convertPixels(pixels, buffer, size, size,
+                      PGL.JAVA_TO_NATIVE_ARGB, false, true);
+    return buffer;
+  }
+
+  @Benchmark
+  public int[] toJava() {
+    PGL.convertPixels(pixels, converted, size, size,
+                      PGL.NATIVE_TO_JAVA_ARGB, false, true);
+    return converted;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(2)
+  public int[] inPlace() {
+    PGL.convertPixels(pixels, pixels, size, size,
+                      PGL.JAVA_TO_NATIVE_ARGB, false, true);
+    PGL.convertPixels(pixels, pixels, size, size,
+                      PGL.NATIVE_TO_JAVA_ARGB, false, true);
+    return pixels;
+  }
+
+  @Benchmark
+  public int[] region() {
+    // A quarter of the image, read with the stride of the full image
+    int w = size / 2;
+    int h = size / 2;
+    int offset = (size / 4) * size + size / 4;
+    PGL.convertPixels(pixels, offset, size, converted, w, h,
+                      PGL.JAVA_TO_NATIVE_ARGB, false, true);
+    return converted;
+  }
+
+  @Benchmark
+  public int[] legacyToNative() {
+    // Texture.set(): swap the channels into rgbaPixels, then flip the rows
+    legacyConvertToRGBA(pixels, converted);
+    legacyFlipArrayOnY(converted, size, size);
+    return converted;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(2)
+  public int[] legacyInPlace() {
+    // Swapping the channels and the rows twice restores the pixels
+    legacyJavaToNativeARGB(pixels, size, size);
+    legacyJavaToNativeARGB(pixels, size, size);
+    return pixels;
+  }
+
+  // The loops of Texture.convertToRGBA() for ARGB images.
+  static void legacyConvertToRGBA(int[] pixels, int[] rgbaPixels) {
+    if (PGL.BIG_ENDIAN) {
+      for (int i = 0; i < pixels.length; i++) {
+        int pixel = pixels[i];
+        rgbaPixels[i] = (pixel << 8) | ((pixel >> 24) & 0xFF);
+      }
+    } else {
+      for (int i = 0; i < pixels.length; i++) {
+        int pixel = pixels[i];
+        rgbaPixels[i] = ((pixel & 0xFF) << 16) | ((pixel & 0xFF0000) >> 16) |
+                        (pixel & 0xFF00FF00);
+      }
+    }
+  }
+
+  // Texture.flipArrayOnY()
+  static void legacyFlipArrayOnY(int[] intArray, int width, int height) {
+    int index = 0;
+    int yindex = (height - 1) * width;
+    for (int y = 0; y < height / 2; y++) {
+      for (int x = 0; x < width; x++) {
+        int temp = intArray[index];
+        intArray[index] = intArray[yindex];
+        intArray[yindex] = temp;
+
+        index++;
+        yindex++;
+      }
+      yindex -= width * 2;
+    }
+  }
+
+  // PGL.javaToNativeARGB(int[], int, int)
+  static void legacyJavaToNativeARGB(int[] pixels, int width, int height) {
+    int index = 0;
+    int yindex = (height - 1) * width;
+    for (int y = 0; y < height / 2; y++) {
+      for (int x = 0; x < width; x++) {
+        int pixy = pixels[yindex];
+        int pixi = pixels[index];
+        if (PGL.BIG_ENDIAN) { // ARGB to RGBA
+          pixels[index] = (pixy >>> 24) | (pixy << 8);
+          pixels[yindex] = (pixi >>> 24) | (pixi << 8);
+        } else { // ARGB to ABGR
+          int rbi = pixi & 0x00FF00FF;
+          int rby = pixy & 0x00FF00FF;
+          pixels[index] = (pixy & 0xFF00FF00) | (rby << 16) | (rby >> 16);
+          pixels[yindex] = (pixi & 0xFF00FF00) | (rbi << 16) | (rbi >> 16);
+        }
+        index++;
+        yindex++;
+      }
+      yindex -= width * 2;
+    }
+
+    if ((height % 2) == 1) { // Converts center row
+      index = (height / 2) * width;
+      for (int x = 0; x < width; x++) {
+        int pixi = pixels[index];
+        if (PGL.BIG_ENDIAN) { // ARGB to RGBA
+          pixels[index] = (pixi >>> 24) | (pixi << 8);
+        } else { // ARGB to ABGR
+          int rbi = pixi & 0x00FF00FF;
+          pixels[index] = (pixi & 0xFF00FF00) | (rbi << 16) | (rbi >> 16);
+        }
+        index++;
+      }
+    }
+  }
+}
@@ -0,0 +1,153 @@
+/* -*- mode: java; c-basic-offset: 2; indent-tabs-mode: nil -*- */
+
+/*
+  Part of the Processing project - http://processing.org
+
+  Copyright (c) 2012-21 The Processing Foundation
+
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License as published by the Free Software Foundation, version 2.1.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+*/
+
+package processing.opengl;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import processing.core.PApplet;
+import processing.core.PConstants;
+
+/**
+ * Generation and tessellation of the primitives drawn many times per frame,
+ * like the circles of a scatter plot, with and without the cache of unit
+ * primitives that PGraphicsOpenGL keeps.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class PrimitiveBenchmark {
+  static final int SHAPE_COUNT = 1000;
+
+  @Param({"P2D", "P3D"})
+  String renderer;
+
+  @Param({"true", "false"})
+  boolean cached;
+
+  PGraphicsOpenGL pg;
+  float[] positions;
+
+  @Setup
+  public void setup() {
+    pg = renderer.equals("P3D") ? new TessellatorBenchmark.Headless3D() :
+                                  new TessellatorBenchmark.Headless2D();
+    pg.setParent(new PApplet());
+    pg.setPrimary(true);
+    pg.setSize(1000, 1000);
+    pg.beginDraw();
+    pg.sphereDetail(30);
+    if (!cached) {
+      pg.primitiveCache = null;
+    }
+
+    Random random = new Random(0);
+    positions = new float[2 * SHAPE_COUNT];
+    for (int i = 0; i < positions.length; i++) {
+      positions[i] = 1000 * random.nextFloat();
+    }
+  }
+
+  @TearDown
+  public void teardown() {
+    pg.endDraw();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(SHAPE_COUNT)
+  public int ellipses() {
+    clear();
+    for (int i = 0; i < positions.length; i += 2) {
+      begin(PConstants.TRIANGLE_FAN, true);
+      pg.inGeo.addEllipse(positions[i], positions[i + 1], 8, 8, true, true);
+      pg.tessellate(PConstants.OPEN);
+    }
+    return pg.tessGeo.polyIndexCount + pg.tessGeo.lineIndexCount;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(SHAPE_COUNT)
+  public int filledEllipses() {
+    clear();
+    for (int i = 0; i < positions.length; i += 2) {
+      begin(PConstants.TRIANGLE_FAN, false);
+      pg.inGeo.addEllipse(positions[i], positions[i + 1], 8, 8, true, false);
+      pg.tessellate(PConstants.OPEN);
+    }
+    return pg.tessGeo.polyIndexCount;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(SHAPE_COUNT)
+  public int arcs() {
+    clear();
+    for (int i = 0; i < positions.length; i += 2) {
+      begin(PConstants.TRIANGLE_FAN, true);
+      pg.inGeo.addArc(positions[i], positions[i + 1], 40, 40,
+                      0, PConstants.HALF_PI, true, true, PConstants.PIE);
+      pg.tessellate(PConstants.OPEN);
+    }
+    return pg.tessGeo.polyIndexCount + pg.tessGeo.lineIndexCount;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(SHAPE_COUNT)
+  public int boxes() {
+    clear();
+    for (int i = 0; i < positions.length; i += 2) {
+      begin(PConstants.QUADS, true);
+      pg.inGeo.addBox(positions[i], positions[i + 1], 10, true, true);
+      pg.tessellate(PConstants.OPEN);
+    }
+    return pg.tessGeo.polyIndexCount + pg.tessGeo.lineIndexCount;
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(SHAPE_COUNT / 10)
+  public int spheres() {
+    clear();
+    for (int i = 0; i < positions.length / 10; i += 2) {
+      begin(PConstants.TRIANGLES, false);
+      int[] indices = pg.inGeo.addSphere(positions[i], pg.sphereDetailU,
+                                         pg.sphereDetailV, true, false);
+      pg.tessellate(indices);
+    }
+    return pg.tessGeo.polyIndexCount;
+  }
+
+  void clear() {
+    pg.tessGeo.clear();
+    pg.texCache.clear();
+  }
+
+  void begin(int shape, boolean stroke) {
+    pg.beginShape(shape);
+    pg.fill = true;
+    pg.stroke = stroke;
+    pg.strokeWeight = 1;
+    pg.strokeColor = 0xFF000000;
+    pg.inGeo.setMaterial(0xFFFFFFFF, 0xFF000000, 1, 0, 0, 0, 0);
+  }
+}
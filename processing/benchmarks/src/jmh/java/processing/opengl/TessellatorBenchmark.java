@@ -0,0 +1,146 @@
+/* -*- mode: java; c-basic-offset: 2; indent-tabs-mode: nil -*- */
+
+/*
+  Part of the Processing project - http://processing.org
+
+  Copyright (c) 2012-21 The Processing Foundation
+
+  This library is free software; you can redistribute it and/or
+  modify it under the terms of the GNU Lesser General Public
+  License as published by the Free Software Foundation, version 2.1.
+
+  This library is distributed in the hope that it will be useful,
+  but WITHOUT ANY WARRANTY; without even the implied warranty of
+  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+  Lesser General Public License for more details.
+
+  You should have received a copy of the GNU Lesser General
+  Public License along with this library; if not, write to the
+  Free Software Foundation, Inc., 59 Temple Place, Suite 330,
+  Boston, MA  02111-1307  USA
+*/
+
+package processing.opengl;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import processing.core.PApplet;
+import processing.core.PConstants;
+
+/**
+ * Tessellation of the geometry of PGraphicsOpenGL in immediate mode, with the
+ * fills going through the GLU tessellator and the thick strokes turned into
+ * triangles. The renderer runs on top of PGLHeadless, so no device or GL
+ * context is needed.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class TessellatorBenchmark {
+  @Param({"P2D", "P3D"})
+  String renderer;
+
+  @Param({"256", "4096"})
+  int vertexCount;
+
+  PGraphicsOpenGL pg;
+  float[] polygon;
+  float[] triangles;
+
+  @Setup
+  public void setup() {
+    pg = renderer.equals("P3D") ? new Headless3D() : new Headless2D();
+    pg.setParent(new PApplet());
+    pg.setPrimary(true);
+    pg.setSize(1000, 1000);
+
+    // The renderer is only set up for drawing, with its style, matrices and
+    // the default shaders, between beginDraw() and endDraw().
+    pg.beginDraw();
+
+    Random random = new Random(0);
+
+    // Star shaped polygon, concave at every other vertex
+    polygon = new float[2 * vertexCount];
+    for (int i = 0; i < vertexCount; i++) {
+      float angle = PConstants.TWO_PI * i / vertexCount;
+      float radius = i % 2 == 0 ? 400 : 200 + 100 * random.nextFloat();
+      polygon[2 * i + 0] = 500 + radius * (float) Math.cos(angle);
+      polygon[2 * i + 1] = 500 + radius * (float) Math.sin(angle);
+    }
+
+    triangles = new float[3 * 3 * vertexCount];
+    for (int i = 0; i < triangles.length; i++) {
+      triangles[i] = 1000 * random.nextFloat();
+    }
+  }
+
+  @TearDown
+  public void teardown() {
+    pg.endDraw();
+  }
+
+  @Benchmark
+  public int polygon() {
+    begin(PConstants.POLYGON, 1);
+    for (int i = 0; i < polygon.length; i += 2) {
+      pg.inGeo.addVertex(polygon[i], polygon[i + 1], 0, false);
+    }
+    pg.tessellate(PConstants.CLOSE);
+    return pg.tessGeo.polyIndexCount;
+  }
+
+  @Benchmark
+  public int thickPolygon() {
+    begin(PConstants.POLYGON, 8);
+    for (int i = 0; i < polygon.length; i += 2) {
+      pg.inGeo.addVertex(polygon[i], polygon[i + 1], 0, false);
+    }
+    pg.tessellate(PConstants.CLOSE);
+    return pg.tessGeo.polyIndexCount + pg.tessGeo.lineIndexCount;
+  }
+
+  @Benchmark
+  public int strokedTriangles() {
+    begin(PConstants.TRIANGLES, 4);
+    for (int i = 0; i < triangles.length; i += 3) {
+      pg.inGeo.addVertex(triangles[i], triangles[i + 1], triangles[i + 2],
+                         false);
+    }
+    pg.tessellate(PConstants.OPEN);
+    return pg.tessGeo.polyIndexCount + pg.tessGeo.lineIndexCount;
+  }
+
+  void begin(int shape, float weight) {
+    pg.tessGeo.clear();
+    pg.texCache.clear();
+    pg.beginShape(shape);
+    pg.fill = true;
+    pg.stroke = true;
+    pg.strokeWeight = weight;
+    pg.strokeColor = 0xFF000000;
+    pg.inGeo.setMaterial(0xFFFFFFFF, 0xFF000000, weight,
+                         0, 0, 0, 0);
+  }
+
+  static protected class Headless2D extends PGraphics2D {
+    @Override
+    protected PGL createPGL(PGraphicsOpenGL pg) {
+      PGLHeadless pgl = new PGLHeadless(pg);
+      pgl.logging = false;
+      return pgl;
+    }
+  }
+
+  static protected class Headless3D extends PGraphics3D {
+    @Override
+    protected PGL createPGL(PGraphicsOpenGL pg) {
+      PGLHeadless pgl = new PGLHeadless(pg);
+      pgl.logging = false;
+      return pgl;
+    }
+  }
+}